@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.Compressor;
+import com.liveramp.hank.compression.Decompressor;
+import com.liveramp.hank.storage.curly.CurlyReader;
+
+/**
+ * Compression and decompression of Curly record file blocks. The input is the beginning of the
+ * record file of a generated partition without block compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockCompressionCodecBenchmark {
+
+  @Param({"100000"})
+  private int numRecords;
+
+  @Param({"DEFLATE", "GZIP", "SNAPPY", "LZ4", "ZSTD", "SLOW_NO_COMPRESSION"})
+  private CompressionCodec blockCompressionCodec;
+
+  @Param({"32768"})
+  private int blockSize;
+
+  private Compressor compressor;
+  private Decompressor decompressor;
+  private byte[] block;
+  private byte[] compressedBlock;
+  private byte[] decompressedBlock;
+  private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+  @Setup
+  public void setUp() throws IOException {
+    compressor = blockCompressionCodec.getFactory().getCompressor();
+    decompressor = blockCompressionCodec.getFactory().getDecompressor();
+    File root = SyntheticPartitions.createRoot();
+    try {
+      SyntheticPartitions.generateCurly(root, 0, null, numRecords, null);
+      String recordFilePath = CurlyReader.getLatestBase(SyntheticPartitions.getPartitionRoot(root, 0)).getPath();
+      block = SyntheticPartitions.readPrefix(new File(recordFilePath), blockSize);
+    } finally {
+      SyntheticPartitions.deleteRoot(root);
+    }
+    compressedBlock = compress();
+    decompressedBlock = new byte[block.length];
+  }
+
+  @Benchmark
+  public byte[] compress() throws IOException {
+    outputStream.reset();
+    OutputStream compressedOutputStream = compressor.getOutputStream(outputStream);
+    compressedOutputStream.write(block);
+    compressedOutputStream.close();
+    return outputStream.toByteArray();
+  }
+
+  @Benchmark
+  public int decompress() throws IOException {
+    outputStream.reset();
+    decompressor.decompressBlock(compressedBlock, 0, compressedBlock.length, outputStream);
+    return outputStream.size();
+  }
+
+  @Benchmark
+  public int decompressIntoArray() throws IOException {
+    return decompressor.decompressBlock(compressedBlock, 0, compressedBlock.length, decompressedBlock, 0);
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.storage.cueball.CueballReader;
+
+/**
+ * Search of a key hash within a decompressed Cueball block, with the binary search used by CueballReader
+ * and with the linear scan it replaced, for various numbers of records per block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CueballBlockSearchBenchmark {
+
+  private static final int NUM_LOOKUP_KEYS = 1 << 12;
+  private static final int KEY_HASH_SIZE = SyntheticPartitions.KEY_HASH_SIZE;
+  private static final int FULL_RECORD_SIZE = KEY_HASH_SIZE + SyntheticPartitions.VALUE_SIZE;
+
+  @Param({"16", "64", "256", "1024", "4096"})
+  private int numRecordsPerBlock;
+
+  private byte[] block;
+  private byte[][] presentKeyHashes;
+  private byte[][] missingKeyHashes;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    private int position = 0;
+
+    private byte[] next(byte[][] keyHashes) {
+      if (position >= keyHashes.length) {
+        position = 0;
+      }
+      return keyHashes[position++];
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    byte[][] keyHashes = new byte[numRecordsPerBlock][KEY_HASH_SIZE];
+    for (byte[] keyHash : keyHashes) {
+      random.nextBytes(keyHash);
+    }
+    Arrays.sort(keyHashes, (a, b) -> BytesUtils.compareBytesUnsigned(a, 0, b, 0, KEY_HASH_SIZE));
+    block = new byte[numRecordsPerBlock * FULL_RECORD_SIZE];
+    for (int i = 0; i < numRecordsPerBlock; ++i) {
+      System.arraycopy(keyHashes[i], 0, block, i * FULL_RECORD_SIZE, KEY_HASH_SIZE);
+    }
+    presentKeyHashes = new byte[NUM_LOOKUP_KEYS][];
+    missingKeyHashes = new byte[NUM_LOOKUP_KEYS][];
+    for (int i = 0; i < NUM_LOOKUP_KEYS; ++i) {
+      presentKeyHashes[i] = keyHashes[random.nextInt(numRecordsPerBlock)];
+      // Random hashes are absent from the block, save for an unlikely collision
+      missingKeyHashes[i] = new byte[KEY_HASH_SIZE];
+      random.nextBytes(missingKeyHashes[i]);
+    }
+  }
+
+  @Benchmark
+  public int binarySearchPresent(ThreadState state) {
+    return CueballReader.binarySearchBlock(block, 0, block.length, state.next(presentKeyHashes),
+        KEY_HASH_SIZE, FULL_RECORD_SIZE);
+  }
+
+  @Benchmark
+  public int binarySearchMissing(ThreadState state) {
+    return CueballReader.binarySearchBlock(block, 0, block.length, state.next(missingKeyHashes),
+        KEY_HASH_SIZE, FULL_RECORD_SIZE);
+  }
+
+  @Benchmark
+  public int linearSearchPresent(ThreadState state) {
+    return linearSearchBlock(block, 0, block.length, state.next(presentKeyHashes));
+  }
+
+  @Benchmark
+  public int linearSearchMissing(ThreadState state) {
+    return linearSearchBlock(block, 0, block.length, state.next(missingKeyHashes));
+  }
+
+  // Linear scan previously done by CueballReader, stopping at the first greater key hash
+  private static int linearSearchBlock(byte[] block, int off, int limit, byte[] key) {
+    for (; off < limit; off += FULL_RECORD_SIZE) {
+      int comparison = BytesUtils.compareBytesUnsigned(block, off, key, 0, KEY_HASH_SIZE);
+      if (comparison == 0) {
+        return off + KEY_HASH_SIZE;
+      }
+      if (comparison == 1) {
+        break;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.cueball.CueballReader;
+
+/**
+ * Compression and decompression of Cueball key file blocks. The input is the beginning of the key
+ * file of a generated, uncompressed partition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CueballCompressionCodecBenchmark {
+
+  @Param({"1000000"})
+  private int numRecords;
+
+  @Param({"com.liveramp.hank.compression.cueball.NoCueballCompressionCodec",
+      "com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec",
+      "com.liveramp.hank.compression.cueball.SnappyCueballCompressionCodec",
+      "com.liveramp.hank.compression.cueball.Lz4CueballCompressionCodec",
+      "com.liveramp.hank.compression.cueball.Lz4HighCueballCompressionCodec",
+      "com.liveramp.hank.compression.cueball.ZstdCueballCompressionCodec"})
+  private String compressionCodecClassName;
+
+  @Param({"1024", "16384"})
+  private int blockSize;
+
+  private CueballCompressionCodec compressionCodec;
+  private byte[] block;
+  private byte[] compressedBlock;
+  private int compressedBlockLength;
+  private byte[] buffer;
+
+  @Setup
+  public void setUp() throws Exception {
+    compressionCodec = (CueballCompressionCodec)Class.forName(compressionCodecClassName).newInstance();
+    File root = SyntheticPartitions.createRoot();
+    try {
+      SyntheticPartitions.generateCueball(root, numRecords, NoCueballCompressionCodec.class);
+      String keyFilePath = CueballReader.getLatestBase(SyntheticPartitions.getPartitionRoot(root, 0)).getPath();
+      block = SyntheticPartitions.readPrefix(new File(keyFilePath), blockSize);
+    } finally {
+      SyntheticPartitions.deleteRoot(root);
+    }
+    compressedBlock = new byte[compressionCodec.getMaxCompressBufferSize(block.length)];
+    compressedBlockLength = compressionCodec.compress(block, 0, block.length, compressedBlock, 0);
+    buffer = new byte[Math.max(compressedBlock.length, block.length)];
+  }
+
+  @Benchmark
+  public int compress() {
+    return compressionCodec.compress(block, 0, block.length, buffer, 0);
+  }
+
+  @Benchmark
+  public int decompress() {
+    return compressionCodec.decompress(compressedBlock, 0, compressedBlockLength, buffer, 0);
+  }
+}
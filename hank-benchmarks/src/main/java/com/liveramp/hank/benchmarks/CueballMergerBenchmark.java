@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.partitioner.ConstantPartitioner;
+import com.liveramp.hank.storage.cueball.Cueball;
+import com.liveramp.hank.storage.cueball.CueballFilePath;
+import com.liveramp.hank.storage.cueball.CueballMerger;
+import com.liveramp.hank.storage.cueball.CueballReader;
+
+/**
+ * Time to merge a Cueball base with deltas into a new base, as done by partition updates. The
+ * number of deltas varies to show how the merge scales with the number of streams merged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CueballMergerBenchmark {
+
+  @Param({"1000000"})
+  private int numBaseRecords;
+
+  @Param({"100000"})
+  private int numDeltaRecords;
+
+  @Param({"1", "4", "16", "64"})
+  private int numDeltas;
+
+  private File root;
+  private CueballFilePath base;
+  private List<CueballFilePath> deltas;
+  private String newBasePath;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = SyntheticPartitions.createRoot();
+    SyntheticPartitions.generateCueball(root, 0, null, numBaseRecords,
+        NoCueballCompressionCodec.class, 1, new ConstantPartitioner());
+    for (int version = 1; version <= numDeltas; ++version) {
+      SyntheticPartitions.generateCueball(root, version, version - 1, numDeltaRecords,
+          NoCueballCompressionCodec.class, 1, new ConstantPartitioner());
+    }
+    String partitionRoot = SyntheticPartitions.getPartitionRoot(root, 0);
+    base = CueballReader.getLatestBase(partitionRoot);
+    deltas = new ArrayList<CueballFilePath>(Cueball.getDeltas(partitionRoot));
+    newBasePath = root.getAbsolutePath() + "/" + Cueball.getName(numDeltas + 1, true);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticPartitions.deleteRoot(root);
+  }
+
+  @Benchmark
+  public void merge() throws IOException {
+    new CueballMerger().merge(base,
+        deltas,
+        newBasePath,
+        SyntheticPartitions.KEY_HASH_SIZE,
+        SyntheticPartitions.VALUE_SIZE,
+        null,
+        SyntheticPartitions.HASH_INDEX_BITS,
+        new NoCueballCompressionCodec());
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.cueball.CueballReader;
+
+/**
+ * Random lookups of present and absent keys in a single Cueball partition, without any cache. The
+ * number of hash index bits sets the number of records per block: 1M records make blocks of about
+ * 3900, 240 and 15 records with 8, 12 and 16 bits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CueballReaderBenchmark {
+
+  @Param({"1000000"})
+  private int numRecords;
+
+  @Param({"8", "12", "16"})
+  private int hashIndexBits;
+
+  @Param({"false", "true"})
+  private boolean memoryMapKeyFile;
+
+  @Param({"false", "true"})
+  private boolean readKeyFileSlices;
+
+  @Param({"0", "10"})
+  private int filterNumBitsPerKey;
+
+  private File root;
+  private CueballReader reader;
+  private ByteBuffer[] presentKeys;
+  private ByteBuffer[] missingKeys;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = SyntheticPartitions.createRoot();
+    presentKeys = SyntheticPartitions.shuffle(
+        SyntheticPartitions.generateCueball(root, numRecords, NoCueballCompressionCodec.class, hashIndexBits));
+    missingKeys = SyntheticPartitions.getMissingKeys(presentKeys.length);
+    reader = new CueballReader(SyntheticPartitions.getPartitionRoot(root, 0),
+        SyntheticPartitions.KEY_HASH_SIZE,
+        SyntheticPartitions.HASHER,
+        SyntheticPartitions.VALUE_SIZE,
+        hashIndexBits,
+        new NoCueballCompressionCodec(),
+        CueballReader.createCache(0, 0),
+        memoryMapKeyFile,
+        readKeyFileSlices,
+        filterNumBitsPerKey);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+    SyntheticPartitions.deleteRoot(root);
+  }
+
+  @Benchmark
+  public ReaderResult getPresent(ReaderThreadState state) throws IOException {
+    state.result.clear();
+    reader.get(state.nextKey(presentKeys), state.result);
+    return state.result;
+  }
+
+  @Benchmark
+  public ReaderResult getMissing(ReaderThreadState state) throws IOException {
+    state.result.clear();
+    reader.get(state.nextKey(missingKeys), state.result);
+    return state.result;
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.storage.cueball.CueballWriter;
+
+/**
+ * Time to write a whole Cueball partition of pre hashed, sorted records. Output is discarded so
+ * that the disk is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CueballWriterBenchmark {
+
+  @Param({"1000000"})
+  private int numRecords;
+
+  @Param({"com.liveramp.hank.compression.cueball.NoCueballCompressionCodec",
+      "com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec"})
+  private String compressionCodecClassName;
+
+  private CueballCompressionCodec compressionCodec;
+  private SyntheticPartitions.Records records;
+
+  @Setup
+  public void setUp() throws Exception {
+    compressionCodec = (CueballCompressionCodec)Class.forName(compressionCodecClassName).newInstance();
+    records = SyntheticPartitions.generateRecords(numRecords);
+  }
+
+  @Benchmark
+  public CueballWriter writePartition() throws IOException {
+    CueballWriter writer = new CueballWriter(new NullOutputStream(),
+        SyntheticPartitions.KEY_HASH_SIZE,
+        SyntheticPartitions.HASHER,
+        SyntheticPartitions.VALUE_SIZE,
+        compressionCodec,
+        SyntheticPartitions.HASH_INDEX_BITS);
+    for (int i = 0; i < records.size(); ++i) {
+      writer.writeHash(ByteBuffer.wrap(records.keyHashes[i]), ByteBuffer.wrap(records.values[i]));
+    }
+    writer.close();
+    return writer;
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.storage.LocalPartitionRemoteFileOps;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
+import com.liveramp.hank.storage.curly.Curly;
+import com.liveramp.hank.storage.curly.CurlyFilePath;
+import com.liveramp.hank.storage.curly.CurlyMerger;
+import com.liveramp.hank.storage.curly.CurlyReader;
+
+/**
+ * Time to append Curly deltas to a base record file, as done by partition updates. The merge
+ * modifies the base in place, so a pristine copy is restored before each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CurlyMergerBenchmark {
+
+  @Param({"1000000"})
+  private int numBaseRecords;
+
+  @Param({"100000"})
+  private int numDeltaRecords;
+
+  @Param({"1", "4"})
+  private int numDeltas;
+
+  private File root;
+  private File pristineBase;
+  private CurlyFilePath base;
+  private List<String> deltaRemoteFiles;
+  private PartitionRemoteFileOps partitionRemoteFileOps;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = SyntheticPartitions.createRoot();
+    SyntheticPartitions.generateCurly(root, 0, null, numBaseRecords, null);
+    deltaRemoteFiles = new ArrayList<String>();
+    for (int version = 1; version <= numDeltas; ++version) {
+      SyntheticPartitions.generateCurly(root, version, version - 1, numDeltaRecords, null);
+      deltaRemoteFiles.add(Curly.getName(version, false));
+    }
+    base = CurlyReader.getLatestBase(SyntheticPartitions.getPartitionRoot(root, 0));
+    pristineBase = new File(root, "pristine_base");
+    Files.copy(new File(base.getPath()).toPath(), pristineBase.toPath());
+    partitionRemoteFileOps = new LocalPartitionRemoteFileOps(root.getAbsolutePath(), 0);
+  }
+
+  @Setup(Level.Invocation)
+  public void restoreBase() throws IOException {
+    Files.copy(pristineBase.toPath(), new File(base.getPath()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticPartitions.deleteRoot(root);
+  }
+
+  @Benchmark
+  public long[] merge() throws IOException {
+    return new CurlyMerger().merge(base, deltaRemoteFiles, partitionRemoteFileOps);
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.cueball.CueballReader;
+import com.liveramp.hank.storage.curly.CurlyReader;
+
+/**
+ * Random lookups of present and absent keys in a single Curly partition, with and without block
+ * compression, without any cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurlyReaderBenchmark {
+
+  @Param({"1000000"})
+  private int numRecords;
+
+  // NONE disables block compression
+  @Param({"NONE", "GZIP", "SNAPPY", "LZ4"})
+  private String blockCompressionCodec;
+
+  private File root;
+  private CurlyReader reader;
+  private ByteBuffer[] presentKeys;
+  private ByteBuffer[] missingKeys;
+
+  @Setup
+  public void setUp() throws IOException {
+    CompressionCodec codec = SyntheticPartitions.parseBlockCompressionCodec(blockCompressionCodec);
+    root = SyntheticPartitions.createRoot();
+    presentKeys = SyntheticPartitions.shuffle(
+        SyntheticPartitions.generateCurly(root, 0, null, numRecords, codec));
+    missingKeys = SyntheticPartitions.getMissingKeys(presentKeys.length);
+    String partitionRoot = SyntheticPartitions.getPartitionRoot(root, 0);
+    CueballReader keyFileReader = new CueballReader(partitionRoot,
+        SyntheticPartitions.KEY_HASH_SIZE,
+        SyntheticPartitions.HASHER,
+        SyntheticPartitions.getCurlyKeyFileValueSize(codec),
+        SyntheticPartitions.HASH_INDEX_BITS,
+        new NoCueballCompressionCodec(),
+        0,
+        0);
+    reader = new CurlyReader(CurlyReader.getLatestBase(partitionRoot),
+        SyntheticPartitions.RECORD_FILE_READ_BUFFER_BYTES,
+        keyFileReader,
+        0,
+        0,
+        codec,
+        SyntheticPartitions.getCurlyOffsetNumBytes(),
+        SyntheticPartitions.getCurlyOffsetInBlockNumBytes(codec),
+        false,
+        0);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+    SyntheticPartitions.deleteRoot(root);
+  }
+
+  @Benchmark
+  public ReaderResult getPresent(ReaderThreadState state) throws IOException {
+    state.result.clear();
+    reader.get(state.nextKey(presentKeys), state.result);
+    return state.result;
+  }
+
+  @Benchmark
+  public ReaderResult getMissing(ReaderThreadState state) throws IOException {
+    state.result.clear();
+    reader.get(state.nextKey(missingKeys), state.result);
+    return state.result;
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.cueball.CueballWriter;
+import com.liveramp.hank.storage.curly.CurlyWriter;
+
+/**
+ * Time to write a whole Curly partition (record file and key file) of sorted records, with and
+ * without block compression. Output is discarded so that the disk is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CurlyWriterBenchmark {
+
+  @Param({"1000000"})
+  private int numRecords;
+
+  // NONE disables block compression
+  @Param({"NONE", "GZIP", "SNAPPY", "LZ4"})
+  private String blockCompressionCodec;
+
+  private CompressionCodec codec;
+  private SyntheticPartitions.Records records;
+
+  @Setup
+  public void setUp() {
+    codec = SyntheticPartitions.parseBlockCompressionCodec(blockCompressionCodec);
+    records = SyntheticPartitions.generateRecords(numRecords);
+  }
+
+  @Benchmark
+  public CurlyWriter writePartition() throws IOException {
+    CueballWriter keyFileWriter = new CueballWriter(new NullOutputStream(),
+        SyntheticPartitions.KEY_HASH_SIZE,
+        SyntheticPartitions.HASHER,
+        SyntheticPartitions.getCurlyKeyFileValueSize(codec),
+        new NoCueballCompressionCodec(),
+        SyntheticPartitions.HASH_INDEX_BITS);
+    CurlyWriter writer = new CurlyWriter(new NullOutputStream(),
+        keyFileWriter,
+        SyntheticPartitions.getCurlyOffsetNumBytes(),
+        -1,
+        codec,
+        codec == null ? -1 : SyntheticPartitions.COMPRESSED_BLOCK_SIZE_THRESHOLD,
+        SyntheticPartitions.getCurlyOffsetInBlockNumBytes(codec));
+    for (int i = 0; i < records.size(); ++i) {
+      writer.write(ByteBuffer.wrap(records.keys[i]), ByteBuffer.wrap(records.values[i]));
+    }
+    writer.close();
+    return writer;
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.hasher.Hash128;
+import com.liveramp.hank.hasher.Murmur128Hasher;
+import com.liveramp.hank.hasher.Murmur64Hasher;
+import com.liveramp.hank.partitioner.Murmur128Partitioner;
+import com.liveramp.hank.partitioner.Murmur64Partitioner;
+
+/**
+ * Hashing of the keys of a generated partition, as done for every lookup and every written record, and
+ * partitioning followed by hashing, as done for every lookup by partition servers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HasherBenchmark {
+
+  @Param({"100000"})
+  private int numRecords;
+
+  @Param({"10", "20"})
+  private int hashSize;
+
+  private final Murmur64Hasher hasher = new Murmur64Hasher();
+  private final Murmur128Hasher murmur128Hasher = new Murmur128Hasher();
+  private final Murmur64Partitioner partitioner = new Murmur64Partitioner();
+  private final Murmur128Partitioner murmur128Partitioner = new Murmur128Partitioner();
+  private ByteBuffer[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    private byte[] hash;
+    private int position = 0;
+    private final Hash128 hash128 = new Hash128();
+
+    @Setup
+    public void setUp(HasherBenchmark benchmark) {
+      hash = new byte[benchmark.hashSize];
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    File root = SyntheticPartitions.createRoot();
+    try {
+      keys = SyntheticPartitions.shuffle(
+          SyntheticPartitions.generateCueball(root, numRecords, NoCueballCompressionCodec.class));
+    } finally {
+      SyntheticPartitions.deleteRoot(root);
+    }
+  }
+
+  @Benchmark
+  public byte[] hash(ThreadState state) {
+    if (state.position >= keys.length) {
+      state.position = 0;
+    }
+    hasher.hash(keys[state.position++], hashSize, state.hash);
+    return state.hash;
+  }
+
+  @Benchmark
+  public byte[] hashMurmur128(ThreadState state) {
+    if (state.position >= keys.length) {
+      state.position = 0;
+    }
+    murmur128Hasher.hash(keys[state.position++], hashSize, state.hash);
+    return state.hash;
+  }
+
+  // Partitioning and hashing of a lookup, as done by the partition server
+  @Benchmark
+  public byte[] partitionAndHash(ThreadState state) {
+    if (state.position >= keys.length) {
+      state.position = 0;
+    }
+    ByteBuffer key = keys[state.position++];
+    state.hash[0] ^= (byte)partitioner.partition(key, 1024);
+    hasher.hash(key, hashSize, state.hash);
+    return state.hash;
+  }
+
+  @Benchmark
+  public byte[] partitionAndHashMurmur128(ThreadState state) {
+    if (state.position >= keys.length) {
+      state.position = 0;
+    }
+    ByteBuffer key = keys[state.position++];
+    state.hash[0] ^= (byte)murmur128Partitioner.partition(key, 1024, state.hash128);
+    murmur128Hasher.hash(key, state.hash128, hashSize, state.hash);
+    return state.hash;
+  }
+}
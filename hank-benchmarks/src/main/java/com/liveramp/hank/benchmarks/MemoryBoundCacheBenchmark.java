@@ -0,0 +1,140 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
+import com.liveramp.hank.storage.HostCacheManager;
+import com.liveramp.hank.util.ConcurrentMemoryBoundCache;
+import com.liveramp.hank.util.MemoryBoundCache;
+import com.liveramp.hank.util.SynchronizedMemoryBoundCache;
+
+/**
+ * Gets and puts on the memory bound caches used by readers, shared by all benchmark threads: the
+ * synchronized cache, the lock-striped concurrent cache and the host-wide cache. One operation
+ * out of PUT_FREQUENCY is a put. Run with -t to compare how the caches scale with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MemoryBoundCacheBenchmark {
+
+  private static final int NUM_KEYS = 1 << 16;
+  private static final int NUM_ITEMS_CAPACITY = NUM_KEYS / 2;
+  private static final int VALUE_SIZE = 32;
+  private static final int PUT_FREQUENCY = 10;
+
+  @Param({"synchronized", "concurrent", "host"})
+  private String cacheType;
+
+  private Cache cache;
+  private ByteBuffer[] keys;
+  private final ByteBuffer value = ByteBuffer.wrap(new byte[VALUE_SIZE]);
+
+  private interface Cache {
+
+    ByteBuffer get(ByteBuffer key);
+
+    void put(ByteBuffer key, ByteBuffer value);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    private final Random random = new Random(Thread.currentThread().getId());
+    private int numOperations = 0;
+  }
+
+  @Setup
+  public void setUp() {
+    if (cacheType.equals("synchronized")) {
+      final SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer> synchronizedCache =
+          new SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer>(true, -1, NUM_ITEMS_CAPACITY,
+              new ByteBufferMemoryUsageEstimator(), new ByteBufferMemoryUsageEstimator());
+      cache = new Cache() {
+        @Override
+        public ByteBuffer get(ByteBuffer key) {
+          return synchronizedCache.get(key);
+        }
+
+        @Override
+        public void put(ByteBuffer key, ByteBuffer value) {
+          synchronizedCache.put(key, value);
+        }
+      };
+    } else if (cacheType.equals("concurrent")) {
+      cache = getCache(new ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer>(true, -1, NUM_ITEMS_CAPACITY,
+          new ByteBufferMemoryUsageEstimator(), new ByteBufferMemoryUsageEstimator()));
+    } else if (cacheType.equals("host")) {
+      cache = getCache(new HostCacheManager(0, NUM_ITEMS_CAPACITY, 1).getPartitionCache(0, 0, 0));
+    } else {
+      throw new IllegalArgumentException("Unknown cache type: " + cacheType);
+    }
+    keys = new ByteBuffer[NUM_KEYS];
+    for (int i = 0; i < NUM_KEYS; ++i) {
+      keys[i] = ByteBuffer.wrap(Integer.toString(i).getBytes());
+    }
+    // Start from a full cache
+    for (int i = 0; i < NUM_ITEMS_CAPACITY; ++i) {
+      cache.put(keys[i * 2], value);
+    }
+  }
+
+  private static Cache getCache(final MemoryBoundCache<ByteBuffer, ByteBuffer> memoryBoundCache) {
+    return new Cache() {
+      @Override
+      public ByteBuffer get(ByteBuffer key) {
+        return memoryBoundCache.get(key);
+      }
+
+      @Override
+      public void put(ByteBuffer key, ByteBuffer value) {
+        memoryBoundCache.put(key, value);
+      }
+    };
+  }
+
+  @Benchmark
+  public ByteBuffer getOrPut(ThreadState state) {
+    ByteBuffer key = keys[state.random.nextInt(NUM_KEYS)];
+    if (state.numOperations++ % PUT_FREQUENCY == 0) {
+      cache.put(key, value);
+      return key;
+    } else {
+      return cache.get(key);
+    }
+  }
+}
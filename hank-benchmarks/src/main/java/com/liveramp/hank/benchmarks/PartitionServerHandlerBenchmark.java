@@ -0,0 +1,213 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Sets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.config.ReaderConfigurator;
+import com.liveramp.hank.coordinator.Coordinator;
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.Host;
+import com.liveramp.hank.coordinator.HostDomain;
+import com.liveramp.hank.coordinator.PartitionServerAddress;
+import com.liveramp.hank.coordinator.Ring;
+import com.liveramp.hank.coordinator.RingGroup;
+import com.liveramp.hank.coordinator.mock.MockCoordinator;
+import com.liveramp.hank.coordinator.mock.MockDomain;
+import com.liveramp.hank.coordinator.mock.MockDomainGroup;
+import com.liveramp.hank.generated.HankBulkResponse;
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.partition_server.DiskPartitionAssignment;
+import com.liveramp.hank.partition_server.MockPartitionServerConfigurator;
+import com.liveramp.hank.partition_server.PartitionServerHandler;
+import com.liveramp.hank.partitioner.Murmur64Partitioner;
+import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.cueball.CueballReader;
+import com.liveramp.hank.storage.mock.MockStorageEngine;
+import com.liveramp.hank.test.coordinator.MockHost;
+import com.liveramp.hank.test.coordinator.MockHostDomain;
+import com.liveramp.hank.test.coordinator.MockRing;
+import com.liveramp.hank.test.coordinator.MockRingGroup;
+
+/**
+ * GET and GET bulk requests served in process by a PartitionServerHandler, bypassing Thrift,
+ * over a domain of generated Cueball partitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionServerHandlerBenchmark {
+
+  private static final int DOMAIN_ID = 0;
+  private static final String RING_GROUP_NAME = "myRingGroup";
+  private static final PartitionServerAddress ADDRESS = new PartitionServerAddress("localhost", 12345);
+
+  @Param({"1000000"})
+  private int numRecords;
+
+  @Param({"4"})
+  private int numPartitions;
+
+  @Param({"100"})
+  private int bulkSize;
+
+  @Param({"4"})
+  private int numConcurrentGetBulkTasks;
+
+  @Param({"10"})
+  private int getBulkTaskSize;
+
+  private File root;
+  private PartitionServerHandler handler;
+  private ByteBuffer[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    private int position = 0;
+    private final List<ByteBuffer> bulkKeys = new ArrayList<ByteBuffer>();
+
+    private ByteBuffer nextKey(ByteBuffer[] keys) {
+      if (position >= keys.length) {
+        position = 0;
+      }
+      return keys[position++];
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    root = SyntheticPartitions.createRoot();
+    Map<Integer, List<byte[]>> partitionedKeys = SyntheticPartitions.generateCueball(root, 0, null, numRecords,
+        NoCueballCompressionCodec.class, numPartitions, new Murmur64Partitioner());
+    List<byte[]> allKeys = new ArrayList<byte[]>();
+    for (List<byte[]> partitionKeys : partitionedKeys.values()) {
+      allKeys.addAll(partitionKeys);
+    }
+    keys = SyntheticPartitions.shuffle(allKeys);
+    handler = createHandler();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (handler != null) {
+      handler.shutDown();
+    }
+    SyntheticPartitions.deleteRoot(root);
+  }
+
+  @Benchmark
+  public HankResponse get(ThreadState state) {
+    return handler.get(DOMAIN_ID, state.nextKey(keys));
+  }
+
+  @Benchmark
+  public HankBulkResponse getBulk(ThreadState state) {
+    state.bulkKeys.clear();
+    for (int i = 0; i < bulkSize; ++i) {
+      state.bulkKeys.add(state.nextKey(keys));
+    }
+    return handler.getBulk(DOMAIN_ID, state.bulkKeys);
+  }
+
+  private PartitionServerHandler createHandler() throws IOException {
+    MockStorageEngine storageEngine = new MockStorageEngine() {
+      @Override
+      public Reader getReader(ReaderConfigurator configurator, int partitionNumber, DiskPartitionAssignment assignment)
+          throws IOException {
+        return new CueballReader(SyntheticPartitions.getPartitionRoot(root, partitionNumber),
+            SyntheticPartitions.KEY_HASH_SIZE,
+            SyntheticPartitions.HASHER,
+            SyntheticPartitions.VALUE_SIZE,
+            SyntheticPartitions.HASH_INDEX_BITS,
+            new NoCueballCompressionCodec(),
+            0,
+            0);
+      }
+    };
+    final Domain domain = new MockDomain("myDomain", DOMAIN_ID, numPartitions, new Murmur64Partitioner(),
+        storageEngine, null, null);
+
+    // All partitions are served at version 0
+    int[] partitionNumberAndVersionPairs = new int[2 * numPartitions];
+    for (int i = 0; i < numPartitions; ++i) {
+      partitionNumberAndVersionPairs[2 * i] = i;
+      partitionNumberAndVersionPairs[2 * i + 1] = 0;
+    }
+    final HostDomain hostDomain = new MockHostDomain(domain, partitionNumberAndVersionPairs);
+    final Host host = new MockHost(ADDRESS) {
+      @Override
+      public HostDomain getHostDomain(Domain d) {
+        return hostDomain;
+      }
+    };
+
+    final MockDomainGroup domainGroup = new MockDomainGroup("myDomainGroup");
+    domainGroup.setDomainVersions(Collections.singletonMap(domain, 0));
+    final MockRingGroup ringGroup = new MockRingGroup(domainGroup, RING_GROUP_NAME, Sets.<Ring>newHashSet());
+    final Ring ring = new MockRing(Sets.newHashSet(host), ringGroup, 0);
+    Coordinator coordinator = new MockCoordinator() {
+      @Override
+      public RingGroup getRingGroup(String ringGroupName) {
+        return new MockRingGroup(domainGroup, RING_GROUP_NAME, Sets.<Ring>newHashSet()) {
+          @Override
+          public Ring getRingForHost(PartitionServerAddress hostAddress) {
+            return ring;
+          }
+        };
+      }
+    };
+
+    MockPartitionServerConfigurator configurator = new MockPartitionServerConfigurator(ADDRESS.getPortNumber(),
+        coordinator, RING_GROUP_NAME, root.getAbsolutePath()) {
+      @Override
+      public int getNumConcurrentGetBulkTasks() {
+        return numConcurrentGetBulkTasks;
+      }
+
+      @Override
+      public int getGetBulkTaskSize() {
+        return getBulkTaskSize;
+      }
+    };
+    return new PartitionServerHandler(ADDRESS, configurator, coordinator);
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.nio.ByteBuffer;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.liveramp.hank.storage.ReaderResult;
+
+/**
+ * Per thread result buffer and position in the sequence of keys to look up.
+ */
+@State(Scope.Thread)
+public class ReaderThreadState {
+
+  final ReaderResult result = new ReaderResult();
+  private int position = 0;
+
+  ByteBuffer nextKey(ByteBuffer[] keys) {
+    if (position >= keys.length) {
+      position = 0;
+    }
+    return keys[position++];
+  }
+}
@@ -0,0 +1,199 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import com.liveramp.hank.client.LatencyEwmaReplicaSelectionPolicy;
+import com.liveramp.hank.client.PowerOfTwoChoicesReplicaSelectionPolicy;
+import com.liveramp.hank.client.Replica;
+import com.liveramp.hank.client.ReplicaSelectionPolicy;
+import com.liveramp.hank.client.RoundRobinReplicaSelectionPolicy;
+import com.liveramp.hank.coordinator.Host;
+
+/**
+ * Discrete event simulation of a client sending GET requests to the hosts serving a partition, one of
+ * them being slow, comparing the latencies obtained with each replica selection policy. Latency
+ * distributions are not a throughput or time per operation, so this is a main program rather than a
+ * JMH benchmark. Run with
+ * java -cp hank-benchmarks/target/benchmarks.jar com.liveramp.hank.benchmarks.ReplicaSelectionSimulation
+ * optionally followed by the number of hosts, the slow host's slowdown factor and the utilization.
+ * The simulation is deterministic: arrivals, service times and random replica choices are seeded.
+ */
+public class ReplicaSelectionSimulation {
+
+  private static final int NUM_REQUESTS = 1000000;
+  private static final long SEED = 42;
+  // Mean service time of a request on a host that is not slow
+  private static final double MEAN_SERVICE_TIME_NANOS = 1000000;
+  // Same as the client's moving average of response times
+  private static final double RESPONSE_TIME_EWMA_ALPHA = 0.2;
+
+  // A host serving requests one at a time, in order of arrival
+  private static class SimulatedHost implements Replica {
+
+    private final double meanServiceTimeNanos;
+    private double busyUntilNanos = 0;
+    private int numOutstandingRequests = 0;
+    private double responseTimeEwmaNanos = 0;
+    private int numRequests = 0;
+
+    private SimulatedHost(double meanServiceTimeNanos) {
+      this.meanServiceTimeNanos = meanServiceTimeNanos;
+    }
+
+    @Override
+    public Host getHost() {
+      return null;
+    }
+
+    @Override
+    public boolean isServing() {
+      return true;
+    }
+
+    @Override
+    public int getNumOutstandingRequests() {
+      return numOutstandingRequests;
+    }
+
+    @Override
+    public double getResponseTimeEwmaNanos() {
+      return responseTimeEwmaNanos;
+    }
+
+    // Return the time at which the request completes
+    private double send(double timeNanos, Random random) {
+      ++numRequests;
+      ++numOutstandingRequests;
+      busyUntilNanos = Math.max(timeNanos, busyUntilNanos) + exponential(random, meanServiceTimeNanos);
+      return busyUntilNanos;
+    }
+
+    private void onResponse(double responseTimeNanos) {
+      --numOutstandingRequests;
+      if (responseTimeEwmaNanos == 0) {
+        responseTimeEwmaNanos = responseTimeNanos;
+      } else {
+        responseTimeEwmaNanos += RESPONSE_TIME_EWMA_ALPHA * (responseTimeNanos - responseTimeEwmaNanos);
+      }
+    }
+  }
+
+  private static class Response implements Comparable<Response> {
+
+    private final SimulatedHost host;
+    private final double sentTimeNanos;
+    private final double timeNanos;
+
+    private Response(SimulatedHost host, double sentTimeNanos, double timeNanos) {
+      this.host = host;
+      this.sentTimeNanos = sentTimeNanos;
+      this.timeNanos = timeNanos;
+    }
+
+    @Override
+    public int compareTo(Response other) {
+      return Double.compare(timeNanos, other.timeNanos);
+    }
+  }
+
+  public static void main(String[] args) {
+    int numHosts = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    double slowdown = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+    double utilization = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+
+    // Utilization is relative to the total capacity of the hosts
+    double capacityPerNano = (numHosts - 1 + 1 / slowdown) / MEAN_SERVICE_TIME_NANOS;
+    double meanInterArrivalTimeNanos = 1 / (utilization * capacityPerNano);
+
+    System.out.println(numHosts + " hosts, one " + slowdown + "x slower, utilization " + utilization
+        + ", " + NUM_REQUESTS + " requests");
+    System.out.println(String.format("%-40s %10s %10s %10s %10s %10s", "policy", "mean (ms)", "p50 (ms)", "p99 (ms)", "p999 (ms)", "slow host"));
+    simulate(new RoundRobinReplicaSelectionPolicy(), numHosts, slowdown, meanInterArrivalTimeNanos);
+    simulate(new PowerOfTwoChoicesReplicaSelectionPolicy(new Random(SEED)), numHosts, slowdown, meanInterArrivalTimeNanos);
+    simulate(new LatencyEwmaReplicaSelectionPolicy(), numHosts, slowdown, meanInterArrivalTimeNanos);
+  }
+
+  private static void simulate(ReplicaSelectionPolicy policy,
+                               int numHosts,
+                               double slowdown,
+                               double meanInterArrivalTimeNanos) {
+    Random random = new Random(SEED);
+    List<SimulatedHost> hosts = new ArrayList<SimulatedHost>(numHosts);
+    hosts.add(new SimulatedHost(MEAN_SERVICE_TIME_NANOS * slowdown));
+    for (int i = 1; i < numHosts; ++i) {
+      hosts.add(new SimulatedHost(MEAN_SERVICE_TIME_NANOS));
+    }
+    PriorityQueue<Response> responses = new PriorityQueue<Response>();
+    double[] latencies = new double[NUM_REQUESTS];
+    int numLatencies = 0;
+    int previousHostIndex = numHosts - 1;
+    double timeNanos = 0;
+
+    for (int i = 0; i < NUM_REQUESTS; ++i) {
+      // Poisson arrivals
+      timeNanos += exponential(random, meanInterArrivalTimeNanos);
+      numLatencies = receiveResponses(responses, timeNanos, latencies, numLatencies);
+      // Same default order as the connection pool
+      int hostIndex = policy.selectHost(hosts, (previousHostIndex + 1) % numHosts);
+      previousHostIndex = hostIndex;
+      SimulatedHost host = hosts.get(hostIndex);
+      responses.add(new Response(host, timeNanos, host.send(timeNanos, random)));
+    }
+    numLatencies = receiveResponses(responses, Double.MAX_VALUE, latencies, numLatencies);
+
+    Arrays.sort(latencies, 0, numLatencies);
+    double total = 0;
+    for (int i = 0; i < numLatencies; ++i) {
+      total += latencies[i];
+    }
+    System.out.println(String.format("%-40s %10.3f %10.3f %10.3f %10.3f %9.1f%%",
+        policy.getClass().getSimpleName(),
+        total / numLatencies / 1000000,
+        getPercentile(latencies, numLatencies, 50) / 1000000,
+        getPercentile(latencies, numLatencies, 99) / 1000000,
+        getPercentile(latencies, numLatencies, 99.9) / 1000000,
+        100.0 * hosts.get(0).numRequests / NUM_REQUESTS));
+  }
+
+  // Deliver responses received up to the given time, and return the new number of latencies
+  private static int receiveResponses(PriorityQueue<Response> responses,
+                                      double timeNanos,
+                                      double[] latencies,
+                                      int numLatencies) {
+    while (!responses.isEmpty() && responses.peek().timeNanos <= timeNanos) {
+      Response response = responses.poll();
+      double latencyNanos = response.timeNanos - response.sentTimeNanos;
+      response.host.onResponse(latencyNanos);
+      latencies[numLatencies++] = latencyNanos;
+    }
+    return numLatencies;
+  }
+
+  private static double getPercentile(double[] sortedValues, int numValues, double percentile) {
+    int index = (int) Math.ceil(percentile / 100 * numValues) - 1;
+    return sortedValues[Math.max(0, Math.min(numValues - 1, index))];
+  }
+
+  private static double exponential(Random random, double mean) {
+    return -mean * Math.log(1 - random.nextDouble());
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.hasher.Hasher;
+import com.liveramp.hank.hasher.Murmur64Hasher;
+import com.liveramp.hank.partitioner.ConstantPartitioner;
+import com.liveramp.hank.partitioner.Partitioner;
+import com.liveramp.hank.storage.curly.Curly;
+
+/**
+ * Synthetic partitions shared by the benchmarks. Partitions are written with the
+ * TestDomainGenerator classes, under one directory per partition number.
+ */
+final class SyntheticPartitions {
+
+  static final int KEY_SIZE = 20;
+  static final int KEY_HASH_SIZE = 10;
+  static final int HASH_INDEX_BITS = 16;
+  static final int VALUE_SIZE = 32;
+  static final long MAX_PART_SIZE = 1L << 40;
+  static final int RECORD_FILE_READ_BUFFER_BYTES = 32 << 10;
+  static final int COMPRESSED_BLOCK_SIZE_THRESHOLD = 32 << 10;
+  static final int OFFSET_IN_BLOCK_NUM_BYTES = 3;
+  static final Hasher HASHER = new Murmur64Hasher();
+
+  private SyntheticPartitions() {
+  }
+
+  /**
+   * Records sorted by key hash, the order in which writers expect them.
+   */
+  static class Records {
+
+    final byte[][] keys;
+    final byte[][] keyHashes;
+    final byte[][] values;
+
+    private Records(byte[][] keys, byte[][] keyHashes, byte[][] values) {
+      this.keys = keys;
+      this.keyHashes = keyHashes;
+      this.values = values;
+    }
+
+    int size() {
+      return keys.length;
+    }
+  }
+
+  static File createRoot() throws IOException {
+    return Files.createTempDirectory("hank-benchmarks").toFile();
+  }
+
+  static void deleteRoot(File root) throws IOException {
+    if (root != null) {
+      FileUtils.deleteDirectory(root);
+    }
+  }
+
+  static String getPartitionRoot(File root, int partitionNumber) {
+    return root.getAbsolutePath() + "/" + partitionNumber;
+  }
+
+  // Write a Cueball base of a single partition and return its keys
+  static List<byte[]> generateCueball(File root,
+                                      int numRecords,
+                                      Class<? extends CueballCompressionCodec> compressionCodecClass) throws IOException {
+    return generateCueball(root, numRecords, compressionCodecClass, HASH_INDEX_BITS);
+  }
+
+  static List<byte[]> generateCueball(File root,
+                                      int numRecords,
+                                      Class<? extends CueballCompressionCodec> compressionCodecClass,
+                                      int hashIndexBits) throws IOException {
+    return com.liveramp.hank.storage.cueball.TestDomainGenerator.generate(root.getAbsolutePath(),
+        0, null, numRecords, KEY_SIZE, KEY_HASH_SIZE, hashIndexBits, VALUE_SIZE,
+        HASHER, compressionCodecClass, 1, new ConstantPartitioner()).get(0);
+  }
+
+  static Map<Integer, List<byte[]>> generateCueball(File root,
+                                                    int versionNumber,
+                                                    Integer parentVersionNumber,
+                                                    int numRecords,
+                                                    Class<? extends CueballCompressionCodec> compressionCodecClass,
+                                                    int numPartitions,
+                                                    Partitioner partitioner) throws IOException {
+    return com.liveramp.hank.storage.cueball.TestDomainGenerator.generate(root.getAbsolutePath(),
+        versionNumber, parentVersionNumber, numRecords, KEY_SIZE, KEY_HASH_SIZE, HASH_INDEX_BITS, VALUE_SIZE,
+        HASHER, compressionCodecClass, numPartitions, partitioner);
+  }
+
+  // Write a Curly version of a single partition and return its keys
+  static List<byte[]> generateCurly(File root,
+                                    int versionNumber,
+                                    Integer parentVersionNumber,
+                                    int numRecords,
+                                    CompressionCodec blockCompressionCodec) throws IOException {
+    return com.liveramp.hank.storage.curly.TestDomainGenerator.generate(root.getAbsolutePath(),
+        versionNumber, parentVersionNumber, numRecords, KEY_SIZE, KEY_HASH_SIZE, VALUE_SIZE, HASHER,
+        getCurly(blockCompressionCodec), 1, new ConstantPartitioner()).get(0);
+  }
+
+  static Curly getCurly(CompressionCodec blockCompressionCodec) {
+    return new Curly(KEY_HASH_SIZE, HASHER, MAX_PART_SIZE, HASH_INDEX_BITS, RECORD_FILE_READ_BUFFER_BYTES,
+        "", "", null, NoCueballCompressionCodec.class, null, 0, -1,
+        blockCompressionCodec,
+        blockCompressionCodec == null ? -1 : COMPRESSED_BLOCK_SIZE_THRESHOLD,
+        getCurlyOffsetInBlockNumBytes(blockCompressionCodec));
+  }
+
+  // Same as the offset size computed by Curly
+  static int getCurlyOffsetNumBytes() {
+    return (int)(Math.ceil(Math.ceil(Math.log(MAX_PART_SIZE) / Math.log(2)) / 8.0));
+  }
+
+  static int getCurlyOffsetInBlockNumBytes(CompressionCodec blockCompressionCodec) {
+    return blockCompressionCodec == null ? -1 : OFFSET_IN_BLOCK_NUM_BYTES;
+  }
+
+  // Size of the values stored in the Cueball key file of a Curly partition
+  static int getCurlyKeyFileValueSize(CompressionCodec blockCompressionCodec) {
+    if (blockCompressionCodec == null) {
+      return getCurlyOffsetNumBytes();
+    } else {
+      return getCurlyOffsetNumBytes() + OFFSET_IN_BLOCK_NUM_BYTES;
+    }
+  }
+
+  // "NONE" means no block compression
+  static CompressionCodec parseBlockCompressionCodec(String name) {
+    if (name.equals("NONE")) {
+      return null;
+    }
+    return CompressionCodec.valueOf(name);
+  }
+
+  // Generated keys in random order
+  static ByteBuffer[] shuffle(List<byte[]> keys) {
+    List<byte[]> shuffled = new ArrayList<byte[]>(keys);
+    Collections.shuffle(shuffled, new Random(0));
+    ByteBuffer[] result = new ByteBuffer[shuffled.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = ByteBuffer.wrap(shuffled.get(i));
+    }
+    return result;
+  }
+
+  // Random keys that are absent from generated partitions, save for an unlikely collision
+  static ByteBuffer[] getMissingKeys(int numKeys) {
+    Random random = new Random(-1);
+    ByteBuffer[] result = new ByteBuffer[numKeys];
+    for (int i = 0; i < numKeys; ++i) {
+      byte[] key = new byte[KEY_SIZE];
+      random.nextBytes(key);
+      result[i] = ByteBuffer.wrap(key);
+    }
+    return result;
+  }
+
+  // Random records held in memory, for benchmarks of writers
+  static Records generateRecords(int numRecords) {
+    Random random = new Random(7);
+    final byte[][] keys = new byte[numRecords][];
+    final byte[][] keyHashes = new byte[numRecords][];
+    Integer[] order = new Integer[numRecords];
+    for (int i = 0; i < numRecords; ++i) {
+      keys[i] = new byte[KEY_SIZE];
+      random.nextBytes(keys[i]);
+      keyHashes[i] = new byte[KEY_HASH_SIZE];
+      HASHER.hash(ByteBuffer.wrap(keys[i]), KEY_HASH_SIZE, keyHashes[i]);
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return BytesUtils.compareBytesUnsigned(ByteBuffer.wrap(keyHashes[a]), ByteBuffer.wrap(keyHashes[b]));
+      }
+    });
+    byte[][] sortedKeys = new byte[numRecords][];
+    byte[][] sortedKeyHashes = new byte[numRecords][];
+    byte[][] values = new byte[numRecords][];
+    for (int i = 0; i < numRecords; ++i) {
+      sortedKeys[i] = keys[order[i]];
+      sortedKeyHashes[i] = keyHashes[order[i]];
+      values[i] = new byte[VALUE_SIZE];
+      random.nextBytes(values[i]);
+    }
+    return new Records(sortedKeys, sortedKeyHashes, values);
+  }
+
+  // Read up to numBytes from the beginning of a file
+  static byte[] readPrefix(File file, int numBytes) throws IOException {
+    byte[] result = new byte[(int)Math.min(numBytes, file.length())];
+    FileInputStream inputStream = new FileInputStream(file);
+    try {
+      int offset = 0;
+      while (offset < result.length) {
+        int numRead = inputStream.read(result, offset, result.length - offset);
+        if (numRead < 0) {
+          break;
+        }
+        offset += numRead;
+      }
+    } finally {
+      inputStream.close();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of asynchronous requests in flight. Requests submitted while the window is
+ * full are queued, never blocking the caller, and started in order as in-flight requests are
+ * released. Each started request must call release() exactly once when it completes.
+ */
+class AsyncRequestWindow {
+
+  private final int maxNumInFlightRequests;
+  // Queued requests are started by this executor when a slot is released, so that threads
+  // releasing slots (typically the thread performing connections' I/O) never run them
+  private final Executor executor;
+  private final AtomicInteger numInFlightRequests = new AtomicInteger(0);
+  private final Queue<Runnable> queuedRequests = new ConcurrentLinkedQueue<Runnable>();
+
+  AsyncRequestWindow(int maxNumInFlightRequests, Executor executor) {
+    if (maxNumInFlightRequests <= 0) {
+      throw new IllegalArgumentException("Maximum number of in-flight requests must be positive: " + maxNumInFlightRequests);
+    }
+    this.maxNumInFlightRequests = maxNumInFlightRequests;
+    this.executor = executor;
+  }
+
+  // Start the request now if the window is not full, otherwise queue it
+  void submit(Runnable request) {
+    queuedRequests.add(request);
+    startQueuedRequests();
+  }
+
+  void release() {
+    numInFlightRequests.decrementAndGet();
+    if (!queuedRequests.isEmpty()) {
+      try {
+        executor.execute(this::startQueuedRequests);
+      } catch (RejectedExecutionException e) {
+        // Shutting down
+        startQueuedRequests();
+      }
+    }
+  }
+
+  int getNumInFlightRequests() {
+    return numInFlightRequests.get();
+  }
+
+  int getNumQueuedRequests() {
+    return queuedRequests.size();
+  }
+
+  private void startQueuedRequests() {
+    while (true) {
+      // Reserve a slot
+      int numInFlight = numInFlightRequests.get();
+      if (numInFlight >= maxNumInFlightRequests) {
+        return;
+      }
+      if (!numInFlightRequests.compareAndSet(numInFlight, numInFlight + 1)) {
+        continue;
+      }
+      Runnable request = queuedRequests.poll();
+      if (request == null) {
+        numInFlightRequests.decrementAndGet();
+        // A request queued while the slot was reserved might have seen a full window
+        if (queuedRequests.isEmpty()) {
+          return;
+        }
+        continue;
+      }
+      request.run();
+    }
+  }
+}
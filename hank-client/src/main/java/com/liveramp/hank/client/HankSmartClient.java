@@ -18,15 +18,26 @@ package com.liveramp.hank.client;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
@@ -37,6 +48,9 @@ import com.liveramp.hank.config.EnvironmentValue;
 import com.liveramp.hank.config.HankSmartClientConfigurator;
 import com.liveramp.hank.coordinator.Coordinator;
 import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.DomainAndVersion;
+import com.liveramp.hank.coordinator.DomainGroup;
+import com.liveramp.hank.coordinator.DomainGroupListener;
 import com.liveramp.hank.coordinator.Host;
 import com.liveramp.hank.coordinator.HostAddress;
 import com.liveramp.hank.coordinator.HostDomain;
@@ -48,11 +62,14 @@ import com.liveramp.hank.coordinator.RingGroupDataLocationChangeListener;
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.hasher.Hash128;
+import com.liveramp.hank.partitioner.Murmur128Partitioner;
+import com.liveramp.hank.partitioner.Partitioner;
 import com.liveramp.hank.util.AtomicLongCollection;
 import com.liveramp.hank.util.FormatUtils;
-import com.liveramp.hank.util.HankResponseMemoryUsageEstimator;
 import com.liveramp.hank.util.HankTimer;
-import com.liveramp.hank.util.SynchronizedMemoryBoundCacheExpiring;
+import com.liveramp.hank.util.LatencyHistogram;
+import com.liveramp.hank.util.LatencyRecorder;
 import com.liveramp.hank.util.UpdateStatisticsRunnable;
 
 import static com.liveramp.hank.client.HostConnectionPool.getHostListShuffleSeed;
@@ -64,6 +81,7 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
   private static final HankResponse NO_SUCH_DOMAIN = HankResponse.xception(HankException.no_such_domain(true));
   private static final HankBulkResponse NO_SUCH_DOMAIN_BULK = HankBulkResponse.xception(HankException.no_such_domain(true));
   private static final HankResponse NO_REPLICA = HankResponse.xception(HankException.no_replica(true));
+  private static final HankResponse NO_CONNECTION_AVAILABLE = HankResponse.xception(HankException.no_connection_available(true));
 
   private static final long GET_TASK_EXECUTOR_THREAD_KEEP_ALIVE_TIME = 1;
   private static final TimeUnit GET_TASK_EXECUTOR_THREAD_KEEP_ALIVE_TIME_UNIT = TimeUnit.MINUTES;
@@ -85,14 +103,25 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
   private final int establishConnectionTimeoutMs;
   private final int queryTimeoutMs;
   private final int bulkQueryTimeoutMs;
+  private final int bulkQueryMaxNumKeys;
+  private final int asyncMaxNumInFlightRequests;
   private final EnvironmentValue preferredHostEnvironment;
+  private final ReplicaSelectionPolicy replicaSelectionPolicy;
+  private final boolean sendKeyHashes;
 
-  private final SynchronizedMemoryBoundCacheExpiring<DomainAndKey, HankResponse> responseCache;
+  private final ResponseCache responseCache;
   // 0: num queries
   // 1: num cache hits
   private final AtomicLongCollection requestsCounters;
+  // Latency of GET requests, including client-side cache hits
+  private final LatencyRecorder getRequestsLatencyRecorder = new LatencyRecorder();
 
   private final ThreadPoolExecutor getTaskExecutor;
+  private final PipelinedConnectionManager pipelinedConnectionManager;
+  private final ThreadPoolExecutor asyncExecutor;
+  private final AsyncRequestWindow asyncRequestWindow;
+  // Null when requests are not hedged
+  private final HedgedRequests hedgedRequests;
 
   private final UpdateRuntimeStatisticsRunnable updateRuntimeStatisticsRunnable;
   private final Thread updateRuntimeStatisticsThread;
@@ -103,9 +132,13 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
       = new HashMap<HostAddress, HostConnectionPool>();
   private Map<Integer, Map<Integer, HostConnectionPool>> domainToPartitionToConnectionPool
       = new HashMap<Integer, Map<Integer, HostConnectionPool>>();
+  private Map<Host, HostConnectionPool> hostToConnectionPool
+      = new HashMap<Host, HostConnectionPool>();
 
   private final Object connectionCacheLock = new Object();
   private final ConnectionCacheUpdaterRunnable connectionCacheUpdaterRunnable = new ConnectionCacheUpdaterRunnable();
+  // Domain versions are updated with the connection cache
+  private final DomainGroupListener domainGroupListener = domainGroup -> connectionCacheUpdaterRunnable.wakeUp();
   private final Thread connectionCacheUpdaterThread;
 
   private static class AlwaysBlockingLinkedBlockingQueue extends LinkedBlockingQueue<Runnable> {
@@ -160,15 +193,18 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     this.establishConnectionTimeoutMs = options.getEstablishConnectionTimeoutMs();
     this.queryTimeoutMs = options.getQueryTimeoutMs();
     this.bulkQueryTimeoutMs = options.getBulkQueryTimeoutMs();
-    this.responseCache = new SynchronizedMemoryBoundCacheExpiring<DomainAndKey, HankResponse>(
+    this.bulkQueryMaxNumKeys = options.getBulkQueryMaxNumKeys();
+    this.asyncMaxNumInFlightRequests = options.getAsyncMaxNumInFlightRequests();
+    this.sendKeyHashes = options.getSendKeyHashes();
+    this.responseCache = new ResponseCache(
         options.getResponseCacheEnabled(),
         options.getResponseCacheNumBytesCapacity(),
         options.getResponseCacheNumItemsCapacity(),
         options.getResponseCacheExpirationSeconds(),
-        new DomainAndKey.DomainAndKeyMemoryUsageEstimator(),
-        new HankResponseMemoryUsageEstimator());
+        options.getResponseCacheVersionAware());
     this.requestsCounters = new AtomicLongCollection(2, new long[]{0, 0});
     this.preferredHostEnvironment = options.getPreferredServerEnvironment();
+    this.replicaSelectionPolicy = options.getReplicaSelectionPolicy();
     LOG.info("Initializing client using preferred host environment: " + preferredHostEnvironment);
 
     // This creates a thread pool executor with a specific maximum number of threads.
@@ -183,6 +219,40 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
         new AlwaysBlockingLinkedBlockingQueue(GET_TASK_EXECUTOR_QUEUE_SIZE));
     getTaskExecutor.allowCoreThreadTimeOut(true);
 
+    if (options.getPipelinedConnectionsEnabled()) {
+      this.pipelinedConnectionManager = new PipelinedConnectionManager();
+    } else {
+      this.pipelinedConnectionManager = null;
+    }
+
+    // Threads of the asynchronous API complete and retry requests but never wait for them, so there
+    // are few of them. The queue is unbounded so that the I/O thread never blocks when handing off
+    // work, the number of requests in flight is bounded by the request window instead.
+    this.asyncExecutor = new ThreadPoolExecutor(
+        options.getAsyncThreadPoolSize(),
+        options.getAsyncThreadPoolSize(),
+        GET_TASK_EXECUTOR_THREAD_KEEP_ALIVE_TIME,
+        GET_TASK_EXECUTOR_THREAD_KEEP_ALIVE_TIME_UNIT,
+        new LinkedBlockingQueue<Runnable>(),
+        new AsyncTaskThreadFactory());
+    asyncExecutor.allowCoreThreadTimeOut(true);
+    this.asyncRequestWindow = new AsyncRequestWindow(asyncMaxNumInFlightRequests, asyncExecutor);
+
+    if (options.getHedgeDelayMs() > 0 && pipelinedConnectionManager == null) {
+      LOG.warn(getLogPrefix() + "Hedged requests require pipelined connections, requests will not be hedged.");
+      this.hedgedRequests = null;
+    } else if (options.getHedgeDelayMs() > 0) {
+      LOG.info(getLogPrefix() + "Hedging requests after " + options.getHedgeDelayMs() + "ms"
+          + (options.getHedgeDelayPercentile() > 0 ? " or the p" + FormatUtils.formatDouble(options.getHedgeDelayPercentile()) + " latency of each host" : ""));
+      this.hedgedRequests = new HedgedRequests(options.getHedgeDelayMs(), options.getHedgeDelayPercentile(), () -> {
+        synchronized (connectionCacheLock) {
+          return new ArrayList<HostConnectionPool>(partitionServerAddressToConnectionPool.values());
+        }
+      });
+    } else {
+      this.hedgedRequests = null;
+    }
+
     // Initialize Load statistics runner
     updateRuntimeStatisticsRunnable = new UpdateRuntimeStatisticsRunnable();
     updateRuntimeStatisticsThread = new Thread(updateRuntimeStatisticsRunnable, "Update Load Statistics");
@@ -192,6 +262,9 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     // Initialize connection cache and connection cache updater
     updateConnectionCache();
     ringGroup.addDataLocationChangeListener(this);
+    if (responseCache.isVersionAware() && ringGroup.getDomainGroup() != null) {
+      ringGroup.getDomainGroup().addListener(domainGroupListener);
+    }
     connectionCacheUpdaterThread = new Thread(connectionCacheUpdaterRunnable, "Connection Cache Updater Thread");
     connectionCacheUpdaterThread.setDaemon(true);
     connectionCacheUpdaterThread.start();
@@ -205,11 +278,17 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
         = new HashMap<HostAddress, HostConnectionPool>();
     final Map<Integer, Map<Integer, HostConnectionPool>> newDomainToPartitionToConnectionPool
         = new HashMap<Integer, Map<Integer, HostConnectionPool>>();
+    final Map<Host, HostConnectionPool> newHostToConnectionPool
+        = new HashMap<Host, HostConnectionPool>();
+    final Map<Domain, SortedSet<Integer>> newDomainToServedVersions
+        = new HashMap<Domain, SortedSet<Integer>>();
 
     // Build new cache
     buildNewConnectionCache(
         newPartitionServerAddressToConnectionPool,
-        newDomainToPartitionToConnectionPool);
+        newDomainToPartitionToConnectionPool,
+        newHostToConnectionPool,
+        newDomainToServedVersions);
 
     // Switch old cache for new cache
     final Map<HostAddress, HostConnectionPool> oldPartitionServerAddressToConnectionPool
@@ -217,6 +296,12 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     synchronized (connectionCacheLock) {
       partitionServerAddressToConnectionPool = newPartitionServerAddressToConnectionPool;
       domainToPartitionToConnectionPool = newDomainToPartitionToConnectionPool;
+      hostToConnectionPool = newHostToConnectionPool;
+    }
+
+    // Invalidate cached responses of domains whose versions changed
+    if (responseCache.isVersionAware()) {
+      responseCache.setDomainVersions(getDomainVersions(newDomainToServedVersions));
     }
 
     // Clean up old cache when new cache is in place
@@ -233,6 +318,19 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     }
   }
 
+  private Map<Integer, ResponseCache.DomainVersions> getDomainVersions(Map<Domain, SortedSet<Integer>> domainToServedVersions)
+      throws IOException {
+    DomainGroup domainGroup = ringGroup.getDomainGroup();
+    Map<Integer, ResponseCache.DomainVersions> result = new HashMap<Integer, ResponseCache.DomainVersions>();
+    for (Map.Entry<Domain, SortedSet<Integer>> entry : domainToServedVersions.entrySet()) {
+      DomainAndVersion domainGroupVersion = domainGroup == null ? null : domainGroup.getDomainVersion(entry.getKey());
+      result.put(entry.getKey().getId(), new ResponseCache.DomainVersions(
+          domainGroupVersion == null ? null : domainGroupVersion.getVersionNumber(),
+          entry.getValue()));
+    }
+    return result;
+  }
+
   private class ConnectionCacheUpdaterRunnable implements Runnable {
 
     private volatile boolean stopping = false;
@@ -292,7 +390,9 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
 
   private void buildNewConnectionCache(
       final Map<HostAddress, HostConnectionPool> newPartitionServerAddressToConnectionPool,
-      final Map<Integer, Map<Integer, HostConnectionPool>> newDomainToPartitionToConnectionPool)
+      final Map<Integer, Map<Integer, HostConnectionPool>> newDomainToPartitionToConnectionPool,
+      final Map<Host, HostConnectionPool> newHostToConnectionPool,
+      final Map<Domain, SortedSet<Integer>> newDomainToServedVersions)
       throws IOException {
 
     final Map<Integer, Map<Integer, List<HostAddress>>> newDomainToPartitionToPartitionServerAddressList
@@ -330,6 +430,11 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
             partitionToAdresses = new HashMap<Integer, List<HostAddress>>();
             newDomainToPartitionToPartitionServerAddressList.put(domain.getId(), partitionToAdresses);
           }
+          SortedSet<Integer> servedVersions = newDomainToServedVersions.get(domain);
+          if (servedVersions == null) {
+            servedVersions = new TreeSet<Integer>();
+            newDomainToServedVersions.put(domain, servedVersions);
+          }
           for (HostDomainPartition partition : hostDomain.getPartitions()) {
             if (!partition.isDeletable()) {
               List<HostAddress> partitionsList = partitionToAdresses.get(partition.getPartitionNumber());
@@ -338,6 +443,13 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
                 partitionToAdresses.put(partition.getPartitionNumber(), partitionsList);
               }
               partitionsList.add(hostAddress);
+              // Only needed to invalidate cached responses
+              if (responseCache.isVersionAware()) {
+                Integer currentVersion = partition.getCurrentDomainVersion();
+                if (currentVersion != null) {
+                  servedVersions.add(currentVersion);
+                }
+              }
             }
           }
         }
@@ -351,18 +463,24 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
               + " with connection try lock timeout = " + tryLockConnectionTimeoutMs + "ms"
               + ", connection establishment timeout = " + establishConnectionTimeoutMs + "ms"
               + ", query timeout = " + queryTimeoutMs + "ms"
-              + ", bulk query timeout = " + bulkQueryTimeoutMs + "ms");
+              + ", bulk query timeout = " + bulkQueryTimeoutMs + "ms"
+              + ", pipelined = " + (pipelinedConnectionManager != null));
           List<HostConnection> hostConnections = new ArrayList<HostConnection>(numConnectionsPerHost);
           for (int i = 0; i < numConnectionsPerHost; i++) {
             hostConnections.add(new HostConnection(host,
                 tryLockConnectionTimeoutMs,
                 establishConnectionTimeoutMs,
                 queryTimeoutMs,
-                bulkQueryTimeoutMs));
+                bulkQueryTimeoutMs,
+                pipelinedConnectionManager));
           }
           hostConnectionPool = HostConnectionPool.createFromList(hostConnections, null, preferredHosts);
         }
         newPartitionServerAddressToConnectionPool.put(hostAddress, hostConnectionPool);
+        // Key by the connections' host since a reused pool refers to the Host it was created with
+        for (HostConnection connection : hostConnectionPool.getConnections()) {
+          newHostToConnectionPool.put(connection.getHost(), hostConnectionPool);
+        }
       }
     }
 
@@ -379,7 +497,10 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
         }
         Integer partitionId = partitionToAddressesEntry.getKey();
         partitionToConnectionPool.put(partitionId,
-            HostConnectionPool.createFromList(connections, getHostListShuffleSeed(domainId, partitionId), preferredHosts));
+            HostConnectionPool.createFromList(connections,
+                getHostListShuffleSeed(domainId, partitionId),
+                preferredHosts,
+                replicaSelectionPolicy));
       }
       newDomainToPartitionToConnectionPool.put(domainId, partitionToConnectionPool);
     }
@@ -406,17 +527,161 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
       LOG.error(getLogPrefix() + "No such Domain: " + domainName);
       return NO_SUCH_DOMAIN_BULK;
     }
-    // Execute futures
-    List<FutureGet> futureGets = new ArrayList<FutureGet>(keys.size());
-    for (ByteBuffer key : keys) {
-      futureGets.add(_concurrentGet(domain, key));
+    HankResponse[] responses = new HankResponse[keys.size()];
+
+    Map<Integer, HostConnectionPool> partitionToConnectionPool;
+    Map<Host, HostConnectionPool> hostToConnectionPool;
+    synchronized (connectionCacheLock) {
+      partitionToConnectionPool = domainToPartitionToConnectionPool.get(domain.getId());
+      hostToConnectionPool = this.hostToConnectionPool;
     }
-    // Build responses list
-    List<HankResponse> allResponses = new ArrayList<HankResponse>(keys.size());
-    for (FutureGet futureGet : futureGets) {
-      allResponses.add(futureGet.getResponse());
+    List<BulkKey> remainingKeys = getBulkKeysToQuery(domain, keys, partitionToConnectionPool, responses);
+
+    // Query hosts, retrying failed keys on other replicas
+    for (int numTries = 1; !remainingKeys.isEmpty(); ++numTries) {
+      remainingKeys = executeBulkGets(domain, remainingKeys, hostToConnectionPool, responses, numTries);
+    }
+
+    return HankBulkResponse.responses(new ArrayList<HankResponse>(Arrays.asList(responses)));
+  }
+
+  // Record responses of keys that are cached or have no replica, and return the keys that need to be queried
+  private List<BulkKey> getBulkKeysToQuery(Domain domain,
+                                           List<ByteBuffer> keys,
+                                           Map<Integer, HostConnectionPool> partitionToConnectionPool,
+                                           HankResponse[] responses) {
+    if (partitionToConnectionPool == null) {
+      LOG.error(getLogPrefix() + String.format("Could not find domain to partition map for domain %s (id: %d)", domain.getName(), domain.getId()));
+    }
+    List<BulkKey> remainingKeys = new ArrayList<BulkKey>(keys.size());
+    Object cacheVersions = responseCache.getVersions(domain);
+    Hash128 keyHash128 = new Hash128();
+    for (int i = 0; i < keys.size(); ++i) {
+      ByteBuffer key = keys.get(i);
+      // Check for null keys
+      if (key == null) {
+        throw new NullKeyException();
+      }
+      // Check for empty keys
+      if (key.remaining() == 0) {
+        throw new EmptyKeyException();
+      }
+      // Attempt to load from cache
+      HankResponse cachedResponse = responseCache.get(domain, key);
+      if (cachedResponse != null) {
+        // One request, in cache
+        requestsCounters.increment(1, 1);
+        responses[i] = cachedResponse;
+        continue;
+      }
+      // One request, not in cache
+      requestsCounters.increment(1, 0);
+      int partition = getPartition(domain, key, keyHash128);
+      HostConnectionPool hostConnectionPool = partitionToConnectionPool == null ? null : partitionToConnectionPool.get(partition);
+      if (hostConnectionPool == null) {
+        LOG.error(getLogPrefix() + String.format("Could not find list of hosts for domain %s (id: %d) when looking for partition %d", domain.getName(), domain.getId(), partition));
+        responses[i] = NO_REPLICA;
+        continue;
+      }
+      remainingKeys.add(new BulkKey(i, key, hostConnectionPool, getKeyHash(domain, key, keyHash128), cacheVersions));
+    }
+    return remainingKeys;
+  }
+
+  // Group keys by the host that should serve them and send one GET BULK per host (split in chunks of at most
+  // bulkQueryMaxNumKeys keys). Record responses and return the keys that failed and should be tried again.
+  private List<BulkKey> executeBulkGets(Domain domain,
+                                        List<BulkKey> keys,
+                                        Map<Host, HostConnectionPool> hostToConnectionPool,
+                                        HankResponse[] responses,
+                                        int numTries) {
+    Map<Host, List<BulkKey>> hostToKeys = groupBulkKeysByHost(domain, keys, hostToConnectionPool, responses);
+
+    // Execute one task per chunk of keys
+    List<GetBulkTask> tasks = new ArrayList<GetBulkTask>();
+    for (Map.Entry<Host, List<BulkKey>> entry : hostToKeys.entrySet()) {
+      List<BulkKey> hostKeys = entry.getValue();
+      for (int i = 0; i < hostKeys.size(); i += bulkQueryMaxNumKeys) {
+        GetBulkTask task = new GetBulkTask(new GetBulkTaskRunnable(domain, entry.getKey(),
+            hostToConnectionPool.get(entry.getKey()), hostKeys.subList(i, Math.min(i + bulkQueryMaxNumKeys, hostKeys.size()))));
+        getTaskExecutor.execute(task);
+        tasks.add(task);
+      }
+    }
+
+    // Wait for tasks and collect responses
+    List<BulkKey> failedKeys = new ArrayList<BulkKey>();
+    for (GetBulkTask task : tasks) {
+      GetBulkTaskRunnable runnable = task.getRunnable();
+      recordBulkResponses(domain, runnable.host, runnable.keys, task.getResponses(), responses, numTries, failedKeys);
+    }
+    if (!failedKeys.isEmpty()) {
+      LOG.error(getLogPrefix() + "Failed to perform get for " + failedKeys.size() + " keys of GET BULK. Retrying. Try " + numTries + "/" + queryMaxNumTries + ", Domain = " + domain.getName());
+    }
+    return failedKeys;
+  }
+
+  // Group keys by the host that should serve them. Keys for which no host is available get an error response.
+  private Map<Host, List<BulkKey>> groupBulkKeysByHost(Domain domain,
+                                                       List<BulkKey> keys,
+                                                       Map<Host, HostConnectionPool> hostToConnectionPool,
+                                                       HankResponse[] responses) {
+    Map<Host, List<BulkKey>> hostToKeys = new HashMap<Host, List<BulkKey>>();
+    for (BulkKey key : keys) {
+      Host host = key.partitionConnectionPool.getHostToUseForKey(key.keyHash, key.failedHosts);
+      if (host == null || !hostToConnectionPool.containsKey(host)) {
+        LOG.error(getLogPrefix() + "No connection is available. Domain = " + domain.getName() + ", Key = " + BytesUtils.bytesToHexString(key.key));
+        responses[key.index] = NO_CONNECTION_AVAILABLE;
+        continue;
+      }
+      List<BulkKey> hostKeys = hostToKeys.get(host);
+      if (hostKeys == null) {
+        hostKeys = new ArrayList<BulkKey>();
+        hostToKeys.put(host, hostKeys);
+      }
+      hostKeys.add(key);
+    }
+    return hostToKeys;
+  }
+
+  // Record responses of a chunk of keys sent to a host (null in case of failure) and add the keys that
+  // should be tried again to failedKeys
+  private void recordBulkResponses(Domain domain,
+                                   Host host,
+                                   List<BulkKey> keys,
+                                   HankResponse[] chunkResponses,
+                                   HankResponse[] responses,
+                                   int numTries,
+                                   List<BulkKey> failedKeys) {
+    for (int i = 0; i < keys.size(); ++i) {
+      BulkKey key = keys.get(i);
+      HankResponse response = chunkResponses == null ? null : chunkResponses[i];
+      if (response != null && !response.is_set_xception()) {
+        responseCache.put(domain, key.key, response, key.cacheVersions);
+        responses[key.index] = response;
+      } else if (numTries < queryMaxNumTries) {
+        // Retry, skipping the host that failed
+        key.failedHosts.add(host);
+        failedKeys.add(key);
+      } else {
+        LOG.error(getLogPrefix() + "Failed to perform get: domain " + domain.getName() + ", key: " + BytesUtils.bytesToHexString(key.key) + ", response: " + response);
+        responses[key.index] = HankResponse.xception(HankException.failed_retries(queryMaxNumTries));
+      }
+    }
+  }
+
+  // Return the individual responses of a GET BULK sent to a host, null in case of failure
+  private HankResponse[] getBulkResponses(Host host, int numKeys, HankBulkResponse bulkResponse) {
+    if (bulkResponse.is_set_xception()) {
+      LOG.error(getLogPrefix() + "Failed to perform GET BULK of " + numKeys + " keys with host: " + host.getAddress() + ", response: " + bulkResponse);
+      return null;
+    } else if (bulkResponse.get_responses().size() != numKeys) {
+      LOG.error(getLogPrefix() + "Failed to perform GET BULK of " + numKeys + " keys with host: " + host.getAddress()
+          + ", received " + bulkResponse.get_responses().size() + " responses");
+      return null;
+    } else {
+      return bulkResponse.get_responses().toArray(new HankResponse[numKeys]);
     }
-    return HankBulkResponse.responses(allResponses);
   }
 
   // Asynchronous get
@@ -461,56 +726,48 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
   }
 
   private HankResponse _get(Domain domain, ByteBuffer key) {
-    // Check for null keys
-    if (key == null) {
-      throw new NullKeyException();
-    }
-    // Check for empty keys
-    if (key.remaining() == 0) {
-      throw new EmptyKeyException();
+    long startTimeNanos = System.nanoTime();
+    try {
+      return _getUntimed(domain, key);
+    } finally {
+      getRequestsLatencyRecorder.record(System.nanoTime() - startTimeNanos);
     }
+  }
+
+  private HankResponse _getUntimed(Domain domain, ByteBuffer key) {
+    checkKey(key);
 
     // Attempt to load from cache
-    HankResponse cachedResponse = responseCache.get(new DomainAndKey(domain, key));
+    HankResponse cachedResponse = responseCache.get(domain, key);
     if (cachedResponse != null) {
       // One request, in cache
       requestsCounters.increment(1, 1);
       return cachedResponse;
     } else {
+      Object cacheVersions = responseCache.getVersions(domain);
       try {
         // Determine HostConnectionPool to use
-        int partition = domain.getPartitioner().partition(key, domain.getNumParts());
-        int keyHash = domain.getPartitioner().partition(key, Integer.MAX_VALUE);
-
-        Map<Integer, HostConnectionPool> partitionToConnectionPool;
-        synchronized (connectionCacheLock) {
-          partitionToConnectionPool = domainToPartitionToConnectionPool.get(domain.getId());
-        }
-        if (partitionToConnectionPool == null) {
-          LOG.error(getLogPrefix() + String.format("Could not find domain to partition map for domain %s (id: %d)", domain.getName(), domain.getId()));
-          return NO_REPLICA;
-        }
+        Hash128 keyHash128 = new Hash128();
+        int partition = getPartition(domain, key, keyHash128);
+        int keyHash = getKeyHash(domain, key, keyHash128);
 
-        HostConnectionPool hostConnectionPool = partitionToConnectionPool.get(partition);
+        HostConnectionPool hostConnectionPool = getPartitionConnectionPool(domain, partition);
         if (hostConnectionPool == null) {
-          // this is a problem, since the cache must not have been loaded correctly
-          LOG.error(getLogPrefix() + String.format("Could not find list of hosts for domain %s (id: %d) when looking for partition %d", domain.getName(), domain.getId(), partition));
           return NO_REPLICA;
         }
         if (LOG.isTraceEnabled()) {
           LOG.trace("Looking in domain " + domain.getName() + ", in partition " + partition + ", for key: " + BytesUtils.bytesToHexString(key));
         }
         // Perform get
-        HankResponse response = hostConnectionPool.get(domain, key, queryMaxNumTries, keyHash);
-        // Cache response if necessary, do not cache exceptions
-        if (responseCache.isEnabled() && response.is_set_not_found() || response.is_set_value()) {
-          responseCache.put(
-              new DomainAndKey(domain, BytesUtils.byteBufferDeepCopy(key)),
-              response.deepCopy());
-        }
-        if (response.is_set_xception()) {
-          LOG.error(getLogPrefix() + "Failed to perform get: domain " + domain.getName() + ", partition " + partition + ", key: " + BytesUtils.bytesToHexString(key) + ", partitioner: " + domain.getPartitioner() + ", response: " + response);
+        HankResponse response;
+        if (hedgedRequests != null) {
+          // Hedging is asynchronous, wait for it
+          response = hostConnectionPool.getAsync(domain, key, queryMaxNumTries, keyHash,
+              getSentKeyHash128(key, keyHash128), asyncExecutor, hedgedRequests).join();
+        } else {
+          response = hostConnectionPool.get(domain, key, queryMaxNumTries, keyHash, getSentKeyHash128(key, keyHash128));
         }
+        onGetResponse(domain, partition, key, response, cacheVersions);
         return response;
       } finally {
         // One request, not in cache
@@ -519,8 +776,278 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     }
   }
 
+  // Keys of domains partitioned by a Murmur128Partitioner are hashed once, keeping the hash in keyHash128
+  private static int getPartition(Domain domain, ByteBuffer key, Hash128 keyHash128) {
+    Partitioner partitioner = domain.getPartitioner();
+    if (partitioner instanceof Murmur128Partitioner) {
+      return ((Murmur128Partitioner)partitioner).partition(key, domain.getNumParts(), keyHash128);
+    }
+    keyHash128.clear();
+    return partitioner.partition(key, domain.getNumParts());
+  }
+
+  // Hash used to pick the host serving a key, so that requests for a key go to the same host
+  private static int getKeyHash(Domain domain, ByteBuffer key, Hash128 keyHash128) {
+    if (keyHash128.isFor(key)) {
+      return Murmur128Partitioner.getPartition(keyHash128, Integer.MAX_VALUE);
+    }
+    return domain.getPartitioner().partition(key, Integer.MAX_VALUE);
+  }
+
+  // Hash sent to servers along with the key so that they do not compute it again, null if it is not sent
+  private ByteBuffer getSentKeyHash128(ByteBuffer key, Hash128 keyHash128) {
+    if (!sendKeyHashes || !keyHash128.isFor(key)) {
+      return null;
+    }
+    byte[] keyHash128Bytes = new byte[Hash128.NUM_BYTES];
+    keyHash128.getBytes(Hash128.NUM_BYTES, keyHash128Bytes);
+    return ByteBuffer.wrap(keyHash128Bytes);
+  }
+
+  private static void checkKey(ByteBuffer key) {
+    // Check for null keys
+    if (key == null) {
+      throw new NullKeyException();
+    }
+    // Check for empty keys
+    if (key.remaining() == 0) {
+      throw new EmptyKeyException();
+    }
+  }
+
+  // Return the connection pool of the hosts serving the given partition, null if there is none
+  private HostConnectionPool getPartitionConnectionPool(Domain domain, int partition) {
+    Map<Integer, HostConnectionPool> partitionToConnectionPool;
+    synchronized (connectionCacheLock) {
+      partitionToConnectionPool = domainToPartitionToConnectionPool.get(domain.getId());
+    }
+    if (partitionToConnectionPool == null) {
+      LOG.error(getLogPrefix() + String.format("Could not find domain to partition map for domain %s (id: %d)", domain.getName(), domain.getId()));
+      return null;
+    }
+
+    HostConnectionPool hostConnectionPool = partitionToConnectionPool.get(partition);
+    if (hostConnectionPool == null) {
+      // this is a problem, since the cache must not have been loaded correctly
+      LOG.error(getLogPrefix() + String.format("Could not find list of hosts for domain %s (id: %d) when looking for partition %d", domain.getName(), domain.getId(), partition));
+    }
+    return hostConnectionPool;
+  }
+
+  private void onGetResponse(Domain domain, int partition, ByteBuffer key, HankResponse response, Object cacheVersions) {
+    responseCache.put(domain, key, response, cacheVersions);
+    if (response.is_set_xception()) {
+      LOG.error(getLogPrefix() + "Failed to perform get: domain " + domain.getName() + ", partition " + partition + ", key: " + BytesUtils.bytesToHexString(key) + ", partitioner: " + domain.getPartitioner() + ", response: " + response);
+    }
+  }
+
+  // Asynchronous get, non-blocking when connections are pipelined
+  @Override
+  public CompletableFuture<HankResponse> getAsync(String domainName, ByteBuffer key) {
+    // Get Domain
+    Domain domain = this.coordinator.getDomain(domainName);
+    if (domain == null) {
+      LOG.error(getLogPrefix() + "No such Domain: " + domainName);
+      return CompletableFuture.completedFuture(NO_SUCH_DOMAIN);
+    }
+    return _getAsync(domain, key);
+  }
+
+  // Asynchronous getBulk, non-blocking when connections are pipelined
+  @Override
+  public CompletableFuture<HankBulkResponse> getBulkAsync(final String domainName, final List<ByteBuffer> keys) {
+    if (pipelinedConnectionManager == null) {
+      // Without pipelined connections, wait for the GET task threads from an async thread. Waiting from
+      // a GET task thread could exhaust them.
+      return CompletableFuture.supplyAsync(() -> getBulk(domainName, keys), asyncExecutor);
+    }
+    // Get Domain
+    Domain domain = coordinator.getDomain(domainName);
+    if (domain == null) {
+      LOG.error(getLogPrefix() + "No such Domain: " + domainName);
+      return CompletableFuture.completedFuture(NO_SUCH_DOMAIN_BULK);
+    }
+    HankResponse[] responses = new HankResponse[keys.size()];
+
+    Map<Integer, HostConnectionPool> partitionToConnectionPool;
+    Map<Host, HostConnectionPool> hostToConnectionPool;
+    synchronized (connectionCacheLock) {
+      partitionToConnectionPool = domainToPartitionToConnectionPool.get(domain.getId());
+      hostToConnectionPool = this.hostToConnectionPool;
+    }
+    List<BulkKey> remainingKeys = getBulkKeysToQuery(domain, keys, partitionToConnectionPool, responses);
+
+    CompletableFuture<HankBulkResponse> result = new CompletableFuture<HankBulkResponse>();
+    executeBulkGetsAsync(domain, remainingKeys, hostToConnectionPool, responses, 1, result);
+    return result;
+  }
+
+  // Asynchronous get of a stream of keys, pulling keys as responses come back
+  @Override
+  public CompletableFuture<Void> getStreamAsync(String domainName,
+                                                Iterator<ByteBuffer> keys,
+                                                BiConsumer<ByteBuffer, HankResponse> responseConsumer) {
+    // Get Domain
+    Domain domain = this.coordinator.getDomain(domainName);
+    if (domain == null) {
+      LOG.error(getLogPrefix() + "No such Domain: " + domainName);
+    }
+    GetStream getStream = new GetStream(domain, keys, responseConsumer);
+    getStream.requestKeys();
+    return getStream.result;
+  }
+
+  private CompletableFuture<HankResponse> _getAsync(final Domain domain, final ByteBuffer key) {
+    if (pipelinedConnectionManager == null) {
+      // Without pipelined connections, requests block GET task threads
+      return CompletableFuture.supplyAsync(() -> _get(domain, key), getTaskExecutor);
+    }
+    checkKey(key);
+    final long startTimeNanos = System.nanoTime();
+
+    // Attempt to load from cache
+    HankResponse cachedResponse = responseCache.get(domain, key);
+    if (cachedResponse != null) {
+      // One request, in cache
+      requestsCounters.increment(1, 1);
+      getRequestsLatencyRecorder.record(System.nanoTime() - startTimeNanos);
+      return CompletableFuture.completedFuture(cachedResponse);
+    }
+    final Object cacheVersions = responseCache.getVersions(domain);
+
+    // Determine HostConnectionPool to use
+    final Hash128 keyHash128 = new Hash128();
+    final int partition = getPartition(domain, key, keyHash128);
+    final int keyHash = getKeyHash(domain, key, keyHash128);
+    final ByteBuffer sentKeyHash128 = getSentKeyHash128(key, keyHash128);
+    final HostConnectionPool hostConnectionPool = getPartitionConnectionPool(domain, partition);
+    if (hostConnectionPool == null) {
+      // One request, not in cache
+      requestsCounters.increment(1, 0);
+      getRequestsLatencyRecorder.record(System.nanoTime() - startTimeNanos);
+      return CompletableFuture.completedFuture(NO_REPLICA);
+    }
+
+    // Perform get
+    final CompletableFuture<HankResponse> result = new CompletableFuture<HankResponse>();
+    submitAsyncRequest(() -> hostConnectionPool.getAsync(domain, key, queryMaxNumTries, keyHash, sentKeyHash128, asyncExecutor, hedgedRequests))
+        .whenComplete((poolResponse, t) -> {
+          HankResponse response = poolResponse;
+          if (t != null) {
+            LOG.error(getLogPrefix() + "Failed to perform asynchronous get", t);
+            response = HankResponse.xception(HankException.internal_error(t.toString()));
+          }
+          onGetResponse(domain, partition, key, response, cacheVersions);
+          // One request, not in cache
+          requestsCounters.increment(1, 0);
+          getRequestsLatencyRecorder.record(System.nanoTime() - startTimeNanos);
+          completeAsync(result, response);
+        });
+    return result;
+  }
+
+  // Asynchronous version of executeBulkGets(). Chunks are sent without waiting for each other and failed keys
+  // are retried once all chunks have completed. The result is completed when all keys have a response.
+  private void executeBulkGetsAsync(final Domain domain,
+                                    List<BulkKey> keys,
+                                    final Map<Host, HostConnectionPool> hostToConnectionPool,
+                                    final HankResponse[] responses,
+                                    final int numTries,
+                                    final CompletableFuture<HankBulkResponse> result) {
+    if (keys.isEmpty()) {
+      completeAsync(result, HankBulkResponse.responses(new ArrayList<HankResponse>(Arrays.asList(responses))));
+      return;
+    }
+    Map<Host, List<BulkKey>> hostToKeys = groupBulkKeysByHost(domain, keys, hostToConnectionPool, responses);
+
+    // Send one request per chunk of keys. Each chunk completes with its keys that should be tried again.
+    final List<CompletableFuture<List<BulkKey>>> chunks = new ArrayList<CompletableFuture<List<BulkKey>>>();
+    for (Map.Entry<Host, List<BulkKey>> entry : hostToKeys.entrySet()) {
+      final Host host = entry.getKey();
+      final HostConnectionPool hostConnectionPool = hostToConnectionPool.get(host);
+      List<BulkKey> hostKeys = entry.getValue();
+      for (int i = 0; i < hostKeys.size(); i += bulkQueryMaxNumKeys) {
+        final List<BulkKey> chunkKeys = hostKeys.subList(i, Math.min(i + bulkQueryMaxNumKeys, hostKeys.size()));
+        chunks.add(submitAsyncRequest(() -> hostConnectionPool.getBulkAsync(domain, getKeyBuffers(chunkKeys)))
+            .handle((bulkResponse, t) -> {
+              HankResponse[] chunkResponses = null;
+              if (t != null) {
+                LOG.error(getLogPrefix() + "Failed to perform GET BULK of " + chunkKeys.size() + " keys with host: " + host.getAddress(), t);
+              } else {
+                chunkResponses = getBulkResponses(host, chunkKeys.size(), bulkResponse);
+              }
+              List<BulkKey> chunkFailedKeys = new ArrayList<BulkKey>();
+              recordBulkResponses(domain, host, chunkKeys, chunkResponses, responses, numTries, chunkFailedKeys);
+              return chunkFailedKeys;
+            }));
+      }
+    }
+
+    CompletableFuture.allOf(chunks.toArray(new CompletableFuture[chunks.size()])).whenComplete((ignored, t) -> {
+      final List<BulkKey> failedKeys = new ArrayList<BulkKey>();
+      for (CompletableFuture<List<BulkKey>> chunk : chunks) {
+        failedKeys.addAll(chunk.join());
+      }
+      if (failedKeys.isEmpty()) {
+        completeAsync(result, HankBulkResponse.responses(new ArrayList<HankResponse>(Arrays.asList(responses))));
+      } else {
+        LOG.error(getLogPrefix() + "Failed to perform get for " + failedKeys.size() + " keys of GET BULK. Retrying. Try " + numTries + "/" + queryMaxNumTries + ", Domain = " + domain.getName());
+        // Retries might reconnect, do not perform them on the I/O thread
+        executeAsync(() -> executeBulkGetsAsync(domain, failedKeys, hostToConnectionPool, responses, numTries + 1, result));
+      }
+    });
+  }
+
+  // Send an asynchronous request once the in-flight request window allows it
+  private <T> CompletableFuture<T> submitAsyncRequest(final Supplier<CompletableFuture<T>> request) {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    asyncRequestWindow.submit(() -> {
+      CompletableFuture<T> future;
+      try {
+        future = request.get();
+      } catch (RuntimeException e) {
+        future = new CompletableFuture<T>();
+        future.completeExceptionally(e);
+      }
+      future.whenComplete((value, t) -> {
+        asyncRequestWindow.release();
+        if (t != null) {
+          result.completeExceptionally(t);
+        } else {
+          result.complete(value);
+        }
+      });
+    });
+    return result;
+  }
+
+  // Complete futures returned to callers on the async executor, so that their callbacks never run on the I/O thread
+  private <T> void completeAsync(final CompletableFuture<T> future, final T value) {
+    executeAsync(() -> future.complete(value));
+  }
+
+  private void executeAsync(Runnable runnable) {
+    try {
+      asyncExecutor.execute(runnable);
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      runnable.run();
+    }
+  }
+
+  private static List<ByteBuffer> getKeyBuffers(List<BulkKey> keys) {
+    List<ByteBuffer> keyBuffers = new ArrayList<ByteBuffer>(keys.size());
+    for (BulkKey key : keys) {
+      keyBuffers.add(key.key);
+    }
+    return keyBuffers;
+  }
+
   @Override
   public void stop() {
+    if (responseCache.isVersionAware() && ringGroup.getDomainGroup() != null) {
+      ringGroup.getDomainGroup().removeListener(domainGroupListener);
+    }
     stopGetTaskExecutor();
     connectionCacheUpdaterRunnable.cancel();
     connectionCacheUpdaterThread.interrupt();
@@ -533,6 +1060,13 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
       LOG.info(getLogPrefix() + "Interrupted while waiting for updater threads to terminate during shutdown.");
     }
     disconnect();
+    if (hedgedRequests != null) {
+      hedgedRequests.shutDown();
+    }
+    if (pipelinedConnectionManager != null) {
+      pipelinedConnectionManager.shutDown();
+    }
+    stopAsyncExecutor();
   }
 
   private void stopGetTaskExecutor() {
@@ -548,6 +1082,19 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     }
   }
 
+  private void stopAsyncExecutor() {
+    // Requests still completing after this point complete on the thread performing their I/O
+    asyncExecutor.shutdown();
+    try {
+      while (!asyncExecutor.awaitTermination(GET_TASK_EXECUTOR_AWAIT_TERMINATION_VALUE,
+          GET_TASK_EXECUTOR_AWAIT_TERMINATION_UNIT)) {
+        LOG.debug("Waiting for termination of asynchronous task executor during shutdown.");
+      }
+    } catch (InterruptedException e) {
+      LOG.debug("Interrupted while waiting for termination of asynchronous task executor during shutdown.");
+    }
+  }
+
   private void disconnect() {
     synchronized (connectionCacheLock) {
       for (HostConnectionPool hostConnectionPool : partitionServerAddressToConnectionPool.values()) {
@@ -609,6 +1156,79 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     }
   }
 
+  private static class BulkKey {
+
+    private final int index;
+    private final ByteBuffer key;
+    private final HostConnectionPool partitionConnectionPool;
+    private final int keyHash;
+    // Versions of the domain when the key was not found in cache
+    private final Object cacheVersions;
+    private final Set<Host> failedHosts = new HashSet<Host>();
+
+    private BulkKey(int index, ByteBuffer key, HostConnectionPool partitionConnectionPool, int keyHash, Object cacheVersions) {
+      this.index = index;
+      this.key = key;
+      this.partitionConnectionPool = partitionConnectionPool;
+      this.keyHash = keyHash;
+      this.cacheVersions = cacheVersions;
+    }
+  }
+
+  private class GetBulkTaskRunnable implements Runnable {
+
+    private final Domain domain;
+    private final Host host;
+    private final HostConnectionPool hostConnectionPool;
+    private final List<BulkKey> keys;
+    // Null in case of failure. Individual responses can be exceptions.
+    private HankResponse[] responses = null;
+
+    private GetBulkTaskRunnable(Domain domain, Host host, HostConnectionPool hostConnectionPool, List<BulkKey> keys) {
+      this.domain = domain;
+      this.host = host;
+      this.hostConnectionPool = hostConnectionPool;
+      this.keys = keys;
+    }
+
+    @Override
+    public void run() {
+      try {
+        responses = getBulkResponses(host, keys.size(), hostConnectionPool.getBulk(domain, getKeyBuffers(keys)));
+      } catch (IOException e) {
+        LOG.error(getLogPrefix() + "Failed to perform GET BULK of " + keys.size() + " keys with host: " + host.getAddress(), e);
+      }
+    }
+  }
+
+  private static class GetBulkTask extends FutureTask<Object> {
+
+    private final GetBulkTaskRunnable runnable;
+
+    private GetBulkTask(GetBulkTaskRunnable runnable) {
+      super(runnable, new Object());
+      this.runnable = runnable;
+    }
+
+    private GetBulkTaskRunnable getRunnable() {
+      return runnable;
+    }
+
+    // Wait for termination and return responses, null in case of failure
+    private HankResponse[] getResponses() {
+      try {
+        this.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException e) {
+        LOG.error("Failed to execute GET BULK task", e);
+        return null;
+      }
+      return runnable.responses;
+    }
+  }
+
   private static class GetTaskThreadFactory implements ThreadFactory {
 
     @Override
@@ -619,6 +1239,84 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     }
   }
 
+  private static class AsyncTaskThreadFactory implements ThreadFactory {
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread result = new Thread(runnable, "AsyncTaskThread");
+      result.setDaemon(true);
+      return result;
+    }
+  }
+
+  /**
+   * Get of a stream of keys. Keys are pulled from the iterator only while fewer than
+   * asyncMaxNumInFlightRequests of them are in flight, so that arbitrarily large streams use bounded
+   * memory. The iterator and the consumer are only accessed by one thread at a time.
+   */
+  private class GetStream {
+
+    private final Domain domain;
+    private final Iterator<ByteBuffer> keys;
+    private final BiConsumer<ByteBuffer, HankResponse> responseConsumer;
+    private final CompletableFuture<Void> result = new CompletableFuture<Void>();
+    private int numInFlightKeys = 0;
+    private boolean keysExhausted = false;
+    private boolean requestingKeys = false;
+
+    // Domain is null if it does not exist
+    private GetStream(Domain domain, Iterator<ByteBuffer> keys, BiConsumer<ByteBuffer, HankResponse> responseConsumer) {
+      this.domain = domain;
+      this.keys = keys;
+      this.responseConsumer = responseConsumer;
+    }
+
+    private synchronized void requestKeys() {
+      // Responses completing immediately are consumed from within the loop below, do not recurse
+      if (requestingKeys) {
+        return;
+      }
+      requestingKeys = true;
+      try {
+        while (!result.isDone() && !keysExhausted && numInFlightKeys < asyncMaxNumInFlightRequests) {
+          final ByteBuffer key;
+          CompletableFuture<HankResponse> response;
+          try {
+            if (!keys.hasNext()) {
+              keysExhausted = true;
+              break;
+            }
+            key = keys.next();
+            response = domain == null ? CompletableFuture.completedFuture(NO_SUCH_DOMAIN) : _getAsync(domain, key);
+          } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+          }
+          ++numInFlightKeys;
+          response.whenComplete((value, t) -> onResponse(key, value, t));
+        }
+      } finally {
+        requestingKeys = false;
+      }
+      if (keysExhausted && numInFlightKeys == 0) {
+        result.complete(null);
+      }
+    }
+
+    private synchronized void onResponse(ByteBuffer key, HankResponse response, Throwable t) {
+      --numInFlightKeys;
+      if (!result.isDone()) {
+        try {
+          responseConsumer.accept(key, t == null ? response : HankResponse.xception(HankException.internal_error(t.toString())));
+        } catch (Throwable e) {
+          // Fail the stream if the consumer throws anything, otherwise it would never complete
+          result.completeExceptionally(e);
+        }
+      }
+      requestKeys();
+    }
+  }
+
   private class UpdateRuntimeStatisticsRunnable extends UpdateStatisticsRunnable implements Runnable {
 
     private final Map<PartitionServerAddress, ConnectionLoad> partitionServerToConnectionLoad;
@@ -662,6 +1360,10 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
               + "% (" + connectionLoad.getNumConnectionsLocked() + "/" + connectionLoad.getNumConnections() + " locked connections)");
         }
       }
+      // Log hedged requests
+      if (hedgedRequests != null) {
+        logHedgedRequests();
+      }
       // Restart timer
       long timerDurationMs = timer.getDurationMs();
       timer.restart();
@@ -677,6 +1379,45 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
             + ", client-side cache hit rate: " + FormatUtils.formatDouble(cacheHitRate * 100) + "%"
             + ", cache: " + responseCache.size() + " items totaling " + FormatUtils.formatNumBytes(responseCache.getNumManagedBytes()));
       }
+      // Log latencies
+      LatencyHistogram latencyHistogram = getRequestsLatencyRecorder.getIntervalHistogram();
+      if (latencyHistogram.getTotalCount() != 0) {
+        LOG.info(getLogPrefix()
+            + "GET latency: p50 " + FormatUtils.formatDouble(latencyHistogram.getValueAtPercentile(50) / 1000000d) + "ms"
+            + ", p99 " + FormatUtils.formatDouble(latencyHistogram.getValueAtPercentile(99) / 1000000d) + "ms"
+            + ", p99.9 " + FormatUtils.formatDouble(latencyHistogram.getValueAtPercentile(99.9) / 1000000d) + "ms"
+            + ", max " + FormatUtils.formatDouble(latencyHistogram.getMaximum() / 1000000d) + "ms");
+      }
+    }
+
+    private void logHedgedRequests() {
+      Map<PartitionServerAddress, long[]> partitionServerToHedgingCounters = new HashMap<PartitionServerAddress, long[]>();
+      for (Map.Entry<HostAddress, HostConnectionPool> entry : partitionServerAddressToConnectionPool.entrySet()) {
+        PartitionServerAddress serverAddress = entry.getKey().getPartitionServerAddress();
+        long[] totalHedgingCounters = partitionServerToHedgingCounters.get(serverAddress);
+        if (totalHedgingCounters == null) {
+          totalHedgingCounters = new long[3];
+          partitionServerToHedgingCounters.put(serverAddress, totalHedgingCounters);
+        }
+        for (HostConnection connection : entry.getValue().getConnections()) {
+          long[] hedgingCounters = connection.getStatistics().getAndClearHedgingCounters();
+          for (int i = 0; i < hedgingCounters.length; ++i) {
+            totalHedgingCounters[i] += hedgingCounters[i];
+          }
+        }
+      }
+      for (Map.Entry<PartitionServerAddress, long[]> entry : partitionServerToHedgingCounters.entrySet()) {
+        long numRequests = entry.getValue()[0];
+        long numHedgedRequests = entry.getValue()[1];
+        long numHedgesWon = entry.getValue()[2];
+        // Only display if some requests were hedged
+        if (numRequests > 0 && numHedgedRequests > 0) {
+          LOG.info(getLogPrefix() + "Hedged requests to " + entry.getKey() + ": hedge rate "
+              + FormatUtils.formatDouble((double)numHedgedRequests / (double)numRequests * 100) + "%"
+              + " (" + numHedgedRequests + "/" + numRequests + " requests)"
+              + ", hedge win rate " + FormatUtils.formatDouble((double)numHedgesWon / (double)numHedgedRequests * 100) + "%");
+        }
+      }
     }
 
     @Override
@@ -1,7 +1,10 @@
 package com.liveramp.hank.client;
 
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankResponse;
@@ -17,5 +20,18 @@ public interface HankSmartClientIface extends HankClientIface, SmartClient.Iface
 
   public List<FutureGet> concurrentGet(String domainName, List<ByteBuffer> key);
 
+  // Non-blocking get. Keys must not be modified until the returned future completes.
+  public CompletableFuture<HankResponse> getAsync(String domainName, ByteBuffer key);
+
+  // Non-blocking getBulk. Keys must not be modified until the returned future completes.
+  public CompletableFuture<HankBulkResponse> getBulkAsync(String domainName, List<ByteBuffer> keys);
+
+  // Get all keys of a (possibly large) stream, pulling keys only as responses come back so that the number
+  // of keys in flight stays bounded. Responses are passed to the consumer one at a time, in completion order.
+  // The returned future completes once all responses have been consumed.
+  public CompletableFuture<Void> getStreamAsync(String domainName,
+                                                Iterator<ByteBuffer> keys,
+                                                BiConsumer<ByteBuffer, HankResponse> responseConsumer);
+
   public abstract void stop();
 }
@@ -26,12 +26,21 @@ public class HankSmartClientOptions {
   private int establishConnectionTimeoutMs = 0;
   private int queryTimeoutMs = 0;
   private int bulkQueryTimeoutMs = 0;
+  private int bulkQueryMaxNumKeys = 1000;
   private int concurrentGetThreadPoolMaxSize = 1024;
   private boolean responseCacheEnabled = false;
   private long responseCacheNumBytesCapacity = 0;
   private int responseCacheNumItemsCapacity = 0;
   private long responseCacheExpirationSeconds = 0;
+  private boolean responseCacheVersionAware = false;
   private EnvironmentValue preferredServerEnvironment = null;
+  private boolean pipelinedConnectionsEnabled = false;
+  private int asyncMaxNumInFlightRequests = 4096;
+  private int asyncThreadPoolSize = 2;
+  private int hedgeDelayMs = 0;
+  private double hedgeDelayPercentile = 0;
+  private ReplicaSelectionPolicy replicaSelectionPolicy = new RoundRobinReplicaSelectionPolicy();
+  private boolean sendKeyHashes = false;
 
   public int getNumConnectionsPerHost() {
     return numConnectionsPerHost;
@@ -87,6 +96,16 @@ public class HankSmartClientOptions {
     return this;
   }
 
+  public int getBulkQueryMaxNumKeys() {
+    return bulkQueryMaxNumKeys;
+  }
+
+  // Maximum number of keys sent to a host in a single GET BULK request
+  public HankSmartClientOptions setBulkQueryMaxNumKeys(int bulkQueryMaxNumKeys) {
+    this.bulkQueryMaxNumKeys = bulkQueryMaxNumKeys;
+    return this;
+  }
+
   public int getConcurrentGetThreadPoolMaxSize() {
     return concurrentGetThreadPoolMaxSize;
   }
@@ -140,4 +159,92 @@ public class HankSmartClientOptions {
     this.responseCacheExpirationSeconds = responseCacheExpirationSeconds;
     return this;
   }
+
+  public boolean getResponseCacheVersionAware() {
+    return responseCacheVersionAware;
+  }
+
+  // Invalidate all cached responses of a domain when the version assigned to it by the domain group, or the
+  // versions served by hosts, change. This allows long cache expiration periods without serving responses of
+  // previous versions, except to requests performed while hosts are being updated.
+  public HankSmartClientOptions setResponseCacheVersionAware(boolean responseCacheVersionAware) {
+    this.responseCacheVersionAware = responseCacheVersionAware;
+    return this;
+  }
+
+  public boolean getPipelinedConnectionsEnabled() {
+    return pipelinedConnectionsEnabled;
+  }
+
+  // Send requests without waiting for previous responses, from a single I/O thread shared by all connections
+  public HankSmartClientOptions setPipelinedConnectionsEnabled(boolean pipelinedConnectionsEnabled) {
+    this.pipelinedConnectionsEnabled = pipelinedConnectionsEnabled;
+    return this;
+  }
+
+  public int getAsyncMaxNumInFlightRequests() {
+    return asyncMaxNumInFlightRequests;
+  }
+
+  // Maximum number of asynchronous GET and GET BULK requests in flight, further requests are queued
+  public HankSmartClientOptions setAsyncMaxNumInFlightRequests(int asyncMaxNumInFlightRequests) {
+    this.asyncMaxNumInFlightRequests = asyncMaxNumInFlightRequests;
+    return this;
+  }
+
+  public int getAsyncThreadPoolSize() {
+    return asyncThreadPoolSize;
+  }
+
+  // Threads completing asynchronous requests, retrying them and running callbacks. Without pipelined
+  // connections, they also wait for asynchronous GET BULK requests.
+  public HankSmartClientOptions setAsyncThreadPoolSize(int asyncThreadPoolSize) {
+    this.asyncThreadPoolSize = asyncThreadPoolSize;
+    return this;
+  }
+
+  public int getHedgeDelayMs() {
+    return hedgeDelayMs;
+  }
+
+  // Send a GET to a second replica when the first one has not answered after this delay, and use the first
+  // response. 0 disables hedged requests. Requires pipelined connections.
+  public HankSmartClientOptions setHedgeDelayMs(int hedgeDelayMs) {
+    this.hedgeDelayMs = hedgeDelayMs;
+    return this;
+  }
+
+  public double getHedgeDelayPercentile() {
+    return hedgeDelayPercentile;
+  }
+
+  // When set (for example to 95), hedge requests after this percentile of the latencies recently observed for
+  // each host instead of the fixed hedge delay. The fixed delay is used until enough latencies are observed.
+  public HankSmartClientOptions setHedgeDelayPercentile(double hedgeDelayPercentile) {
+    this.hedgeDelayPercentile = hedgeDelayPercentile;
+    return this;
+  }
+
+  public ReplicaSelectionPolicy getReplicaSelectionPolicy() {
+    return replicaSelectionPolicy;
+  }
+
+  // Policy choosing the host a request is sent to first, among the hosts serving its partition in the
+  // preferred environment (or among the others when none is available). Failed requests are retried on
+  // the other hosts in order. Defaults to RoundRobinReplicaSelectionPolicy.
+  public HankSmartClientOptions setReplicaSelectionPolicy(ReplicaSelectionPolicy replicaSelectionPolicy) {
+    this.replicaSelectionPolicy = replicaSelectionPolicy;
+    return this;
+  }
+
+  public boolean getSendKeyHashes() {
+    return sendKeyHashes;
+  }
+
+  // Send the 128-bit hash of keys of domains partitioned by a Murmur128Partitioner along with GET requests,
+  // so that servers do not hash them again. Servers that do not support it ignore it.
+  public HankSmartClientOptions setSendKeyHashes(boolean sendKeyHashes) {
+    this.sendKeyHashes = sendKeyHashes;
+    return this;
+  }
 }
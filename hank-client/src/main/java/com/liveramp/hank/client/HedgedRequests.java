@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.Collection;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.util.LatencyHistogram;
+import com.liveramp.hank.util.LatencyRecorder;
+
+/**
+ * Policy of hedged GET requests: when a request sent to a host has not been answered after a delay,
+ * the same request is sent to another host serving the key and the first response is used. The
+ * delay is either fixed or a percentile of the latencies recently observed for the host, so that only
+ * the slowest requests are hedged.
+ */
+class HedgedRequests {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HedgedRequests.class);
+
+  // Period of the computation of hedge delays from observed latencies
+  private static final long UPDATE_DELAYS_PERIOD_MS = 1000;
+  // Keep the previous delay of hosts with fewer latencies observed during a period
+  private static final long UPDATE_DELAYS_MIN_NUM_LATENCIES = 100;
+
+  private final long fixedDelayNanos;
+  private final double delayPercentile;
+  private final ScheduledThreadPoolExecutor scheduler;
+
+  /**
+   * @param fixedDelayMs        delay used until latencies of a host have been observed, or always if
+   *                            delayPercentile is 0
+   * @param delayPercentile     percentile of observed latencies used as delay, 0 to always use the fixed delay
+   * @param hostConnectionPools supplies the connection pools to each host, whose delays are updated periodically
+   */
+  HedgedRequests(int fixedDelayMs,
+                 double delayPercentile,
+                 final Supplier<Collection<HostConnectionPool>> hostConnectionPools) {
+    this.fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(fixedDelayMs);
+    this.delayPercentile = delayPercentile;
+    this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread result = new Thread(runnable, "Hedged Requests Scheduler");
+        result.setDaemon(true);
+        return result;
+      }
+    });
+    // Most hedges are cancelled since most requests are answered in time
+    scheduler.setRemoveOnCancelPolicy(true);
+    if (delayPercentile > 0) {
+      scheduler.scheduleWithFixedDelay(() -> {
+        try {
+          updateDelays(hostConnectionPools.get());
+        } catch (Exception e) {
+          LOG.error("Failed to update hedge delays", e);
+        }
+      }, UPDATE_DELAYS_PERIOD_MS, UPDATE_DELAYS_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // Whether delays are computed from the latencies recorded for hedging
+  boolean isDelayFromLatencies() {
+    return delayPercentile > 0;
+  }
+
+  long getDelayNanos(HostConnection connection) {
+    if (delayPercentile > 0) {
+      long delayNanos = connection.getStatistics().getHedgeDelayNanos();
+      if (delayNanos > 0) {
+        return delayNanos;
+      }
+    }
+    return fixedDelayNanos;
+  }
+
+  ScheduledFuture<?> schedule(Runnable hedge, long delayNanos) {
+    return scheduler.schedule(hedge, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void shutDown() {
+    scheduler.shutdownNow();
+  }
+
+  // Set the delay of each host to the percentile of the latencies observed for all connections to it
+  private void updateDelays(Collection<HostConnectionPool> hostConnectionPools) {
+    for (HostConnectionPool hostConnectionPool : hostConnectionPools) {
+      Collection<HostConnection> connections = hostConnectionPool.getConnections();
+      LatencyHistogram latencyHistogram = new LatencyHistogram();
+      for (HostConnection connection : connections) {
+        LatencyRecorder latencyRecorder = connection.getStatistics().getLatencyRecorder();
+        if (latencyRecorder != null) {
+          latencyHistogram.add(latencyRecorder.getIntervalHistogram());
+        }
+      }
+      if (latencyHistogram.getTotalCount() >= UPDATE_DELAYS_MIN_NUM_LATENCIES) {
+        long delayNanos = latencyHistogram.getValueAtPercentile(delayPercentile);
+        for (HostConnection connection : connections) {
+          connection.getStatistics().setHedgeDelayNanos(delayNanos);
+        }
+      }
+    }
+  }
+}
@@ -19,13 +19,23 @@ package com.liveramp.hank.client;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TBase;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
@@ -43,6 +53,8 @@ public class HostConnection implements WatchedNodeListener<HostState> {
 
   private static final Logger LOG = LoggerFactory.getLogger(HostConnection.class);
 
+  private static final int REQUEST_BUFFER_INITIAL_SIZE = 128;
+
   private final int tryLockTimeoutMs;
   private final int establishConnectionTimeoutMs;
   private final int queryTimeoutMs;
@@ -52,6 +64,11 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   private PartitionServer.Client client;
   private final Host host;
   protected final ReentrantLock lock = new ReentrantLock(true); // Use a fair ReentrantLock
+  // When set, requests are pipelined on a non blocking connection instead of holding the lock
+  private final PipelinedConnectionManager pipelinedConnectionManager;
+  private volatile PipelinedConnection pipelinedConnection;
+  private final AtomicInteger sequenceId = new AtomicInteger(0);
+  private final HostConnectionStatistics statistics;
 
   // A timeout of 0 means no timeout
   public HostConnection(Host host,
@@ -59,11 +76,22 @@ public class HostConnection implements WatchedNodeListener<HostState> {
                         int establishConnectionTimeoutMs,
                         int queryTimeoutMs,
                         int bulkQueryTimeoutMs) throws IOException {
+    this(host, tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs, null);
+  }
+
+  public HostConnection(Host host,
+                        int tryLockTimeoutMs,
+                        int establishConnectionTimeoutMs,
+                        int queryTimeoutMs,
+                        int bulkQueryTimeoutMs,
+                        PipelinedConnectionManager pipelinedConnectionManager) throws IOException {
     this.host = host;
     this.tryLockTimeoutMs = tryLockTimeoutMs;
     this.establishConnectionTimeoutMs = establishConnectionTimeoutMs;
     this.queryTimeoutMs = queryTimeoutMs;
+    this.statistics = new HostConnectionStatistics(TimeUnit.MILLISECONDS.toNanos(queryTimeoutMs));
     this.bulkQueryTimeoutMs = bulkQueryTimeoutMs;
+    this.pipelinedConnectionManager = pipelinedConnectionManager;
     host.setStateChangeListener(this);
     onWatchedNodeChange(host.getState());
   }
@@ -72,6 +100,10 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     return host;
   }
 
+  HostConnectionStatistics getStatistics() {
+    return statistics;
+  }
+
   boolean isServing() {
     try {
       return HostState.SERVING.equals(host.getState());
@@ -88,7 +120,15 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     }
   }
 
+  private boolean isPipelined() {
+    return pipelinedConnectionManager != null;
+  }
+
   private boolean isDisconnected() {
+    if (isPipelined()) {
+      PipelinedConnection connection = pipelinedConnection;
+      return connection == null || connection.isClosed();
+    }
     return client == null;
   }
 
@@ -101,6 +141,11 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   boolean tryLockRespectingFairness() {
+    if (isPipelined()) {
+      // Pipelined connections are never locked, prefer the ones that are idle
+      PipelinedConnection connection = pipelinedConnection;
+      return connection == null || connection.getNumPendingRequests() == 0;
+    }
     try {
       // Note: tryLock() does not respect fairness, using tryLock(0, unit) instead
       return lock.tryLock(0, TimeUnit.MILLISECONDS);
@@ -124,6 +169,14 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   public HankResponse get(int domainId, ByteBuffer key) throws IOException {
+    return get(domainId, key, null);
+  }
+
+  // keyHash128 is the optional 128-bit hash of the key sent to the server, null to let the server compute it
+  public HankResponse get(int domainId, ByteBuffer key, ByteBuffer keyHash128) throws IOException {
+    if (isPipelined()) {
+      return waitFor(getAsync(domainId, key, keyHash128), "GET");
+    }
     // Lock the connection only if needed
     if (!lock.isHeldByCurrentThread()) {
       // Try to lock within a given timeframe
@@ -142,7 +195,7 @@ public class HostConnection implements WatchedNodeListener<HostState> {
       }
       // Query timeout is by default always set to regular mode
       // Perform query
-      HankResponse result = client.get(domainId, key);
+      HankResponse result = client.get(domainId, key, keyHash128);
       if (result.is_set_xception()) {
         throw new IOException("Server failed to execute GET: " + result.get_xception());
       } else {
@@ -158,6 +211,9 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   public HankBulkResponse getBulk(int domainId, List<ByteBuffer> keys) throws IOException {
+    if (isPipelined()) {
+      return waitFor(getBulkAsync(domainId, keys), "GET BULK");
+    }
     // Lock the connection only if needed
     if (!lock.isHeldByCurrentThread()) {
       // Try to lock within a given timeframe
@@ -197,6 +253,126 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     }
   }
 
+  /**
+   * Perform a GET without blocking. Only available when the connection is pipelined.
+   * The returned future completes on the thread performing the connection's I/O.
+   */
+  public CompletableFuture<HankResponse> getAsync(int domainId, ByteBuffer key) {
+    return getAsync(domainId, key, null);
+  }
+
+  public CompletableFuture<HankResponse> getAsync(int domainId, ByteBuffer key, ByteBuffer keyHash128) {
+    PartitionServer.get_args args = new PartitionServer.get_args();
+    args.set_domain_id(domainId);
+    args.set_key(key);
+    args.set_key_hash(keyHash128);
+    return call("get", args, new PartitionServer.get_result(), queryTimeoutMs).thenApply(result -> {
+      if (!result.is_set_success()) {
+        throw new CompletionException(new TApplicationException(TApplicationException.MISSING_RESULT, "get failed: unknown result"));
+      }
+      if (result.get_success().is_set_xception()) {
+        throw new CompletionException(new IOException("Server failed to execute GET: " + result.get_success().get_xception()));
+      }
+      return result.get_success();
+    });
+  }
+
+  /**
+   * Perform a GET BULK without blocking. Only available when the connection is pipelined.
+   * The returned future completes on the thread performing the connection's I/O.
+   */
+  public CompletableFuture<HankBulkResponse> getBulkAsync(int domainId, List<ByteBuffer> keys) {
+    PartitionServer.getBulk_args args = new PartitionServer.getBulk_args();
+    args.set_domain_id(domainId);
+    args.set_keys(keys);
+    return call("getBulk", args, new PartitionServer.getBulk_result(), bulkQueryTimeoutMs).thenApply(result -> {
+      if (!result.is_set_success()) {
+        throw new CompletionException(new TApplicationException(TApplicationException.MISSING_RESULT, "getBulk failed: unknown result"));
+      }
+      if (result.get_success().is_set_xception()) {
+        throw new CompletionException(new IOException("Server failed to execute GET BULK: " + result.get_success().get_xception()));
+      }
+      return result.get_success();
+    });
+  }
+
+  private <R extends TBase> CompletableFuture<R> call(final String methodName, TBase args, final R result, int timeoutMs) {
+    if (!isPipelined()) {
+      throw new IllegalStateException("Asynchronous requests require a pipelined connection.");
+    }
+    CompletableFuture<R> future = new CompletableFuture<R>();
+    final int seqId = sequenceId.incrementAndGet();
+    ByteBuffer request;
+    PipelinedConnection connection;
+    try {
+      if (!isServing() && !isOffline()) {
+        throw new IOException("Connection to host is not available (host is not serving).");
+      }
+      TMemoryBuffer buffer = new TMemoryBuffer(REQUEST_BUFFER_INITIAL_SIZE);
+      TProtocol protocol = new TCompactProtocol(buffer);
+      protocol.writeMessageBegin(new TMessage(methodName, TMessageType.CALL, seqId));
+      args.write(protocol);
+      protocol.writeMessageEnd();
+      request = ByteBuffer.wrap(buffer.getArray(), 0, buffer.length());
+      connection = getPipelinedConnection();
+    } catch (IOException | TException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    return connection.send(request, timeoutMs).thenApply(response -> {
+      try {
+        TProtocol protocol = new TCompactProtocol(
+            new TMemoryInputTransport(response.array(), response.arrayOffset() + response.position(), response.remaining()));
+        TMessage message = protocol.readMessageBegin();
+        if (message.type == TMessageType.EXCEPTION) {
+          TApplicationException exception = TApplicationException.read(protocol);
+          protocol.readMessageEnd();
+          throw exception;
+        }
+        if (message.seqid != seqId) {
+          throw new TApplicationException(TApplicationException.BAD_SEQUENCE_ID, methodName + " failed: out of sequence response");
+        }
+        result.read(protocol);
+        protocol.readMessageEnd();
+        return result;
+      } catch (TException e) {
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+  private PipelinedConnection getPipelinedConnection() throws IOException {
+    PipelinedConnection connection = pipelinedConnection;
+    if (connection != null && !connection.isClosed()) {
+      return connection;
+    }
+    // Only lock to reconnect
+    lock();
+    try {
+      if (isDisconnected()) {
+        connect();
+      }
+      return pipelinedConnection;
+    } finally {
+      unlock();
+    }
+  }
+
+  private <T> T waitFor(CompletableFuture<T> future, String requestName) throws IOException {
+    try {
+      // Timeouts are enforced by the pipelined connection
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while waiting for " + requestName, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof TException) {
+        // Responses might not be matched reliably anymore
+        disconnect();
+      }
+      throw new IOException("Failed to execute " + requestName, e.getCause());
+    }
+  }
+
   public void disconnect() {
     if (transport != null) {
       transport.close();
@@ -204,9 +380,28 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     socket = null;
     transport = null;
     client = null;
+    PipelinedConnection connection = pipelinedConnection;
+    if (connection != null) {
+      connection.close();
+    }
+    pipelinedConnection = null;
   }
 
   private void connect() throws IOException {
+    if (isPipelined()) {
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Trying to open pipelined connection to " + host.getAddress());
+      }
+      try {
+        pipelinedConnection = pipelinedConnectionManager.connect(host.getAddress().getHostName(),
+            host.getAddress().getPortNumber(),
+            establishConnectionTimeoutMs);
+      } catch (IOException e) {
+        LOG.error("Failed to establish connection to host " + host.getAddress(), e);
+        throw new IOException("Failed to establish connection to host " + host.getAddress(), e);
+      }
+      return;
+    }
     if (LOG.isTraceEnabled()) {
       LOG.trace("Trying to connect to " + host.getAddress());
     }
@@ -264,6 +459,11 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   public boolean isLocked() {
+    if (isPipelined()) {
+      // Report pipelined connections with requests in flight as used
+      PipelinedConnection connection = pipelinedConnection;
+      return connection != null && connection.getNumPendingRequests() > 0;
+    }
     return lock.isLocked();
   }
 
@@ -277,6 +477,7 @@ public class HostConnection implements WatchedNodeListener<HostState> {
         ", socket=" + socket +
         ", transport=" + transport +
         ", client=" + client +
+        ", pipelinedConnection=" + pipelinedConnection +
         ", host=" + host +
         ", lock=" + lock +
         '}';
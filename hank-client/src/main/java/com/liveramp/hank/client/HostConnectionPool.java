@@ -19,6 +19,7 @@ package com.liveramp.hank.client;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,8 +27,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 
 import com.google.common.collect.Iterables;
+import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +84,8 @@ public class HostConnectionPool {
 
   private static class ConnectionPools {
     private ArrayList<List<HostConnectionAndHostIndex>> hostToConnections = new ArrayList<>();
+    // One replica per host, in the same order
+    private List<Replica> replicas = new ArrayList<>();
     private int previouslyUsedHostIndex = 0;
 
     @Override
@@ -92,6 +101,7 @@ public class HostConnectionPool {
   private final ConnectionPools otherPools = new ConnectionPools();
 
   private final Random random = new Random();
+  private final ReplicaSelectionPolicy replicaSelectionPolicy;
 
   private static final HankResponse NO_CONNECTION_AVAILABLE_RESPONSE
       = HankResponse.xception(HankException.no_connection_available(true));
@@ -124,6 +134,14 @@ public class HostConnectionPool {
   }
 
   HostConnectionPool(Map<Host, List<HostConnection>> hostToConnectionsMap, Integer hostShuffleSeed, Set<Host> preferredHosts) {
+    this(hostToConnectionsMap, hostShuffleSeed, preferredHosts, new RoundRobinReplicaSelectionPolicy());
+  }
+
+  HostConnectionPool(Map<Host, List<HostConnection>> hostToConnectionsMap,
+                     Integer hostShuffleSeed,
+                     Set<Host> preferredHosts,
+                     ReplicaSelectionPolicy replicaSelectionPolicy) {
+    this.replicaSelectionPolicy = replicaSelectionPolicy;
     if (hostToConnectionsMap.size() == 0) {
       throw new RuntimeException("HostConnectionPool must be initialized with a non empty collection of connections.");
     }
@@ -146,10 +164,14 @@ public class HostConnectionPool {
     for (Host host : shuffledHosts) {
 
       if (preferredHosts.contains(host)) {
-        preferredPools.hostToConnections.add(buildConnections(hostToConnectionsMap, preferrdIndex, host));
+        List<HostConnectionAndHostIndex> connections = buildConnections(hostToConnectionsMap, preferrdIndex, host);
+        preferredPools.hostToConnections.add(connections);
+        preferredPools.replicas.add(new PoolReplica(host, connections));
         ++preferrdIndex;
       } else {
-        otherPools.hostToConnections.add(buildConnections(hostToConnectionsMap, otherIndex, host));
+        List<HostConnectionAndHostIndex> connections = buildConnections(hostToConnectionsMap, otherIndex, host);
+        otherPools.hostToConnections.add(connections);
+        otherPools.replicas.add(new PoolReplica(host, connections));
         ++otherIndex;
       }
 
@@ -178,6 +200,13 @@ public class HostConnectionPool {
   }
 
   static HostConnectionPool createFromList(Collection<HostConnection> connections, Integer hostShuffleSeed, Set<Host> preferredHosts) {
+    return createFromList(connections, hostShuffleSeed, preferredHosts, new RoundRobinReplicaSelectionPolicy());
+  }
+
+  static HostConnectionPool createFromList(Collection<HostConnection> connections,
+                                           Integer hostShuffleSeed,
+                                           Set<Host> preferredHosts,
+                                           ReplicaSelectionPolicy replicaSelectionPolicy) {
     Map<Host, List<HostConnection>> hostToConnectionsMap = new HashMap<Host, List<HostConnection>>();
     for (HostConnection connection : connections) {
       List<HostConnection> connectionList = hostToConnectionsMap.get(connection.getHost());
@@ -187,7 +216,7 @@ public class HostConnectionPool {
       }
       connectionList.add(connection);
     }
-    return new HostConnectionPool(hostToConnectionsMap, hostShuffleSeed, preferredHosts);
+    return new HostConnectionPool(hostToConnectionsMap, hostShuffleSeed, preferredHosts, replicaSelectionPolicy);
   }
 
   Collection<HostConnection> getConnections() {
@@ -202,7 +231,7 @@ public class HostConnectionPool {
 
   // Return a connection to a host, initially skipping the previously used host
   private synchronized HostConnectionAndHostIndex getConnectionToUse(ConnectionPools pool) {
-    HostConnectionAndHostIndex result = getNextConnectionToUse(pool.previouslyUsedHostIndex, pool.hostToConnections);
+    HostConnectionAndHostIndex result = getNextConnectionToUse(selectHost(pool, pool.previouslyUsedHostIndex), pool.hostToConnections);
     if (result != null) {
       pool.previouslyUsedHostIndex = result.hostIndex;
     }
@@ -212,7 +241,22 @@ public class HostConnectionPool {
   // Attempt to find a connection for that key where it is likely to be in the cache if it was queried
   // recently. (Globally random, but deterministic on the key.)
   private HostConnectionAndHostIndex getConnectionToUseForKey(ConnectionPools pool, int keyHash) {
-    return getNextConnectionToUse(keyHash % pool.hostToConnections.size(), pool.hostToConnections);
+    return getNextConnectionToUse(selectHost(pool, keyHash % pool.hostToConnections.size()), pool.hostToConnections);
+  }
+
+  // Apply the replica selection policy. Host indices are those of the host preceding the one to try first,
+  // as expected by getNextConnectionToUse().
+  private int selectHost(ConnectionPools pool, int defaultPreviousHostIndex) {
+    int numHosts = pool.hostToConnections.size();
+    if (numHosts < 2) {
+      return defaultPreviousHostIndex;
+    }
+    int defaultHostIndex = getNextHostIndexToUse(defaultPreviousHostIndex, pool.hostToConnections);
+    int hostIndex = replicaSelectionPolicy.selectHost(pool.replicas, defaultHostIndex);
+    if (hostIndex == defaultHostIndex) {
+      return defaultPreviousHostIndex;
+    }
+    return (hostIndex + numHosts - 1) % numHosts;
   }
 
   // Return a connection to an arbitrary host, initially skipping the supplied host (likely because there was
@@ -287,6 +331,13 @@ public class HostConnectionPool {
   }
 
   public HankResponse get(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash) {
+    return get(domain, key, maxNumTries, keyHash, null);
+  }
+
+  /**
+   * @param keyHash128 optional 128-bit hash of the key sent to servers, null to let servers compute it
+   */
+  public HankResponse get(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash, ByteBuffer keyHash128) {
     HostConnectionAndHostIndex connectionAndHostIndex = null;
     int numPreferredTries = 0;
     int numOtherTries = 0;
@@ -304,7 +355,7 @@ public class HostConnectionPool {
 
       ++numPreferredTries;
 
-      HankResponse response = attemptQuery(connectionAndHostIndex, domain, key, numPreferredTries, maxNumTries);
+      HankResponse response = attemptQuery(connectionAndHostIndex, domain, key, keyHash128, numPreferredTries, maxNumTries);
       if (response != null) {
         return response;
       }
@@ -314,7 +365,7 @@ public class HostConnectionPool {
       connectionAndHostIndex = getConnectionFromPools(otherPools, keyHash, connectionAndHostIndex);
       ++numOtherTries;
 
-      HankResponse response = attemptQuery(connectionAndHostIndex, domain, key, numPreferredTries+numOtherTries, maxNumTries);
+      HankResponse response = attemptQuery(connectionAndHostIndex, domain, key, keyHash128, numPreferredTries+numOtherTries, maxNumTries);
       if (response != null) {
         return response;
       }
@@ -322,6 +373,260 @@ public class HostConnectionPool {
 
   }
 
+  /**
+   * Same as get() but without blocking. Connections must be pipelined. Connections are selected and
+   * retried in the same order as get(). Retries are performed by the given executor so that failures,
+   * which might involve reconnecting, never block the thread performing the connections' I/O.
+   * The returned future always completes normally, with an exception response in case of failure.
+   */
+  public CompletableFuture<HankResponse> getAsync(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash, Executor retryExecutor) {
+    return getAsync(domain, key, maxNumTries, keyHash, retryExecutor, null);
+  }
+
+  /**
+   * Same as above, hedging attempts that are not answered in time according to the given policy
+   * (null to disable hedging). Hedges do not count as tries.
+   */
+  public CompletableFuture<HankResponse> getAsync(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash, Executor retryExecutor, HedgedRequests hedgedRequests) {
+    return getAsync(domain, key, maxNumTries, keyHash, null, retryExecutor, hedgedRequests);
+  }
+
+  /**
+   * Same as above, sending the given optional 128-bit hash of the key to servers.
+   */
+  public CompletableFuture<HankResponse> getAsync(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash, ByteBuffer keyHash128, Executor retryExecutor, HedgedRequests hedgedRequests) {
+    AsyncGet asyncGet = new AsyncGet(domain, key, maxNumTries, keyHash, keyHash128, retryExecutor, hedgedRequests);
+    asyncGet.attempt();
+    return asyncGet.result;
+  }
+
+  // Requests are sent and results completed outside of the lock of AsyncGet, since sending might
+  // block to reconnect and completing runs callbacks
+  private class AsyncGet {
+
+    private final Domain domain;
+    private final ByteBuffer key;
+    private final int maxNumTries;
+    private final Integer keyHash;
+    private final ByteBuffer keyHash128;
+    private final Executor retryExecutor;
+    private final HedgedRequests hedgedRequests;
+    private final CompletableFuture<HankResponse> result = new CompletableFuture<HankResponse>();
+    private HostConnectionAndHostIndex connectionAndHostIndex = null;
+    private int numPreferredTries = 0;
+    private int numOtherTries = 0;
+    // Attempts sent and not answered yet, two while an attempt is hedged
+    private int numPendingAttempts = 0;
+    private ScheduledFuture<?> hedge = null;
+
+    private AsyncGet(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash, ByteBuffer keyHash128, Executor retryExecutor, HedgedRequests hedgedRequests) {
+      this.domain = domain;
+      this.key = key;
+      this.maxNumTries = maxNumTries;
+      this.keyHash = keyHash;
+      this.keyHash128 = keyHash128;
+      this.retryExecutor = retryExecutor;
+      this.hedgedRequests = hedgedRequests;
+    }
+
+    private void attempt() {
+      final HostConnectionAndHostIndex attemptConnectionAndHostIndex;
+      final ConnectionPools pools;
+      final int numTries;
+      synchronized (this) {
+        // Try preferred hosts first, then other hosts
+        if (numPreferredTries < preferredPools.hostToConnections.size()) {
+          pools = preferredPools;
+          connectionAndHostIndex = getConnectionFromPools(preferredPools, keyHash, connectionAndHostIndex);
+          ++numPreferredTries;
+        } else {
+          pools = otherPools;
+          connectionAndHostIndex = getConnectionFromPools(otherPools, keyHash, connectionAndHostIndex);
+          ++numOtherTries;
+        }
+        numTries = numPreferredTries + numOtherTries;
+        attemptConnectionAndHostIndex = connectionAndHostIndex;
+        if (attemptConnectionAndHostIndex != null) {
+          ++numPendingAttempts;
+          attemptConnectionAndHostIndex.hostConnection.getStatistics().onRequest();
+          if (hedgedRequests != null) {
+            hedge = hedgedRequests.schedule(() -> hedge(attemptConnectionAndHostIndex, pools, numTries),
+                hedgedRequests.getDelayNanos(attemptConnectionAndHostIndex.hostConnection));
+          }
+        }
+      }
+      if (attemptConnectionAndHostIndex == null) {
+        result.complete(onNoConnectionAvailable(domain, key, numTries, maxNumTries));
+      } else {
+        send(attemptConnectionAndHostIndex, numTries, null);
+      }
+    }
+
+    // Send the same request to another host if the attempt is still not answered
+    private void hedge(HostConnectionAndHostIndex hedgedConnectionAndHostIndex, ConnectionPools pools, int numTries) {
+      HostConnectionAndHostIndex hedgeConnectionAndHostIndex;
+      synchronized (this) {
+        if (numTries != numPreferredTries + numOtherTries) {
+          // The attempt was retried since this hedge was scheduled
+          return;
+        }
+        hedge = null;
+        if (result.isDone() || numPendingAttempts != 1) {
+          return;
+        }
+        Host hedgedHost = hedgedConnectionAndHostIndex.hostConnection.getHost();
+        hedgeConnectionAndHostIndex = getNextConnectionToUse(hedgedConnectionAndHostIndex.hostIndex, pools.hostToConnections);
+        if ((hedgeConnectionAndHostIndex == null || hedgeConnectionAndHostIndex.hostConnection.getHost().equals(hedgedHost))
+            && pools == preferredPools && !otherPools.hostToConnections.isEmpty()) {
+          hedgeConnectionAndHostIndex = getConnectionFromPools(otherPools, keyHash, null);
+        }
+        if (hedgeConnectionAndHostIndex == null || hedgeConnectionAndHostIndex.hostConnection.getHost().equals(hedgedHost)) {
+          // No other host to hedge with
+          return;
+        }
+        hedgedConnectionAndHostIndex.hostConnection.getStatistics().onHedged();
+        // Skip the host used by the hedge as well in case both attempts fail
+        connectionAndHostIndex = hedgeConnectionAndHostIndex;
+        ++numPendingAttempts;
+      }
+      send(hedgeConnectionAndHostIndex, numTries, hedgedConnectionAndHostIndex.hostConnection);
+    }
+
+    // hedgedConnection is the connection of the attempt being hedged, null if this is not a hedge
+    private void send(final HostConnectionAndHostIndex attemptConnectionAndHostIndex, final int numTries, final HostConnection hedgedConnection) {
+      attemptConnectionAndHostIndex.hostConnection.getStatistics().onRequestStarted();
+      final long startTimeNanos = System.nanoTime();
+      attemptConnectionAndHostIndex.hostConnection.getAsync(domain.getId(), key, keyHash128).whenComplete((response, t) ->
+          onAttemptComplete(attemptConnectionAndHostIndex, numTries, hedgedConnection, startTimeNanos, response, t));
+    }
+
+    private void onAttemptComplete(HostConnectionAndHostIndex attemptConnectionAndHostIndex,
+                                   int numTries,
+                                   HostConnection hedgedConnection,
+                                   long startTimeNanos,
+                                   HankResponse response,
+                                   Throwable t) {
+      HostConnectionStatistics statistics = attemptConnectionAndHostIndex.hostConnection.getStatistics();
+      statistics.onRequestFinished();
+      if (t == null) {
+        // Completed on the thread performing the connection's I/O
+        if (hedgedRequests != null && hedgedRequests.isDelayFromLatencies()) {
+          statistics.recordLatencyForHedging(System.nanoTime() - startTimeNanos);
+        } else {
+          statistics.recordLatency(System.nanoTime() - startTimeNanos);
+        }
+        synchronized (this) {
+          --numPendingAttempts;
+          cancelHedge();
+        }
+        if (result.complete(response) && hedgedConnection != null) {
+          hedgedConnection.getStatistics().onHedgeWon();
+        }
+        return;
+      }
+      statistics.recordFailure(System.nanoTime() - startTimeNanos);
+      Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+      if (cause instanceof TException) {
+        // Responses might not be matched reliably anymore
+        attemptConnectionAndHostIndex.hostConnection.disconnect();
+      }
+      synchronized (this) {
+        --numPendingAttempts;
+        if (result.isDone()) {
+          return;
+        }
+        if (numPendingAttempts > 0) {
+          // The other attempt might still succeed
+          LOG.error("Failed to perform query with host: "
+              + attemptConnectionAndHostIndex.hostConnection.getHost().getAddress()
+              + ". Waiting for the other attempt. Domain = " + domain.getName()
+              + ", Key = " + BytesUtils.bytesToHexString(key), cause);
+          return;
+        }
+        cancelHedge();
+      }
+      HankResponse failureResponse = onQueryFailure(attemptConnectionAndHostIndex, domain, key, numTries, maxNumTries, cause);
+      if (failureResponse != null) {
+        result.complete(failureResponse);
+        return;
+      }
+      try {
+        retryExecutor.execute(this::attempt);
+      } catch (RejectedExecutionException e) {
+        result.complete(HankResponse.xception(HankException.failed_retries(maxNumTries)));
+      }
+    }
+
+    private void cancelHedge() {
+      if (hedge != null) {
+        hedge.cancel(false);
+        hedge = null;
+      }
+    }
+  }
+
+  // Select the host to query for a given key as part of a bulk request. The choice is deterministic on the key
+  // so that the key is likely to be in that host's cache. Serving preferred hosts come first, then other serving
+  // hosts, then offline hosts (opportunistically). Excluded hosts (likely because a query to them failed) are
+  // only used as a last resort. Returns null if no host is available.
+  Host getHostToUseForKey(int keyHash, Set<Host> excludedHosts) {
+    Host result = getHostToUseForKey(keyHash, excludedHosts, false);
+    if (result == null && !excludedHosts.isEmpty()) {
+      result = getHostToUseForKey(keyHash, Collections.<Host>emptySet(), false);
+    }
+    if (result == null) {
+      result = getHostToUseForKey(keyHash, Collections.<Host>emptySet(), true);
+    }
+    return result;
+  }
+
+  private Host getHostToUseForKey(int keyHash, Set<Host> excludedHosts, boolean offline) {
+    for (ConnectionPools pools : Arrays.asList(preferredPools, otherPools)) {
+      int numHosts = pools.hostToConnections.size();
+      for (int tryId = 0; tryId < numHosts; ++tryId) {
+        List<HostConnectionAndHostIndex> connectionAndHostList = pools.hostToConnections.get((keyHash % numHosts + tryId) % numHosts);
+        HostConnection hostConnection = connectionAndHostList.get(0).hostConnection;
+        if (!excludedHosts.contains(hostConnection.getHost())
+            && (offline ? hostConnection.isOffline() : hostConnection.isServing())) {
+          return hostConnection.getHost();
+        }
+      }
+    }
+    return null;
+  }
+
+  // Perform a bulk query using any connection in this pool, without retrying.
+  // Meant to be used on pools that contain connections to a single host.
+  HankBulkResponse getBulk(Domain domain, List<ByteBuffer> keys) throws IOException {
+    HostConnectionAndHostIndex connectionAndHostIndex = getConnectionToUse(preferredPools);
+    if (connectionAndHostIndex == null) {
+      connectionAndHostIndex = getConnectionToUse(otherPools);
+    }
+    if (connectionAndHostIndex == null) {
+      return NO_CONNECTION_AVAILABLE_BULK_RESPONSE;
+    }
+    return connectionAndHostIndex.hostConnection.getBulk(domain.getId(), keys);
+  }
+
+  // Same as getBulk() but without blocking. Connections must be pipelined. The returned future
+  // completes exceptionally if the request fails.
+  CompletableFuture<HankBulkResponse> getBulkAsync(Domain domain, List<ByteBuffer> keys) {
+    HostConnectionAndHostIndex connectionAndHostIndex = getConnectionToUse(preferredPools);
+    if (connectionAndHostIndex == null) {
+      connectionAndHostIndex = getConnectionToUse(otherPools);
+    }
+    if (connectionAndHostIndex == null) {
+      return CompletableFuture.completedFuture(NO_CONNECTION_AVAILABLE_BULK_RESPONSE);
+    }
+    final HostConnection hostConnection = connectionAndHostIndex.hostConnection;
+    return hostConnection.getBulkAsync(domain.getId(), keys).whenComplete((response, t) -> {
+      if (t != null && (t instanceof TException || t.getCause() instanceof TException)) {
+        // Responses might not be matched reliably anymore
+        hostConnection.disconnect();
+      }
+    });
+  }
+
   private HostConnectionAndHostIndex getConnectionFromPools(ConnectionPools pools, Integer keyHash, HostConnectionAndHostIndex connectionAndHostIndex) {
     if (connectionAndHostIndex == null) {
       if (keyHash == null) {
@@ -334,47 +639,110 @@ public class HostConnectionPool {
     }
   }
 
-  private HankResponse attemptQuery(HostConnectionAndHostIndex connectionAndHostIndex, Domain domain, ByteBuffer key, int numTries, int maxNumTries) {
+  private HankResponse attemptQuery(HostConnectionAndHostIndex connectionAndHostIndex, Domain domain, ByteBuffer key, ByteBuffer keyHash128, int numTries, int maxNumTries) {
     int domainId = domain.getId();
 
     // If we couldn't find any available connection, return corresponding error response
     if (connectionAndHostIndex == null) {
-      LOG.error("No connection is available. Giving up with "+numTries+"/"+maxNumTries+" attempts. Domain = " + domain.getName() + ", Key=" + BytesUtils.bytesToHexString(key)+"\n"+
-          "Local pools: "+preferredPools+"\n"+
-          "Non-local pools: "+otherPools
-      );
-      
-      return NO_CONNECTION_AVAILABLE_RESPONSE;
+      return onNoConnectionAvailable(domain, key, numTries, maxNumTries);
     } else {
       // Perform query
+      HostConnectionStatistics statistics = connectionAndHostIndex.hostConnection.getStatistics();
+      statistics.onRequestStarted();
+      long startTimeNanos = System.nanoTime();
       try {
-        return connectionAndHostIndex.hostConnection.get(domainId, key);
+        HankResponse response = connectionAndHostIndex.hostConnection.get(domainId, key, keyHash128);
+        statistics.recordLatency(System.nanoTime() - startTimeNanos);
+        return response;
       } catch (IOException e) {
-        // In case of error, keep count of the number of times we retry
-        if (numTries < maxNumTries) {
-          // Simply log the error and retry
-          LOG.error("Failed to perform query with host: "
-              + connectionAndHostIndex.hostConnection.getHost().getAddress()
-              + ". Retrying. Try " + numTries + "/" + maxNumTries
-              + ", Domain = " + domain.getName()
-              + ", Key = " + BytesUtils.bytesToHexString(key), e);
-
-          return null;
-        } else {
-          // If we have exhausted tries, return an exception response
-          LOG.error("Failed to perform query with host: "
-              + connectionAndHostIndex.hostConnection.getHost().getAddress()
-              + ". Giving up. Try " + numTries + "/" + maxNumTries
-              + ", Domain = " + domain.getName()
-              + ", Key = " + BytesUtils.bytesToHexString(key), e);
-          return HankResponse.xception(HankException.failed_retries(maxNumTries));
-        }
+        statistics.recordFailure(System.nanoTime() - startTimeNanos);
+        return onQueryFailure(connectionAndHostIndex, domain, key, numTries, maxNumTries, e);
+      } finally {
+        statistics.onRequestFinished();
       }
 
     }
 
   }
 
+  private HankResponse onNoConnectionAvailable(Domain domain, ByteBuffer key, int numTries, int maxNumTries) {
+    LOG.error("No connection is available. Giving up with "+numTries+"/"+maxNumTries+" attempts. Domain = " + domain.getName() + ", Key=" + BytesUtils.bytesToHexString(key)+"\n"+
+        "Local pools: "+preferredPools+"\n"+
+        "Non-local pools: "+otherPools
+    );
+
+    return NO_CONNECTION_AVAILABLE_RESPONSE;
+  }
+
+  // Return null if the query should be retried, or the response to give up with
+  private HankResponse onQueryFailure(HostConnectionAndHostIndex connectionAndHostIndex, Domain domain, ByteBuffer key, int numTries, int maxNumTries, Throwable e) {
+    // In case of error, keep count of the number of times we retry
+    if (numTries < maxNumTries) {
+      // Simply log the error and retry
+      LOG.error("Failed to perform query with host: "
+          + connectionAndHostIndex.hostConnection.getHost().getAddress()
+          + ". Retrying. Try " + numTries + "/" + maxNumTries
+          + ", Domain = " + domain.getName()
+          + ", Key = " + BytesUtils.bytesToHexString(key), e);
+
+      return null;
+    } else {
+      // If we have exhausted tries, return an exception response
+      LOG.error("Failed to perform query with host: "
+          + connectionAndHostIndex.hostConnection.getHost().getAddress()
+          + ". Giving up. Try " + numTries + "/" + maxNumTries
+          + ", Domain = " + domain.getName()
+          + ", Key = " + BytesUtils.bytesToHexString(key), e);
+      return HankResponse.xception(HankException.failed_retries(maxNumTries));
+    }
+  }
+
+  // Aggregate statistics of all connections to a host
+  private static class PoolReplica implements Replica {
+
+    private final Host host;
+    private final List<HostConnectionAndHostIndex> connections;
+
+    private PoolReplica(Host host, List<HostConnectionAndHostIndex> connections) {
+      this.host = host;
+      this.connections = connections;
+    }
+
+    @Override
+    public Host getHost() {
+      return host;
+    }
+
+    @Override
+    public boolean isServing() {
+      return connections.get(0).hostConnection.isServing();
+    }
+
+    @Override
+    public int getNumOutstandingRequests() {
+      int result = 0;
+      for (HostConnectionAndHostIndex connection : connections) {
+        result += connection.hostConnection.getStatistics().getNumOutstandingRequests();
+      }
+      return result;
+    }
+
+    @Override
+    public double getResponseTimeEwmaNanos() {
+      // Average of the connections that have received responses
+      double total = 0;
+      int numConnections = 0;
+      for (HostConnectionAndHostIndex connection : connections) {
+        double responseTime = connection.hostConnection.getStatistics().getResponseTimeEwmaNanos();
+        if (responseTime > 0) {
+          total += responseTime;
+          ++numConnections;
+        }
+      }
+      return numConnections == 0 ? 0 : total / numConnections;
+    }
+  }
+
   public static Integer getHostListShuffleSeed(Integer domainId, Integer partitionId) {
     return (domainId + 1) * (partitionId + 1);
   }
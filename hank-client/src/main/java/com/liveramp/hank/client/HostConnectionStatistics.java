@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.liveramp.hank.util.AtomicLongCollection;
+import com.liveramp.hank.util.LatencyRecorder;
+
+/**
+ * Statistics of the GET requests sent on a HostConnection, used to select replicas and to decide
+ * when to hedge requests, and reported by the client's runtime statistics.
+ */
+class HostConnectionStatistics {
+
+  // Weight of the latest response time in the moving average
+  static final double RESPONSE_TIME_EWMA_ALPHA = 0.2;
+  // Without a query timeout, failures count as this multiple of the average response time
+  static final double FAILURE_RESPONSE_TIME_EWMA_MULTIPLIER = 10;
+
+  // Response time at least accounted for failed requests, 0 if there is no query timeout
+  private final long failureResponseTimeNanos;
+  // Latency of successful GET requests used to compute hedge delays. Only created and recorded to
+  // when hedge delays are computed from latencies, from the thread performing the connection's I/O.
+  private volatile LatencyRecorder latencyRecorder = null;
+  // 0: num requests
+  // 1: num requests that were hedged with another host because they were slow
+  // 2: num hedges that answered first
+  private final AtomicLongCollection hedgingCounters = new AtomicLongCollection(3, new long[]{0, 0, 0});
+  // Delay after which requests are hedged, derived from observed latencies. 0 until computed.
+  private volatile long hedgeDelayNanos = 0;
+  private final AtomicInteger numOutstandingRequests = new AtomicInteger(0);
+  // Exponentially weighted moving average of response times, stored as double bits. 0 until a response is received.
+  private final AtomicLong responseTimeEwmaNanosBits = new AtomicLong(Double.doubleToLongBits(0));
+
+  HostConnectionStatistics(long failureResponseTimeNanos) {
+    this.failureResponseTimeNanos = failureResponseTimeNanos;
+  }
+
+  void recordLatency(long durationNanos) {
+    updateResponseTimeEwma(durationNanos);
+  }
+
+  // Also record the latency used to compute hedge delays. Only called from the thread performing the connection's I/O.
+  void recordLatencyForHedging(long durationNanos) {
+    LatencyRecorder recorder = latencyRecorder;
+    if (recorder == null) {
+      recorder = new LatencyRecorder();
+      latencyRecorder = recorder;
+    }
+    recorder.record(durationNanos);
+    updateResponseTimeEwma(durationNanos);
+  }
+
+  // Failures count in the response time of the host as if they took at least the query timeout, so
+  // that both hosts timing out and hosts failing fast are avoided
+  void recordFailure(long durationNanos) {
+    long penaltyNanos = failureResponseTimeNanos;
+    if (penaltyNanos <= 0) {
+      penaltyNanos = (long)(FAILURE_RESPONSE_TIME_EWMA_MULTIPLIER * getResponseTimeEwmaNanos());
+    }
+    updateResponseTimeEwma(Math.max(durationNanos, penaltyNanos));
+  }
+
+  private void updateResponseTimeEwma(long durationNanos) {
+    long previousBits;
+    long newBits;
+    do {
+      previousBits = responseTimeEwmaNanosBits.get();
+      double previous = Double.longBitsToDouble(previousBits);
+      double ewma = previous == 0 ? durationNanos : previous + RESPONSE_TIME_EWMA_ALPHA * (durationNanos - previous);
+      newBits = Double.doubleToLongBits(ewma);
+    } while (!responseTimeEwmaNanosBits.compareAndSet(previousBits, newBits));
+  }
+
+  void onRequestStarted() {
+    numOutstandingRequests.incrementAndGet();
+  }
+
+  void onRequestFinished() {
+    numOutstandingRequests.decrementAndGet();
+  }
+
+  int getNumOutstandingRequests() {
+    return numOutstandingRequests.get();
+  }
+
+  double getResponseTimeEwmaNanos() {
+    return Double.longBitsToDouble(responseTimeEwmaNanosBits.get());
+  }
+
+  void onRequest() {
+    hedgingCounters.increment(1, 0, 0);
+  }
+
+  void onHedged() {
+    hedgingCounters.increment(0, 1, 0);
+  }
+
+  void onHedgeWon() {
+    hedgingCounters.increment(0, 0, 1);
+  }
+
+  // Null until a latency is recorded for hedging
+  LatencyRecorder getLatencyRecorder() {
+    return latencyRecorder;
+  }
+
+  // Return num requests, num hedged requests and num hedges won since the previous call
+  long[] getAndClearHedgingCounters() {
+    return hedgingCounters.getAsArrayAndSet(0, 0, 0);
+  }
+
+  long getHedgeDelayNanos() {
+    return hedgeDelayNanos;
+  }
+
+  void setHedgeDelayNanos(long hedgeDelayNanos) {
+    this.hedgeDelayNanos = hedgeDelayNanos;
+  }
+}
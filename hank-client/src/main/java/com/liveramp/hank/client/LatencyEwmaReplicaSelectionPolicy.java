@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.List;
+
+/**
+ * Use the serving host with the best score, computed from its moving average of response times and its
+ * outstanding requests as in the C3 algorithm: score = responseTime * (1 + outstandingRequests)^3.
+ * The cubic term penalizes hosts whose requests queue up faster than the moving average reacts, and
+ * keeps clients from all sending their requests to the host that was fastest recently. Hosts without
+ * any response time yet are assumed to be as fast as the fastest host.
+ */
+public class LatencyEwmaReplicaSelectionPolicy implements ReplicaSelectionPolicy {
+
+  @Override
+  public int selectHost(List<? extends Replica> replicas, int defaultHostIndex) {
+    int numReplicas = replicas.size();
+    double minResponseTime = Double.MAX_VALUE;
+    for (Replica replica : replicas) {
+      double responseTime = replica.getResponseTimeEwmaNanos();
+      if (responseTime > 0 && responseTime < minResponseTime) {
+        minResponseTime = responseTime;
+      }
+    }
+    if (minResponseTime == Double.MAX_VALUE) {
+      // Nothing is known yet, only outstanding requests matter
+      minResponseTime = 1;
+    }
+    int result = -1;
+    double bestScore = Double.MAX_VALUE;
+    // Start from the default host so that ties are broken in its favor
+    for (int i = 0; i < numReplicas; ++i) {
+      int hostIndex = (defaultHostIndex + i) % numReplicas;
+      Replica replica = replicas.get(hostIndex);
+      if (!replica.isServing()) {
+        continue;
+      }
+      double responseTime = replica.getResponseTimeEwmaNanos();
+      double score = getScore(responseTime > 0 ? responseTime : minResponseTime, replica.getNumOutstandingRequests());
+      if (score < bestScore) {
+        bestScore = score;
+        result = hostIndex;
+      }
+    }
+    return result < 0 ? defaultHostIndex : result;
+  }
+
+  static double getScore(double responseTimeNanos, int numOutstandingRequests) {
+    double queueSize = 1 + numOutstandingRequests;
+    return responseTimeNanos * queueSize * queueSize * queueSize;
+  }
+}
@@ -3,8 +3,11 @@ package com.liveramp.hank.client;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
@@ -81,6 +84,27 @@ public class MockHankSmartClient implements HankSmartClientIface {
     return result;
   }
 
+  @Override
+  public CompletableFuture<HankResponse> getAsync(String domainName, ByteBuffer key) {
+    return CompletableFuture.completedFuture(get(domainName, key));
+  }
+
+  @Override
+  public CompletableFuture<HankBulkResponse> getBulkAsync(String domainName, List<ByteBuffer> keys) {
+    return CompletableFuture.completedFuture(getBulk(domainName, keys));
+  }
+
+  @Override
+  public CompletableFuture<Void> getStreamAsync(String domainName,
+                                                Iterator<ByteBuffer> keys,
+                                                BiConsumer<ByteBuffer, HankResponse> responseConsumer) {
+    while (keys.hasNext()) {
+      ByteBuffer key = keys.next();
+      responseConsumer.accept(key, get(domainName, key));
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
   @Override
   public void stop() {
     // No-op
@@ -0,0 +1,248 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking connection that sends framed requests (a 4 byte big endian size followed by the
+ * payload) without waiting for previous responses. The server processes the frames of a
+ * connection one at a time and in order, so responses are matched to requests in FIFO order.
+ *
+ * Requests can be sent from any thread. All socket I/O is performed by the selector thread of
+ * the PipelinedConnectionManager, which also completes the futures: callers should not run
+ * blocking code in callbacks attached to them without switching to another executor.
+ *
+ * Any I/O error or timeout closes the connection and fails all its pending requests, since later
+ * responses could not be matched reliably anymore.
+ */
+public class PipelinedConnection {
+
+  private static final int FRAME_SIZE_NUM_BYTES = 4;
+  private static final int READ_BUFFER_SIZE = 64 << 10;
+
+  private static class Request {
+
+    private final ByteBuffer frame;
+    private final CompletableFuture<ByteBuffer> future;
+    // Absolute deadline in nanoseconds, Long.MAX_VALUE means no timeout
+    private final long deadlineNanos;
+
+    private Request(ByteBuffer frame, CompletableFuture<ByteBuffer> future, long deadlineNanos) {
+      this.frame = frame;
+      this.future = future;
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+
+  private final PipelinedConnectionManager manager;
+  private final SocketChannel channel;
+  private final String description;
+  private final int maxFrameSize;
+
+  // Requests waiting to be written, added by any thread
+  private final ConcurrentLinkedQueue<Request> outgoingRequests = new ConcurrentLinkedQueue<Request>();
+  private final AtomicInteger numPendingRequests = new AtomicInteger(0);
+  private final AtomicBoolean isWriteScheduled = new AtomicBoolean(false);
+  private volatile boolean isClosed = false;
+
+  // Only accessed by the selector thread
+  private final ArrayDeque<Request> inFlightRequests = new ArrayDeque<Request>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  private Request currentWrite;
+  private ByteBuffer currentFrame;
+  private SelectionKey selectionKey;
+
+  PipelinedConnection(PipelinedConnectionManager manager,
+                      SocketChannel channel,
+                      String description,
+                      int maxFrameSize) {
+    this.manager = manager;
+    this.channel = channel;
+    this.description = description;
+    this.maxFrameSize = maxFrameSize;
+  }
+
+  /**
+   * Send the given payload as a single frame. The returned future completes with the payload of
+   * the corresponding response frame.
+   *
+   * @param timeoutMs 0 means no timeout
+   */
+  public CompletableFuture<ByteBuffer> send(ByteBuffer payload, int timeoutMs) {
+    CompletableFuture<ByteBuffer> future = new CompletableFuture<ByteBuffer>();
+    if (isClosed) {
+      future.completeExceptionally(new IOException("Connection to " + description + " is closed."));
+      return future;
+    }
+    ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE_NUM_BYTES + payload.remaining());
+    frame.putInt(payload.remaining());
+    frame.put(payload.duplicate());
+    frame.flip();
+    long deadlineNanos = timeoutMs > 0 ? System.nanoTime() + timeoutMs * 1000000L : Long.MAX_VALUE;
+    numPendingRequests.incrementAndGet();
+    outgoingRequests.add(new Request(frame, future, deadlineNanos));
+    if (isClosed) {
+      // The connection was closed concurrently and might not have seen this request
+      failOutgoingRequests(new IOException("Connection to " + description + " is closed."));
+    } else if (isWriteScheduled.compareAndSet(false, true)) {
+      manager.scheduleWrite(this);
+    }
+    return future;
+  }
+
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  // Number of requests that have been sent but have not completed yet
+  public int getNumPendingRequests() {
+    return numPendingRequests.get();
+  }
+
+  public void close() {
+    manager.scheduleClose(this);
+  }
+
+  @Override
+  public String toString() {
+    return "PipelinedConnection{" +
+        "description='" + description + '\'' +
+        ", numPendingRequests=" + numPendingRequests +
+        ", isClosed=" + isClosed +
+        '}';
+  }
+
+  // The following methods are only called by the selector thread
+
+  SocketChannel getChannel() {
+    return channel;
+  }
+
+  void setSelectionKey(SelectionKey selectionKey) {
+    this.selectionKey = selectionKey;
+  }
+
+  void write() throws IOException {
+    isWriteScheduled.set(false);
+    while (true) {
+      if (currentWrite == null) {
+        currentWrite = outgoingRequests.poll();
+        if (currentWrite == null) {
+          break;
+        }
+        if (currentWrite.future.isDone()) {
+          // Cancelled before being written, the server will never see it
+          numPendingRequests.decrementAndGet();
+          currentWrite = null;
+          continue;
+        }
+        // Responses come back in the order requests are written
+        inFlightRequests.add(currentWrite);
+      }
+      channel.write(currentWrite.frame);
+      if (currentWrite.frame.hasRemaining()) {
+        // Socket buffer is full, wait until it is writable again
+        selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return;
+      }
+      currentWrite = null;
+    }
+    selectionKey.interestOps(SelectionKey.OP_READ);
+  }
+
+  void read() throws IOException {
+    if (channel.read(readBuffer) < 0) {
+      throw new EOFException("Connection closed by " + description);
+    }
+    readBuffer.flip();
+    while (true) {
+      if (currentFrame == null) {
+        if (readBuffer.remaining() < FRAME_SIZE_NUM_BYTES) {
+          break;
+        }
+        int frameSize = readBuffer.getInt();
+        if (frameSize < 0 || frameSize > maxFrameSize) {
+          throw new IOException("Invalid frame size " + frameSize + " received from " + description);
+        }
+        currentFrame = ByteBuffer.allocate(frameSize);
+      }
+      int numBytes = Math.min(currentFrame.remaining(), readBuffer.remaining());
+      ByteBuffer bytes = readBuffer.duplicate();
+      bytes.limit(bytes.position() + numBytes);
+      currentFrame.put(bytes);
+      readBuffer.position(readBuffer.position() + numBytes);
+      if (currentFrame.hasRemaining()) {
+        break;
+      }
+      currentFrame.flip();
+      Request request = inFlightRequests.poll();
+      if (request == null) {
+        throw new IOException("Received an unexpected response from " + description);
+      }
+      numPendingRequests.decrementAndGet();
+      request.future.complete(currentFrame);
+      currentFrame = null;
+    }
+    readBuffer.compact();
+  }
+
+  // Return true if the oldest pending request has exceeded its deadline
+  boolean hasTimedOut(long nowNanos) {
+    Request oldestRequest = inFlightRequests.peek();
+    if (oldestRequest == null) {
+      oldestRequest = outgoingRequests.peek();
+    }
+    return oldestRequest != null && oldestRequest.deadlineNanos - nowNanos < 0;
+  }
+
+  void closeAndFail(IOException cause) {
+    isClosed = true;
+    if (selectionKey != null) {
+      selectionKey.cancel();
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Ignore, the connection is being discarded
+    }
+    Request request;
+    while ((request = inFlightRequests.poll()) != null) {
+      numPendingRequests.decrementAndGet();
+      request.future.completeExceptionally(cause);
+    }
+    currentWrite = null;
+    failOutgoingRequests(cause);
+  }
+
+  private void failOutgoingRequests(IOException cause) {
+    Request request;
+    while ((request = outgoingRequests.poll()) != null) {
+      numPendingRequests.decrementAndGet();
+      request.future.completeExceptionally(cause);
+    }
+  }
+}
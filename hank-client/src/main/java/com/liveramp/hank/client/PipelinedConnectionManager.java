@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Performs the I/O of all the PipelinedConnections of a client with a single selector thread.
+ */
+public class PipelinedConnectionManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedConnectionManager.class);
+
+  // Upper bound on the time between two checks of request timeouts
+  private static final int SELECT_TIMEOUT_MS = 100;
+  private static final int DEFAULT_MAX_FRAME_SIZE = 256 << 20;
+
+  private final int maxFrameSize;
+  private final Selector selector;
+  private final Thread selectorThread;
+  private final Set<PipelinedConnection> connections = new HashSet<PipelinedConnection>();
+
+  private final ConcurrentLinkedQueue<PipelinedConnection> pendingRegistrations = new ConcurrentLinkedQueue<PipelinedConnection>();
+  private final ConcurrentLinkedQueue<PipelinedConnection> pendingWrites = new ConcurrentLinkedQueue<PipelinedConnection>();
+  private final ConcurrentLinkedQueue<PipelinedConnection> pendingCloses = new ConcurrentLinkedQueue<PipelinedConnection>();
+  private volatile boolean isShutDown = false;
+
+  public PipelinedConnectionManager() throws IOException {
+    this(DEFAULT_MAX_FRAME_SIZE);
+  }
+
+  public PipelinedConnectionManager(int maxFrameSize) throws IOException {
+    this.maxFrameSize = maxFrameSize;
+    this.selector = Selector.open();
+    this.selectorThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runSelectorLoop();
+      }
+    }, "Pipelined Connection Selector");
+    this.selectorThread.setDaemon(true);
+    this.selectorThread.start();
+  }
+
+  /**
+   * Open a connection to the given address. Establishing the connection is blocking.
+   *
+   * @param establishConnectionTimeoutMs 0 means no timeout
+   */
+  public PipelinedConnection connect(String hostName, int portNumber, int establishConnectionTimeoutMs) throws IOException {
+    if (isShutDown) {
+      throw new IOException("Pipelined connection manager is shut down.");
+    }
+    SocketChannel channel = SocketChannel.open();
+    try {
+      channel.socket().setTcpNoDelay(true);
+      channel.socket().connect(new InetSocketAddress(hostName, portNumber), establishConnectionTimeoutMs);
+      channel.configureBlocking(false);
+    } catch (SocketTimeoutException e) {
+      channel.close();
+      throw new IOException("Timed out while connecting to " + hostName + ":" + portNumber, e);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    PipelinedConnection connection = new PipelinedConnection(this, channel, hostName + ":" + portNumber, maxFrameSize);
+    pendingRegistrations.add(connection);
+    if (isShutDown && pendingRegistrations.remove(connection)) {
+      // The selector thread might have stopped before seeing this connection
+      connection.closeAndFail(new IOException("Pipelined connection manager is shut down."));
+    }
+    selector.wakeup();
+    return connection;
+  }
+
+  public void shutDown() {
+    isShutDown = true;
+    selector.wakeup();
+    try {
+      selectorThread.join();
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted while waiting for the selector thread to stop", e);
+    }
+  }
+
+  void scheduleWrite(PipelinedConnection connection) {
+    pendingWrites.add(connection);
+    selector.wakeup();
+  }
+
+  void scheduleClose(PipelinedConnection connection) {
+    pendingCloses.add(connection);
+    selector.wakeup();
+  }
+
+  private void runSelectorLoop() {
+    try {
+      while (!isShutDown) {
+        processPendingOperations();
+        selector.select(SELECT_TIMEOUT_MS);
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+          SelectionKey key = iterator.next();
+          iterator.remove();
+          PipelinedConnection connection = (PipelinedConnection)key.attachment();
+          try {
+            if (key.isValid() && key.isReadable()) {
+              connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.write();
+            }
+          } catch (IOException e) {
+            close(connection, e);
+          }
+        }
+        checkTimeouts();
+      }
+    } catch (Throwable t) {
+      LOG.error("Pipelined connection selector loop failed", t);
+    } finally {
+      IOException cause = new IOException("Pipelined connection manager is shut down.");
+      for (PipelinedConnection connection : connections) {
+        connection.closeAndFail(cause);
+      }
+      connections.clear();
+      // Connections that were never registered
+      processPendingOperations();
+      try {
+        selector.close();
+      } catch (IOException e) {
+        LOG.error("Failed to close selector", e);
+      }
+    }
+  }
+
+  private void processPendingOperations() {
+    PipelinedConnection connection;
+    while ((connection = pendingRegistrations.poll()) != null) {
+      if (isShutDown) {
+        connection.closeAndFail(new IOException("Pipelined connection manager is shut down."));
+        continue;
+      }
+      try {
+        connection.setSelectionKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+        connections.add(connection);
+        // Requests might have been sent before registration
+        connection.write();
+      } catch (ClosedChannelException e) {
+        close(connection, e);
+      } catch (IOException e) {
+        close(connection, e);
+      }
+    }
+    while ((connection = pendingWrites.poll()) != null) {
+      if (connections.contains(connection)) {
+        try {
+          connection.write();
+        } catch (IOException e) {
+          close(connection, e);
+        }
+      }
+    }
+    while ((connection = pendingCloses.poll()) != null) {
+      close(connection, new IOException("Connection closed."));
+    }
+  }
+
+  private void checkTimeouts() {
+    long now = System.nanoTime();
+    Iterator<PipelinedConnection> iterator = connections.iterator();
+    while (iterator.hasNext()) {
+      PipelinedConnection connection = iterator.next();
+      if (connection.hasTimedOut(now)) {
+        iterator.remove();
+        connection.closeAndFail(new IOException("Request timed out on " + connection));
+      }
+    }
+  }
+
+  private void close(PipelinedConnection connection, IOException cause) {
+    connections.remove(connection);
+    connection.closeAndFail(cause);
+  }
+}
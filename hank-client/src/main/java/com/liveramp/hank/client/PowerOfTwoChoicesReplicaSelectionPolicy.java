@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pick two serving hosts at random and use the one with the fewest outstanding requests. This avoids
+ * slow hosts, whose requests pile up, without all clients herding to the same least loaded host.
+ */
+public class PowerOfTwoChoicesReplicaSelectionPolicy implements ReplicaSelectionPolicy {
+
+  // Null to use the current thread's random number generator
+  private final Random random;
+
+  public PowerOfTwoChoicesReplicaSelectionPolicy() {
+    this(null);
+  }
+
+  // A seeded random number generator makes the selection reproducible, e.g. in simulations
+  public PowerOfTwoChoicesReplicaSelectionPolicy(Random random) {
+    this.random = random;
+  }
+
+  @Override
+  public int selectHost(List<? extends Replica> replicas, int defaultHostIndex) {
+    Random random = this.random == null ? ThreadLocalRandom.current() : this.random;
+    int numReplicas = replicas.size();
+    int first = random.nextInt(numReplicas);
+    int second = (first + 1 + random.nextInt(numReplicas - 1)) % numReplicas;
+    Replica firstReplica = replicas.get(first);
+    Replica secondReplica = replicas.get(second);
+    if (!firstReplica.isServing() || !secondReplica.isServing()) {
+      // Let the default order skip hosts that are not serving
+      return defaultHostIndex;
+    }
+    if (secondReplica.getNumOutstandingRequests() < firstReplica.getNumOutstandingRequests()) {
+      return second;
+    } else {
+      return first;
+    }
+  }
+}
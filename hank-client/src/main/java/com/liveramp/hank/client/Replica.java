@@ -0,0 +1,36 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import com.liveramp.hank.coordinator.Host;
+
+/**
+ * View of a host serving a partition, and of the requests sent to it through all connections of the
+ * client, as seen by a ReplicaSelectionPolicy.
+ */
+public interface Replica {
+
+  public Host getHost();
+
+  public boolean isServing();
+
+  // Number of requests sent to the host and not answered yet
+  public int getNumOutstandingRequests();
+
+  // Exponentially weighted moving average of the response times of the host, including failures. 0 if unknown.
+  public double getResponseTimeEwmaNanos();
+}
@@ -0,0 +1,35 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.List;
+
+/**
+ * Selects the host a GET request is sent to first among the hosts serving its partition. If the
+ * request fails, the following hosts are tried in order. Preferred hosts are always considered before
+ * other hosts, the policy is applied to each group separately. Implementations are shared by all
+ * connection pools of a client and must be thread safe.
+ */
+public interface ReplicaSelectionPolicy {
+
+  /**
+   * @param replicas         hosts to choose from, at least two
+   * @param defaultHostIndex host that would be used by round robin, or based on the key hash when known
+   * @return index of the host to use in replicas
+   */
+  public int selectHost(List<? extends Replica> replicas, int defaultHostIndex);
+}
@@ -0,0 +1,198 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.commons.util.MemoryUsageEstimator;
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.util.HankResponseMemoryUsageEstimator;
+import com.liveramp.hank.util.SynchronizedMemoryBoundCacheExpiring;
+
+/**
+ * Cache of the responses of GET requests, expiring entries after a period of time. When version aware,
+ * entries are also tagged with the versions of their domain when they were requested: the version
+ * assigned by the domain group and the versions served by hosts. When these versions change, all
+ * entries of the domain are invalidated at once by replacing its tag, so that long expiration periods
+ * can be used without serving responses of previous versions.
+ */
+class ResponseCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+
+  private final SynchronizedMemoryBoundCacheExpiring<DomainAndKey, VersionedResponse> cache;
+  private final boolean versionAware;
+  // Current versions of each domain. Tags are compared by identity.
+  private final ConcurrentMap<Integer, DomainVersions> domainIdToVersions = new ConcurrentHashMap<Integer, DomainVersions>();
+
+  ResponseCache(boolean isEnabled,
+                long numBytesCapacity,
+                int numItemsCapacity,
+                long expirationPeriodSeconds,
+                boolean versionAware) {
+    this.cache = new SynchronizedMemoryBoundCacheExpiring<DomainAndKey, VersionedResponse>(
+        isEnabled,
+        numBytesCapacity,
+        numItemsCapacity,
+        expirationPeriodSeconds,
+        new DomainAndKey.DomainAndKeyMemoryUsageEstimator(),
+        new VersionedResponseMemoryUsageEstimator());
+    this.versionAware = versionAware;
+  }
+
+  boolean isEnabled() {
+    return cache.isEnabled();
+  }
+
+  boolean isVersionAware() {
+    return versionAware;
+  }
+
+  HankResponse get(Domain domain, ByteBuffer key) {
+    VersionedResponse cachedResponse = cache.get(new DomainAndKey(domain, key));
+    if (cachedResponse == null) {
+      return null;
+    }
+    // Invalidated entries are replaced when the key is cached again, or evicted
+    if (versionAware && cachedResponse.versions != domainIdToVersions.get(domain.getId())) {
+      return null;
+    }
+    return cachedResponse.response;
+  }
+
+  // Return the tag to cache a response with. It should be obtained before the request is sent, so that
+  // responses to requests that were in flight while versions changed are not cached.
+  Object getVersions(Domain domain) {
+    if (!versionAware || !isEnabled()) {
+      return null;
+    }
+    return domainIdToVersions.get(domain.getId());
+  }
+
+  // Cache response if necessary, do not cache exceptions
+  void put(Domain domain, ByteBuffer key, HankResponse response, Object versions) {
+    if (!isEnabled() || !(response.is_set_not_found() || response.is_set_value())) {
+      return;
+    }
+    if (versionAware && (versions == null || versions != domainIdToVersions.get(domain.getId()))) {
+      return;
+    }
+    cache.put(
+        new DomainAndKey(domain, BytesUtils.byteBufferDeepCopy(key)),
+        new VersionedResponse(response.deepCopy(), (DomainVersions)versions));
+  }
+
+  // Set the current versions of all domains, invalidating entries of the domains whose versions changed
+  void setDomainVersions(Map<Integer, DomainVersions> newDomainIdToVersions) {
+    if (!versionAware || !isEnabled()) {
+      return;
+    }
+    for (Map.Entry<Integer, DomainVersions> entry : newDomainIdToVersions.entrySet()) {
+      DomainVersions previousVersions = domainIdToVersions.get(entry.getKey());
+      if (!entry.getValue().equals(previousVersions)) {
+        if (previousVersions != null) {
+          LOG.info("Invalidating cached responses of domain " + entry.getKey()
+              + ", versions changed from " + previousVersions + " to " + entry.getValue());
+        }
+        domainIdToVersions.put(entry.getKey(), entry.getValue());
+      }
+    }
+    // Domains that are not served anymore
+    domainIdToVersions.keySet().retainAll(newDomainIdToVersions.keySet());
+  }
+
+  int size() {
+    return cache.size();
+  }
+
+  long getNumManagedBytes() {
+    return cache.getNumManagedBytes();
+  }
+
+  static class DomainVersions {
+
+    // Version assigned by the domain group, null if unknown
+    private final Integer domainGroupVersion;
+    // Versions of the partitions currently served by hosts
+    private final SortedSet<Integer> servedVersions;
+
+    DomainVersions(Integer domainGroupVersion, SortedSet<Integer> servedVersions) {
+      this.domainGroupVersion = domainGroupVersion;
+      this.servedVersions = servedVersions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      DomainVersions that = (DomainVersions)o;
+
+      if (domainGroupVersion != null ? !domainGroupVersion.equals(that.domainGroupVersion) : that.domainGroupVersion != null) {
+        return false;
+      }
+      return servedVersions.equals(that.servedVersions);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = domainGroupVersion != null ? domainGroupVersion.hashCode() : 0;
+      result = 31 * result + servedVersions.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "DomainVersions [domainGroupVersion=" + domainGroupVersion + ", servedVersions=" + servedVersions + "]";
+    }
+  }
+
+  private static class VersionedResponse {
+
+    private final HankResponse response;
+    // Null when the cache is not version aware
+    private final DomainVersions versions;
+
+    private VersionedResponse(HankResponse response, DomainVersions versions) {
+      this.response = response;
+      this.versions = versions;
+    }
+  }
+
+  private static class VersionedResponseMemoryUsageEstimator implements MemoryUsageEstimator<VersionedResponse> {
+
+    private final HankResponseMemoryUsageEstimator responseEstimator = new HankResponseMemoryUsageEstimator();
+
+    @Override
+    public long estimateMemorySize(VersionedResponse item) {
+      return responseEstimator.estimateMemorySize(item.response);
+    }
+  }
+}
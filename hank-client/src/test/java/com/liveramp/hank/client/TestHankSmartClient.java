@@ -20,9 +20,12 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Sets;
 import org.apache.thrift.protocol.TCompactProtocol;
@@ -85,7 +88,6 @@ public class TestHankSmartClient extends BaseTestCase {
 
   private static class MockPartitionServerHandler implements PartitionServer.Iface {
     private final HankResponse response;
-    private final HankBulkResponse bulkResponse;
     private Mode mode = Mode.NORMAL;
     private int numRequests = 0;
 
@@ -98,13 +100,10 @@ public class TestHankSmartClient extends BaseTestCase {
 
     public MockPartitionServerHandler(ByteBuffer result) {
       this.response = HankResponse.value(result);
-      List<HankResponse> responses = new ArrayList<HankResponse>();
-      responses.add(HankResponse.value(result));
-      this.bulkResponse = HankBulkResponse.responses(responses);
     }
 
     @Override
-    public HankResponse get(int domainId, ByteBuffer key) {
+    public HankResponse get(int domainId, ByteBuffer key, ByteBuffer keyHash) {
       applyMode();
       ++numRequests;
       if (key.equals(KEY_NOT_FOUND)) {
@@ -118,7 +117,15 @@ public class TestHankSmartClient extends BaseTestCase {
     public HankBulkResponse getBulk(int domainId, List<ByteBuffer> keys) {
       applyMode();
       numRequests += keys.size();
-      return bulkResponse;
+      List<HankResponse> responses = new ArrayList<HankResponse>();
+      for (ByteBuffer key : keys) {
+        if (key.equals(KEY_NOT_FOUND)) {
+          responses.add(HankResponse.not_found(true));
+        } else {
+          responses.add(response);
+        }
+      }
+      return HankBulkResponse.responses(responses);
     }
 
     public int getNumRequests() {
@@ -192,8 +199,9 @@ public class TestHankSmartClient extends BaseTestCase {
     final MockDomain newDomain = new MockDomain("new_domain", 1, 1,
         new MapPartitioner(KEY_3, 0), null, null, null);
 
+    final MockHostDomainPartition host1Partition = new MockHostDomainPartition(0, 1);
     final Host host1 = getHost(existentDomain, new PartitionServerAddress("localhost",
-        server1Port), 0);
+        server1Port), host1Partition);
     final Host host2 = getHost(existentDomain, new PartitionServerAddress("localhost",
         server2Port), 1);
     final Host host3 = getHost(newDomain, new PartitionServerAddress("localhost",
@@ -254,6 +262,13 @@ public class TestHankSmartClient extends BaseTestCase {
               .setResponseCacheNumItemsCapacity(1)
               .setResponseCacheNumBytesCapacity(-1)
               .setResponseCacheExpirationSeconds(1));
+      final HankSmartClient versionAwareCachingClient = new HankSmartClient(mockCoord, "myRingGroup",
+          new HankSmartClientOptions()
+              .setResponseCacheEnabled(true)
+              .setResponseCacheNumItemsCapacity(10)
+              .setResponseCacheNumBytesCapacity(-1)
+              .setResponseCacheExpirationSeconds(3600)
+              .setResponseCacheVersionAware(true));
 
       // Test invalid get
       assertEquals(HankResponse.xception(HankException.no_such_domain(true)), client.get("nonexistent_domain", null));
@@ -274,6 +289,52 @@ public class TestHankSmartClient extends BaseTestCase {
       bulkRequest1.add(KEY_2);
       assertEquals(bulkResponse1, client.getBulk("existent_domain", bulkRequest1));
 
+      // Test getBulk with keys grouped by host
+      iface1.clearNumRequests();
+      iface2.clearNumRequests();
+      HankBulkResponse bulkResponse2 = HankBulkResponse.responses(new ArrayList<>());
+      bulkResponse2.get_responses().add(HankResponse.value(VALUE_1));
+      bulkResponse2.get_responses().add(HankResponse.value(VALUE_2));
+      bulkResponse2.get_responses().add(HankResponse.not_found(true));
+      List<ByteBuffer> bulkRequest2 = new ArrayList<>();
+      bulkRequest2.add(KEY_1);
+      bulkRequest2.add(KEY_2);
+      bulkRequest2.add(KEY_NOT_FOUND);
+      assertEquals(bulkResponse2, client.getBulk("existent_domain", bulkRequest2));
+      assertEquals(2, iface1.getNumRequests());
+      assertEquals(1, iface2.getNumRequests());
+
+      // Test asynchronous API, with a window smaller than the number of keys
+      final HankSmartClient pipelinedClient = new HankSmartClient(mockCoord, "myRingGroup",
+          new HankSmartClientOptions()
+              .setQueryTimeoutMs(1000)
+              .setPipelinedConnectionsEnabled(true)
+              .setAsyncMaxNumInFlightRequests(2));
+      try {
+        assertEquals(HankResponse.xception(HankException.no_such_domain(true)),
+            pipelinedClient.getAsync("nonexistent_domain", KEY_1).get());
+        assertEquals(HankResponse.value(VALUE_1), pipelinedClient.getAsync("existent_domain", KEY_1).get());
+        assertEquals(HankResponse.value(VALUE_2), pipelinedClient.getAsync("existent_domain", KEY_2).get());
+        assertEquals(bulkResponse2, pipelinedClient.getBulkAsync("existent_domain", bulkRequest2).get());
+
+        final Map<ByteBuffer, HankResponse> expectedResponses = new HashMap<>();
+        expectedResponses.put(KEY_1, HankResponse.value(VALUE_1));
+        expectedResponses.put(KEY_2, HankResponse.value(VALUE_2));
+        expectedResponses.put(KEY_NOT_FOUND, HankResponse.not_found(true));
+        List<ByteBuffer> streamKeys = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+          streamKeys.addAll(bulkRequest2);
+        }
+        final AtomicInteger numStreamResponses = new AtomicInteger(0);
+        pipelinedClient.getStreamAsync("existent_domain", streamKeys.iterator(), (key, response) -> {
+          assertEquals(expectedResponses.get(key), response);
+          numStreamResponses.incrementAndGet();
+        }).get();
+        assertEquals(streamKeys.size(), numStreamResponses.get());
+      } finally {
+        pipelinedClient.stop();
+      }
+
       // Test get with null key
       try {
         client.get("existent_domain", null);
@@ -325,6 +386,9 @@ public class TestHankSmartClient extends BaseTestCase {
 
       assertTrue(client.get("existent_domain", KEY_1).get_xception().get_failed_retries() > 0);
       assertTrue(client.get("existent_domain", KEY_2).get_xception().get_failed_retries() > 0);
+      for (HankResponse response : client.getBulk("existent_domain", bulkRequest1).get_responses()) {
+        assertTrue(response.get_xception().get_failed_retries() > 0);
+      }
 
       // Simulate servers that throws an error
       iface1.setMode(MockPartitionServerHandler.Mode.THROWING_ERROR);
@@ -372,6 +436,24 @@ public class TestHankSmartClient extends BaseTestCase {
       assertEquals(HankResponse.not_found(true), cachingClient.get("existent_domain", KEY_NOT_FOUND));
       assertEquals(2, iface1.getNumRequests());
 
+      // Test version aware caching
+      iface1.clearNumRequests();
+
+      assertEquals(HankResponse.value(VALUE_1), versionAwareCachingClient.get("existent_domain", KEY_1));
+      assertEquals(HankResponse.value(VALUE_1), versionAwareCachingClient.get("existent_domain", KEY_1));
+      assertEquals(1, iface1.getNumRequests());
+
+      // Hot swapping a partition to a new version invalidates the cached responses of its domain
+      host1Partition.setCurrentDomainVersion(2);
+      versionAwareCachingClient.onDataLocationChange(mockRingGroup);
+      WaitUntil.orDie(() -> {
+        assertEquals(HankResponse.value(VALUE_1), versionAwareCachingClient.get("existent_domain", KEY_1));
+        return iface1.getNumRequests() == 2;
+      });
+      assertEquals(HankResponse.value(VALUE_1), versionAwareCachingClient.get("existent_domain", KEY_1));
+      assertEquals(2, iface1.getNumRequests());
+      versionAwareCachingClient.stop();
+
     } finally {
       server1.stop();
       server2.stop();
@@ -413,6 +495,11 @@ public class TestHankSmartClient extends BaseTestCase {
 
   private Host getHost(final Domain domain, PartitionServerAddress address, final int partNum)
       throws IOException {
+    return getHost(domain, address, new MockHostDomainPartition(partNum, 1));
+  }
+
+  private Host getHost(final Domain domain, PartitionServerAddress address, final HostDomainPartition partition)
+      throws IOException {
     MockHost hc = new MockHost(address) {
       @Override
       public Set<HostDomain> getAssignedDomains() throws IOException {
@@ -424,9 +511,7 @@ public class TestHankSmartClient extends BaseTestCase {
 
           @Override
           public Set<HostDomainPartition> getPartitions() {
-            return Collections
-                .singleton(new MockHostDomainPartition(
-                    partNum, 1));
+            return Collections.singleton(partition);
           }
         });
       }
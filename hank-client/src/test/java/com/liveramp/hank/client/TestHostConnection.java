@@ -19,8 +19,10 @@ package com.liveramp.hank.client;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 import org.apache.thrift.protocol.TCompactProtocol;
@@ -45,6 +47,7 @@ import com.liveramp.hank.test.coordinator.MockHost;
 import com.liveramp.hank.util.HankTimer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -66,7 +69,7 @@ public class TestHostConnection extends BaseTestCase {
     }
 
     @Override
-    public HankResponse get(int domain_id, ByteBuffer key) {
+    public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) {
       return RESPONSE_1;
     }
 
@@ -148,7 +151,7 @@ public class TestHostConnection extends BaseTestCase {
       }
 
       @Override
-      public HankResponse get(int domain_id, ByteBuffer key) {
+      public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) {
         try {
           Thread.sleep(1000);
         } catch (InterruptedException e) {
@@ -244,6 +247,105 @@ public class TestHostConnection extends BaseTestCase {
     }
   }
 
+  @Test
+  public void testPipelinedGets() throws Exception {
+    mockHost.setState(HostState.SERVING);
+
+    IfaceWithShutdown echoIface = new IfaceWithShutdown() {
+      @Override
+      public void shutDown() throws InterruptedException {
+      }
+
+      @Override
+      public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) {
+        return HankResponse.value(key);
+      }
+
+      @Override
+      public HankBulkResponse getBulk(int domain_id, List<ByteBuffer> keys) {
+        List<HankResponse> responses = new ArrayList<HankResponse>();
+        for (ByteBuffer key : keys) {
+          responses.add(HankResponse.value(key));
+        }
+        return HankBulkResponse.responses(responses);
+      }
+    };
+    startMockPartitionServerThread(echoIface, 1);
+
+    PipelinedConnectionManager pipelinedConnectionManager = new PipelinedConnectionManager();
+    try {
+      HostConnection connection = new HostConnection(mockHost, 1000, 1000, 1000, 1000, pipelinedConnectionManager);
+      // Send many requests without waiting for responses
+      List<CompletableFuture<HankResponse>> futures = new ArrayList<CompletableFuture<HankResponse>>();
+      for (int i = 0; i < 100; ++i) {
+        futures.add(connection.getAsync(0, ByteBuffer.wrap(Integer.toString(i).getBytes())));
+      }
+      for (int i = 0; i < 100; ++i) {
+        assertEquals(HankResponse.value(ByteBuffer.wrap(Integer.toString(i).getBytes())), futures.get(i).get());
+      }
+      assertEquals(HankBulkResponse.responses(Collections.singletonList(RESPONSE_1)),
+          connection.getBulkAsync(0, Collections.singletonList(KEY_1)).get());
+      // Blocking requests use the same connection
+      assertEquals(RESPONSE_1, connection.get(0, KEY_1));
+      assertFalse(connection.isLocked());
+
+      // Requests fail once the server is gone, and the connection is reopened afterwards
+      mockPartitionServer.stop();
+      mockPartitionServerThread.join();
+      try {
+        connection.get(0, KEY_1);
+        fail("Should fail");
+      } catch (IOException e) {
+        // Expected
+      }
+      startMockPartitionServerThread(echoIface, 1);
+      assertEquals(RESPONSE_1, connection.get(0, KEY_1));
+    } finally {
+      pipelinedConnectionManager.shutDown();
+    }
+  }
+
+  @Test
+  public void testPipelinedGetTimeout() throws Exception {
+    mockHost.setState(HostState.SERVING);
+
+    IfaceWithShutdown hangingIface = new IfaceWithShutdown() {
+      @Override
+      public void shutDown() throws InterruptedException {
+      }
+
+      @Override
+      public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) {
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        return RESPONSE_1;
+      }
+
+      @Override
+      public HankBulkResponse getBulk(int domain_id, List<ByteBuffer> keys) {
+        return RESPONSE_BULK_1;
+      }
+    };
+    startMockPartitionServerThread(hangingIface, 1);
+
+    PipelinedConnectionManager pipelinedConnectionManager = new PipelinedConnectionManager();
+    try {
+      HostConnection connection = new HostConnection(mockHost, 1000, 1000, 100, 1000, pipelinedConnectionManager);
+      HankTimer timer = new HankTimer();
+      try {
+        connection.get(0, KEY_1);
+        fail("Should fail");
+      } catch (IOException e) {
+        assertTrue(timer.getDuration() / 1000000L < 1000);
+      }
+    } finally {
+      pipelinedConnectionManager.shutDown();
+    }
+  }
+
   public static class MockPartitionServer implements Runnable {
 
     private final IfaceWithShutdown handler;
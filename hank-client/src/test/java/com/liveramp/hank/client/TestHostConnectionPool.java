@@ -92,7 +92,7 @@ public class TestHostConnectionPool extends BaseTestCase {
     }
 
     @Override
-    public HankResponse get(int domain_id, ByteBuffer key) {
+    public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) {
       ++numGets;
       HankResponse result = getCore(domain_id, key);
       ++numCompletedGets;
@@ -660,6 +660,101 @@ public class TestHostConnectionPool extends BaseTestCase {
     }
   }
 
+  @Test
+  public void testHedgedRequests() throws Exception {
+
+    Semaphore semaphore = new Semaphore(0);
+    MockIface iface1 = new HangingIface(semaphore);
+    MockIface iface2 = new Response1Iface();
+
+    startMockPartitionServerThread1(iface1, 1);
+    startMockPartitionServerThread2(iface2, 1);
+
+    PipelinedConnectionManager pipelinedConnectionManager = new PipelinedConnectionManager();
+    HedgedRequests hedgedRequests = new HedgedRequests(50, 0, () -> Collections.emptyList());
+    try {
+      // Query timeout is long enough that only hedging can answer requests sent to the hanging host
+      HostConnection connection1 = new HostConnection(mockHost1, 0, 0, 10000, 0, pipelinedConnectionManager);
+      HostConnection connection2 = new HostConnection(mockHost2, 0, 0, 10000, 0, pipelinedConnectionManager);
+      Map<Host, List<HostConnection>> hostToConnectionsMap = new HashMap<Host, List<HostConnection>>();
+      hostToConnectionsMap.put(mockHost1, Collections.singletonList(connection1));
+      hostToConnectionsMap.put(mockHost2, Collections.singletonList(connection2));
+
+      HostConnectionPool hostConnectionPool = new HostConnectionPool(hostToConnectionsMap, null, Sets.newHashSet());
+
+      mockHost1.setState(HostState.SERVING);
+      mockHost2.setState(HostState.SERVING);
+
+      for (int i = 0; i < 10; ++i) {
+        assertEquals(RESPONSE_1, hostConnectionPool.getAsync(mockDomain, KEY_1, 1, null, Runnable::run, hedgedRequests).get());
+      }
+      assertEquals("Host 2 should have served all requests", 10, iface2.numGets);
+
+      long[] hedgingCounters1 = connection1.getStatistics().getAndClearHedgingCounters();
+      assertTrue("Host 1 should have been queried", hedgingCounters1[0] > 0);
+      assertEquals("All requests to host 1 should have been hedged", hedgingCounters1[0], hedgingCounters1[1]);
+      assertEquals("All hedges should have won", hedgingCounters1[1], hedgingCounters1[2]);
+      assertEquals("No request to host 2 should have been hedged", 0, connection2.getStatistics().getAndClearHedgingCounters()[1]);
+    } finally {
+      semaphore.release(10);
+      hedgedRequests.shutDown();
+      pipelinedConnectionManager.shutDown();
+    }
+  }
+
+  @Test
+  public void testReplicaSelectionPolicy() throws IOException, InterruptedException {
+
+    MockIface iface1 = new Response1Iface();
+    MockIface iface2 = new Response1Iface();
+
+    startMockPartitionServerThread1(iface1, 1);
+    startMockPartitionServerThread2(iface2, 1);
+
+    Map<Host, List<HostConnection>> hostToConnectionsMap = new HashMap<Host, List<HostConnection>>();
+    HostConnection connection1 = new HostConnection(mockHost1, 0, 0, 0, 0);
+    HostConnection connection2 = new HostConnection(mockHost2, 0, 0, 0, 0);
+    hostToConnectionsMap.put(mockHost1, Collections.singletonList(connection1));
+    hostToConnectionsMap.put(mockHost2, Collections.singletonList(connection2));
+
+    // Always select host 2
+    ReplicaSelectionPolicy policy = new ReplicaSelectionPolicy() {
+      @Override
+      public int selectHost(List<? extends Replica> replicas, int defaultHostIndex) {
+        for (int i = 0; i < replicas.size(); ++i) {
+          if (replicas.get(i).getHost().equals(mockHost2)) {
+            return i;
+          }
+        }
+        return defaultHostIndex;
+      }
+    };
+    HostConnectionPool hostConnectionPool = new HostConnectionPool(hostToConnectionsMap, null, Sets.newHashSet(), policy);
+
+    mockHost1.setState(HostState.SERVING);
+    mockHost2.setState(HostState.SERVING);
+
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(RESPONSE_1, hostConnectionPool.get(mockDomain, KEY_1, 1, null));
+    }
+    assertEquals("Selected host should receive all queries", 0, iface1.numGets);
+    assertEquals("Selected host should receive all queries", 10, iface2.numGets);
+    assertEquals(0, connection2.getStatistics().getNumOutstandingRequests());
+    assertTrue(connection2.getStatistics().getResponseTimeEwmaNanos() > 0);
+
+    iface1.clearCounts();
+    iface2.clearCounts();
+
+    // Selected host is not serving, the next one is used
+    mockHost2.setState(HostState.OFFLINE);
+
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(RESPONSE_1, hostConnectionPool.get(mockDomain, KEY_1, 1, null));
+    }
+    assertEquals("Online host should receive all queries", 10, iface1.numGets);
+    assertEquals("Offline host should receive no query", 0, iface2.numGets);
+  }
+
   private static void stopPartitionServer(TestHostConnection.MockPartitionServer mockPartitionServer, Thread mockPartitionServerThread) throws InterruptedException {
     if (mockPartitionServer != null) {
       LOG.info("Stopping partition server...");
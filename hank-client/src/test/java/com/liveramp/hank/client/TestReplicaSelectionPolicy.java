@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.liveramp.hank.coordinator.Host;
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestReplicaSelectionPolicy extends BaseTestCase {
+
+  private static class MockReplica implements Replica {
+
+    private final boolean serving;
+    private final int numOutstandingRequests;
+    private final double responseTimeEwmaNanos;
+
+    private MockReplica(boolean serving, int numOutstandingRequests, double responseTimeEwmaNanos) {
+      this.serving = serving;
+      this.numOutstandingRequests = numOutstandingRequests;
+      this.responseTimeEwmaNanos = responseTimeEwmaNanos;
+    }
+
+    @Override
+    public Host getHost() {
+      return null;
+    }
+
+    @Override
+    public boolean isServing() {
+      return serving;
+    }
+
+    @Override
+    public int getNumOutstandingRequests() {
+      return numOutstandingRequests;
+    }
+
+    @Override
+    public double getResponseTimeEwmaNanos() {
+      return responseTimeEwmaNanos;
+    }
+  }
+
+  @Test
+  public void testRoundRobin() {
+    List<MockReplica> replicas = Arrays.asList(
+        new MockReplica(true, 0, 1000),
+        new MockReplica(true, 100, 1000000));
+    ReplicaSelectionPolicy policy = new RoundRobinReplicaSelectionPolicy();
+    assertEquals(0, policy.selectHost(replicas, 0));
+    assertEquals(1, policy.selectHost(replicas, 1));
+  }
+
+  @Test
+  public void testPowerOfTwoChoices() {
+    ReplicaSelectionPolicy policy = new PowerOfTwoChoicesReplicaSelectionPolicy();
+
+    // With two hosts, both are always compared
+    List<MockReplica> replicas = Arrays.asList(
+        new MockReplica(true, 10, 1000),
+        new MockReplica(true, 2, 1000));
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(1, policy.selectHost(replicas, 0));
+    }
+
+    // The most loaded host is never selected
+    replicas = Arrays.asList(
+        new MockReplica(true, 1, 1000),
+        new MockReplica(true, 50, 1000),
+        new MockReplica(true, 2, 1000));
+    for (int i = 0; i < 100; ++i) {
+      int hostIndex = policy.selectHost(replicas, 1);
+      assertTrue(hostIndex == 0 || hostIndex == 2);
+    }
+
+    // Hosts that are not serving are left to the default order
+    replicas = Arrays.asList(
+        new MockReplica(false, 0, 1000),
+        new MockReplica(true, 10, 1000));
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(1, policy.selectHost(replicas, 1));
+    }
+  }
+
+  @Test
+  public void testLatencyEwma() {
+    ReplicaSelectionPolicy policy = new LatencyEwmaReplicaSelectionPolicy();
+
+    // Slow host is avoided
+    List<MockReplica> replicas = Arrays.asList(
+        new MockReplica(true, 0, 1000),
+        new MockReplica(true, 0, 10000),
+        new MockReplica(true, 0, 2000));
+    assertEquals(0, policy.selectHost(replicas, 1));
+
+    // Fast host with queued requests is avoided
+    replicas = Arrays.asList(
+        new MockReplica(true, 3, 1000),
+        new MockReplica(true, 0, 10000),
+        new MockReplica(true, 0, 2000));
+    assertEquals(2, policy.selectHost(replicas, 1));
+
+    // Hosts without response times are assumed to be as fast as the fastest
+    replicas = Arrays.asList(
+        new MockReplica(true, 1, 1000),
+        new MockReplica(true, 0, 0));
+    assertEquals(1, policy.selectHost(replicas, 0));
+
+    // Ties are broken in favor of the default host
+    replicas = Arrays.asList(
+        new MockReplica(true, 0, 0),
+        new MockReplica(true, 0, 0),
+        new MockReplica(true, 0, 0));
+    assertEquals(2, policy.selectHost(replicas, 2));
+
+    // Hosts that are not serving are skipped
+    replicas = Arrays.asList(
+        new MockReplica(false, 0, 1000),
+        new MockReplica(true, 5, 10000));
+    assertEquals(1, policy.selectHost(replicas, 0));
+
+    assertEquals(1000.0 * 8, LatencyEwmaReplicaSelectionPolicy.getScore(1000, 1), 0);
+  }
+
+  @Test
+  public void testLatencyEwmaAvoidsFastFailures() {
+    ReplicaSelectionPolicy policy = new LatencyEwmaReplicaSelectionPolicy();
+
+    // Failures count as taking at least the query timeout
+    HostConnectionStatistics failing = new HostConnectionStatistics(100000000);
+    HostConnectionStatistics healthy = new HostConnectionStatistics(100000000);
+    failing.recordLatency(1000000);
+    healthy.recordLatency(2000000);
+    for (int i = 0; i < 10; ++i) {
+      failing.recordFailure(1000);
+    }
+    assertTrue(failing.getResponseTimeEwmaNanos() > healthy.getResponseTimeEwmaNanos());
+    List<MockReplica> replicas = Arrays.asList(
+        new MockReplica(true, 0, failing.getResponseTimeEwmaNanos()),
+        new MockReplica(true, 0, healthy.getResponseTimeEwmaNanos()));
+    assertEquals(1, policy.selectHost(replicas, 0));
+
+    // Without a query timeout, failures count as a multiple of the average response time
+    failing = new HostConnectionStatistics(0);
+    failing.recordLatency(1000000);
+    failing.recordFailure(1000);
+    assertTrue(failing.getResponseTimeEwmaNanos() > healthy.getResponseTimeEwmaNanos());
+    replicas = Arrays.asList(
+        new MockReplica(true, 0, failing.getResponseTimeEwmaNanos()),
+        new MockReplica(true, 0, healthy.getResponseTimeEwmaNanos()));
+    assertEquals(1, policy.selectHost(replicas, 0));
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.mock.MockDomain;
+import com.liveramp.hank.generated.HankException;
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestResponseCache extends BaseTestCase {
+
+  private static final Domain DOMAIN_A = new MockDomain("a", 0, 1, null, null, null, null);
+  private static final Domain DOMAIN_B = new MockDomain("b", 1, 1, null, null, null, null);
+  private static final ByteBuffer KEY_1 = ByteBuffer.wrap(new byte[]{1});
+  private static final ByteBuffer KEY_2 = ByteBuffer.wrap(new byte[]{2});
+  private static final HankResponse RESPONSE_1 = HankResponse.value(new byte[]{1});
+  private static final HankResponse RESPONSE_2 = HankResponse.value(new byte[]{2});
+
+  @Test
+  public void testNotVersionAware() {
+    ResponseCache cache = new ResponseCache(true, -1, 10, 3600, false);
+    cache.put(DOMAIN_A, KEY_1, RESPONSE_1, cache.getVersions(DOMAIN_A));
+    assertEquals(RESPONSE_1, cache.get(DOMAIN_A, KEY_1));
+    assertNull(cache.get(DOMAIN_B, KEY_1));
+
+    // Exceptions are not cached
+    cache.put(DOMAIN_A, KEY_2, HankResponse.xception(HankException.internal_error("")), null);
+    assertNull(cache.get(DOMAIN_A, KEY_2));
+
+    // Versions are ignored
+    cache.setDomainVersions(getDomainVersions(DOMAIN_A, 2, 2));
+    assertEquals(RESPONSE_1, cache.get(DOMAIN_A, KEY_1));
+  }
+
+  @Test
+  public void testVersionAware() {
+    ResponseCache cache = new ResponseCache(true, -1, 10, 3600, true);
+
+    // Versions are unknown, nothing is cached
+    cache.put(DOMAIN_A, KEY_1, RESPONSE_1, cache.getVersions(DOMAIN_A));
+    assertNull(cache.get(DOMAIN_A, KEY_1));
+
+    Map<Integer, ResponseCache.DomainVersions> domainVersions = getDomainVersions(DOMAIN_A, 1, 1);
+    domainVersions.putAll(getDomainVersions(DOMAIN_B, 1, 1));
+    cache.setDomainVersions(domainVersions);
+    cache.put(DOMAIN_A, KEY_1, RESPONSE_1, cache.getVersions(DOMAIN_A));
+    cache.put(DOMAIN_B, KEY_1, RESPONSE_2, cache.getVersions(DOMAIN_B));
+    assertEquals(RESPONSE_1, cache.get(DOMAIN_A, KEY_1));
+    assertEquals(RESPONSE_2, cache.get(DOMAIN_B, KEY_1));
+
+    // Same versions, entries are kept
+    domainVersions = getDomainVersions(DOMAIN_A, 1, 1);
+    domainVersions.putAll(getDomainVersions(DOMAIN_B, 1, 1));
+    cache.setDomainVersions(domainVersions);
+    assertEquals(RESPONSE_1, cache.get(DOMAIN_A, KEY_1));
+    assertEquals(RESPONSE_2, cache.get(DOMAIN_B, KEY_1));
+
+    // New version assigned to domain A, only its entries are invalidated
+    Object versionsBeforeUpdate = cache.getVersions(DOMAIN_A);
+    domainVersions = getDomainVersions(DOMAIN_A, 2, 1);
+    domainVersions.putAll(getDomainVersions(DOMAIN_B, 1, 1));
+    cache.setDomainVersions(domainVersions);
+    assertNull(cache.get(DOMAIN_A, KEY_1));
+    assertEquals(RESPONSE_2, cache.get(DOMAIN_B, KEY_1));
+
+    // Response to a request sent before the versions changed is not cached
+    cache.put(DOMAIN_A, KEY_1, RESPONSE_1, versionsBeforeUpdate);
+    assertNull(cache.get(DOMAIN_A, KEY_1));
+    cache.put(DOMAIN_A, KEY_1, RESPONSE_1, cache.getVersions(DOMAIN_A));
+    assertEquals(RESPONSE_1, cache.get(DOMAIN_A, KEY_1));
+
+    // Hosts serve the new version, entries are invalidated again
+    domainVersions = getDomainVersions(DOMAIN_A, 2, 1, 2);
+    domainVersions.putAll(getDomainVersions(DOMAIN_B, 1, 1));
+    cache.setDomainVersions(domainVersions);
+    assertNull(cache.get(DOMAIN_A, KEY_1));
+
+    // Domain B is not served anymore
+    cache.setDomainVersions(getDomainVersions(DOMAIN_A, 2, 1, 2));
+    assertNull(cache.get(DOMAIN_B, KEY_1));
+  }
+
+  private static Map<Integer, ResponseCache.DomainVersions> getDomainVersions(Domain domain,
+                                                                             Integer domainGroupVersion,
+                                                                             Integer... servedVersions) {
+    Map<Integer, ResponseCache.DomainVersions> result = new HashMap<Integer, ResponseCache.DomainVersions>();
+    result.put(domain.getId(), new ResponseCache.DomainVersions(domainGroupVersion, new TreeSet<Integer>(Arrays.asList(servedVersions))));
+    return result;
+  }
+}
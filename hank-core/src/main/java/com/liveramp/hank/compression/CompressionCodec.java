@@ -17,14 +17,18 @@
 package com.liveramp.hank.compression;
 
 import com.liveramp.hank.compression.deflate.DeflateCompressionFactory;
+import com.liveramp.hank.compression.lz4.Lz4CompressionFactory;
 import com.liveramp.hank.compression.none.SlowNoCompressionCompressionFactory;
 import com.liveramp.hank.compression.snappy.SnappyCompressionFactory;
 import com.liveramp.hank.compression.zip.GzipCompressionFactory;
+import com.liveramp.hank.compression.zstd.ZstdCompressionFactory;
 
 public enum CompressionCodec {
   DEFLATE,
   GZIP,
   SNAPPY,
+  LZ4,
+  ZSTD,
   SLOW_NO_COMPRESSION;
 
   public CompressionFactory getFactory() {
@@ -35,6 +39,10 @@ public enum CompressionCodec {
         return new GzipCompressionFactory();
       case SNAPPY:
         return new SnappyCompressionFactory();
+      case LZ4:
+        return new Lz4CompressionFactory();
+      case ZSTD:
+        return new ZstdCompressionFactory();
       case SLOW_NO_COMPRESSION:
         return new SlowNoCompressionCompressionFactory();
       default:
@@ -19,7 +19,27 @@ package com.liveramp.hank.compression;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.liveramp.hank.util.UnsafeByteArrayOutputStream;
+
 public interface Decompressor {
 
   public void decompressBlock(byte[] buffer, int offset, int length, OutputStream outputStream) throws IOException;
+
+  // Decompress a block into dst starting at dstOffset and return the decompressed length,
+  // or -1 if dst is too small to hold the decompressed block.
+  // By default the block is decompressed into a temporary buffer and then copied.
+  public default int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    UnsafeByteArrayOutputStream outputStream = new UnsafeByteArrayOutputStream();
+    decompressBlock(src, srcOffset, srcLength, outputStream);
+    if (outputStream.count() > dst.length - dstOffset) {
+      return -1;
+    }
+    System.arraycopy(outputStream.array(), 0, dst, dstOffset, outputStream.count());
+    return outputStream.count();
+  }
+
+  // Return the decompressed length of a block when it can be determined without decompressing it, -1 otherwise
+  public default int getDecompressedLength(byte[] src, int srcOffset, int srcLength) throws IOException {
+    return -1;
+  }
 }
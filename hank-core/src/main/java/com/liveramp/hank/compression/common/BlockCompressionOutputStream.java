@@ -0,0 +1,69 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.liveramp.hank.util.UnsafeByteArrayOutputStream;
+
+/**
+ * Buffers everything written to it and compresses it as a single block when closed, so that the
+ * block can later be decompressed in one call. Flushing does not write anything.
+ */
+public abstract class BlockCompressionOutputStream extends OutputStream {
+
+  private final OutputStream outputStream;
+  private final UnsafeByteArrayOutputStream uncompressedBlock = new UnsafeByteArrayOutputStream();
+  private boolean closed = false;
+
+  protected BlockCompressionOutputStream(OutputStream outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    uncompressedBlock.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    uncompressedBlock.write(b, off, len);
+  }
+
+  // Number of bytes written so far, before compression
+  public int getUncompressedSize() {
+    return uncompressedBlock.count();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    // Nothing is written until the block is complete
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    compressBlock(uncompressedBlock.array(), uncompressedBlock.count(), outputStream);
+    outputStream.flush();
+  }
+
+  protected abstract void compressBlock(byte[] src, int srcLength, OutputStream outputStream) throws IOException;
+}
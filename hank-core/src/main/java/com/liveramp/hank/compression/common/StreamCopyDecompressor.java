@@ -39,5 +39,26 @@ public abstract class StreamCopyDecompressor implements Decompressor {
     decompressedBlockInputStream.close();
   }
 
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    InputStream decompressedBlockInputStream = getBlockDecompressionInputStream(new ByteArrayInputStream(src, srcOffset, srcLength));
+    try {
+      int length = 0;
+      while (true) {
+        if (dstOffset + length == dst.length) {
+          // Check whether there is more to decompress than dst can hold
+          return decompressedBlockInputStream.read() == -1 ? length : -1;
+        }
+        int numBytes = decompressedBlockInputStream.read(dst, dstOffset + length, dst.length - dstOffset - length);
+        if (numBytes == -1) {
+          return length;
+        }
+        length += numBytes;
+      }
+    } finally {
+      decompressedBlockInputStream.close();
+    }
+  }
+
   protected abstract InputStream getBlockDecompressionInputStream(InputStream inputStream) throws IOException;
 }
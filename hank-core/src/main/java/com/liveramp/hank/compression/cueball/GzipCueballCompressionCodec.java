@@ -1,57 +1,163 @@
 package com.liveramp.hank.compression.cueball;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
+/**
+ * Gzip compression of blocks, working array to array with a deflater and inflater reused by each
+ * thread instead of gzip streams allocated for every block. The gzip format is the one written by
+ * GZIPOutputStream, so existing key files can still be read.
+ */
 public class GzipCueballCompressionCodec implements CueballCompressionCodec {
+
+  private static final int HEADER_LENGTH = 10;
+  private static final int TRAILER_LENGTH = 8;
+  private static final byte[] HEADER = new byte[]{
+      (byte)0x1f, (byte)0x8b, // magic
+      Deflater.DEFLATED, // method
+      0, // flags
+      0, 0, 0, 0, // modification time
+      0, // extra flags
+      0 // operating system
+  };
+  private static final int FLAG_HEADER_CRC = 2;
+  private static final int FLAG_EXTRA = 4;
+  private static final int FLAG_NAME = 8;
+  private static final int FLAG_COMMENT = 16;
+
+  private static class State {
+    private Deflater deflater;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    private Deflater getDeflater() {
+      if (deflater == null) {
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      }
+      return deflater;
+    }
+  }
+
+  private static final ThreadLocal<State> stateThreadLocal = new ThreadLocal<State>() {
+    @Override
+    protected State initialValue() {
+      return new State();
+    }
+  };
+
   @Override
   public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
-    if (srcLength - srcOffset == 0) {
+    if (srcLength == 0) {
       return 0;
     }
-    try {
-      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(srcLength - srcOffset);
-      GZIPOutputStream gzip = new GZIPOutputStream(bytesOut);
-      gzip.write(src, srcOffset, srcLength);
-      gzip.flush();
-      gzip.close();
-      byte[] compressed = bytesOut.toByteArray();
-      System.arraycopy(compressed, 0, dst, dstOff, compressed.length);
-      return compressed.length;
-    } catch (IOException e) {
-      throw new RuntimeException("Unexpected IOException while compressing!", e);
+    State state = stateThreadLocal.get();
+    Deflater deflater = state.getDeflater();
+    deflater.reset();
+    deflater.setInput(src, srcOffset, srcLength);
+    deflater.finish();
+
+    System.arraycopy(HEADER, 0, dst, dstOff, HEADER_LENGTH);
+    int offset = dstOff + HEADER_LENGTH;
+    final int limit = dst.length - TRAILER_LENGTH;
+    while (!deflater.finished()) {
+      if (offset >= limit) {
+        throw new RuntimeException("Compression buffer is too small");
+      }
+      offset += deflater.deflate(dst, offset, limit - offset);
     }
+
+    state.crc.reset();
+    state.crc.update(src, srcOffset, srcLength);
+    writeIntLittleEndian((int)state.crc.getValue(), dst, offset);
+    writeIntLittleEndian(srcLength, dst, offset + 4);
+    return offset + TRAILER_LENGTH - dstOff;
   }
 
   @Override
   public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
-    if (srcLength - srcOffset == 0) {
+    if (srcLength == 0) {
       return 0;
     }
+    final int srcEnd = srcOffset + srcLength;
+    if (srcLength < HEADER_LENGTH + TRAILER_LENGTH
+        || src[srcOffset] != HEADER[0] || src[srcOffset + 1] != HEADER[1] || src[srcOffset + 2] != HEADER[2]) {
+      throw new RuntimeException("Invalid gzip header");
+    }
+    final int flags = src[srcOffset + 3];
+    int offset = srcOffset + HEADER_LENGTH;
+    if ((flags & FLAG_EXTRA) != 0) {
+      offset += 2 + ((src[offset] & 0xff) | ((src[offset + 1] & 0xff) << 8));
+    }
+    if ((flags & FLAG_NAME) != 0) {
+      offset = skipZeroTerminated(src, offset, srcEnd);
+    }
+    if ((flags & FLAG_COMMENT) != 0) {
+      offset = skipZeroTerminated(src, offset, srcEnd);
+    }
+    if ((flags & FLAG_HEADER_CRC) != 0) {
+      offset += 2;
+    }
+
+    State state = stateThreadLocal.get();
+    Inflater inflater = state.inflater;
+    inflater.reset();
+    // The trailer is part of the input, which also provides the extra byte required without zlib wrapping
+    inflater.setInput(src, offset, srcEnd - offset);
+    int length = 0;
     try {
-      ByteArrayInputStream bytesIn = new ByteArrayInputStream(src, srcOffset, srcLength);
-      GZIPInputStream gzip = new GZIPInputStream(bytesIn);
-      int curOff = dstOff;
-      while (curOff < dst.length - dstOff) {
-        int amtRead = gzip.read(dst, curOff, dst.length - curOff);
-        if (amtRead == -1) {
-          break;
+      while (!inflater.finished()) {
+        int inflated = inflater.inflate(dst, dstOff + length, dst.length - dstOff - length);
+        if (inflated == 0 && !inflater.finished()) {
+          if (dstOff + length == dst.length) {
+            throw new RuntimeException("Decompression buffer is too small");
+          }
+          throw new RuntimeException("Truncated gzip data");
         }
-        curOff += amtRead;
+        length += inflated;
       }
-      return curOff;
-    } catch (IOException e) {
-      throw new RuntimeException("Unexpected IOException while decompressing!", e);
+    } catch (DataFormatException e) {
+      throw new RuntimeException("Unexpected DataFormatException while decompressing!", e);
+    }
+
+    final int trailerOffset = srcEnd - inflater.getRemaining();
+    if (inflater.getRemaining() < TRAILER_LENGTH) {
+      throw new RuntimeException("Truncated gzip trailer");
+    }
+    state.crc.reset();
+    state.crc.update(dst, dstOff, length);
+    if (readIntLittleEndian(src, trailerOffset) != (int)state.crc.getValue()
+        || readIntLittleEndian(src, trailerOffset + 4) != length) {
+      throw new RuntimeException("Corrupt gzip data: CRC or size mismatch");
     }
+    return length;
   }
 
   @Override
   public int getMaxCompressBufferSize(int length) {
-    // NOTE: this is a total guess. Let's hope your data isn't so crappy that it
-    // doubles in size when compressed with gzip.
-    return (int) (1.5 * length) + 18;
+    // Conservative bound of zlib's deflateBound(), plus the gzip header and trailer
+    return length + ((length + 7) >> 3) + ((length + 63) >> 6) + 5 + HEADER_LENGTH + TRAILER_LENGTH;
+  }
+
+  private static int skipZeroTerminated(byte[] src, int offset, int end) {
+    while (offset < end && src[offset] != 0) {
+      ++offset;
+    }
+    return offset + 1;
+  }
+
+  private static void writeIntLittleEndian(int value, byte[] dst, int offset) {
+    dst[offset] = (byte)value;
+    dst[offset + 1] = (byte)(value >>> 8);
+    dst[offset + 2] = (byte)(value >>> 16);
+    dst[offset + 3] = (byte)(value >>> 24);
+  }
+
+  private static int readIntLittleEndian(byte[] src, int offset) {
+    return (src[offset] & 0xff)
+        | ((src[offset + 1] & 0xff) << 8)
+        | ((src[offset + 2] & 0xff) << 16)
+        | ((src[offset + 3] & 0xff) << 24);
   }
 }
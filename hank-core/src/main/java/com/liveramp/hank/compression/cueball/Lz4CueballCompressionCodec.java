@@ -0,0 +1,47 @@
+package com.liveramp.hank.compression.cueball;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Raw LZ4 compression of blocks, working array to array. Compressors and decompressors are
+ * stateless and shared by all threads. This codec favors compression speed, see
+ * Lz4HighCueballCompressionCodec for a better ratio with the same decompression speed.
+ */
+public class Lz4CueballCompressionCodec implements CueballCompressionCodec {
+
+  protected static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+  private final LZ4Compressor compressor;
+  private final LZ4SafeDecompressor decompressor = LZ4_FACTORY.safeDecompressor();
+
+  public Lz4CueballCompressionCodec() {
+    this(LZ4_FACTORY.fastCompressor());
+  }
+
+  protected Lz4CueballCompressionCodec(LZ4Compressor compressor) {
+    this.compressor = compressor;
+  }
+
+  @Override
+  public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    return compressor.compress(src, srcOffset, srcLength, dst, dstOff, dst.length - dstOff);
+  }
+
+  @Override
+  public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    return decompressor.decompress(src, srcOffset, srcLength, dst, dstOff, dst.length - dstOff);
+  }
+
+  @Override
+  public int getMaxCompressBufferSize(int length) {
+    return compressor.maxCompressedLength(length);
+  }
+}
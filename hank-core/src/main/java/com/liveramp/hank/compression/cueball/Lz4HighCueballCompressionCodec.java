@@ -0,0 +1,12 @@
+package com.liveramp.hank.compression.cueball;
+
+/**
+ * LZ4 high compression mode: slower compression and a better ratio, with blocks decompressed as
+ * fast as those of Lz4CueballCompressionCodec.
+ */
+public class Lz4HighCueballCompressionCodec extends Lz4CueballCompressionCodec {
+
+  public Lz4HighCueballCompressionCodec() {
+    super(LZ4_FACTORY.highCompressor());
+  }
+}
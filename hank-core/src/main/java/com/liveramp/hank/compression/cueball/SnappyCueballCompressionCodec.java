@@ -0,0 +1,45 @@
+package com.liveramp.hank.compression.cueball;
+
+import java.io.IOException;
+
+import org.xerial.snappy.Snappy;
+
+/**
+ * Raw Snappy compression of blocks (without the framing of Snappy streams), working array to array.
+ */
+public class SnappyCueballCompressionCodec implements CueballCompressionCodec {
+
+  @Override
+  public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    try {
+      return Snappy.rawCompress(src, srcOffset, srcLength, dst, dstOff);
+    } catch (IOException e) {
+      throw new RuntimeException("Unexpected IOException while compressing!", e);
+    }
+  }
+
+  @Override
+  public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    try {
+      // The native decompressor does not check the bounds of the destination
+      int uncompressedLength = Snappy.uncompressedLength(src, srcOffset, srcLength);
+      if (uncompressedLength > dst.length - dstOff) {
+        throw new RuntimeException("Decompression buffer is too small");
+      }
+      return Snappy.rawUncompress(src, srcOffset, srcLength, dst, dstOff);
+    } catch (IOException e) {
+      throw new RuntimeException("Unexpected IOException while decompressing!", e);
+    }
+  }
+
+  @Override
+  public int getMaxCompressBufferSize(int length) {
+    return Snappy.maxCompressedLength(length);
+  }
+}
@@ -0,0 +1,78 @@
+package com.liveramp.hank.compression.cueball;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+/**
+ * Zstandard compression of blocks, working array to array. Key file blocks are small and look
+ * alike, so a dictionary trained on sample blocks (see the zstd --train command) usually improves
+ * the ratio a lot. The same dictionary must be given when writing and when reading a key file.
+ * Digested dictionaries are shared by all threads.
+ */
+public class ZstdCueballCompressionCodec implements CueballCompressionCodec {
+
+  public static final int DEFAULT_LEVEL = 3;
+
+  private final int level;
+  private final ZstdDictCompress dictCompress;
+  private final ZstdDictDecompress dictDecompress;
+
+  public ZstdCueballCompressionCodec() {
+    this(null);
+  }
+
+  public ZstdCueballCompressionCodec(byte[] dictionary) {
+    this(dictionary, DEFAULT_LEVEL);
+  }
+
+  public ZstdCueballCompressionCodec(byte[] dictionary, int level) {
+    this.level = level;
+    if (dictionary == null) {
+      this.dictCompress = null;
+      this.dictDecompress = null;
+    } else {
+      this.dictCompress = new ZstdDictCompress(dictionary, level);
+      this.dictDecompress = new ZstdDictDecompress(dictionary);
+    }
+  }
+
+  @Override
+  public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    long result;
+    if (dictCompress == null) {
+      result = Zstd.compressByteArray(dst, dstOff, dst.length - dstOff, src, srcOffset, srcLength, level);
+    } else {
+      result = Zstd.compressFastDict(dst, dstOff, src, srcOffset, srcLength, dictCompress);
+    }
+    if (Zstd.isError(result)) {
+      throw new RuntimeException("Compression failed: " + Zstd.getErrorName(result));
+    }
+    return (int)result;
+  }
+
+  @Override
+  public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    long result;
+    if (dictDecompress == null) {
+      result = Zstd.decompressByteArray(dst, dstOff, dst.length - dstOff, src, srcOffset, srcLength);
+    } else {
+      result = Zstd.decompressFastDict(dst, dstOff, src, srcOffset, srcLength, dictDecompress);
+    }
+    if (Zstd.isError(result)) {
+      throw new RuntimeException("Decompression failed: " + Zstd.getErrorName(result));
+    }
+    return (int)result;
+  }
+
+  @Override
+  public int getMaxCompressBufferSize(int length) {
+    return (int)Zstd.compressBound(length);
+  }
+}
@@ -48,4 +48,39 @@ public class DeflateDecompressor implements Decompressor {
       }
     }
   }
+
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    inflater.reset();
+    inflater.setInput(src, srcOffset, srcLength);
+    int length = 0;
+    // The inflater can consume all of its input one call before reporting that it is finished
+    boolean stalled = false;
+    try {
+      while (!inflater.finished()) {
+        int numBytes;
+        if (dstOffset + length == dst.length) {
+          // The decompressed length is not stored, check whether there is more to decompress
+          if (inflater.inflate(copyBuffer, 0, 1) > 0) {
+            return -1;
+          }
+          numBytes = 0;
+        } else {
+          numBytes = inflater.inflate(dst, dstOffset + length, dst.length - dstOffset - length);
+          length += numBytes;
+        }
+        if (numBytes == 0 && !inflater.finished()) {
+          if (stalled || inflater.needsDictionary()) {
+            throw new IOException("Truncated deflate block");
+          }
+          stalled = true;
+        } else {
+          stalled = false;
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    return length;
+  }
 }
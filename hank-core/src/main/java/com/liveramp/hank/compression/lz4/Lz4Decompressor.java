@@ -0,0 +1,75 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.lz4;
+
+import com.liveramp.hank.compression.Decompressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class Lz4Decompressor implements Decompressor {
+
+  private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+  private byte[] copyBuffer = new byte[0];
+
+  @Override
+  public void decompressBlock(byte[] buffer, int offset, int length, OutputStream outputStream) throws IOException {
+    int decompressedLength = getDecompressedLength(buffer, offset, length);
+    if (copyBuffer.length < decompressedLength) {
+      copyBuffer = new byte[decompressedLength];
+    }
+    decompressBlock(buffer, offset, length, copyBuffer, 0);
+    outputStream.write(copyBuffer, 0, decompressedLength);
+  }
+
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    int decompressedLength = getDecompressedLength(src, srcOffset, srcLength);
+    if (decompressedLength > dst.length - dstOffset) {
+      return -1;
+    }
+    try {
+      int length = DECOMPRESSOR.decompress(src, srcOffset + Lz4Compressor.DECOMPRESSED_LENGTH_SIZE,
+          srcLength - Lz4Compressor.DECOMPRESSED_LENGTH_SIZE, dst, dstOffset, decompressedLength);
+      if (length != decompressedLength) {
+        throw new IOException("Corrupt LZ4 block: expected " + decompressedLength + " bytes, got " + length);
+      }
+      return length;
+    } catch (LZ4Exception e) {
+      throw new IOException("Corrupt LZ4 block", e);
+    }
+  }
+
+  @Override
+  public int getDecompressedLength(byte[] src, int srcOffset, int srcLength) throws IOException {
+    if (srcLength < Lz4Compressor.DECOMPRESSED_LENGTH_SIZE) {
+      throw new IOException("Truncated LZ4 block");
+    }
+    int length = (src[srcOffset] & 0xff)
+        | ((src[srcOffset + 1] & 0xff) << 8)
+        | ((src[srcOffset + 2] & 0xff) << 16)
+        | ((src[srcOffset + 3] & 0xff) << 24);
+    if (length < 0) {
+      throw new IOException("Invalid LZ4 block decompressed length: " + length);
+    }
+    return length;
+  }
+}
@@ -29,4 +29,18 @@ public class SlowNoCompressionDecompressor extends StreamCopyDecompressor implem
   protected InputStream getBlockDecompressionInputStream(InputStream inputStream) throws IOException {
     return new BufferedInputStream(inputStream);
   }
+
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) {
+    if (srcLength > dst.length - dstOffset) {
+      return -1;
+    }
+    System.arraycopy(src, srcOffset, dst, dstOffset, srcLength);
+    return srcLength;
+  }
+
+  @Override
+  public int getDecompressedLength(byte[] src, int srcOffset, int srcLength) {
+    return srcLength;
+  }
 }
@@ -18,6 +18,7 @@ package com.liveramp.hank.compression.snappy;
 
 import com.liveramp.hank.compression.common.StreamCopyDecompressor;
 import com.liveramp.hank.compression.Decompressor;
+import org.xerial.snappy.Snappy;
 import org.xerial.snappy.SnappyInputStream;
 
 import java.io.IOException;
@@ -25,8 +26,78 @@ import java.io.InputStream;
 
 public class SnappyDecompressor extends StreamCopyDecompressor implements Decompressor {
 
+  // Magic bytes, stream version and compatible version
+  private static final byte[] MAGIC_HEADER = new byte[]{(byte)0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0};
+  private static final int HEADER_SIZE = MAGIC_HEADER.length + 4 + 4;
+
   @Override
   protected InputStream getBlockDecompressionInputStream(InputStream inputStream) throws IOException {
     return new SnappyInputStream(inputStream);
   }
+
+  // Blocks are written by SnappyOutputStream: a header followed by chunks, each made of its
+  // big-endian compressed length and the raw Snappy data. Chunks are decompressed directly.
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    if (!hasHeader(src, srcOffset, srcLength)) {
+      return super.decompressBlock(src, srcOffset, srcLength, dst, dstOffset);
+    }
+    int offset = srcOffset + HEADER_SIZE;
+    int end = srcOffset + srcLength;
+    int length = 0;
+    while (offset < end) {
+      int chunkLength = readChunkLength(src, offset, end);
+      offset += 4;
+      int uncompressedChunkLength = Snappy.uncompressedLength(src, offset, chunkLength);
+      if (uncompressedChunkLength > dst.length - dstOffset - length) {
+        return -1;
+      }
+      length += Snappy.rawUncompress(src, offset, chunkLength, dst, dstOffset + length);
+      offset += chunkLength;
+    }
+    return length;
+  }
+
+  @Override
+  public int getDecompressedLength(byte[] src, int srcOffset, int srcLength) throws IOException {
+    if (!hasHeader(src, srcOffset, srcLength)) {
+      return -1;
+    }
+    int offset = srcOffset + HEADER_SIZE;
+    int end = srcOffset + srcLength;
+    int length = 0;
+    while (offset < end) {
+      int chunkLength = readChunkLength(src, offset, end);
+      offset += 4;
+      length += Snappy.uncompressedLength(src, offset, chunkLength);
+      offset += chunkLength;
+    }
+    return length;
+  }
+
+  private static boolean hasHeader(byte[] src, int srcOffset, int srcLength) {
+    if (srcLength < HEADER_SIZE) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC_HEADER.length; ++i) {
+      if (src[srcOffset + i] != MAGIC_HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int readChunkLength(byte[] src, int offset, int end) throws IOException {
+    if (end - offset < 4) {
+      throw new IOException("Truncated Snappy chunk length");
+    }
+    int chunkLength = ((src[offset] & 0xff) << 24)
+        | ((src[offset + 1] & 0xff) << 16)
+        | ((src[offset + 2] & 0xff) << 8)
+        | (src[offset + 3] & 0xff);
+    if (chunkLength < 0 || chunkLength > end - offset - 4) {
+      throw new IOException("Invalid Snappy chunk length: " + chunkLength);
+    }
+    return chunkLength;
+  }
 }
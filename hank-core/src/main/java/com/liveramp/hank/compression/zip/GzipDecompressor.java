@@ -17,6 +17,7 @@
 package com.liveramp.hank.compression.zip;
 
 import com.liveramp.hank.compression.common.StreamCopyDecompressor;
+import com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec;
 import com.liveramp.hank.compression.Decompressor;
 
 import java.io.IOException;
@@ -25,8 +26,44 @@ import java.util.zip.GZIPInputStream;
 
 public class GzipDecompressor extends StreamCopyDecompressor implements Decompressor {
 
+  // Header and trailer
+  private static final int GZIP_MIN_LENGTH = 18;
+
+  // Blocks are written by GZIPOutputStream, which this codec decompresses array to array
+  private final GzipCueballCompressionCodec codec = new GzipCueballCompressionCodec();
+
   @Override
   protected InputStream getBlockDecompressionInputStream(InputStream inputStream) throws IOException {
     return new GZIPInputStream(inputStream);
   }
+
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    int decompressedLength = getDecompressedLength(src, srcOffset, srcLength);
+    if (decompressedLength < 0) {
+      return super.decompressBlock(src, srcOffset, srcLength, dst, dstOffset);
+    }
+    if (decompressedLength > dst.length - dstOffset) {
+      return -1;
+    }
+    try {
+      return codec.decompress(src, srcOffset, srcLength, dst, dstOffset);
+    } catch (RuntimeException e) {
+      throw new IOException(e);
+    }
+  }
+
+  // The trailer of a gzip member ends with the decompressed length (modulo 2^32)
+  @Override
+  public int getDecompressedLength(byte[] src, int srcOffset, int srcLength) {
+    if (srcLength < GZIP_MIN_LENGTH) {
+      return -1;
+    }
+    int offset = srcOffset + srcLength - 4;
+    int length = (src[offset] & 0xff)
+        | ((src[offset + 1] & 0xff) << 8)
+        | ((src[offset + 2] & 0xff) << 16)
+        | ((src[offset + 3] & 0xff) << 24);
+    return length < 0 ? -1 : length;
+  }
 }
@@ -0,0 +1,52 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.liveramp.hank.compression.Compressor;
+import com.liveramp.hank.compression.common.BlockCompressionOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Blocks are made of their decompressed length (4 bytes, little endian) followed by a Zstandard frame
+public class ZstdCompressor implements Compressor {
+
+  static final int DECOMPRESSED_LENGTH_SIZE = 4;
+
+  private static final int LEVEL = 3;
+
+  @Override
+  public OutputStream getOutputStream(OutputStream outputStream) throws IOException {
+    return new BlockCompressionOutputStream(outputStream) {
+      @Override
+      protected void compressBlock(byte[] src, int srcLength, OutputStream outputStream) throws IOException {
+        byte[] dst = new byte[DECOMPRESSED_LENGTH_SIZE + (int)Zstd.compressBound(srcLength)];
+        dst[0] = (byte)srcLength;
+        dst[1] = (byte)(srcLength >>> 8);
+        dst[2] = (byte)(srcLength >>> 16);
+        dst[3] = (byte)(srcLength >>> 24);
+        long compressedLength = Zstd.compressByteArray(dst, DECOMPRESSED_LENGTH_SIZE, dst.length - DECOMPRESSED_LENGTH_SIZE,
+            src, 0, srcLength, LEVEL);
+        if (Zstd.isError(compressedLength)) {
+          throw new IOException("Zstd compression failed: " + Zstd.getErrorName(compressedLength));
+        }
+        outputStream.write(dst, 0, DECOMPRESSED_LENGTH_SIZE + (int)compressedLength);
+      }
+    };
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.liveramp.hank.compression.Decompressor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class ZstdDecompressor implements Decompressor {
+
+  private byte[] copyBuffer = new byte[0];
+
+  @Override
+  public void decompressBlock(byte[] buffer, int offset, int length, OutputStream outputStream) throws IOException {
+    int decompressedLength = getDecompressedLength(buffer, offset, length);
+    if (copyBuffer.length < decompressedLength) {
+      copyBuffer = new byte[decompressedLength];
+    }
+    decompressBlock(buffer, offset, length, copyBuffer, 0);
+    outputStream.write(copyBuffer, 0, decompressedLength);
+  }
+
+  @Override
+  public int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException {
+    int decompressedLength = getDecompressedLength(src, srcOffset, srcLength);
+    if (decompressedLength > dst.length - dstOffset) {
+      return -1;
+    }
+    if (decompressedLength == 0) {
+      return 0;
+    }
+    long length = Zstd.decompressByteArray(dst, dstOffset, decompressedLength,
+        src, srcOffset + ZstdCompressor.DECOMPRESSED_LENGTH_SIZE, srcLength - ZstdCompressor.DECOMPRESSED_LENGTH_SIZE);
+    if (Zstd.isError(length)) {
+      throw new IOException("Corrupt Zstd block: " + Zstd.getErrorName(length));
+    }
+    if (length != decompressedLength) {
+      throw new IOException("Corrupt Zstd block: expected " + decompressedLength + " bytes, got " + length);
+    }
+    return decompressedLength;
+  }
+
+  @Override
+  public int getDecompressedLength(byte[] src, int srcOffset, int srcLength) throws IOException {
+    if (srcLength < ZstdCompressor.DECOMPRESSED_LENGTH_SIZE) {
+      throw new IOException("Truncated Zstd block");
+    }
+    int length = (src[srcOffset] & 0xff)
+        | ((src[srcOffset + 1] & 0xff) << 8)
+        | ((src[srcOffset + 2] & 0xff) << 16)
+        | ((src[srcOffset + 3] & 0xff) << 24);
+    if (length < 0) {
+      throw new IOException("Invalid Zstd block decompressed length: " + length);
+    }
+    return length;
+  }
+}
@@ -18,6 +18,8 @@ package com.liveramp.hank.config;
 
 import java.util.Set;
 
+import com.liveramp.hank.storage.HostCacheManager;
+
 public class BaseReaderConfigurator implements ReaderConfigurator {
 
   private final DataDirectoriesConfigurator dataDirectoriesConfigurator;
@@ -25,17 +27,42 @@ public class BaseReaderConfigurator implements ReaderConfigurator {
   private final long cacheNumItemsCapacity;
   private final int bufferReuseMaxSize;
   private final int numTotalPartitions;
+  private final HostCacheManager hostCacheManager;
+  private final HostCacheManager blockCacheManager;
 
   public BaseReaderConfigurator(DataDirectoriesConfigurator dataDirectoriesConfigurator,
                                 long cacheNumBytesCapacity,
                                 long cacheNumItemsCapacity,
                                 int bufferReuseMaxSize,
                                 int numTotalPartitions) {
+    this(dataDirectoriesConfigurator, cacheNumBytesCapacity, cacheNumItemsCapacity, bufferReuseMaxSize,
+        numTotalPartitions, null);
+  }
+
+  public BaseReaderConfigurator(DataDirectoriesConfigurator dataDirectoriesConfigurator,
+                                long cacheNumBytesCapacity,
+                                long cacheNumItemsCapacity,
+                                int bufferReuseMaxSize,
+                                int numTotalPartitions,
+                                HostCacheManager hostCacheManager) {
+    this(dataDirectoriesConfigurator, cacheNumBytesCapacity, cacheNumItemsCapacity, bufferReuseMaxSize,
+        numTotalPartitions, hostCacheManager, null);
+  }
+
+  public BaseReaderConfigurator(DataDirectoriesConfigurator dataDirectoriesConfigurator,
+                                long cacheNumBytesCapacity,
+                                long cacheNumItemsCapacity,
+                                int bufferReuseMaxSize,
+                                int numTotalPartitions,
+                                HostCacheManager hostCacheManager,
+                                HostCacheManager blockCacheManager) {
     this.dataDirectoriesConfigurator = dataDirectoriesConfigurator;
     this.cacheNumBytesCapacity = cacheNumBytesCapacity;
     this.cacheNumItemsCapacity = cacheNumItemsCapacity;
     this.bufferReuseMaxSize = bufferReuseMaxSize;
     this.numTotalPartitions = numTotalPartitions;
+    this.hostCacheManager = hostCacheManager;
+    this.blockCacheManager = blockCacheManager;
   }
 
   @Override
@@ -59,6 +86,16 @@ public class BaseReaderConfigurator implements ReaderConfigurator {
     return bufferReuseMaxSize;
   }
 
+  // When not null, Readers use this cache shared by the whole host instead of their own
+  public HostCacheManager getHostCacheManager() {
+    return hostCacheManager;
+  }
+
+  // When not null, Readers of block compressed data cache decompressed blocks in this cache shared by the whole host
+  public HostCacheManager getBlockCacheManager() {
+    return blockCacheManager;
+  }
+
   @Override
   public Set<String> getDataDirectories() {
     return dataDirectoriesConfigurator.getDataDirectories();
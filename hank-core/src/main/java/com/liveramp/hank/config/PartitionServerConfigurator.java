@@ -28,6 +28,11 @@ public interface PartitionServerConfigurator extends CoordinatorConfigurator, Re
 
   public int getMaxConcurrentUpdatesPerDataDirectory();
 
+  // Maximum number of concurrent file fetch streams of the host during updates. 0 means files are fetched sequentially.
+  public int getNumConcurrentFetches();
+
+  public int getMaxConcurrentFetchesPerDataDirectory();
+
   public int getNumConcurrentQueries();
 
   public int getNumConcurrentGetBulkTasks();
@@ -38,6 +43,18 @@ public interface PartitionServerConfigurator extends CoordinatorConfigurator, Re
 
   public long getUpdateFailureCooldown();
 
+  // When enabled, updates are applied while serving by swapping partitions one by one
+  public boolean isOnlineUpdateEnabled();
+
+  // When enabled, all Readers share a single cache sized by the cache capacities instead of splitting them
+  public boolean isSharedCacheEnabled();
+
+  // Size of the value cache shared by all partitions of the host, stored off heap. 0 means disabled.
+  public long getOffHeapCacheNumBytesCapacity();
+
+  // Size of the cache of decompressed blocks shared by all partitions of the host. 0 means disabled.
+  public long getBlockCacheNumBytesCapacity();
+
   public Map<String, String> getEnvironmentFlags();
 
   public ReaderConfigurator getReaderConfigurator(int numTotalPartitions);
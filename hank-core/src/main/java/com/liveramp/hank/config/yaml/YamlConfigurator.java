@@ -193,6 +193,22 @@ public abstract class YamlConfigurator implements Serializable {
     }
   }
 
+  protected Boolean getRequiredBoolean(String... optionPath) throws InvalidConfigurationException {
+    Object option = getRequiredOption(optionPath);
+    if (option != null && !(option instanceof Boolean)) {
+      throw new InvalidConfigurationException("Option '" + Arrays.toString(optionPath) + "' must be of type Boolean in configuration '" + contentSource + "'");
+    }
+    return (Boolean)option;
+  }
+
+  protected Boolean getOptionalBoolean(String... optionPath) {
+    try {
+      return getRequiredBoolean(optionPath);
+    } catch (InvalidConfigurationException e) {
+      return null;
+    }
+  }
+
   protected Long getRequiredLong(String... optionPath) throws InvalidConfigurationException {
     Object option = getRequiredOption(optionPath);
     // Translate integers to longs
@@ -41,6 +41,9 @@ public final class Hosts {
 
   public static final String ALL_FLAGS_EXPRESSION = "*";
 
+  // Environment flag published by partition servers that can apply updates while serving
+  public static final String ONLINE_UPDATE_ENVIRONMENT_FLAG = "hank.online_update";
+
   private static final String UPDATE_ETA_STATISTIC_KEY = "update_eta";
   private static final String FILESYSTEM_STATISTICS_KEY = "filesystem_statistics";
   public static final String RUNTIME_STATISTICS_KEY = "runtime_statistics";
@@ -60,6 +63,11 @@ public final class Hosts {
     return HostState.SERVING.equals(host.getState());
   }
 
+  public static boolean isOnlineUpdateEnabled(Host host) {
+    Map<String, String> environmentFlags = host.getEnvironmentFlags();
+    return environmentFlags != null && Boolean.parseBoolean(environmentFlags.get(ONLINE_UPDATE_ENVIRONMENT_FLAG));
+  }
+
   public static UpdateProgressAggregator computeUpdateProgress(Host host, DomainGroup domainGroup) throws IOException {
     UpdateProgressAggregator result = new UpdateProgressAggregator();
     for (DomainAndVersion dgvdv : domainGroup.getDomainVersions()) {
@@ -324,7 +332,8 @@ public final class Hosts {
         if (statistics.length() == 0) {
           continue;
         }
-        String[] tokens = statistics.split("\t");
+        // Runtime statistics of a domain are themselves made of tab separated sections
+        String[] tokens = statistics.split("\t", 2);
         int domainId = Integer.parseInt(tokens[0]);
         result.put(coordinator.getDomainById(domainId), RuntimeStatisticsAggregator.parse(tokens[1]));
       }
@@ -118,6 +118,7 @@ public class ZkHost extends AbstractHost {
     this.metadata.addListener(new HostMetadataDataLocationChangeNotifier());
     this.assignments = new WatchedThriftNode<HostAssignmentsMetadata>(zk, ZkPath.append(path, ASSIGNMENTS_PATH),
         true, create ? CreateMode.PERSISTENT : null, initialAssignments, new HostAssignmentsMetadata());
+    this.assignments.addListener(new HostAssignmentsDataLocationChangeNotifier(assignments.get()));
     if (create) {
       zk.create(ZkPath.append(path, CURRENT_COMMAND_PATH), null);
       zk.create(ZkPath.append(path, COMMAND_QUEUE_PATH), null);
@@ -155,6 +156,47 @@ public class ZkHost extends AbstractHost {
     }
   }
 
+  // Partitions are swapped to new versions while the host keeps serving during online updates
+  private class HostAssignmentsDataLocationChangeNotifier implements WatchedNodeListener<HostAssignmentsMetadata> {
+
+    private Map<Integer, Map<Integer, Integer>> previousCurrentVersions;
+
+    private HostAssignmentsDataLocationChangeNotifier(HostAssignmentsMetadata initialAssignments) {
+      this.previousCurrentVersions = getCurrentVersions(initialAssignments);
+    }
+
+    @Override
+    public void onWatchedNodeChange(HostAssignmentsMetadata hostAssignmentsMetadata) {
+      Map<Integer, Map<Integer, Integer>> currentVersions = getCurrentVersions(hostAssignmentsMetadata);
+      boolean changed;
+      synchronized (this) {
+        changed = !currentVersions.equals(previousCurrentVersions);
+        previousCurrentVersions = currentVersions;
+      }
+      if (changed) {
+        fireDataLocationChangeListener();
+      }
+    }
+  }
+
+  // Current version of each assigned partition, by domain id and partition number
+  private static Map<Integer, Map<Integer, Integer>> getCurrentVersions(HostAssignmentsMetadata hostAssignmentsMetadata) {
+    Map<Integer, Map<Integer, Integer>> result = new HashMap<Integer, Map<Integer, Integer>>();
+    if (hostAssignmentsMetadata == null || hostAssignmentsMetadata.get_domains() == null) {
+      return result;
+    }
+    for (Map.Entry<Integer, HostDomainMetadata> domainEntry : hostAssignmentsMetadata.get_domains().entrySet()) {
+      Map<Integer, Integer> partitionToVersion = new HashMap<Integer, Integer>();
+      for (Map.Entry<Integer, HostDomainPartitionMetadata> partitionEntry : domainEntry.getValue().get_partitions().entrySet()) {
+        HostDomainPartitionMetadata partitionMetadata = partitionEntry.getValue();
+        partitionToVersion.put(partitionEntry.getKey(),
+            partitionMetadata.is_set_current_version_number() ? partitionMetadata.get_current_version_number() : null);
+      }
+      result.put(domainEntry.getKey(), partitionToVersion);
+    }
+    return result;
+  }
+
   private class CommandQueueWatcher extends HankWatcher {
     protected CommandQueueWatcher() throws KeeperException, InterruptedException {
       super();
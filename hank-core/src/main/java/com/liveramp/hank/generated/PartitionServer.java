@@ -35,7 +35,7 @@ public class PartitionServer {
 
   public interface Iface {
 
-    public HankResponse get(int domain_id, ByteBuffer key) throws org.apache.thrift.TException;
+    public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) throws org.apache.thrift.TException;
 
     public HankBulkResponse getBulk(int domain_id, List<ByteBuffer> keys) throws org.apache.thrift.TException;
 
@@ -43,7 +43,7 @@ public class PartitionServer {
 
   public interface AsyncIface {
 
-    public void get(int domain_id, ByteBuffer key, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.get_call> resultHandler) throws org.apache.thrift.TException;
+    public void get(int domain_id, ByteBuffer key, ByteBuffer key_hash, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.get_call> resultHandler) throws org.apache.thrift.TException;
 
     public void getBulk(int domain_id, List<ByteBuffer> keys, org.apache.thrift.async.AsyncMethodCallback<AsyncClient.getBulk_call> resultHandler) throws org.apache.thrift.TException;
 
@@ -69,17 +69,18 @@ public class PartitionServer {
       super(iprot, oprot);
     }
 
-    public HankResponse get(int domain_id, ByteBuffer key) throws org.apache.thrift.TException
+    public HankResponse get(int domain_id, ByteBuffer key, ByteBuffer key_hash) throws org.apache.thrift.TException
     {
-      send_get(domain_id, key);
+      send_get(domain_id, key, key_hash);
       return recv_get();
     }
 
-    public void send_get(int domain_id, ByteBuffer key) throws org.apache.thrift.TException
+    public void send_get(int domain_id, ByteBuffer key, ByteBuffer key_hash) throws org.apache.thrift.TException
     {
       get_args args = new get_args();
       args.set_domain_id(domain_id);
       args.set_key(key);
+      args.set_key_hash(key_hash);
       sendBase("get", args);
     }
 
@@ -135,9 +136,9 @@ public class PartitionServer {
       super(protocolFactory, clientManager, transport);
     }
 
-    public void get(int domain_id, ByteBuffer key, org.apache.thrift.async.AsyncMethodCallback<get_call> resultHandler) throws org.apache.thrift.TException {
+    public void get(int domain_id, ByteBuffer key, ByteBuffer key_hash, org.apache.thrift.async.AsyncMethodCallback<get_call> resultHandler) throws org.apache.thrift.TException {
       checkReady();
-      get_call method_call = new get_call(domain_id, key, resultHandler, this, ___protocolFactory, ___transport);
+      get_call method_call = new get_call(domain_id, key, key_hash, resultHandler, this, ___protocolFactory, ___transport);
       this.___currentMethod = method_call;
       ___manager.call(method_call);
     }
@@ -145,10 +146,12 @@ public class PartitionServer {
     public static class get_call extends org.apache.thrift.async.TAsyncMethodCall {
       private int domain_id;
       private ByteBuffer key;
-      public get_call(int domain_id, ByteBuffer key, org.apache.thrift.async.AsyncMethodCallback<get_call> resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
+      private ByteBuffer key_hash;
+      public get_call(int domain_id, ByteBuffer key, ByteBuffer key_hash, org.apache.thrift.async.AsyncMethodCallback<get_call> resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
         super(client, protocolFactory, transport, resultHandler, false);
         this.domain_id = domain_id;
         this.key = key;
+        this.key_hash = key_hash;
       }
 
       public void write_args(org.apache.thrift.protocol.TProtocol prot) throws org.apache.thrift.TException {
@@ -156,6 +159,7 @@ public class PartitionServer {
         get_args args = new get_args();
         args.set_domain_id(domain_id);
         args.set_key(key);
+        args.set_key_hash(key_hash);
         args.write(prot);
         prot.writeMessageEnd();
       }
@@ -238,7 +242,7 @@ public class PartitionServer {
 
       public get_result getResult(I iface, get_args args) throws org.apache.thrift.TException {
         get_result result = new get_result();
-        result.success = iface.get(args.domain_id, args.key);
+        result.success = iface.get(args.domain_id, args.key, args.key_hash);
         return result;
       }
     }
@@ -270,6 +274,7 @@ public class PartitionServer {
 
     private static final org.apache.thrift.protocol.TField DOMAIN_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("domain_id", org.apache.thrift.protocol.TType.I32, (short)1);
     private static final org.apache.thrift.protocol.TField KEY_FIELD_DESC = new org.apache.thrift.protocol.TField("key", org.apache.thrift.protocol.TType.STRING, (short)2);
+    private static final org.apache.thrift.protocol.TField KEY_HASH_FIELD_DESC = new org.apache.thrift.protocol.TField("key_hash", org.apache.thrift.protocol.TType.STRING, (short)3);
 
     private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
     static {
@@ -279,11 +284,13 @@ public class PartitionServer {
 
     public int domain_id; // required
     public ByteBuffer key; // required
+    public ByteBuffer key_hash; // required
 
     /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
     public enum _Fields implements org.apache.thrift.TFieldIdEnum {
       DOMAIN_ID((short)1, "domain_id"),
-      KEY((short)2, "key");
+      KEY((short)2, "key"),
+      KEY_HASH((short)3, "key_hash");
 
       private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -302,6 +309,8 @@ public class PartitionServer {
             return DOMAIN_ID;
           case 2: // KEY
             return KEY;
+          case 3: // KEY_HASH
+            return KEY_HASH;
           default:
             return null;
         }
@@ -351,6 +360,8 @@ public class PartitionServer {
           new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
       tmpMap.put(_Fields.KEY, new org.apache.thrift.meta_data.FieldMetaData("key", org.apache.thrift.TFieldRequirementType.DEFAULT, 
           new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING          , true)));
+      tmpMap.put(_Fields.KEY_HASH, new org.apache.thrift.meta_data.FieldMetaData("key_hash", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING          , true)));
       metaDataMap = Collections.unmodifiableMap(tmpMap);
       org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(get_args.class, metaDataMap);
     }
@@ -360,12 +371,14 @@ public class PartitionServer {
 
     public get_args(
       int domain_id,
-      ByteBuffer key)
+      ByteBuffer key,
+      ByteBuffer key_hash)
     {
       this();
       this.domain_id = domain_id;
       set_domain_id_isSet(true);
       this.key = key;
+      this.key_hash = key_hash;
     }
 
     /**
@@ -376,6 +389,10 @@ public class PartitionServer {
       this.domain_id = other.domain_id;
       if (other.is_set_key()) {
         this.key = org.apache.thrift.TBaseHelper.copyBinary(other.key);
+;
+      }
+      if (other.is_set_key_hash()) {
+        this.key_hash = org.apache.thrift.TBaseHelper.copyBinary(other.key_hash);
 ;
       }
     }
@@ -389,6 +406,7 @@ public class PartitionServer {
       set_domain_id_isSet(false);
       this.domain_id = 0;
       this.key = null;
+      this.key_hash = null;
     }
 
     public int get_domain_id() {
@@ -448,6 +466,40 @@ public class PartitionServer {
       }
     }
 
+    public byte[] get_key_hash() {
+      set_key_hash(org.apache.thrift.TBaseHelper.rightSize(key_hash));
+      return key_hash == null ? null : key_hash.array();
+    }
+
+    public ByteBuffer buffer_for_key_hash() {
+      return key_hash;
+    }
+
+    public get_args set_key_hash(byte[] key_hash) {
+      set_key_hash(key_hash == null ? (ByteBuffer)null : ByteBuffer.wrap(key_hash));
+      return this;
+    }
+
+    public get_args set_key_hash(ByteBuffer key_hash) {
+      this.key_hash = key_hash;
+      return this;
+    }
+
+    public void unset_key_hash() {
+      this.key_hash = null;
+    }
+
+    /** Returns true if field key_hash is set (has been assigned a value) and false otherwise */
+    public boolean is_set_key_hash() {
+      return this.key_hash != null;
+    }
+
+    public void set_key_hash_isSet(boolean value) {
+      if (!value) {
+        this.key_hash = null;
+      }
+    }
+
     public void setFieldValue(_Fields field, Object value) {
       switch (field) {
       case DOMAIN_ID:
@@ -466,6 +518,14 @@ public class PartitionServer {
         }
         break;
 
+      case KEY_HASH:
+        if (value == null) {
+          unset_key_hash();
+        } else {
+          set_key_hash((ByteBuffer)value);
+        }
+        break;
+
       }
     }
 
@@ -477,6 +537,9 @@ public class PartitionServer {
       case KEY:
         return get_key();
 
+      case KEY_HASH:
+        return get_key_hash();
+
       }
       throw new IllegalStateException();
     }
@@ -492,6 +555,8 @@ public class PartitionServer {
         return is_set_domain_id();
       case KEY:
         return is_set_key();
+      case KEY_HASH:
+        return is_set_key_hash();
       }
       throw new IllegalStateException();
     }
@@ -527,6 +592,15 @@ public class PartitionServer {
           return false;
       }
 
+      boolean this_present_key_hash = true && this.is_set_key_hash();
+      boolean that_present_key_hash = true && that.is_set_key_hash();
+      if (this_present_key_hash || that_present_key_hash) {
+        if (!(this_present_key_hash && that_present_key_hash))
+          return false;
+        if (!this.key_hash.equals(that.key_hash))
+          return false;
+      }
+
       return true;
     }
 
@@ -544,6 +618,11 @@ public class PartitionServer {
       if (present_key)
         builder.append(key);
 
+      boolean present_key_hash = true && (is_set_key_hash());
+      builder.append(present_key_hash);
+      if (present_key_hash)
+        builder.append(key_hash);
+
       return builder.toHashCode();
     }
 
@@ -575,6 +654,16 @@ public class PartitionServer {
           return lastComparison;
         }
       }
+      lastComparison = Boolean.valueOf(is_set_key_hash()).compareTo(typedOther.is_set_key_hash());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (is_set_key_hash()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.key_hash, typedOther.key_hash);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
       return 0;
     }
 
@@ -606,6 +695,14 @@ public class PartitionServer {
         org.apache.thrift.TBaseHelper.toString(this.key, sb);
       }
       first = false;
+      if (!first) sb.append(", ");
+      sb.append("key_hash:");
+      if (this.key_hash == null) {
+        sb.append("null");
+      } else {
+        org.apache.thrift.TBaseHelper.toString(this.key_hash, sb);
+      }
+      first = false;
       sb.append(")");
       return sb.toString();
     }
@@ -667,6 +764,14 @@ public class PartitionServer {
                 org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
               }
               break;
+            case 3: // KEY_HASH
+              if (schemeField.type == org.apache.thrift.protocol.TType.STRING) {
+                struct.key_hash = iprot.readBinary();
+                struct.set_key_hash_isSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
             default:
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
           }
@@ -690,6 +795,11 @@ public class PartitionServer {
           oprot.writeBinary(struct.key);
           oprot.writeFieldEnd();
         }
+        if (struct.key_hash != null) {
+          oprot.writeFieldBegin(KEY_HASH_FIELD_DESC);
+          oprot.writeBinary(struct.key_hash);
+          oprot.writeFieldEnd();
+        }
         oprot.writeFieldStop();
         oprot.writeStructEnd();
       }
@@ -714,19 +824,25 @@ public class PartitionServer {
         if (struct.is_set_key()) {
           optionals.set(1);
         }
-        oprot.writeBitSet(optionals, 2);
+        if (struct.is_set_key_hash()) {
+          optionals.set(2);
+        }
+        oprot.writeBitSet(optionals, 3);
         if (struct.is_set_domain_id()) {
           oprot.writeI32(struct.domain_id);
         }
         if (struct.is_set_key()) {
           oprot.writeBinary(struct.key);
         }
+        if (struct.is_set_key_hash()) {
+          oprot.writeBinary(struct.key_hash);
+        }
       }
 
       @Override
       public void read(org.apache.thrift.protocol.TProtocol prot, get_args struct) throws org.apache.thrift.TException {
         TTupleProtocol iprot = (TTupleProtocol) prot;
-        BitSet incoming = iprot.readBitSet(2);
+        BitSet incoming = iprot.readBitSet(3);
         if (incoming.get(0)) {
           struct.domain_id = iprot.readI32();
           struct.set_domain_id_isSet(true);
@@ -735,6 +851,10 @@ public class PartitionServer {
           struct.key = iprot.readBinary();
           struct.set_key_isSet(true);
         }
+        if (incoming.get(2)) {
+          struct.key_hash = iprot.readBinary();
+          struct.set_key_hash_isSet(true);
+        }
       }
     }
 
@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.hasher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 128-bit hash of a key, computed once per lookup so that the partition of the key and its hash in
+ * storage can both be derived from it. Instances are mutable and reused; they remember which key they
+ * were computed for.
+ */
+public class Hash128 {
+
+  public static final int NUM_BYTES = 16;
+
+  private ByteBuffer key = null;
+  private int keyPosition;
+  private int keyLimit;
+  private long high;
+  private long low;
+
+  public void set(ByteBuffer key, long high, long low) {
+    this.key = key;
+    this.keyPosition = key.position();
+    this.keyLimit = key.limit();
+    this.high = high;
+    this.low = low;
+  }
+
+  // Set from the first NUM_BYTES bytes of hashBytes, big endian, as written by getBytes
+  public void set(ByteBuffer key, ByteBuffer hashBytes) {
+    set(key, hashBytes.getLong(hashBytes.position()), hashBytes.getLong(hashBytes.position() + 8));
+  }
+
+  public void clear() {
+    key = null;
+  }
+
+  // Whether this is the hash of the given key buffer, at its current position and limit
+  public boolean isFor(ByteBuffer key) {
+    return this.key == key && keyPosition == key.position() && keyLimit == key.limit();
+  }
+
+  public long getHigh() {
+    return high;
+  }
+
+  public long getLow() {
+    return low;
+  }
+
+  // Write the first hashSize bytes of the hash (at most NUM_BYTES), big endian
+  public void getBytes(int hashSize, byte[] hashBytes) {
+    for (int i = 0; i < hashSize; ++i) {
+      long value = i < 8 ? high : low;
+      hashBytes[i] = (byte)((value >>> (56 - 8 * (i & 7))) & 0xff);
+    }
+  }
+}
@@ -18,6 +18,8 @@ package com.liveramp.hank.hasher;
 
 import java.nio.ByteBuffer;
 
+import com.liveramp.hank.util.ByteBufferUtils;
+
 public class IdentityHasher implements Hasher {
 
   @Override
@@ -25,6 +27,6 @@ public class IdentityHasher implements Hasher {
     if (value.remaining() != hashSize) {
       throw new IllegalStateException("Tried to compute an identity hash of " + hashSize + " bytes with an incoming value of " + value.remaining() + " bytes.");
     }
-    System.arraycopy(value.array(), value.arrayOffset() + value.position(), hashBytes, 0, hashSize);
+    ByteBufferUtils.copyRemaining(value, hashBytes, 0);
   }
 }
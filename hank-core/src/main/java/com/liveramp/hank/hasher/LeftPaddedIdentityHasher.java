@@ -2,6 +2,8 @@ package com.liveramp.hank.hasher;
 
 import java.nio.ByteBuffer;
 
+import com.liveramp.hank.util.ByteBufferUtils;
+
 public class LeftPaddedIdentityHasher implements Hasher {
   @Override
   public void hash(ByteBuffer value, int hashSize, byte[] hashBytes) {
@@ -12,7 +14,7 @@ public class LeftPaddedIdentityHasher implements Hasher {
 
     int bytesToPad = hashSize - value.remaining();
 
-    System.arraycopy(value.array(), value.arrayOffset() + value.position(), hashBytes, bytesToPad, value.remaining());
+    ByteBufferUtils.copyRemaining(value, hashBytes, bytesToPad);
 
   }
 }
@@ -0,0 +1,173 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.hasher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hasher based on the 128-bit MurmurHash3 (x64 variant), which produces up to 16 bytes of hash in a
+ * single pass over the key, where Murmur64Hasher hashes the whole key again for every 8 bytes. It is a
+ * different function than Murmur64Hasher, so it can only be used for new domains: existing domains
+ * keep their hasher and their files stay readable.
+ *
+ * Murmur128Partitioner uses the same hash, so that a key is hashed once to be partitioned and looked up.
+ * Partitions are derived from the bits of the hash written last, which are not stored for hashes of up
+ * to 12 bytes.
+ */
+public final class Murmur128Hasher implements Hasher {
+
+  public static final int SEED = 952336;
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  // Compute the hash of the remaining bytes of the key, without changing its position
+  public static void murmurHash128(ByteBuffer key, int seed, Hash128 result) {
+    final int offset = key.position();
+    final int length = key.remaining();
+    long h1 = seed & 0xffffffffL;
+    long h2 = seed & 0xffffffffL;
+
+    final int end = offset + (length & ~15);
+    for (int i = offset; i < end; i += 16) {
+      long k1 = getLongLittleEndian(key, i);
+      long k2 = getLongLittleEndian(key, i + 8);
+
+      k1 *= C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2;
+      h1 ^= k1;
+
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      k2 *= C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1;
+      h2 ^= k2;
+
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    long k1 = 0;
+    long k2 = 0;
+    switch (length & 15) {
+      case 15:
+        k2 ^= (long)(key.get(end + 14) & 0xff) << 48;
+      case 14:
+        k2 ^= (long)(key.get(end + 13) & 0xff) << 40;
+      case 13:
+        k2 ^= (long)(key.get(end + 12) & 0xff) << 32;
+      case 12:
+        k2 ^= (long)(key.get(end + 11) & 0xff) << 24;
+      case 11:
+        k2 ^= (long)(key.get(end + 10) & 0xff) << 16;
+      case 10:
+        k2 ^= (long)(key.get(end + 9) & 0xff) << 8;
+      case 9:
+        k2 ^= (long)(key.get(end + 8) & 0xff);
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+      case 8:
+        k1 ^= (long)(key.get(end + 7) & 0xff) << 56;
+      case 7:
+        k1 ^= (long)(key.get(end + 6) & 0xff) << 48;
+      case 6:
+        k1 ^= (long)(key.get(end + 5) & 0xff) << 40;
+      case 5:
+        k1 ^= (long)(key.get(end + 4) & 0xff) << 32;
+      case 4:
+        k1 ^= (long)(key.get(end + 3) & 0xff) << 24;
+      case 3:
+        k1 ^= (long)(key.get(end + 2) & 0xff) << 16;
+      case 2:
+        k1 ^= (long)(key.get(end + 1) & 0xff) << 8;
+      case 1:
+        k1 ^= (long)(key.get(end) & 0xff);
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+
+    result.set(key, h1, h2);
+  }
+
+  private static long getLongLittleEndian(ByteBuffer buffer, int index) {
+    return (buffer.get(index) & 0xffL)
+        | (buffer.get(index + 1) & 0xffL) << 8
+        | (buffer.get(index + 2) & 0xffL) << 16
+        | (buffer.get(index + 3) & 0xffL) << 24
+        | (buffer.get(index + 4) & 0xffL) << 32
+        | (buffer.get(index + 5) & 0xffL) << 40
+        | (buffer.get(index + 6) & 0xffL) << 48
+        | (buffer.get(index + 7) & 0xffL) << 56;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  @Override
+  public void hash(ByteBuffer value, int hashSize, byte[] hashBytes) {
+    Hash128 hash = new Hash128();
+    murmurHash128(value, SEED, hash);
+    hash(value, hash, hashSize, hashBytes);
+  }
+
+  // Write the hash of the key given its precomputed 128-bit hash
+  public void hash(ByteBuffer value, Hash128 hash, int hashSize, byte[] hashBytes) {
+    hash.getBytes(Math.min(hashSize, Hash128.NUM_BYTES), hashBytes);
+    // Longer hashes are extended with hashes seeded by the previous ones, which is rarely needed
+    if (hashSize > Hash128.NUM_BYTES) {
+      byte[] extension = new byte[Hash128.NUM_BYTES];
+      Hash128 extensionHash = new Hash128();
+      int seed = (int)hash.getLow();
+      for (int i = Hash128.NUM_BYTES; i < hashSize; i += Hash128.NUM_BYTES) {
+        murmurHash128(value, seed, extensionHash);
+        int numBytes = Math.min(Hash128.NUM_BYTES, hashSize - i);
+        extensionHash.getBytes(numBytes, extension);
+        System.arraycopy(extension, 0, hashBytes, i, numBytes);
+        seed = (int)extensionHash.getLow();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Murmur128Hasher.class.getSimpleName();
+  }
+}
@@ -99,7 +99,50 @@ public final class Murmur64Hasher implements Hasher {
   }
 
   public static long murmurHash64(final ByteBuffer data, final int seed) {
-    return murmurHash64(data.array(), data.arrayOffset() + data.position(), data.remaining(), seed);
+    if (data.hasArray()) {
+      return murmurHash64(data.array(), data.arrayOffset() + data.position(), data.remaining(), seed);
+    } else {
+      return murmurHash64Absolute(data, data.position(), data.remaining(), seed);
+    }
+  }
+
+  // Same as murmurHash64(byte[], int, int, int) but reads the buffer with absolute gets, so that
+  // direct buffers can be hashed without being copied
+  private static long murmurHash64Absolute(final ByteBuffer data, final int off, final int length, final int seed) {
+    final long m = 0xc6a4a7935bd1e995L;
+    final int r = 47;
+
+    long h = seed ^ (length * m);
+
+    final int remainder = length & 7;
+    final int end = off + length - remainder;
+    for (int i = off; i < end; i += 8) {
+      long k = data.get(i + 7);
+      for (int j = 6; j >= 0; --j) {
+        k = k << 8;
+        k = k | (data.get(i + j) & 0xff);
+      }
+
+      k *= m;
+      k ^= k >>> r;
+      k *= m;
+
+      h ^= k;
+      h *= m;
+    }
+
+    if (remainder > 0) {
+      for (int j = remainder - 1; j >= 0; --j) {
+        h ^= (long) (data.get(end + j) & 0xff) << (8 * j);
+      }
+      h *= m;
+    }
+
+    h ^= h >>> r;
+    h *= m;
+    h ^= h >>> r;
+
+    return h;
   }
 
   @Override
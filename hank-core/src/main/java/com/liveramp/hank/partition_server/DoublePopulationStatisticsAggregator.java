@@ -25,6 +25,7 @@ import java.util.Random;
 import com.google.common.collect.Lists;
 
 import com.liveramp.hank.generated.LatencySampleSummary;
+import com.liveramp.hank.util.LatencyHistogram;
 
 public class DoublePopulationStatisticsAggregator {
 
@@ -40,6 +41,9 @@ public class DoublePopulationStatisticsAggregator {
   private double total;
   private final ReservoirSample reservoirSample = new ReservoirSample(POPULATION_RANDOM_SAMPLE_MAX_SIZE);
   private final Random random = new Random();
+  // Set when all values were aggregated from histograms (durations in nanoseconds), in which case
+  // percentiles are computed from it rather than from the random sample
+  private LatencyHistogram histogram;
 
   public DoublePopulationStatisticsAggregator() {
     clear();
@@ -63,9 +67,36 @@ public class DoublePopulationStatisticsAggregator {
     numValues = 0;
     total = 0.0;
     reservoirSample.clear();
+    histogram = null;
+  }
+
+  public void aggregate(LatencyHistogram histogram) {
+    if (histogram.getTotalCount() == 0) {
+      return;
+    }
+    if (numValues == 0 && this.histogram == null) {
+      this.histogram = new LatencyHistogram();
+    }
+    if (this.histogram != null) {
+      this.histogram.add(histogram);
+    } else {
+      reservoirSample.sample(getSample(histogram), random);
+    }
+    aggregateTotals(histogram.getMinimum() / 1000000d, histogram.getMaximum() / 1000000d,
+        histogram.getTotalCount(), histogram.getTotalValue() / 1000000d);
   }
 
   public void aggregate(double minimum, double maximum, long numValues, double total, double[] values) {
+    if (histogram != null) {
+      // Values can not be added to the histogram, fall back to sampling
+      reservoirSample.sample(getSample(histogram), random);
+      histogram = null;
+    }
+    aggregateTotals(minimum, maximum, numValues, total);
+    this.reservoirSample.sample(values, random);
+  }
+
+  private void aggregateTotals(double minimum, double maximum, long numValues, double total) {
     if (maximum > this.maximum) {
       this.maximum = maximum;
     }
@@ -74,13 +105,27 @@ public class DoublePopulationStatisticsAggregator {
     }
     this.numValues += numValues;
     this.total += total;
-    this.reservoirSample.sample(values, random);
   }
 
   public static DoublePopulationStatisticsAggregator
   combine(Collection<DoublePopulationStatisticsAggregator> aggregators) {
     Random random = new Random();
     DoublePopulationStatisticsAggregator result = new DoublePopulationStatisticsAggregator();
+    // Histograms can be merged exactly if all aggregators have one
+    boolean allHaveHistograms = true;
+    for (DoublePopulationStatisticsAggregator aggregator : aggregators) {
+      if (aggregator.numValues != 0 && aggregator.histogram == null) {
+        allHaveHistograms = false;
+      }
+    }
+    if (allHaveHistograms) {
+      for (DoublePopulationStatisticsAggregator aggregator : aggregators) {
+        if (aggregator.histogram != null) {
+          result.aggregate(aggregator.histogram);
+        }
+      }
+      return result;
+    }
     for (DoublePopulationStatisticsAggregator aggregator : aggregators) {
       if (aggregator.maximum > result.maximum) {
         result.maximum = aggregator.maximum;
@@ -98,7 +143,7 @@ public class DoublePopulationStatisticsAggregator {
     // have the same size.
     for (DoublePopulationStatisticsAggregator aggregator : aggregators) {
       double ratio = (double) aggregator.numValues / (double) result.numValues;
-      for (double value : aggregator.reservoirSample.getReservoir()) {
+      for (double value : aggregator.getSampleValues()) {
         if ((Math.abs(random.nextDouble()) / Double.MAX_VALUE) < ratio) {
           result.reservoirSample.sample(value, random);
         }
@@ -132,7 +177,11 @@ public class DoublePopulationStatisticsAggregator {
   public double[] computeDeciles() {
     double[] result = new double[9];
     Arrays.fill(result, 0.0);
-    if (reservoirSample.getSize() > 0) {
+    if (histogram != null) {
+      for (int i = 0; i < 9; ++i) {
+        result[i] = histogram.getValueAtPercentile((i + 1) * 10) / 1000000d;
+      }
+    } else if (reservoirSample.getSize() > 0) {
       // Sort valid reservoir values first
       Arrays.sort(reservoirSample.getReservoir(), 0, reservoirSample.getSize());
       // Compute deciles
@@ -143,6 +192,21 @@ public class DoublePopulationStatisticsAggregator {
     return result;
   }
 
+  /**
+   * @param percentile between 0 and 100
+   */
+  public double computePercentile(double percentile) {
+    if (histogram != null) {
+      return histogram.getValueAtPercentile(percentile) / 1000000d;
+    } else if (reservoirSample.getSize() > 0) {
+      Arrays.sort(reservoirSample.getReservoir(), 0, reservoirSample.getSize());
+      double rank = (reservoirSample.getSize() - 1) * Math.min(100, Math.max(0, percentile)) / 100;
+      return getInterpolatedValueAtIndex(Arrays.copyOf(reservoirSample.getReservoir(), reservoirSample.getSize()), rank);
+    } else {
+      return 0;
+    }
+  }
+
   public LatencySampleSummary getStatistics(){
 
     LatencySampleSummary summary = new LatencySampleSummary();
@@ -171,13 +235,32 @@ public class DoublePopulationStatisticsAggregator {
     result.append(populationStatistics.numValues);
     result.append(' ');
     result.append(populationStatistics.total);
-    for (int i = 0; i < populationStatistics.reservoirSample.getSize(); ++i) {
+    for (double value : populationStatistics.getSampleValues()) {
       result.append(' ');
-      result.append(populationStatistics.reservoirSample.getReservoir()[i]);
+      result.append(value);
     }
     return result.toString();
   }
 
+  // Values representative of the population, in milliseconds
+  private double[] getSampleValues() {
+    if (histogram != null) {
+      return getSample(histogram);
+    } else {
+      return Arrays.copyOf(reservoirSample.getReservoir(), reservoirSample.getSize());
+    }
+  }
+
+  // Evenly spaced percentiles of the histogram, in milliseconds
+  private static double[] getSample(LatencyHistogram histogram) {
+    int size = (int)Math.min(POPULATION_RANDOM_SAMPLE_MAX_SIZE, histogram.getTotalCount());
+    double[] result = new double[size];
+    for (int i = 0; i < size; ++i) {
+      result[i] = histogram.getValueAtPercentile(100d * (i + 0.5) / size) / 1000000d;
+    }
+    return result;
+  }
+
   public static String formatDouble(double value) {
     if (value < 1) {
       return format3.format(value);
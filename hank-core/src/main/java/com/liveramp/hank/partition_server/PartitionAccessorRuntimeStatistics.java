@@ -17,6 +17,7 @@
 package com.liveramp.hank.partition_server;
 
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
 
 public class PartitionAccessorRuntimeStatistics {
 
@@ -26,7 +27,10 @@ public class PartitionAccessorRuntimeStatistics {
   protected final double responseDataThroughput;
   protected final long numL1CacheHits;
   protected final long numL2CacheHits;
+  protected final long numBlockCacheHits;
+  protected final long numBlockCacheMisses;
   protected final CacheStatistics cacheStatistics;
+  protected final FilterStatistics filterStatistics;
 
   public PartitionAccessorRuntimeStatistics(long numRequests,
                                             long numHits,
@@ -34,13 +38,19 @@ public class PartitionAccessorRuntimeStatistics {
                                             double responseDataThroughput,
                                             long numL1CacheHits,
                                             long numL2CacheHits,
-                                            CacheStatistics cacheStatistics) {
+                                            long numBlockCacheHits,
+                                            long numBlockCacheMisses,
+                                            CacheStatistics cacheStatistics,
+                                            FilterStatistics filterStatistics) {
     this.numRequests = numRequests;
     this.numHits = numHits;
     this.throughput = throughput;
     this.responseDataThroughput = responseDataThroughput;
     this.numL1CacheHits = numL1CacheHits;
     this.numL2CacheHits = numL2CacheHits;
+    this.numBlockCacheHits = numBlockCacheHits;
+    this.numBlockCacheMisses = numBlockCacheMisses;
     this.cacheStatistics = cacheStatistics;
+    this.filterStatistics = filterStatistics;
   }
 }
@@ -24,6 +24,8 @@ public class PartitionUpdateTaskStatistics {
   private long startTimeMs;
   private long endTimeMs;
   private final Map<String, Long> durationsMs;
+  private long dataFetchNumBytes;
+  private long dataFetchDurationMs;
 
   public PartitionUpdateTaskStatistics() {
     this.durationsMs = new HashMap<String, Long>();
@@ -48,4 +50,25 @@ public class PartitionUpdateTaskStatistics {
   public Map<String, Long> getDurationsMs() {
     return durationsMs;
   }
+
+  public void recordDataFetch(long numBytes, long durationMs) {
+    dataFetchNumBytes += numBytes;
+    dataFetchDurationMs += durationMs;
+  }
+
+  public long getDataFetchNumBytes() {
+    return dataFetchNumBytes;
+  }
+
+  public long getDataFetchDurationMs() {
+    return dataFetchDurationMs;
+  }
+
+  // In bytes per second, 0 if no data was fetched
+  public double getDataFetchThroughput() {
+    if (dataFetchDurationMs == 0) {
+      return 0;
+    }
+    return dataFetchNumBytes / (dataFetchDurationMs / 1000d);
+  }
 }
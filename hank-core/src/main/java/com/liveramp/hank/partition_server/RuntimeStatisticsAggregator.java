@@ -24,6 +24,7 @@ import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
 import com.liveramp.hank.generated.DomainStatisticsSummary;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
 
 public class RuntimeStatisticsAggregator {
 
@@ -37,6 +38,9 @@ public class RuntimeStatisticsAggregator {
   private long numL2CacheHitsTotal;
   private DoublePopulationStatisticsAggregator getRequestsPopulationStatistics;
   private CacheStatistics cacheStatisticsTotal;
+  private FilterStatistics filterStatisticsTotal;
+  private long numBlockCacheHitsTotal;
+  private long numBlockCacheMissesTotal;
 
   public RuntimeStatisticsAggregator() {
     throughputTotal = 0;
@@ -47,6 +51,9 @@ public class RuntimeStatisticsAggregator {
     numL2CacheHitsTotal = 0;
     getRequestsPopulationStatistics = new DoublePopulationStatisticsAggregator();
     cacheStatisticsTotal = new CacheStatistics(0, 0, 0, 0);
+    filterStatisticsTotal = new FilterStatistics(0, 0, 0, 0);
+    numBlockCacheHitsTotal = 0;
+    numBlockCacheMissesTotal = 0;
   }
 
   public RuntimeStatisticsAggregator(double throughputTotal,
@@ -57,6 +64,50 @@ public class RuntimeStatisticsAggregator {
                                      long numL2CacheHitsTotal,
                                      DoublePopulationStatisticsAggregator getRequestsPopulationStatistics,
                                      CacheStatistics cacheStatisticsTotal) {
+    this(throughputTotal,
+        responseDataThroughputTotal,
+        numRequestsTotal,
+        numHitsTotal,
+        numL1CacheHitsTotal,
+        numL2CacheHitsTotal,
+        getRequestsPopulationStatistics,
+        cacheStatisticsTotal,
+        new FilterStatistics(0, 0, 0, 0));
+  }
+
+  public RuntimeStatisticsAggregator(double throughputTotal,
+                                     double responseDataThroughputTotal,
+                                     long numRequestsTotal,
+                                     long numHitsTotal,
+                                     long numL1CacheHitsTotal,
+                                     long numL2CacheHitsTotal,
+                                     DoublePopulationStatisticsAggregator getRequestsPopulationStatistics,
+                                     CacheStatistics cacheStatisticsTotal,
+                                     FilterStatistics filterStatisticsTotal) {
+    this(throughputTotal,
+        responseDataThroughputTotal,
+        numRequestsTotal,
+        numHitsTotal,
+        numL1CacheHitsTotal,
+        numL2CacheHitsTotal,
+        getRequestsPopulationStatistics,
+        cacheStatisticsTotal,
+        filterStatisticsTotal,
+        0,
+        0);
+  }
+
+  public RuntimeStatisticsAggregator(double throughputTotal,
+                                     double responseDataThroughputTotal,
+                                     long numRequestsTotal,
+                                     long numHitsTotal,
+                                     long numL1CacheHitsTotal,
+                                     long numL2CacheHitsTotal,
+                                     DoublePopulationStatisticsAggregator getRequestsPopulationStatistics,
+                                     CacheStatistics cacheStatisticsTotal,
+                                     FilterStatistics filterStatisticsTotal,
+                                     long numBlockCacheHitsTotal,
+                                     long numBlockCacheMissesTotal) {
     this.throughputTotal = throughputTotal;
     this.responseDataThroughputTotal = responseDataThroughputTotal;
     this.numRequestsTotal = numRequestsTotal;
@@ -65,6 +116,9 @@ public class RuntimeStatisticsAggregator {
     this.numL2CacheHitsTotal = numL2CacheHitsTotal;
     this.getRequestsPopulationStatistics = getRequestsPopulationStatistics;
     this.cacheStatisticsTotal = cacheStatisticsTotal;
+    this.filterStatisticsTotal = filterStatisticsTotal;
+    this.numBlockCacheHitsTotal = numBlockCacheHitsTotal;
+    this.numBlockCacheMissesTotal = numBlockCacheMissesTotal;
   }
 
   public void add(PartitionAccessorRuntimeStatistics runtimeStatistics) {
@@ -74,7 +128,12 @@ public class RuntimeStatisticsAggregator {
     numHitsTotal += runtimeStatistics.numHits;
     numL1CacheHitsTotal += runtimeStatistics.numL1CacheHits;
     numL2CacheHitsTotal += runtimeStatistics.numL2CacheHits;
+    numBlockCacheHitsTotal += runtimeStatistics.numBlockCacheHits;
+    numBlockCacheMissesTotal += runtimeStatistics.numBlockCacheMisses;
     cacheStatisticsTotal.add(runtimeStatistics.cacheStatistics);
+    if (runtimeStatistics.filterStatistics != null) {
+      filterStatisticsTotal.add(runtimeStatistics.filterStatistics);
+    }
   }
 
   public static RuntimeStatisticsAggregator combine(Collection<RuntimeStatisticsAggregator> runtimeStatisticsAggregators) {
@@ -90,6 +149,9 @@ public class RuntimeStatisticsAggregator {
       result.numL2CacheHitsTotal += runtimeStatisticsAggregator.numL2CacheHitsTotal;
       doublePopulationStatisticsAggregators.add(runtimeStatisticsAggregator.getRequestsPopulationStatistics);
       result.cacheStatisticsTotal.add(runtimeStatisticsAggregator.cacheStatisticsTotal);
+      result.filterStatisticsTotal.add(runtimeStatisticsAggregator.filterStatisticsTotal);
+      result.numBlockCacheHitsTotal += runtimeStatisticsAggregator.numBlockCacheHitsTotal;
+      result.numBlockCacheMissesTotal += runtimeStatisticsAggregator.numBlockCacheMissesTotal;
     }
     result.getRequestsPopulationStatistics = DoublePopulationStatisticsAggregator.combine(doublePopulationStatisticsAggregators);
     return result;
@@ -131,6 +193,20 @@ public class RuntimeStatisticsAggregator {
     }
   }
 
+  // Number of reads of block compressed values that used a block cache
+  public long getNumBlockCacheRequests() {
+    return numBlockCacheHitsTotal + numBlockCacheMissesTotal;
+  }
+
+  public double getBlockCacheHitRate() {
+    long numBlockCacheRequests = getNumBlockCacheRequests();
+    if (numBlockCacheRequests == 0) {
+      return 0;
+    } else {
+      return (double)numBlockCacheHitsTotal / (double)numBlockCacheRequests;
+    }
+  }
+
   public DoublePopulationStatisticsAggregator getGetRequestsPopulationStatistics() {
     return getRequestsPopulationStatistics;
   }
@@ -139,6 +215,10 @@ public class RuntimeStatisticsAggregator {
     return cacheStatisticsTotal;
   }
 
+  public FilterStatistics getFilterStatistics() {
+    return filterStatisticsTotal;
+  }
+
 
   public void putToStatistics(DomainStatisticsSummary summary){
     summary.set_throughput_total(throughputTotal);
@@ -160,6 +240,8 @@ public class RuntimeStatisticsAggregator {
   }
 
 
+  // Statistics added after the initial format are in a separate tab separated section, which is
+  // ignored by readers that only parse the first section
   public static String toString(RuntimeStatisticsAggregator runtimeStatisticsAggregator) {
     return runtimeStatisticsAggregator.throughputTotal
         + " " + runtimeStatisticsAggregator.responseDataThroughputTotal
@@ -172,11 +254,18 @@ public class RuntimeStatisticsAggregator {
         + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumManagedBytes()
         + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getMaxNumManagedBytes()
         + " " + DoublePopulationStatisticsAggregator.toString(
-        runtimeStatisticsAggregator.getRequestsPopulationStatistics);
+        runtimeStatisticsAggregator.getRequestsPopulationStatistics)
+        + "\t" + runtimeStatisticsAggregator.filterStatisticsTotal.getNumKeys()
+        + " " + runtimeStatisticsAggregator.filterStatisticsTotal.getNumManagedBytes()
+        + " " + runtimeStatisticsAggregator.filterStatisticsTotal.getNumTrueNegatives()
+        + " " + runtimeStatisticsAggregator.filterStatisticsTotal.getNumFalsePositives()
+        + " " + runtimeStatisticsAggregator.numBlockCacheHitsTotal
+        + " " + runtimeStatisticsAggregator.numBlockCacheMissesTotal;
   }
 
   public static RuntimeStatisticsAggregator parse(String str) {
-    String[] tokens = str.split(" ");
+    String[] sections = str.split("\t");
+    String[] tokens = sections[0].split(" ");
 
     try {
 
@@ -205,6 +294,24 @@ public class RuntimeStatisticsAggregator {
           Double.parseDouble(tokens[13]),
           randomSample);
 
+      // Statistics serialized before filter statistics were added have no second section
+      FilterStatistics filterStatisticsTotal = new FilterStatistics(0, 0, 0, 0);
+      long numBlockCacheHitsTotal = 0;
+      long numBlockCacheMissesTotal = 0;
+      if (sections.length > 1) {
+        String[] extraTokens = sections[1].split(" ");
+        filterStatisticsTotal = new FilterStatistics(
+            Long.parseLong(extraTokens[0]),
+            Long.parseLong(extraTokens[1]),
+            Long.parseLong(extraTokens[2]),
+            Long.parseLong(extraTokens[3]));
+        // Block cache statistics were added after filter statistics
+        if (extraTokens.length > 5) {
+          numBlockCacheHitsTotal = Long.parseLong(extraTokens[4]);
+          numBlockCacheMissesTotal = Long.parseLong(extraTokens[5]);
+        }
+      }
+
       return new RuntimeStatisticsAggregator(
           throughputTotal,
           responseDataThroughputTotal,
@@ -213,7 +320,10 @@ public class RuntimeStatisticsAggregator {
           numL1CacheHitsTotal,
           numL2CacheHitsTotal,
           getRequestsPopulationStatistics,
-          cacheStatisticsTotal);
+          cacheStatisticsTotal,
+          filterStatisticsTotal,
+          numBlockCacheHitsTotal,
+          numBlockCacheMissesTotal);
     } catch (Exception e) {
       LOG.error("Failed to parse runtime statistics aggregator with string: " + str, e);
       return new RuntimeStatisticsAggregator();
@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partitioner;
+
+import java.nio.ByteBuffer;
+
+import com.liveramp.hank.hasher.Hash128;
+import com.liveramp.hank.hasher.Murmur128Hasher;
+
+/**
+ * Partitioner using the same 128-bit hash as Murmur128Hasher, so that keys of domains using both are
+ * hashed once per lookup. The partition is derived from the low 31 bits of the hash, which
+ * Murmur128Hasher writes last.
+ */
+public class Murmur128Partitioner implements Partitioner {
+
+  @Override
+  public int partition(ByteBuffer key, int numPartitions) {
+    return partition(key, numPartitions, new Hash128());
+  }
+
+  // Partition the key, keeping its hash in the given Hash128 so that it can be reused
+  public int partition(ByteBuffer key, int numPartitions, Hash128 hash) {
+    Murmur128Hasher.murmurHash128(key, Murmur128Hasher.SEED, hash);
+    return getPartition(hash, numPartitions);
+  }
+
+  public static int getPartition(Hash128 hash, int numPartitions) {
+    return (int)(hash.getLow() & Integer.MAX_VALUE) % numPartitions;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Murmur128Partitioner;
+  }
+
+  @Override
+  public String toString() {
+    return Murmur128Partitioner.class.getSimpleName();
+  }
+}
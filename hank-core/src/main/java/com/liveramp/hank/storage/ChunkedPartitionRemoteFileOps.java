@@ -0,0 +1,39 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Remote file operations that can copy ranges of a file, so that large files can be fetched in
+ * chunks by concurrent streams.
+ */
+public interface ChunkedPartitionRemoteFileOps extends PartitionRemoteFileOps {
+
+  /**
+   * @return the number of bytes of the remote file, or -1 if ranges of it can not be copied
+   * (for example when it is compressed)
+   */
+  public long getSize(String remoteRelativePath) throws IOException;
+
+  // Copy length bytes starting at offset in the remote file to the same offset in the existing destination file
+  public void copyRangeToLocalFile(String remoteSourceRelativePath,
+                                   long offset,
+                                   long length,
+                                   File localDestination) throws IOException;
+}
@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+public class FilterStatistics {
+
+  private long numKeys;
+  private long numManagedBytes;
+  // Lookups of absent keys that the filter rejected
+  private long numTrueNegatives;
+  // Lookups of absent keys that the filter let through
+  private long numFalsePositives;
+
+  public FilterStatistics(long numKeys, long numManagedBytes, long numTrueNegatives, long numFalsePositives) {
+    this.numKeys = numKeys;
+    this.numManagedBytes = numManagedBytes;
+    this.numTrueNegatives = numTrueNegatives;
+    this.numFalsePositives = numFalsePositives;
+  }
+
+  public long getNumKeys() {
+    return numKeys;
+  }
+
+  public long getNumManagedBytes() {
+    return numManagedBytes;
+  }
+
+  public long getNumTrueNegatives() {
+    return numTrueNegatives;
+  }
+
+  public long getNumFalsePositives() {
+    return numFalsePositives;
+  }
+
+  public double getFalsePositiveRate() {
+    if (numTrueNegatives + numFalsePositives == 0) {
+      return 0;
+    } else {
+      return (double)numFalsePositives / (double)(numTrueNegatives + numFalsePositives);
+    }
+  }
+
+  public void add(FilterStatistics filterStatistics) {
+    this.numKeys += filterStatistics.numKeys;
+    this.numManagedBytes += filterStatistics.numManagedBytes;
+    this.numTrueNegatives += filterStatistics.numTrueNegatives;
+    this.numFalsePositives += filterStatistics.numFalsePositives;
+  }
+
+  @Override
+  public String toString() {
+    return "FilterStatistics [numKeys=" + numKeys
+        + ", numManagedBytes=" + numManagedBytes
+        + ", numTrueNegatives=" + numTrueNegatives
+        + ", numFalsePositives=" + numFalsePositives
+        + ", falsePositiveRate=" + getFalsePositiveRate() + "]";
+  }
+}
@@ -0,0 +1,420 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
+import com.liveramp.commons.util.MemoryUsageEstimator;
+import com.liveramp.hank.util.MemoryBoundCache;
+
+/**
+ * Cache shared by all the Readers of a host, so that hot partitions can use the memory that cold
+ * ones do not need. Each Reader gets its own partition cache, which scopes keys to the Reader's
+ * domain, partition and version. Entries from all partitions compete for the same capacity:
+ * they are evicted by recency, and a new entry is only admitted over the least recently used one
+ * if it has been accessed at least as frequently.
+ */
+public class HostCacheManager {
+
+  public static final int DEFAULT_NUM_SEGMENTS = 16;
+
+  // Estimated overhead of a cache entry, on top of its key and value
+  private static final int ENTRY_OVERHEAD_NUM_BYTES = 96;
+  // Used to size frequency sketches when the capacity is only expressed in bytes
+  private static final int EXPECTED_ENTRY_NUM_BYTES = 256;
+
+  private static final MemoryUsageEstimator<ByteBuffer> BYTE_BUFFER_ESTIMATOR = new ByteBufferMemoryUsageEstimator();
+
+  // Reused by each thread to look entries up without allocating a key
+  private static final ThreadLocal<Key> LOOKUP_KEY = new ThreadLocal<Key>() {
+    @Override
+    protected Key initialValue() {
+      return new Key();
+    }
+  };
+
+  private final long numBytesCapacity;
+  private final long numItemsCapacity;
+  // Partitions sharing the cache, updated when partitions are added or removed online
+  private volatile int numTotalPartitions;
+  private final Segment[] segments;
+
+  public HostCacheManager(long numBytesCapacity, long numItemsCapacity, int numTotalPartitions) {
+    this(numBytesCapacity, numItemsCapacity, numTotalPartitions, DEFAULT_NUM_SEGMENTS);
+  }
+
+  public HostCacheManager(long numBytesCapacity, long numItemsCapacity, int numTotalPartitions, int numSegments) {
+    this.numBytesCapacity = numBytesCapacity;
+    this.numItemsCapacity = numItemsCapacity;
+    this.numTotalPartitions = Math.max(1, numTotalPartitions);
+    if (isEnabled()) {
+      if (numItemsCapacity > 0) {
+        numSegments = (int)Math.min(numSegments, numItemsCapacity);
+      }
+      long expectedNumItems = numItemsCapacity > 0 ? numItemsCapacity : numBytesCapacity / EXPECTED_ENTRY_NUM_BYTES;
+      segments = new Segment[numSegments];
+      for (int i = 0; i < numSegments; ++i) {
+        segments[i] = new Segment(
+            numBytesCapacity > 0 ? numBytesCapacity / numSegments : numBytesCapacity,
+            numItemsCapacity > 0 ? numItemsCapacity / numSegments : numItemsCapacity,
+            expectedNumItems / numSegments);
+      }
+    } else {
+      segments = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return numBytesCapacity > 0 || numItemsCapacity > 0;
+  }
+
+  // Create the cache to be used by a single Reader of the given domain, partition and version
+  public MemoryBoundCache<ByteBuffer, ByteBuffer> getPartitionCache(int domainId, int partitionNumber, int versionNumber) {
+    return new PartitionCache(domainId, partitionNumber, versionNumber);
+  }
+
+  // Remove all the entries of a partition cache that is not used anymore, such as the cache of a closed
+  // Reader, so that they stop taking up the host's capacity. Entries put afterwards are ignored.
+  // Other caches are left untouched.
+  public static void purge(MemoryBoundCache<ByteBuffer, ByteBuffer> cache) {
+    if (cache instanceof PartitionCache) {
+      ((PartitionCache)cache).purge();
+    }
+  }
+
+  public void setNumTotalPartitions(int numTotalPartitions) {
+    this.numTotalPartitions = Math.max(1, numTotalPartitions);
+  }
+
+  public long getNumBytesCapacity() {
+    return numBytesCapacity;
+  }
+
+  public long getNumItemsCapacity() {
+    return numItemsCapacity;
+  }
+
+  private Segment getSegment(Key key) {
+    return segments[(key.hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  private class PartitionCache implements MemoryBoundCache<ByteBuffer, ByteBuffer> {
+
+    private final int domainId;
+    private final int partitionNumber;
+    private final int versionNumber;
+    // Occupancy of this partition in the shared cache
+    private final AtomicLong numItems = new AtomicLong(0);
+    private final AtomicLong numManagedBytes = new AtomicLong(0);
+    private volatile boolean purged = false;
+
+    public PartitionCache(int domainId, int partitionNumber, int versionNumber) {
+      this.domainId = domainId;
+      this.partitionNumber = partitionNumber;
+      this.versionNumber = versionNumber;
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return HostCacheManager.this.isEnabled();
+    }
+
+    @Override
+    public ByteBuffer get(ByteBuffer key) {
+      if (!isEnabled()) {
+        return null;
+      }
+      Key cacheKey = LOOKUP_KEY.get().set(this, key);
+      try {
+        return getSegment(cacheKey).get(cacheKey);
+      } finally {
+        // Do not retain the key or this cache
+        cacheKey.set(null, null);
+      }
+    }
+
+    @Override
+    public void put(ByteBuffer key, ByteBuffer value) {
+      if (isEnabled()) {
+        if (value == null) {
+          throw new IllegalArgumentException("Value to put in cache should not be null.");
+        }
+        Key cacheKey = new Key(this, key);
+        getSegment(cacheKey).put(cacheKey, value);
+      }
+    }
+
+    @Override
+    public int size() {
+      return (int)numItems.get();
+    }
+
+    // The maximums reported are this partition's fair share of the host's capacity
+
+    @Override
+    public int getMaxNumItems() {
+      if (!isEnabled() || numItemsCapacity <= 0) {
+        return 0;
+      }
+      return (int)(numItemsCapacity / numTotalPartitions);
+    }
+
+    @Override
+    public long getNumManagedBytes() {
+      return numManagedBytes.get();
+    }
+
+    @Override
+    public long getMaxNumManagedBytes() {
+      if (!isEnabled() || numBytesCapacity <= 0) {
+        return 0;
+      }
+      return numBytesCapacity / numTotalPartitions;
+    }
+
+    private void purge() {
+      purged = true;
+      if (isEnabled()) {
+        for (Segment segment : segments) {
+          if (numItems.get() == 0) {
+            break;
+          }
+          segment.purge(this);
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "PartitionCache [domainId=" + domainId + ", partitionNumber=" + partitionNumber
+          + ", versionNumber=" + versionNumber + "]";
+    }
+  }
+
+  // Keys of different partition caches never match, even for the same domain, partition and version.
+  // Keys stored in the cache are never modified, only lookup keys are reused.
+  private static class Key {
+
+    private PartitionCache partitionCache;
+    private ByteBuffer key;
+    private int hash;
+
+    public Key() {
+    }
+
+    public Key(PartitionCache partitionCache, ByteBuffer key) {
+      set(partitionCache, key);
+    }
+
+    public Key set(PartitionCache partitionCache, ByteBuffer key) {
+      this.partitionCache = partitionCache;
+      this.key = key;
+      if (key == null) {
+        this.hash = 0;
+      } else {
+        int hash = 31 * System.identityHashCode(partitionCache) + key.hashCode();
+        // Spread bits since the hash is also used to select segments and sketch counters
+        hash *= 0x9e3779b9;
+        this.hash = hash ^ (hash >>> 16);
+      }
+      return this;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key)o;
+      return partitionCache == other.partitionCache && key.equals(other.key);
+    }
+  }
+
+  private static class Entry {
+
+    private final ByteBuffer value;
+    private final long numBytes;
+
+    public Entry(ByteBuffer value, long numBytes) {
+      this.value = value;
+      this.numBytes = numBytes;
+    }
+  }
+
+  private static class Segment {
+
+    // Access ordered, the first entry is the least recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final FrequencySketch frequencySketch;
+    private final long maxNumBytes;
+    private final long maxNumItems;
+    private long numBytes = 0;
+
+    public Segment(long maxNumBytes, long maxNumItems, long expectedNumItems) {
+      this.maxNumBytes = maxNumBytes;
+      this.maxNumItems = maxNumItems;
+      this.frequencySketch = new FrequencySketch(expectedNumItems);
+    }
+
+    public synchronized ByteBuffer get(Key key) {
+      frequencySketch.increment(key.hash);
+      Entry entry = entries.get(key);
+      return entry == null ? null : entry.value;
+    }
+
+    public synchronized void put(Key key, ByteBuffer value) {
+      // Checked under the lock so that nothing is left behind by a concurrent purge
+      if (key.partitionCache.purged) {
+        return;
+      }
+      long entryNumBytes = ENTRY_OVERHEAD_NUM_BYTES
+          + BYTE_BUFFER_ESTIMATOR.estimateMemorySize(key.key)
+          + BYTE_BUFFER_ESTIMATOR.estimateMemorySize(value);
+      if (maxNumBytes > 0 && entryNumBytes > maxNumBytes) {
+        return;
+      }
+      Entry previousEntry = entries.remove(key);
+      if (previousEntry != null) {
+        release(key, previousEntry);
+      }
+      // Find the least recently used entries that have to be evicted for the candidate to fit. Unless it
+      // replaces a previous value, the candidate is only admitted if it is accessed at least as frequently
+      // as each of them, and nothing is evicted otherwise.
+      int candidateFrequency = frequencySketch.getFrequency(key.hash);
+      int numVictims = 0;
+      long victimsNumBytes = 0;
+      Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+      while (isFull(numVictims, victimsNumBytes, entryNumBytes) && iterator.hasNext()) {
+        Map.Entry<Key, Entry> victim = iterator.next();
+        // Keep the victim if it is accessed more frequently than the candidate. It is moved to the
+        // most recently used position so that the next candidate is compared to another entry.
+        if (previousEntry == null && candidateFrequency < frequencySketch.getFrequency(victim.getKey().hash)) {
+          entries.get(victim.getKey());
+          return;
+        }
+        ++numVictims;
+        victimsNumBytes += victim.getValue().numBytes;
+      }
+      iterator = entries.entrySet().iterator();
+      for (int i = 0; i < numVictims; ++i) {
+        Map.Entry<Key, Entry> victim = iterator.next();
+        iterator.remove();
+        release(victim.getKey(), victim.getValue());
+      }
+      entries.put(key, new Entry(value, entryNumBytes));
+      numBytes += entryNumBytes;
+      key.partitionCache.numItems.incrementAndGet();
+      key.partitionCache.numManagedBytes.addAndGet(entryNumBytes);
+    }
+
+    // Whether an entry of the given size does not fit, once the given victims are evicted
+    private boolean isFull(int numVictims, long victimsNumBytes, long entryNumBytes) {
+      return (maxNumItems > 0 && entries.size() - numVictims + 1 > maxNumItems)
+          || (maxNumBytes > 0 && numBytes - victimsNumBytes + entryNumBytes > maxNumBytes);
+    }
+
+    public synchronized void purge(PartitionCache partitionCache) {
+      Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Key, Entry> entry = iterator.next();
+        if (entry.getKey().partitionCache == partitionCache) {
+          iterator.remove();
+          release(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
+    private void release(Key key, Entry entry) {
+      numBytes -= entry.numBytes;
+      key.partitionCache.numItems.decrementAndGet();
+      key.partitionCache.numManagedBytes.addAndGet(-entry.numBytes);
+    }
+  }
+
+  // Count-min sketch of access frequencies with 4 bit counters. Counters are periodically halved so
+  // that old accesses weigh less than recent ones.
+  private static class FrequencySketch {
+
+    private static final int NUM_ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int MIN_WIDTH = 256;
+    private static final int MAX_WIDTH = 1 << 24;
+    private static final int[] SEEDS = new int[]{0x97cb3127, 0xb47d8e5b, 0x2c6fe96b, 0x4a7c159d};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final long resetThreshold;
+    private long numIncrements = 0;
+
+    public FrequencySketch(long expectedNumItems) {
+      int width = MIN_WIDTH;
+      while (width < expectedNumItems && width < MAX_WIDTH) {
+        width <<= 1;
+      }
+      counters = new byte[NUM_ROWS][width];
+      mask = width - 1;
+      resetThreshold = 10L * width;
+    }
+
+    public void increment(int hash) {
+      for (int row = 0; row < NUM_ROWS; ++row) {
+        int index = getIndex(hash, row);
+        if (counters[row][index] < MAX_COUNT) {
+          ++counters[row][index];
+        }
+      }
+      if (++numIncrements >= resetThreshold) {
+        halve();
+      }
+    }
+
+    public int getFrequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < NUM_ROWS; ++row) {
+        frequency = Math.min(frequency, counters[row][getIndex(hash, row)]);
+      }
+      return frequency;
+    }
+
+    private int getIndex(int hash, int row) {
+      int h = hash * SEEDS[row];
+      return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void halve() {
+      for (byte[] row : counters) {
+        for (int i = 0; i < row.length; ++i) {
+          row[i] >>= 1;
+        }
+      }
+      numIncrements /= 2;
+    }
+  }
+}
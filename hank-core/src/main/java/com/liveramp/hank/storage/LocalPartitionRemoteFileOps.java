@@ -22,10 +22,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 
 import org.apache.commons.io.FileUtils;
 
-public class LocalPartitionRemoteFileOps implements PartitionRemoteFileOps {
+public class LocalPartitionRemoteFileOps implements ChunkedPartitionRemoteFileOps {
 
   public static class Factory implements PartitionRemoteFileOpsFactory {
 
@@ -68,6 +70,36 @@ public class LocalPartitionRemoteFileOps implements PartitionRemoteFileOps {
     FileUtils.copyFile(source, destination);
   }
 
+  @Override
+  public long getSize(String remoteRelativePath) throws IOException {
+    return new File(getRemoteAbsolutePath(remoteRelativePath)).length();
+  }
+
+  @Override
+  public void copyRangeToLocalFile(String remoteSourceRelativePath,
+                                   long offset,
+                                   long length,
+                                   File localDestination) throws IOException {
+    FileInputStream inputStream = new FileInputStream(getRemoteAbsolutePath(remoteSourceRelativePath));
+    RandomAccessFile outputFile = new RandomAccessFile(localDestination, "rw");
+    try {
+      FileChannel input = inputStream.getChannel();
+      FileChannel output = outputFile.getChannel();
+      long numBytesCopied = 0;
+      while (numBytesCopied < length) {
+        long n = output.transferFrom(input.position(offset + numBytesCopied), offset + numBytesCopied, length - numBytesCopied);
+        if (n <= 0) {
+          throw new IOException("Unexpected end of file " + getRemoteAbsolutePath(remoteSourceRelativePath)
+              + " at offset " + (offset + numBytesCopied));
+        }
+        numBytesCopied += n;
+      }
+    } finally {
+      inputStream.close();
+      outputFile.close();
+    }
+  }
+
   @Override
   public boolean attemptDelete(String remoteRelativePath) throws IOException {
     if (exists(remoteRelativePath)) {
@@ -0,0 +1,255 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Value cache stored in direct memory so that it can be sized to several gigabytes without
+ * putting pressure on the garbage collector. The byte budget is split among independently locked
+ * segments. Each segment is a slab that is filled as a ring: new entries are appended and
+ * overwrite the oldest ones when the slab wraps around (FIFO eviction). Entries are found through
+ * an open addressing index, also stored in direct memory, that maps a key hash to the entry's
+ * address in the slab.
+ *
+ * Keys are scoped by a namespace so that a single cache can be shared by all the Readers of a host.
+ */
+public class OffHeapCache {
+
+  public static final int DEFAULT_NUM_SEGMENTS = 16;
+
+  // Segments are indexed with ints
+  private static final long MAX_SEGMENT_NUM_BYTES = 1L << 30;
+  private static final long MIN_SEGMENT_NUM_BYTES = 1L << 20;
+  // One index slot is allocated for this many bytes of capacity
+  private static final int NUM_BYTES_PER_INDEX_SLOT = 128;
+  private static final int MAX_NUM_PROBES = 8;
+
+  // Index slot: key hash (int), entry address + 1 (long). 0 means empty.
+  private static final int INDEX_SLOT_SIZE = 12;
+  // Entry: namespace (long), key size (int), value size (int), key, value
+  private static final int ENTRY_HEADER_SIZE = 16;
+  // Entries larger than this fraction of a segment are not cached, to avoid flushing it
+  private static final int MAX_ENTRY_SIZE_FRACTION = 8;
+
+  private final Segment[] segments;
+  private final long numBytesCapacity;
+  private final AtomicLong nextNamespace = new AtomicLong(0);
+
+  public OffHeapCache(long numBytesCapacity) {
+    this(numBytesCapacity, DEFAULT_NUM_SEGMENTS);
+  }
+
+  public OffHeapCache(long numBytesCapacity, int numSegments) {
+    if (numBytesCapacity <= 0) {
+      throw new IllegalArgumentException("Off heap cache capacity should be positive: " + numBytesCapacity);
+    }
+    this.numBytesCapacity = numBytesCapacity;
+    numSegments = (int)Math.min(numSegments, numBytesCapacity / MIN_SEGMENT_NUM_BYTES);
+    numSegments = (int)Math.max(numSegments, (numBytesCapacity + MAX_SEGMENT_NUM_BYTES - 1) / MAX_SEGMENT_NUM_BYTES);
+    numSegments = Math.max(1, numSegments);
+    segments = new Segment[numSegments];
+    for (int i = 0; i < numSegments; ++i) {
+      segments[i] = new Segment(numBytesCapacity / numSegments);
+    }
+  }
+
+  // Each user of the cache should get its own namespace so that keys do not collide
+  public long newNamespace() {
+    return nextNamespace.getAndIncrement();
+  }
+
+  // Return true and load the value into result if it was found in the cache
+  public boolean get(long namespace, ByteBuffer key, ReaderResult result) {
+    long hash = hash(namespace, key);
+    return getSegment(hash).get((int)hash, namespace, key, result);
+  }
+
+  public void put(long namespace, ByteBuffer key, ByteBuffer value) {
+    long hash = hash(namespace, key);
+    getSegment(hash).put((int)hash, namespace, key, value);
+  }
+
+  public long getNumBytesCapacity() {
+    return numBytesCapacity;
+  }
+
+  public long getNumManagedBytes() {
+    long numManagedBytes = 0;
+    for (Segment segment : segments) {
+      numManagedBytes += segment.getNumManagedBytes();
+    }
+    return numManagedBytes;
+  }
+
+  private Segment getSegment(long hash) {
+    // The low 32 bits select the index slot, use the high 32 bits for the segment so that
+    // every slot of a segment can be reached
+    return segments[(int)((hash >>> 32) % segments.length)];
+  }
+
+  private static long hash(long namespace, ByteBuffer key) {
+    // 64 bit FNV-1a, finalized with Murmur3's mixer
+    long hash = 0xcbf29ce484222325L ^ namespace;
+    for (int i = key.position(); i < key.limit(); ++i) {
+      hash ^= key.get(i) & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static class Segment {
+
+    private final ByteBuffer index;
+    private final int indexMask;
+    private final ByteBuffer data;
+    private final int dataCapacity;
+    // View used to copy entries in, only accessed while holding the segment's lock
+    private final ByteBuffer writeView;
+    // Absolute address at which the next entry is written. The physical position is
+    // writeAddress modulo the data capacity.
+    private long writeAddress = 0;
+
+    public Segment(long numBytesCapacity) {
+      int numIndexSlots = Integer.highestOneBit((int)Math.max(MAX_NUM_PROBES, numBytesCapacity / NUM_BYTES_PER_INDEX_SLOT));
+      int indexNumBytes = numIndexSlots * INDEX_SLOT_SIZE;
+      if (numBytesCapacity - indexNumBytes < MAX_ENTRY_SIZE_FRACTION * ENTRY_HEADER_SIZE) {
+        throw new IllegalArgumentException("Off heap cache segment capacity is too small to hold its index ("
+            + indexNumBytes + " bytes) and any data: " + numBytesCapacity);
+      }
+      this.index = ByteBuffer.allocateDirect(indexNumBytes);
+      this.indexMask = numIndexSlots - 1;
+      this.dataCapacity = (int)(numBytesCapacity - indexNumBytes);
+      this.data = ByteBuffer.allocateDirect(dataCapacity);
+      this.writeView = data.duplicate();
+    }
+
+    public synchronized boolean get(int hash, long namespace, ByteBuffer key, ReaderResult result) {
+      for (int probe = 0; probe < MAX_NUM_PROBES; ++probe) {
+        int slot = (hash + probe) & indexMask;
+        long address = getSlotAddress(slot);
+        if (address < 0) {
+          // Slots are never emptied, the key can not be further
+          return false;
+        }
+        if (getSlotHash(slot) == hash && isValid(address) && entryMatches(address, namespace, key)) {
+          int position = getPosition(address);
+          int keySize = data.getInt(position + 8);
+          int valueSize = data.getInt(position + 12);
+          int valuePosition = position + ENTRY_HEADER_SIZE + keySize;
+          result.deepCopyIntoResultBuffer(data, valuePosition, valueSize);
+          result.found();
+          result.setL2CacheHit(true);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public synchronized void put(int hash, long namespace, ByteBuffer key, ByteBuffer value) {
+      int keySize = key.remaining();
+      int valueSize = value.remaining();
+      long entrySize = (long)ENTRY_HEADER_SIZE + keySize + valueSize;
+      if (entrySize > dataCapacity / MAX_ENTRY_SIZE_FRACTION) {
+        return;
+      }
+      // Find the slot to use: the one already holding this key, or a free one, or evict the oldest entry
+      int targetSlot = -1;
+      boolean targetSlotIsFree = false;
+      long oldestAddress = Long.MAX_VALUE;
+      for (int probe = 0; probe < MAX_NUM_PROBES; ++probe) {
+        int slot = (hash + probe) & indexMask;
+        long address = getSlotAddress(slot);
+        if (address < 0 || !isValid(address)) {
+          if (!targetSlotIsFree) {
+            targetSlot = slot;
+            targetSlotIsFree = true;
+          }
+          if (address < 0) {
+            break;
+          }
+        } else if (getSlotHash(slot) == hash && entryMatches(address, namespace, key)) {
+          targetSlot = slot;
+          break;
+        } else if (!targetSlotIsFree && address < oldestAddress) {
+          targetSlot = slot;
+          oldestAddress = address;
+        }
+      }
+      // Entries do not wrap around the end of the slab
+      int position = getPosition(writeAddress);
+      if (position + entrySize > dataCapacity) {
+        writeAddress += dataCapacity - position;
+        position = 0;
+      }
+      long address = writeAddress;
+      data.putLong(position, namespace);
+      data.putInt(position + 8, keySize);
+      data.putInt(position + 12, valueSize);
+      writeView.limit(writeView.capacity()).position(position + ENTRY_HEADER_SIZE);
+      writeView.put(key.duplicate());
+      writeView.put(value.duplicate());
+      writeAddress += entrySize;
+      index.putInt(targetSlot * INDEX_SLOT_SIZE, hash);
+      index.putLong(targetSlot * INDEX_SLOT_SIZE + 4, address + 1);
+    }
+
+    public synchronized long getNumManagedBytes() {
+      return index.capacity() + Math.min(writeAddress, dataCapacity);
+    }
+
+    private int getSlotHash(int slot) {
+      return index.getInt(slot * INDEX_SLOT_SIZE);
+    }
+
+    // Return -1 if the slot is empty
+    private long getSlotAddress(int slot) {
+      return index.getLong(slot * INDEX_SLOT_SIZE + 4) - 1;
+    }
+
+    private int getPosition(long address) {
+      return (int)(address % dataCapacity);
+    }
+
+    // An entry is valid until the writer has gone around the slab and overwritten it
+    private boolean isValid(long address) {
+      return writeAddress - address <= dataCapacity;
+    }
+
+    private boolean entryMatches(long address, long namespace, ByteBuffer key) {
+      int position = getPosition(address);
+      if (data.getLong(position) != namespace) {
+        return false;
+      }
+      int keySize = key.remaining();
+      if (data.getInt(position + 8) != keySize) {
+        return false;
+      }
+      int keyPosition = position + ENTRY_HEADER_SIZE;
+      for (int i = 0; i < keySize; ++i) {
+        if (data.get(keyPosition + i) != key.get(key.position() + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reader decorator that caches found values in an OffHeapCache. The cache can be shared by
+ * multiple Readers since each decorator uses its own namespace. A new namespace is used every time
+ * a Reader is loaded, so that values from a previous version are never returned.
+ */
+public class OffHeapCachingReader implements Reader {
+
+  private final Reader reader;
+  private final OffHeapCache cache;
+  private final long namespace;
+
+  public OffHeapCachingReader(Reader reader, OffHeapCache cache) {
+    this.reader = reader;
+    this.cache = cache;
+    this.namespace = cache.newNamespace();
+  }
+
+  @Override
+  public void get(ByteBuffer key, ReaderResult result) throws IOException {
+    if (cache.get(namespace, key, result)) {
+      return;
+    }
+    reader.get(key, result);
+    if (result.isFound()) {
+      cache.put(namespace, key, result.getBuffer());
+    }
+  }
+
+  @Override
+  public Integer getVersionNumber() {
+    return reader.getVersionNumber();
+  }
+
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    return reader.getCacheStatistics();
+  }
+
+  @Override
+  public FilterStatistics getFilterStatistics() {
+    return reader.getFilterStatistics();
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  public Reader getReader() {
+    return reader;
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches remote files into a local directory concurrently. Files are split into chunks that are
+ * copied by separate tasks when the remote file operations support it, otherwise each file is copied
+ * by a single task. Concurrency is bounded by the given executor.
+ */
+public class ParallelFileFetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelFileFetcher.class);
+
+  public static final long DEFAULT_CHUNK_NUM_BYTES = 64L << 20;
+
+  private final Executor executor;
+  private final long chunkNumBytes;
+  private final List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+
+  public ParallelFileFetcher(Executor executor) {
+    this(executor, DEFAULT_CHUNK_NUM_BYTES);
+  }
+
+  public ParallelFileFetcher(Executor executor, long chunkNumBytes) {
+    if (chunkNumBytes <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkNumBytes);
+    }
+    this.executor = executor;
+    this.chunkNumBytes = chunkNumBytes;
+  }
+
+  // Start fetching the given file, named as in copyToLocalRoot(). Call awaitCompletion() to wait for all fetches.
+  public void fetch(final PartitionRemoteFileOps partitionRemoteFileOps,
+                    final String remoteRelativePath,
+                    final String localDestinationRoot) throws IOException {
+    long size = -1;
+    if (partitionRemoteFileOps instanceof ChunkedPartitionRemoteFileOps) {
+      size = ((ChunkedPartitionRemoteFileOps)partitionRemoteFileOps).getSize(remoteRelativePath);
+    }
+    if (size <= chunkNumBytes) {
+      submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          partitionRemoteFileOps.copyToLocalRoot(remoteRelativePath, localDestinationRoot);
+          return null;
+        }
+      });
+      return;
+    }
+    final File destination = new File(localDestinationRoot, new File(remoteRelativePath).getName());
+    LOG.info("Fetching remote file " + partitionRemoteFileOps.getRemoteAbsolutePath(remoteRelativePath)
+        + " to local file " + destination + " in chunks of " + chunkNumBytes + " bytes");
+    // Allocate the destination so that chunks can be written in any order
+    RandomAccessFile file = new RandomAccessFile(destination, "rw");
+    try {
+      file.setLength(size);
+    } finally {
+      file.close();
+    }
+    for (long offset = 0; offset < size; offset += chunkNumBytes) {
+      final long chunkOffset = offset;
+      final long chunkLength = Math.min(chunkNumBytes, size - offset);
+      submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          ((ChunkedPartitionRemoteFileOps)partitionRemoteFileOps).copyRangeToLocalFile(
+              remoteRelativePath, chunkOffset, chunkLength, destination);
+          return null;
+        }
+      });
+    }
+  }
+
+  // Wait for all fetches started so far. If one fails, the others are cancelled and an exception is thrown.
+  public void awaitCompletion() throws IOException {
+    try {
+      for (FutureTask<Void> task : tasks) {
+        task.get();
+      }
+      tasks.clear();
+    } catch (ExecutionException e) {
+      cancel();
+      if (e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException("Failed to fetch file", e.getCause());
+    } catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while fetching files", e);
+    } catch (CancellationException e) {
+      cancel();
+      throw new IOException("Fetch was cancelled", e);
+    }
+  }
+
+  // Cancel the fetches that have not completed
+  public void cancel() {
+    for (FutureTask<Void> task : tasks) {
+      task.cancel(true);
+    }
+    tasks.clear();
+  }
+
+  private void submit(Callable<Void> callable) throws IOException {
+    FutureTask<Void> task = new FutureTask<Void>(callable);
+    tasks.add(task);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      cancel();
+      throw new IOException("Failed to submit fetch task", e);
+    }
+  }
+}
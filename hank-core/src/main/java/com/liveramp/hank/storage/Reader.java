@@ -30,5 +30,8 @@ public interface Reader {
 
   public CacheStatistics getCacheStatistics();
 
+  // null means no membership filter
+  public FilterStatistics getFilterStatistics();
+
   public void close() throws IOException;
 }
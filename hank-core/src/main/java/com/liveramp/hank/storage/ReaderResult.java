@@ -21,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.hasher.Hash128;
+import com.liveramp.hank.util.ByteBufferUtils;
 
 public class ReaderResult {
   private static final Logger LOG = LoggerFactory.getLogger(ReaderResult.class);
@@ -32,6 +34,11 @@ public class ReaderResult {
   private ByteBuffer buffer;
   private boolean l1CacheHit = false;
   private boolean l2CacheHit = false;
+  // Whether the decompressed block holding the value was found in a block cache, when one is used
+  private boolean blockCacheHit = false;
+  private boolean blockCacheMiss = false;
+  // Hash of the key computed when partitioning it, reused by readers whose hasher is based on it
+  private final Hash128 keyHash128 = new Hash128();
 
   public ReaderResult() {
   }
@@ -44,6 +51,9 @@ public class ReaderResult {
     isFound = false;
     l1CacheHit = false;
     l2CacheHit = false;
+    blockCacheHit = false;
+    blockCacheMiss = false;
+    keyHash128.clear();
     if (buffer != null) {
       buffer.clear();
     }
@@ -95,11 +105,37 @@ public class ReaderResult {
     this.l2CacheHit = l2CacheHit;
   }
 
+  public boolean getBlockCacheHit() {
+    return blockCacheHit;
+  }
+
+  public void setBlockCacheHit(boolean blockCacheHit) {
+    this.blockCacheHit = blockCacheHit;
+  }
+
+  public boolean getBlockCacheMiss() {
+    return blockCacheMiss;
+  }
+
+  public void setBlockCacheMiss(boolean blockCacheMiss) {
+    this.blockCacheMiss = blockCacheMiss;
+  }
+
+  public Hash128 getKeyHash128() {
+    return keyHash128;
+  }
+
+  // Note: value is not modified, it can be a cached buffer shared with other threads or a direct buffer
   public void deepCopyIntoResultBuffer(ByteBuffer value) {
-    requiresBufferSize(value.remaining());
+    deepCopyIntoResultBuffer(value, value.position(), value.remaining());
+  }
+
+  // Copy length bytes of source starting at the given absolute index
+  public void deepCopyIntoResultBuffer(ByteBuffer source, int index, int length) {
+    requiresBufferSize(length);
     buffer.clear();
-    buffer.put(value.slice());
-    buffer.flip();
+    ByteBufferUtils.copy(source, index, buffer.array(), buffer.arrayOffset(), length);
+    buffer.limit(length);
   }
 
   @Override
@@ -17,7 +17,11 @@
 package com.liveramp.hank.storage.cueball;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -37,6 +41,7 @@ import com.google.common.collect.Multimap;
 
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
 import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.config.BaseReaderConfigurator;
 import com.liveramp.hank.config.DataDirectoriesConfigurator;
 import com.liveramp.hank.config.ReaderConfigurator;
 import com.liveramp.hank.coordinator.Domain;
@@ -44,9 +49,11 @@ import com.liveramp.hank.coordinator.DomainVersion;
 import com.liveramp.hank.hasher.Hasher;
 import com.liveramp.hank.hasher.IdentityHasher;
 import com.liveramp.hank.partition_server.DiskPartitionAssignment;
+import com.liveramp.hank.storage.ChunkedPartitionRemoteFileOps;
 import com.liveramp.hank.storage.Compactor;
 import com.liveramp.hank.storage.Deleter;
 import com.liveramp.hank.storage.FileOpsUtil;
+import com.liveramp.hank.storage.HostCacheManager;
 import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import com.liveramp.hank.storage.PartitionRemoteFileOpsFactory;
 import com.liveramp.hank.storage.PartitionUpdater;
@@ -60,6 +67,7 @@ import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 import com.liveramp.hank.storage.incremental.IncrementalStorageEngine;
 import com.liveramp.hank.storage.incremental.IncrementalUpdatePlanner;
 import com.liveramp.hank.util.FsUtils;
+import com.liveramp.hank.util.MemoryBoundCache;
 
 /**
  * Cueball is a storage engine optimized for small, fixed-size values.
@@ -69,6 +77,7 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
   private static final Pattern BASE_OR_DELTA_PATTERN = Pattern.compile(".*(\\d{5})\\.((base)|(delta))\\.cueball");
   static final String BASE_REGEX = ".*\\d{5}\\.base\\.cueball";
   static final String DELTA_REGEX = ".*\\d{5}\\.delta\\.cueball";
+  private static final String FILTER_SUFFIX = ".filter";
 
   public static class Factory implements StorageEngineFactory {
 
@@ -80,6 +89,11 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
     public static final String HASHER_KEY = "hasher";
     public static final String COMPRESSION_CODEC = "compression_codec";
     public static final String NUM_REMOTE_LEAF_VERSIONS_TO_KEEP = "num_remote_leaf_versions_to_keep";
+    public static final String MEMORY_MAP_KEY_FILE = "memory_map_key_file";
+    public static final String READ_KEY_FILE_SLICES = "read_key_file_slices";
+    public static final String FILTER_NUM_BITS_PER_KEY = "filter_num_bits_per_key";
+    public static final String STREAM_REMOTE_DELTAS = "stream_remote_deltas";
+    public static final String COMPRESSION_DICTIONARY_PATH = "compression_dictionary_path";
 
     private static final Set<String> REQUIRED_KEYS =
         new HashSet<String>(Arrays.asList(
@@ -124,6 +138,33 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
       // Num remote bases to keep
       Integer numRemoteLeafVersionsToKeep = (Integer)options.get(NUM_REMOTE_LEAF_VERSIONS_TO_KEEP);
 
+      // Memory mapped key file reads
+      Boolean memoryMapKeyFile = (Boolean)options.get(MEMORY_MAP_KEY_FILE);
+      if (memoryMapKeyFile == null) {
+        memoryMapKeyFile = false;
+      }
+
+      // Read only slices of uncompressed key file blocks
+      Boolean readKeyFileSlices = (Boolean)options.get(READ_KEY_FILE_SLICES);
+      if (readKeyFileSlices == null) {
+        readKeyFileSlices = false;
+      }
+
+      // Membership filter of the key hashes, disabled by default
+      Integer filterNumBitsPerKey = (Integer)options.get(FILTER_NUM_BITS_PER_KEY);
+      if (filterNumBitsPerKey == null) {
+        filterNumBitsPerKey = 0;
+      }
+
+      // Merge remote deltas without fetching them first, disabled by default
+      Boolean streamRemoteDeltas = (Boolean)options.get(STREAM_REMOTE_DELTAS);
+      if (streamRemoteDeltas == null) {
+        streamRemoteDeltas = false;
+      }
+
+      // Local file holding the dictionary of the compression codec, none by default
+      String compressionDictionaryPath = (String)options.get(COMPRESSION_DICTIONARY_PATH);
+
       return new Cueball((Integer)options.get(KEY_HASH_SIZE_KEY),
           hasher,
           (Integer)options.get(VALUE_SIZE_KEY),
@@ -133,7 +174,12 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
           fileOpsFactory,
           compressionCodecClass,
           domain,
-          numRemoteLeafVersionsToKeep);
+          numRemoteLeafVersionsToKeep,
+          memoryMapKeyFile,
+          readKeyFileSlices,
+          filterNumBitsPerKey,
+          streamRemoteDeltas,
+          compressionDictionaryPath);
     }
 
     @Override
@@ -158,8 +204,14 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
   private final PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory;
   private final ByteBuffer keyHashBuffer;
   private final int numRemoteLeafVersionsToKeep;
+  private final boolean memoryMapKeyFile;
+  private final boolean readKeyFileSlices;
+  private final int filterNumBitsPerKey;
+  private final boolean streamRemoteDeltas;
 
   private final Class<? extends CueballCompressionCodec> compressionCodecClass;
+  private final String compressionDictionaryPath;
+  private byte[] compressionDictionary;
 
   public Cueball(int keyHashSize,
                  Hasher hasher,
@@ -171,6 +223,146 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
                  Class<? extends CueballCompressionCodec> compressionCodecClass,
                  Domain domain,
                  int numRemoteLeafVersionsToKeep) {
+    this(keyHashSize,
+        hasher,
+        valueSize,
+        hashIndexBits,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        compressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        false);
+  }
+
+  public Cueball(int keyHashSize,
+                 Hasher hasher,
+                 int valueSize,
+                 int hashIndexBits,
+                 String domainBuilderRemoteDomainRoot,
+                 String partitionServerRemoteDomainRoot,
+                 PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+                 Class<? extends CueballCompressionCodec> compressionCodecClass,
+                 Domain domain,
+                 int numRemoteLeafVersionsToKeep,
+                 boolean memoryMapKeyFile) {
+    this(keyHashSize,
+        hasher,
+        valueSize,
+        hashIndexBits,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        compressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        memoryMapKeyFile,
+        false);
+  }
+
+  public Cueball(int keyHashSize,
+                 Hasher hasher,
+                 int valueSize,
+                 int hashIndexBits,
+                 String domainBuilderRemoteDomainRoot,
+                 String partitionServerRemoteDomainRoot,
+                 PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+                 Class<? extends CueballCompressionCodec> compressionCodecClass,
+                 Domain domain,
+                 int numRemoteLeafVersionsToKeep,
+                 boolean memoryMapKeyFile,
+                 boolean readKeyFileSlices) {
+    this(keyHashSize,
+        hasher,
+        valueSize,
+        hashIndexBits,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        compressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        memoryMapKeyFile,
+        readKeyFileSlices,
+        0);
+  }
+
+  public Cueball(int keyHashSize,
+                 Hasher hasher,
+                 int valueSize,
+                 int hashIndexBits,
+                 String domainBuilderRemoteDomainRoot,
+                 String partitionServerRemoteDomainRoot,
+                 PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+                 Class<? extends CueballCompressionCodec> compressionCodecClass,
+                 Domain domain,
+                 int numRemoteLeafVersionsToKeep,
+                 boolean memoryMapKeyFile,
+                 boolean readKeyFileSlices,
+                 int filterNumBitsPerKey) {
+    this(keyHashSize,
+        hasher,
+        valueSize,
+        hashIndexBits,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        compressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        memoryMapKeyFile,
+        readKeyFileSlices,
+        filterNumBitsPerKey,
+        false);
+  }
+
+  public Cueball(int keyHashSize,
+                 Hasher hasher,
+                 int valueSize,
+                 int hashIndexBits,
+                 String domainBuilderRemoteDomainRoot,
+                 String partitionServerRemoteDomainRoot,
+                 PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+                 Class<? extends CueballCompressionCodec> compressionCodecClass,
+                 Domain domain,
+                 int numRemoteLeafVersionsToKeep,
+                 boolean memoryMapKeyFile,
+                 boolean readKeyFileSlices,
+                 int filterNumBitsPerKey,
+                 boolean streamRemoteDeltas) {
+    this(keyHashSize,
+        hasher,
+        valueSize,
+        hashIndexBits,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        compressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        memoryMapKeyFile,
+        readKeyFileSlices,
+        filterNumBitsPerKey,
+        streamRemoteDeltas,
+        null);
+  }
+
+  public Cueball(int keyHashSize,
+                 Hasher hasher,
+                 int valueSize,
+                 int hashIndexBits,
+                 String domainBuilderRemoteDomainRoot,
+                 String partitionServerRemoteDomainRoot,
+                 PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+                 Class<? extends CueballCompressionCodec> compressionCodecClass,
+                 Domain domain,
+                 int numRemoteLeafVersionsToKeep,
+                 boolean memoryMapKeyFile,
+                 boolean readKeyFileSlices,
+                 int filterNumBitsPerKey,
+                 boolean streamRemoteDeltas,
+                 String compressionDictionaryPath) {
     this.keyHashSize = keyHashSize;
     this.hasher = hasher;
     this.valueSize = valueSize;
@@ -182,6 +374,11 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
     this.compressionCodecClass = compressionCodecClass;
     this.domain = domain;
     this.numRemoteLeafVersionsToKeep = numRemoteLeafVersionsToKeep;
+    this.memoryMapKeyFile = memoryMapKeyFile;
+    this.readKeyFileSlices = readKeyFileSlices;
+    this.filterNumBitsPerKey = filterNumBitsPerKey;
+    this.streamRemoteDeltas = streamRemoteDeltas;
+    this.compressionDictionaryPath = compressionDictionaryPath;
     // Sanity check
     if (hashIndexBits > 32) {
       throw new RuntimeException("hashIndexBits is much too large (" + hashIndexBits + ")");
@@ -190,36 +387,86 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
 
   @Override
   public Reader getReader(ReaderConfigurator configurator, int partitionNumber, DiskPartitionAssignment assignment) throws IOException {
+    String partitionRoot = getTargetDirectory(assignment, partitionNumber);
+    // Partition servers can configure Readers to use a cache shared by the whole host
+    HostCacheManager hostCacheManager = null;
+    if (configurator instanceof BaseReaderConfigurator) {
+      hostCacheManager = ((BaseReaderConfigurator)configurator).getHostCacheManager();
+    }
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+    if (hostCacheManager != null) {
+      cache = hostCacheManager.getPartitionCache(domain.getId(), partitionNumber,
+          CueballReader.getLatestBase(partitionRoot).getVersion());
+    } else {
+      cache = CueballReader.createCache(configurator.getCacheNumBytesCapacity(),
+          (int)configurator.getCacheNumItemsCapacity());
+    }
     return new CueballReader(
-        getTargetDirectory(assignment, partitionNumber),
+        partitionRoot,
         keyHashSize,
         hasher,
         valueSize,
         hashIndexBits,
         getCompressionCodec(),
-        configurator.getCacheNumBytesCapacity(),
-        (int)configurator.getCacheNumItemsCapacity());
+        cache,
+        memoryMapKeyFile,
+        readKeyFileSlices,
+        filterNumBitsPerKey);
   }
 
   private CueballCompressionCodec getCompressionCodec() throws IOException {
+    if (compressionDictionaryPath == null) {
+      try {
+        return compressionCodecClass.newInstance();
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+    }
+    Constructor<? extends CueballCompressionCodec> constructor;
+    try {
+      constructor = compressionCodecClass.getConstructor(byte[].class);
+    } catch (NoSuchMethodException e) {
+      throw new IOException("CompressionCodec class '" + compressionCodecClass.getName()
+          + "' does not support dictionaries!", e);
+    }
     try {
-      return compressionCodecClass.newInstance();
+      return constructor.newInstance(getCompressionDictionary());
     } catch (Exception e) {
       throw new IOException(e);
     }
   }
 
+  private synchronized byte[] getCompressionDictionary() throws IOException {
+    if (compressionDictionary == null) {
+      compressionDictionary = Files.readAllBytes(Paths.get(compressionDictionaryPath));
+    }
+    return compressionDictionary;
+  }
+
   @Override
   public Writer getWriter(DomainVersion domainVersion,
                           PartitionRemoteFileOps partitionRemoteFileOps,
                           int partitionNumber) throws IOException {
     IncrementalDomainVersionProperties domainVersionProperties = getDomainVersionProperties(domainVersion);
-    return new CueballWriter(partitionRemoteFileOps.getOutputStream(getName(domainVersion.getVersionNumber(),
-        domainVersionProperties.isBase())),
-        keyHashSize, hasher, valueSize, getCompressionCodec(), hashIndexBits
+    String name = getName(domainVersion.getVersionNumber(), domainVersionProperties.isBase());
+    return new CueballWriter(partitionRemoteFileOps.getOutputStream(name),
+        keyHashSize, hasher, valueSize, getCompressionCodec(), hashIndexBits,
+        getFilterOutputStream(partitionRemoteFileOps, name, domainVersionProperties.isBase()),
+        filterNumBitsPerKey
     );
   }
 
+  // Filters are only written for bases, since deltas are merged into a new base before being read
+  private OutputStream getFilterOutputStream(PartitionRemoteFileOps partitionRemoteFileOps,
+                                             String name,
+                                             boolean isBase) throws IOException {
+    if (filterNumBitsPerKey > 0 && isBase) {
+      return partitionRemoteFileOps.getOutputStream(getFilterPath(name));
+    } else {
+      return null;
+    }
+  }
+
   private IncrementalDomainVersionProperties getDomainVersionProperties(DomainVersion domainVersion) throws IOException {
     IncrementalDomainVersionProperties result;
     try {
@@ -241,9 +488,16 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
   @Override
   public PartitionUpdater getUpdater(DiskPartitionAssignment assignment, int partitionNumber) throws IOException {
     String localDir = getTargetDirectory(assignment, partitionNumber);
+    PartitionRemoteFileOps partitionRemoteFileOps = getPartitionRemoteFileOps(RemoteLocation.PARTITION_SERVER, partitionNumber);
+    ICueballMerger cueballMerger;
+    if (streamRemoteDeltas && partitionRemoteFileOps instanceof ChunkedPartitionRemoteFileOps) {
+      cueballMerger = new CueballStreamingMerger((ChunkedPartitionRemoteFileOps)partitionRemoteFileOps, filterNumBitsPerKey);
+    } else {
+      cueballMerger = new CueballMerger(filterNumBitsPerKey);
+    }
     return new CueballPartitionUpdater(domain,
-        getPartitionRemoteFileOps(RemoteLocation.PARTITION_SERVER, partitionNumber),
-        new CueballMerger(),
+        partitionRemoteFileOps,
+        cueballMerger,
         keyHashSize,
         valueSize,
         hashIndexBits,
@@ -262,14 +516,16 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
                                    PartitionRemoteFileOps partitionRemoteFileOps,
                                    int partitionNumber) throws IOException {
     IncrementalDomainVersionProperties domainVersionProperties = getDomainVersionProperties(domainVersion);
+    String name = getName(domainVersion.getVersionNumber(), domainVersionProperties.isBase());
     // Note: We use the identity hasher since keys coming in are already hashed keys
-    return new CueballWriter(partitionRemoteFileOps.getOutputStream(getName(domainVersion.getVersionNumber(),
-        domainVersionProperties.isBase())),
+    return new CueballWriter(partitionRemoteFileOps.getOutputStream(name),
         keyHashSize,
         new IdentityHasher(),
         valueSize,
         getCompressionCodec(),
-        hashIndexBits
+        hashIndexBits,
+        getFilterOutputStream(partitionRemoteFileOps, name, domainVersionProperties.isBase()),
+        filterNumBitsPerKey
     );
   }
 
@@ -337,10 +593,19 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
     return s + ".cueball";
   }
 
+  // Path of the filter of the key file at the given path, relative paths give relative paths
+  public static String getFilterPath(String keyFilePath) {
+    return keyFilePath + FILTER_SUFFIX;
+  }
+
   public static String getName(DomainVersion domainVersion) throws IOException {
     return getName(domainVersion.getVersionNumber(), IncrementalDomainVersionProperties.isBase(domainVersion));
   }
 
+  public int getFilterNumBitsPerKey() {
+    return filterNumBitsPerKey;
+  }
+
   @Override
   public RemoteDomainVersionDeleter getRemoteDomainVersionDeleter(RemoteLocation location) throws IOException {
     return new CueballRemoteDomainVersionDeleter(domain, getRoot(location), partitionRemoteFileOpsFactory);
@@ -423,7 +688,11 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
         ", partitionRemoteFileOpsFactory=" + partitionRemoteFileOpsFactory +
         ", keyHashBuffer=" + keyHashBuffer +
         ", numRemoteLeafVersionsToKeep=" + numRemoteLeafVersionsToKeep +
+        ", memoryMapKeyFile=" + memoryMapKeyFile +
+        ", readKeyFileSlices=" + readKeyFileSlices +
+        ", filterNumBitsPerKey=" + filterNumBitsPerKey +
         ", compressionCodecClass=" + compressionCodecClass +
+        ", compressionDictionaryPath='" + compressionDictionaryPath + '\'' +
         '}';
   }
 }
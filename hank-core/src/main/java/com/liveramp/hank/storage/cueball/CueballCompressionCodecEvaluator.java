@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.util.CommandLineChecker;
+import com.liveramp.hank.util.FormatUtils;
+
+/**
+ * Compress a sample of the blocks of an existing Cueball key file with other codecs and report
+ * their compression ratio and the time to compress and decompress a block, to choose the codec
+ * of a domain by trading disk footprint against the CPU used by GET requests.
+ */
+public class CueballCompressionCodecEvaluator {
+
+  private static final int NUM_DECOMPRESSION_ROUNDS = 10;
+
+  public static void main(String[] args) throws Exception {
+    CommandLineChecker.check(args, new String[]{"key file path", "hash index bits",
+        "key file compression codec class", "comma separated compression codec classes to evaluate",
+        "max num blocks"}, CueballCompressionCodecEvaluator.class);
+    String keyFilePath = args[0];
+    int hashIndexBits = Integer.parseInt(args[1]);
+    CueballCompressionCodec keyFileCompressionCodec = (CueballCompressionCodec)Class.forName(args[2]).newInstance();
+    int maxNumBlocks = Integer.parseInt(args[4]);
+
+    List<byte[]> blocks = readBlocks(keyFilePath, hashIndexBits, keyFileCompressionCodec, maxNumBlocks);
+    long numUncompressedBytes = 0;
+    for (byte[] block : blocks) {
+      numUncompressedBytes += block.length;
+    }
+    System.out.println("Sampled " + blocks.size() + " blocks totalling "
+        + FormatUtils.formatNumBytes(numUncompressedBytes) + " uncompressed from " + keyFilePath);
+
+    for (String compressionCodecClassName : args[3].split(",")) {
+      CueballCompressionCodec compressionCodec = (CueballCompressionCodec)Class.forName(compressionCodecClassName).newInstance();
+      evaluate(compressionCodecClassName, compressionCodec, blocks, numUncompressedBytes);
+    }
+  }
+
+  // Read and decompress evenly spaced non empty blocks of the key file
+  private static List<byte[]> readBlocks(String keyFilePath,
+                                         int hashIndexBits,
+                                         CueballCompressionCodec compressionCodec,
+                                         int maxNumBlocks) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(keyFilePath, "r");
+    try {
+      Footer footer = new Footer(file.getChannel(), hashIndexBits);
+      long[] hashIndex = footer.getHashIndex();
+      List<Long> blockOffsets = new ArrayList<Long>();
+      for (long offset : hashIndex) {
+        if (offset >= 0) {
+          blockOffsets.add(offset);
+        }
+      }
+      blockOffsets.add(footer.getDataLength());
+
+      int numBlocks = blockOffsets.size() - 1;
+      int step = Math.max(1, numBlocks / Math.max(1, maxNumBlocks));
+      byte[] compressedBlock = new byte[footer.getMaxCompressedBufferSize()];
+      byte[] uncompressedBlock = new byte[footer.getMaxUncompressedBufferSize()];
+      List<byte[]> blocks = new ArrayList<byte[]>();
+      for (int i = 0; i < numBlocks && blocks.size() < maxNumBlocks; i += step) {
+        int blockLength = (int)(blockOffsets.get(i + 1) - blockOffsets.get(i));
+        file.seek(blockOffsets.get(i));
+        file.readFully(compressedBlock, 0, blockLength);
+        int uncompressedLength = compressionCodec.decompress(compressedBlock, 0, blockLength, uncompressedBlock, 0);
+        blocks.add(Arrays.copyOf(uncompressedBlock, uncompressedLength));
+      }
+      return blocks;
+    } finally {
+      file.close();
+    }
+  }
+
+  private static void evaluate(String name,
+                               CueballCompressionCodec compressionCodec,
+                               List<byte[]> blocks,
+                               long numUncompressedBytes) {
+    byte[][] compressedBlocks = new byte[blocks.size()][];
+    int[] compressedLengths = new int[blocks.size()];
+    long numCompressedBytes = 0;
+    int maxBlockLength = 0;
+
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < blocks.size(); ++i) {
+      byte[] block = blocks.get(i);
+      compressedBlocks[i] = new byte[compressionCodec.getMaxCompressBufferSize(block.length)];
+      compressedLengths[i] = compressionCodec.compress(block, 0, block.length, compressedBlocks[i], 0);
+      numCompressedBytes += compressedLengths[i];
+      maxBlockLength = Math.max(maxBlockLength, block.length);
+    }
+    long compressionNanos = System.nanoTime() - startNanos;
+
+    // Check the first round, which also warms up
+    byte[] buffer = new byte[maxBlockLength];
+    for (int i = 0; i < blocks.size(); ++i) {
+      int length = compressionCodec.decompress(compressedBlocks[i], 0, compressedLengths[i], buffer, 0);
+      byte[] block = blocks.get(i);
+      if (length != block.length || !Arrays.equals(block, Arrays.copyOf(buffer, length))) {
+        throw new RuntimeException(name + " failed to decompress block " + i + " to its original content");
+      }
+    }
+    startNanos = System.nanoTime();
+    for (int round = 0; round < NUM_DECOMPRESSION_ROUNDS; ++round) {
+      for (int i = 0; i < blocks.size(); ++i) {
+        compressionCodec.decompress(compressedBlocks[i], 0, compressedLengths[i], buffer, 0);
+      }
+    }
+    long decompressionNanos = System.nanoTime() - startNanos;
+
+    int numBlocks = Math.max(1, blocks.size());
+    System.out.println(name
+        + ": ratio " + FormatUtils.formatDouble((double)numUncompressedBytes / Math.max(1, numCompressedBytes))
+        + ", compressed size " + FormatUtils.formatNumBytes(numCompressedBytes)
+        + ", compression " + (compressionNanos / numBlocks) + " ns/block"
+        + ", decompression " + (decompressionNanos / ((long)NUM_DECOMPRESSION_ROUNDS * numBlocks)) + " ns/block");
+  }
+}
@@ -25,6 +25,17 @@ import java.util.List;
 
 public final class CueballMerger implements ICueballMerger {
 
+  private final int filterNumBitsPerKey;
+
+  public CueballMerger() {
+    this(0);
+  }
+
+  // A filter of the key hashes is written next to the new base when filterNumBitsPerKey is positive
+  public CueballMerger(int filterNumBitsPerKey) {
+    this.filterNumBitsPerKey = filterNumBitsPerKey;
+  }
+
   @Override
   public void merge(final CueballFilePath base,
                     final List<CueballFilePath> deltas,
@@ -43,15 +54,32 @@ public final class CueballMerger implements ICueballMerger {
         compressionCodec,
         transformer);
 
+    write(cueballStreamBufferMergeSort, newBasePath, keyHashSize, valueSize, hashIndexBits, compressionCodec,
+        filterNumBitsPerKey);
+  }
+
+  // Write the merged key hashes and values to the new base and close the merge sort
+  static void write(IKeyFileStreamBufferMergeSort mergeSort,
+                    String newBasePath,
+                    int keyHashSize,
+                    int valueSize,
+                    int hashIndexBits,
+                    CueballCompressionCodec compressionCodec,
+                    int filterNumBitsPerKey) throws IOException {
     // Output stream for the new base to be written. intentionally unbuffered, the writer below will do that on its own.
     OutputStream newCueballBaseOutputStream = new FileOutputStream(newBasePath);
 
+    OutputStream newFilterOutputStream = null;
+    if (filterNumBitsPerKey > 0) {
+      newFilterOutputStream = new FileOutputStream(Cueball.getFilterPath(newBasePath));
+    }
+
     // Note that we intentionally omit the hasher here, since it will *not* be used
-    CueballWriter newCueballBaseWriter =
-        new CueballWriter(newCueballBaseOutputStream, keyHashSize, null, valueSize, compressionCodec, hashIndexBits);
+    CueballWriter newCueballBaseWriter = new CueballWriter(newCueballBaseOutputStream, keyHashSize, null, valueSize,
+        compressionCodec, hashIndexBits, newFilterOutputStream, filterNumBitsPerKey);
 
     while (true) {
-      KeyHashAndValueAndStreamIndex keyValuePair = cueballStreamBufferMergeSort.nextKeyHashAndValueAndStreamIndex();
+      KeyHashAndValueAndStreamIndex keyValuePair = mergeSort.nextKeyHashAndValueAndStreamIndex();
       if (keyValuePair == null) {
         break;
       }
@@ -61,7 +89,7 @@ public final class CueballMerger implements ICueballMerger {
     }
 
     // Close all buffers and the base writer
-    cueballStreamBufferMergeSort.close();
+    mergeSort.close();
     newCueballBaseWriter.close();
   }
 }
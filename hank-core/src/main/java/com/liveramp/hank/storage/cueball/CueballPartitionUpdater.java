@@ -21,6 +21,7 @@ import com.liveramp.hank.coordinator.Domain;
 import com.liveramp.hank.coordinator.DomainVersion;
 import com.liveramp.hank.partition_server.PartitionUpdateTaskStatistics;
 import com.liveramp.hank.storage.PartitionRemoteFileOps;
+import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 import com.liveramp.hank.storage.incremental.IncrementalPartitionUpdater;
 import com.liveramp.hank.storage.incremental.IncrementalUpdatePlan;
 import com.liveramp.hank.util.HankTimer;
@@ -105,8 +106,20 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
   @Override
   protected void fetchVersion(DomainVersion domainVersion, String fetchRoot) throws IOException {
     String fileToFetch = Cueball.getName(domainVersion);
+    if (cueballMerger instanceof CueballStreamingMerger
+        && !IncrementalDomainVersionProperties.isBase(domainVersion)
+        && ((CueballStreamingMerger)cueballMerger).canStream(fileToFetch)) {
+      LOG.info("Not fetching from " + partitionRemoteFileOps + " file " + fileToFetch + ", it will be streamed during the merge");
+      return;
+    }
     LOG.info("Fetching from " + partitionRemoteFileOps + " file " + fileToFetch + " to " + fetchRoot);
-    partitionRemoteFileOps.copyToLocalRoot(fileToFetch, fetchRoot);
+    fetchFile(partitionRemoteFileOps, fileToFetch, fetchRoot);
+    // Bases are written with a filter of their key hashes when filters are enabled
+    String filterToFetch = Cueball.getFilterPath(fileToFetch);
+    if (IncrementalDomainVersionProperties.isBase(domainVersion) && partitionRemoteFileOps.exists(filterToFetch)) {
+      LOG.info("Fetching from " + partitionRemoteFileOps + " file " + filterToFetch + " to " + fetchRoot);
+      fetchFile(partitionRemoteFileOps, filterToFetch, fetchRoot);
+    }
   }
 
   @Override
@@ -160,8 +173,11 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
 
     // Check that all required files are available
     checkRequiredFileExists(base.getPath());
-    for (CueballFilePath delta : deltas) {
-      checkRequiredFileExists(delta.getPath());
+    // Deltas that were not fetched are streamed from the remote partition by the streaming merger
+    if (!(cueballMerger instanceof CueballStreamingMerger)) {
+      for (CueballFilePath delta : deltas) {
+        checkRequiredFileExists(delta.getPath());
+      }
     }
 
     HankTimer timer = new HankTimer();
@@ -171,6 +187,10 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
       if (!new File(base.getPath()).renameTo(new File(newBasePath))) {
         throw new IOException("Failed to rename Cueball base: " + base.getPath() + " to: " + newBasePath);
       }
+      File filter = new File(Cueball.getFilterPath(base.getPath()));
+      if (filter.exists() && !filter.renameTo(new File(Cueball.getFilterPath(newBasePath)))) {
+        throw new IOException("Failed to rename Cueball filter: " + filter.getPath() + " to: " + Cueball.getFilterPath(newBasePath));
+      }
     } else {
       cueballMerger.merge(base,
           deltas,
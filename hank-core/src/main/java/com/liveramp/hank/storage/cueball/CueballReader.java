@@ -15,29 +15,50 @@
  */
 package com.liveramp.hank.storage.cueball;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
 import com.liveramp.hank.hasher.Hasher;
+import com.liveramp.hank.hasher.Murmur128Hasher;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
+import com.liveramp.hank.storage.HostCacheManager;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
-import com.liveramp.hank.util.SynchronizedMemoryBoundCache;
+import com.liveramp.hank.util.ConcurrentMemoryBoundCache;
+import com.liveramp.hank.util.MemoryBoundCache;
 
 public class CueballReader implements Reader {
 
+  private static final Logger LOG = LoggerFactory.getLogger(CueballReader.class);
+
   private static final KeyHashBufferThreadLocal keyHashBufferThreadLocal = new KeyHashBufferThreadLocal();
   private static final ByteBuffer NOT_FOUND_MARKER = ByteBuffer.wrap(new byte[]{});
+  // A single MappedByteBuffer is limited to 2GB, so the key file is mapped in chunks
+  private static final long MAPPED_CHUNK_SIZE = 1L << 30;
+  // Minimum number of records read around the estimated position of a key when reading key file slices
+  private static final int MIN_SLICE_NUM_RECORDS = 64;
 
   private final Hasher hasher;
   private final int valueSize;
   private final long[] hashIndex;
+  // Length of each block in the key file, 0 for empty blocks
+  private final int[] blockLengths;
   private final FileChannel channel;
   private final int keyHashSize;
   private final int fullRecordSize;
@@ -46,7 +67,35 @@ public class CueballReader implements Reader {
   private int maxCompressedBufferSize;
   private final HashPrefixCalculator prefixer;
   private final int versionNumber;
-  private SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+  private final int hashIndexBits;
+  private final boolean readKeyFileSlices;
+  private MemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+  // Memory mapped chunks of the key file, null when the key file is read through the channel
+  private MappedByteBuffer[] mappedChunks;
+  private final boolean isUncompressed;
+  // Membership filter of the key hashes, null when disabled
+  private final KeyHashFilter filter;
+  private final LongAdder numFilterTrueNegatives = new LongAdder();
+  private final LongAdder numFilterFalsePositives = new LongAdder();
+
+  public static CueballFilePath getLatestBase(String partitionRoot) throws IOException {
+    SortedSet<CueballFilePath> bases = Cueball.getBases(partitionRoot);
+    if (bases == null || bases.size() == 0) {
+      throw new IOException("Could not detect any Cueball base in " + partitionRoot);
+    }
+    return bases.last();
+  }
+
+  // Cache used by a single Reader
+  public static MemoryBoundCache<ByteBuffer, ByteBuffer> createCache(long cacheNumBytesCapacity,
+                                                                     int cacheNumItemsCapacity) {
+    return new ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer>(
+        cacheNumBytesCapacity > 0 || cacheNumItemsCapacity > 0,
+        cacheNumBytesCapacity,
+        cacheNumItemsCapacity,
+        new ByteBufferMemoryUsageEstimator(),
+        new ByteBufferMemoryUsageEstimator());
+  }
 
   public CueballReader(String partitionRoot,
                        int keyHashSize,
@@ -56,37 +105,85 @@ public class CueballReader implements Reader {
                        CueballCompressionCodec compressionCodec,
                        long cacheNumBytesCapacity,
                        int cacheNumItemsCapacity) throws IOException {
-    SortedSet<CueballFilePath> bases = Cueball.getBases(partitionRoot);
-    if (bases == null || bases.size() == 0) {
-      throw new IOException("Could not detect any Cueball base in " + partitionRoot);
-    }
-    CueballFilePath latestBase = bases.last();
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec,
+        cacheNumBytesCapacity, cacheNumItemsCapacity, false);
+  }
+
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       long cacheNumBytesCapacity,
+                       int cacheNumItemsCapacity,
+                       boolean memoryMapKeyFile) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec,
+        createCache(cacheNumBytesCapacity, cacheNumItemsCapacity), memoryMapKeyFile, false);
+  }
+
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       MemoryBoundCache<ByteBuffer, ByteBuffer> cache,
+                       boolean memoryMapKeyFile,
+                       boolean readKeyFileSlices) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec,
+        cache, memoryMapKeyFile, readKeyFileSlices, 0);
+  }
+
+  // A filter is built when filterNumBitsPerKey is positive
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       MemoryBoundCache<ByteBuffer, ByteBuffer> cache,
+                       boolean memoryMapKeyFile,
+                       boolean readKeyFileSlices,
+                       int filterNumBitsPerKey) throws IOException {
+    CueballFilePath latestBase = getLatestBase(partitionRoot);
     this.keyHashSize = keyHashSize;
     this.hasher = hasher;
     this.valueSize = valueSize;
     this.compressionCodec = compressionCodec;
     this.fullRecordSize = valueSize + keyHashSize;
     this.prefixer = new HashPrefixCalculator(hashIndexBits);
+    this.hashIndexBits = hashIndexBits;
     this.versionNumber = latestBase.getVersion();
+    this.isUncompressed = compressionCodec instanceof NoCueballCompressionCodec;
+    // Slices can only be read when records are stored as is
+    this.readKeyFileSlices = readKeyFileSlices && isUncompressed && !memoryMapKeyFile;
 
     channel = new FileInputStream(latestBase.getPath()).getChannel();
     Footer footer = new Footer(channel, hashIndexBits);
     hashIndex = footer.getHashIndex();
+    blockLengths = getBlockLengths(hashIndex, footer.getDataLength());
     maxUncompressedBufferSize = footer.getMaxUncompressedBufferSize();
     maxCompressedBufferSize = footer.getMaxCompressedBufferSize();
-    cache = new SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer>(
-        cacheNumBytesCapacity > 0 || cacheNumItemsCapacity > 0,
-        cacheNumBytesCapacity,
-        cacheNumItemsCapacity,
-        new ByteBufferMemoryUsageEstimator(),
-        new ByteBufferMemoryUsageEstimator());
+    if (memoryMapKeyFile) {
+      mappedChunks = mapKeyFile(channel, footer.getFileSize(), maxCompressedBufferSize);
+    }
+    this.cache = cache;
+    if (filterNumBitsPerKey > 0) {
+      filter = loadFilter(latestBase.getPath(), footer.getFileSize(), filterNumBitsPerKey);
+      LOG.info("Loaded filter of " + filter.getNumKeys() + " keys (" + filter.getNumBytes()
+          + " bytes, expected false positive rate: " + filter.getExpectedFalsePositiveRate()
+          + ") for " + latestBase.getPath());
+    } else {
+      filter = null;
+    }
   }
 
   @Override
   public void get(ByteBuffer key, ReaderResult result) throws IOException {
     // Note: keyHash buffer might be larger than keyHashSize
-    byte[] keyHash = computeKeyHash(key);
-    ByteBuffer keyHashByteBuffer = ByteBuffer.wrap(keyHash);
+    ByteBuffer keyHashByteBuffer = computeKeyHash(key, result);
+    byte[] keyHash = keyHashByteBuffer.array();
 
     int hashPrefix = prefixer.getHashPrefix(keyHash, 0);
     long baseOffset = hashIndex[hashPrefix];
@@ -96,44 +193,272 @@ public class CueballReader implements Reader {
 
     // baseOffset of -1 means that our hashPrefix doesn't map to any blocks
     if (baseOffset >= 0) {
-      // Attempt to load value from the cache
-      if (loadValueFromCache(keyHashByteBuffer, result)) {
+      if (filter != null && !filter.mightContain(keyHash, 0, keyHashSize)) {
+        numFilterTrueNegatives.increment();
         return;
       }
-      // We will read the compressed buffer and decompress it in the same buffer.
-      result.requiresBufferSize(maxCompressedBufferSize + maxUncompressedBufferSize);
-      // set up to read a chunk from the datafile
-      ByteBuffer buffer = result.getBuffer();
-      buffer.rewind();
-      buffer.limit(maxCompressedBufferSize);
-      int bytesRead = channel.read(buffer, baseOffset);
+      // Attempt to load value from the cache
+      if (!loadValueFromCache(keyHashByteBuffer, result)) {
+        getFromKeyFile(hashPrefix, baseOffset, keyHash, keyHashByteBuffer, result);
+        // Only key file reads that the filter let through and that found nothing are false positives
+        if (filter != null && !result.isFound()) {
+          numFilterFalsePositives.increment();
+        }
+      }
+    }
+  }
 
+  private void getFromKeyFile(int hashPrefix,
+                              long baseOffset,
+                              byte[] keyHash,
+                              ByteBuffer keyHashByteBuffer,
+                              ReaderResult result) throws IOException {
+    int blockLength = blockLengths[hashPrefix];
+    if (mappedChunks != null && isUncompressed) {
+      // Search the block in place in the mapped key file, only the value gets copied
+      getFromMappedBlock(baseOffset, blockLength, keyHash, keyHashByteBuffer, result);
+      return;
+    }
+    if (readKeyFileSlices && getFromKeyFileSlice(baseOffset, blockLength, keyHash, keyHashByteBuffer, result)) {
+      return;
+    }
+    // Records stored as is are searched where they were read. Otherwise, we will read the
+    // compressed block and decompress it in the same buffer.
+    if (isUncompressed) {
+      result.requiresBufferSize(blockLength);
+    } else {
+      result.requiresBufferSize(blockLength + maxUncompressedBufferSize);
+    }
+    // set up to read exactly the block from the datafile
+    ByteBuffer buffer = result.getBuffer();
+    buffer.rewind();
+    buffer.limit(blockLength);
+    if (mappedChunks != null) {
+      copyFromMappedBlock(baseOffset, buffer);
+    } else {
+      readFully(baseOffset, buffer);
+    }
+
+    final int uncompressedStart;
+    final int decompressedLength;
+    if (isUncompressed) {
+      uncompressedStart = 0;
+      decompressedLength = blockLength;
+    } else {
       // decompress from the beginning of the buffer into the unoccupied end of
       // the buffer
-      final int uncompressedStart = bytesRead;
-      int decompressedLength = compressionCodec.decompress(buffer.array(),
+      uncompressedStart = blockLength;
+      decompressedLength = compressionCodec.decompress(buffer.array(),
           0,
-          bytesRead, buffer.array(),
+          blockLength, buffer.array(),
           uncompressedStart);
+    }
 
-      // scan the chunk we read to find a matching key, if there is one,
-      // returning the recordfile offset
-      int bufferOffset = getValueOffset(buffer.array(),
-          uncompressedStart,
-          uncompressedStart + decompressedLength,
-          keyHash);
+    // search the chunk we read to find a matching key, if there is one,
+    // returning the recordfile offset
+    int bufferOffset = getValueOffset(buffer.array(),
+        uncompressedStart,
+        uncompressedStart + decompressedLength,
+        keyHash);
 
-      // -1 means that we didn't find the key
-      if (bufferOffset > -1) {
-        result.found();
-        buffer.limit(bufferOffset + valueSize);
-        buffer.position(bufferOffset);
-        addValueToCache(keyHashByteBuffer, buffer);
+    // -1 means that we didn't find the key
+    if (bufferOffset > -1) {
+      result.found();
+      buffer.limit(bufferOffset + valueSize);
+      buffer.position(bufferOffset);
+      addValueToCache(keyHashByteBuffer, buffer);
+    } else {
+      // key not found
+      addNotFoundToCache(keyHashByteBuffer);
+    }
+  }
+
+  private void getFromMappedBlock(long baseOffset,
+                                  int blockLength,
+                                  byte[] keyHash,
+                                  ByteBuffer keyHashByteBuffer,
+                                  ReaderResult result) {
+    int chunkIndex = (int)(baseOffset / MAPPED_CHUNK_SIZE);
+    MappedByteBuffer chunk = mappedChunks[chunkIndex];
+    int blockStart = (int)(baseOffset - chunkIndex * MAPPED_CHUNK_SIZE);
+    int chunkOffset = getValueOffset(chunk, blockStart, blockStart + blockLength, keyHash);
+
+    // -1 means that we didn't find the key
+    if (chunkOffset > -1) {
+      result.deepCopyIntoResultBuffer(chunk, chunkOffset, valueSize);
+      result.found();
+      addValueToCache(keyHashByteBuffer, result.getBuffer());
+    } else {
+      // key not found
+      addNotFoundToCache(keyHashByteBuffer);
+    }
+  }
+
+  // Read only a slice of records around the estimated position of the key in the block. Return false if
+  // the key could be outside of the slice, in which case the whole block should be searched.
+  private boolean getFromKeyFileSlice(long blockStart,
+                                      int blockLength,
+                                      byte[] keyHash,
+                                      ByteBuffer keyHashByteBuffer,
+                                      ReaderResult result) throws IOException {
+    int numRecords = blockLength / fullRecordSize;
+    // Hashes are uniformly distributed, so interpolate the position of the key in the block. The standard
+    // deviation of the actual position is at most sqrt(numRecords) / 2, read 2 of them on each side.
+    int numSliceRecords = MIN_SLICE_NUM_RECORDS + 4 * (int)Math.sqrt(numRecords);
+    if (numRecords <= numSliceRecords) {
+      return false;
+    }
+    int estimatedRecord = (int)(getPositionInBlock(keyHash) * numRecords);
+    int firstRecord = Math.max(0, Math.min(estimatedRecord - numSliceRecords / 2, numRecords - numSliceRecords));
+    int sliceSize = numSliceRecords * fullRecordSize;
+
+    result.requiresBufferSize(sliceSize);
+    ByteBuffer buffer = result.getBuffer();
+    buffer.rewind();
+    buffer.limit(sliceSize);
+    readFully(blockStart + (long)firstRecord * fullRecordSize, buffer);
+    byte[] slice = buffer.array();
+    // The key would be before the slice
+    if (firstRecord > 0 && BytesUtils.compareBytesUnsigned(slice, 0, keyHash, 0, keyHashSize) > 0) {
+      return false;
+    }
+    // The key would be after the slice
+    if (firstRecord + numSliceRecords < numRecords
+        && BytesUtils.compareBytesUnsigned(slice, sliceSize - fullRecordSize, keyHash, 0, keyHashSize) < 0) {
+      return false;
+    }
+
+    int bufferOffset = getValueOffset(slice, 0, sliceSize, keyHash);
+    // -1 means that we didn't find the key
+    if (bufferOffset > -1) {
+      result.found();
+      buffer.limit(bufferOffset + valueSize);
+      buffer.position(bufferOffset);
+      addValueToCache(keyHashByteBuffer, buffer);
+    } else {
+      // key not found
+      addNotFoundToCache(keyHashByteBuffer);
+    }
+    return true;
+  }
+
+  // Estimate the relative position, between 0 and 1, of a key hash in its block from the bits following its prefix
+  private double getPositionInBlock(byte[] keyHash) {
+    long bits = 0;
+    for (int i = 0; i < 8; ++i) {
+      bits = (bits << 8) | (i < keyHashSize ? keyHash[i] & 0xff : 0);
+    }
+    // Drop the prefix bits, which are the same for all keys in the block
+    bits <<= hashIndexBits;
+    // Use the top 53 bits, which a double represents exactly
+    return (bits >>> 11) / (double)(1L << 53);
+  }
+
+  // Load the filter written next to the key file. Versions written without a filter, with different
+  // filter parameters, or with a filter built from another key file, get one built from the key file
+  // and written next to it.
+  private KeyHashFilter loadFilter(String keyFilePath, long keyFileSize, int numBitsPerKey) throws IOException {
+    String filterPath = Cueball.getFilterPath(keyFilePath);
+    if (new File(filterPath).exists()) {
+      try {
+        KeyHashFilter filter = KeyHashFilter.read(filterPath);
+        if (filter.getKeyFileSize() != keyFileSize) {
+          LOG.info("Rebuilding filter " + filterPath + " since it was built from a different key file");
+        } else if (filter.getNumBitsPerKey() == numBitsPerKey && filter.getHashIndexBits() == hashIndexBits) {
+          return filter;
+        } else {
+          LOG.info("Rebuilding filter " + filterPath + " since it was written with different parameters");
+        }
+      } catch (IOException e) {
+        LOG.error("Failed to load filter " + filterPath + ", rebuilding it", e);
+      }
+    }
+    String tmpFilterPath = filterPath + ".tmp";
+    writeFilter(new FileOutputStream(tmpFilterPath), keyFileSize, numBitsPerKey);
+    if (!new File(tmpFilterPath).renameTo(new File(filterPath))) {
+      throw new IOException("Failed to rename filter " + tmpFilterPath + " to " + filterPath);
+    }
+    return KeyHashFilter.read(filterPath);
+  }
+
+  // Write the filter of the key hashes of the key file to the given stream
+  private void writeFilter(OutputStream outputStream, long keyFileSize, int numBitsPerKey) throws IOException {
+    KeyHashFilter.Writer filterWriter = new KeyHashFilter.Writer(outputStream, hashIndexBits, numBitsPerKey);
+    ByteBuffer buffer = ByteBuffer.allocate(maxCompressedBufferSize + maxUncompressedBufferSize);
+    for (int i = 0; i < hashIndex.length; ++i) {
+      if (hashIndex[i] < 0) {
+        continue;
+      }
+      buffer.clear();
+      buffer.limit(blockLengths[i]);
+      readFully(hashIndex[i], buffer);
+      int uncompressedStart;
+      int uncompressedLength;
+      if (isUncompressed) {
+        uncompressedStart = 0;
+        uncompressedLength = blockLengths[i];
       } else {
-        // key not found
-        addNotFoundToCache(keyHashByteBuffer);
+        uncompressedStart = blockLengths[i];
+        uncompressedLength = compressionCodec.decompress(buffer.array(), 0, blockLengths[i],
+            buffer.array(), uncompressedStart);
       }
+      filterWriter.writeBlock(i, buffer.array(), uncompressedStart, uncompressedLength / fullRecordSize,
+          fullRecordSize, keyHashSize);
     }
+    filterWriter.close(keyFileSize);
+  }
+
+  // Blocks are contiguous, a block ends where the next non empty one starts
+  private static int[] getBlockLengths(long[] hashIndex, long dataLength) throws IOException {
+    int[] blockLengths = new int[hashIndex.length];
+    long blockEnd = dataLength;
+    for (int i = hashIndex.length - 1; i >= 0; --i) {
+      if (hashIndex[i] >= 0) {
+        long blockLength = blockEnd - hashIndex[i];
+        if (blockLength > Integer.MAX_VALUE) {
+          throw new IOException(String.format("Block %d is too large: %d bytes", i, blockLength));
+        }
+        blockLengths[i] = (int)blockLength;
+        blockEnd = hashIndex[i];
+      }
+    }
+    return blockLengths;
+  }
+
+  // Read from the key file until the given buffer is full
+  private void readFully(long offset, ByteBuffer buffer) throws IOException {
+    long position = offset - buffer.position();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of Cueball file at offset " + (position + buffer.position()));
+      }
+    }
+  }
+
+  // Copy a block from the mapped key file into the given buffer, until it is full
+  private void copyFromMappedBlock(long baseOffset, ByteBuffer buffer) {
+    int chunkIndex = (int)(baseOffset / MAPPED_CHUNK_SIZE);
+    ByteBuffer block = mappedChunks[chunkIndex].duplicate();
+    int blockStart = (int)(baseOffset - chunkIndex * MAPPED_CHUNK_SIZE);
+    block.position(blockStart);
+    block.get(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+  }
+
+  // Map the key file in chunks of MAPPED_CHUNK_SIZE bytes. Consecutive chunks overlap by the maximum
+  // block size so that any block starting in a given chunk can be read entirely from that chunk.
+  private static MappedByteBuffer[] mapKeyFile(FileChannel channel,
+                                               long fileSize,
+                                               int maxCompressedBufferSize) throws IOException {
+    int numChunks = (int)((fileSize + MAPPED_CHUNK_SIZE - 1) / MAPPED_CHUNK_SIZE);
+    MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+    for (int i = 0; i < numChunks; ++i) {
+      long chunkStart = i * MAPPED_CHUNK_SIZE;
+      long chunkSize = Math.min(
+          Math.min(MAPPED_CHUNK_SIZE + maxCompressedBufferSize, fileSize - chunkStart),
+          Integer.MAX_VALUE);
+      chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkSize);
+    }
+    return chunks;
   }
 
   public Integer getVersionNumber() {
@@ -149,55 +474,124 @@ public class CueballReader implements Reader {
         cache.getMaxNumManagedBytes());
   }
 
+  @Override
+  public FilterStatistics getFilterStatistics() {
+    if (filter == null) {
+      return null;
+    }
+    return new FilterStatistics(
+        filter.getNumKeys(),
+        filter.getNumBytes(),
+        numFilterTrueNegatives.sum(),
+        numFilterFalsePositives.sum());
+  }
+
   @Override
   public void close() throws IOException {
     channel.close();
+    // Release the space taken by this reader in the cache shared by the host
+    HostCacheManager.purge(cache);
     cache = null;
+    // Mapped buffers are unmapped once they get garbage collected
+    mappedChunks = null;
   }
 
   private int getValueOffset(byte[] keyfileBufferChunk, int off, int limit, byte[] key) {
-    for (; off < limit; off += fullRecordSize) {
-      int comparison = BytesUtils.compareBytesUnsigned(keyfileBufferChunk, off,
+    return binarySearchBlock(keyfileBufferChunk, off, limit, key, keyHashSize, fullRecordSize);
+  }
+
+  /**
+   * Records of a block are sorted by key hash, binary search them.
+   *
+   * @return the offset of the value of the given key hash, -1 if it is not in the block
+   */
+  public static int binarySearchBlock(byte[] keyfileBufferChunk, int off, int limit, byte[] key,
+                                      int keyHashSize, int fullRecordSize) {
+    int low = 0;
+    int high = (limit - off) / fullRecordSize - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int recordOffset = off + middle * fullRecordSize;
+      int comparison = BytesUtils.compareBytesUnsigned(keyfileBufferChunk, recordOffset,
           key, 0, keyHashSize);
-      // found match
       if (comparison == 0) {
-        return off + keyHashSize;
+        // found match
+        return recordOffset + keyHashSize;
+      } else if (comparison < 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
       }
+    }
+    // looked everywhere, didn't find it!
+    return -1;
+  }
 
-      // passed the spot where our key could have been found, so not going to
-      // find it
-      if (comparison == 1) {
-        break;
+  private int getValueOffset(ByteBuffer keyfileBufferChunk, int off, int limit, byte[] key) {
+    int low = 0;
+    int high = (limit - off) / fullRecordSize - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int recordOffset = off + middle * fullRecordSize;
+      int comparison = compareBytesUnsigned(keyfileBufferChunk, recordOffset, key, keyHashSize);
+      if (comparison == 0) {
+        // found match
+        return recordOffset + keyHashSize;
+      } else if (comparison < 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
       }
     }
     // looked everywhere, didn't find it!
     return -1;
   }
 
-  private static class KeyHashBufferThreadLocal extends ThreadLocal<byte[]> {
+  // Same semantics as BytesUtils.compareBytesUnsigned, using absolute reads on the given buffer
+  private static int compareBytesUnsigned(ByteBuffer buffer, int off, byte[] key, int length) {
+    for (int i = 0; i < length; ++i) {
+      int a = buffer.get(off + i) & 0xff;
+      int b = key[i] & 0xff;
+      if (a != b) {
+        return a < b ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  // Wraps a reusable array, so that looking up the cache does not allocate
+  private static class KeyHashBufferThreadLocal extends ThreadLocal<ByteBuffer> {
 
     private static int KEY_HASH_BUFFER_INITIAL_SIZE = 8;
 
     @Override
-    protected byte[] initialValue() {
-      return new byte[KEY_HASH_BUFFER_INITIAL_SIZE];
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.wrap(new byte[KEY_HASH_BUFFER_INITIAL_SIZE]);
     }
 
-    protected byte[] getAndRequireBufferSize(int size) {
-      byte[] buffer = this.get();
-      if (buffer.length < size) {
-        buffer = new byte[size];
+    // The returned buffer is positioned at 0 and limited to the given size
+    protected ByteBuffer getAndRequireBufferSize(int size) {
+      ByteBuffer buffer = this.get();
+      if (buffer.capacity() < size) {
+        buffer = ByteBuffer.wrap(new byte[size]);
         this.set(buffer);
       }
+      buffer.clear();
+      buffer.limit(size);
       return buffer;
     }
   }
 
-  // Note: result buffer might be larger than keyHashSize
-  private byte[] computeKeyHash(ByteBuffer key) {
+  // Note: the backing array of the returned buffer might be larger than keyHashSize
+  private ByteBuffer computeKeyHash(ByteBuffer key, ReaderResult result) {
     // Reuse a thread local buffer, but first make sure it is at least of the required size
-    byte[] keyHash = keyHashBufferThreadLocal.getAndRequireBufferSize(keyHashSize);
-    hasher.hash(key, keyHashSize, keyHash);
+    ByteBuffer keyHash = keyHashBufferThreadLocal.getAndRequireBufferSize(keyHashSize);
+    if (hasher instanceof Murmur128Hasher && result.getKeyHash128().isFor(key)) {
+      // Key was already hashed when it was partitioned
+      ((Murmur128Hasher)hasher).hash(key, result.getKeyHash128(), keyHashSize, keyHash.array());
+    } else {
+      hasher.hash(key, keyHashSize, keyHash.array());
+    }
     return keyHash;
   }
 
@@ -26,6 +26,7 @@ public class CueballRemoteDomainVersionDeleter implements RemoteDomainVersionDel
     for (int partition = 0; partition < domain.getNumParts(); ++partition) {
       PartitionRemoteFileOps fileOps = fileOpsFactory.getPartitionRemoteFileOps(remoteDomainRoot, partition);
       fileOps.attemptDelete(Cueball.getName(versionNumber, true));
+      fileOps.attemptDelete(Cueball.getFilterPath(Cueball.getName(versionNumber, true)));
       fileOps.attemptDelete(Cueball.getName(versionNumber, false));
     }
   }
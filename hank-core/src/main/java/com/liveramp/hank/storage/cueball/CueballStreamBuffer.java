@@ -52,15 +52,38 @@ public final class CueballStreamBuffer {
                              int hashIndexBits,
                              CueballCompressionCodec compressionCodec)
       throws IOException {
+    this(new FileInputStream(filePath), relativeIndex, keyHashSize, valueSize, hashIndexBits, compressionCodec);
+  }
+
+  private CueballStreamBuffer(FileInputStream fileInputStream,
+                              int relativeIndex,
+                              int keyHashSize,
+                              int valueSize,
+                              int hashIndexBits,
+                              CueballCompressionCodec compressionCodec)
+      throws IOException {
+    this(new BufferedInputStream(fileInputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE),
+        new Footer(fileInputStream.getChannel(), hashIndexBits),
+        relativeIndex,
+        keyHashSize,
+        valueSize,
+        compressionCodec);
+  }
+
+  // The stream must be positioned at the start of the file, its footer is read separately
+  CueballStreamBuffer(InputStream stream,
+                      Footer footer,
+                      int relativeIndex,
+                      int keyHashSize,
+                      int valueSize,
+                      CueballCompressionCodec compressionCodec) {
     this.relativeIndex = relativeIndex;
     this.compressionCodec = compressionCodec;
-    FileInputStream fileInputStream = new FileInputStream(filePath);
-    this.stream = new BufferedInputStream(fileInputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE);
+    this.stream = stream;
 
     this.keyHashSize = keyHashSize;
     this.fullRecordSize = valueSize + keyHashSize;
 
-    Footer footer = new Footer(fileInputStream.getChannel(), hashIndexBits);
     dataLength = footer.getDataLength();
     hashIndex = footer.getHashIndex();
     uncompressedBuffer = new byte[footer.getMaxUncompressedBufferSize()];
@@ -123,8 +146,16 @@ public final class CueballStreamBuffer {
     }
 
     final int blockLength = (int) (upperOffset - hashIndex[currentHashIndexIdx]);
-    // read the compressed block from disk into the compressed buffer
-    final int compressedBytesRead = stream.read(compressedBuffer, 0, blockLength);
+    // read the compressed block from the stream into the compressed buffer
+    // (remote streams can return fewer bytes than requested)
+    int compressedBytesRead = 0;
+    while (compressedBytesRead < blockLength) {
+      final int read = stream.read(compressedBuffer, compressedBytesRead, blockLength - compressedBytesRead);
+      if (read == -1) {
+        throw new IOException("Reached the end of the stream after " + compressedBytesRead + " bytes of a block of " + blockLength + " bytes");
+      }
+      compressedBytesRead += read;
+    }
     // decompress the compressed block into the uncompressed buffer
     final int decompressedSize = compressionCodec.decompress(compressedBuffer, 0, compressedBytesRead, uncompressedBuffer, 0);
 
@@ -29,6 +29,14 @@ public class CueballStreamBufferMergeSort implements IKeyFileStreamBufferMergeSo
   private final int valueSize;
   private final ValueTransformer transformer;
 
+  private static final int KEY_HASH_PREFIX_SIZE = 8;
+
+  // Binary min heap of the indices of the stream buffers with remaining records, and the key hash
+  // prefix of the current record of each stream buffer. Initialized on the first read.
+  private int[] heap;
+  private long[] keyHashPrefixes;
+  private int heapSize;
+
   public static class Factory implements ICueballStreamBufferMergeSortFactory {
     private final int keyHashSize;
     private final int valueSize;
@@ -90,41 +98,62 @@ public class CueballStreamBufferMergeSort implements IKeyFileStreamBufferMergeSo
     }
   }
 
+  // Merge already opened stream buffers, ordered from the base to the latest delta
+  public CueballStreamBufferMergeSort(CueballStreamBuffer[] cueballStreamBuffers,
+                                      int keyHashSize,
+                                      int valueSize,
+                                      ValueTransformer transformer) {
+    this.cueballStreamBuffers = cueballStreamBuffers;
+    this.keyHashSize = keyHashSize;
+    this.valueSize = valueSize;
+    this.transformer = transformer;
+  }
+
   // Return null when there is nothing more to use
   @Override
   public KeyHashAndValueAndStreamIndex nextKeyHashAndValueAndStreamIndex() throws IOException {
-
-    // Find the stream buffer with the next smallest key hash
-    CueballStreamBuffer cueballStreamBufferToUse = null;
-    int cueballStreamBufferToUseIndex = -1;
-
-    for (int i = 0; i < cueballStreamBuffers.length; i++) {
-      if (cueballStreamBuffers[i].anyRemaining()) {
-        if (cueballStreamBufferToUse == null) {
-          cueballStreamBufferToUse = cueballStreamBuffers[i];
-          cueballStreamBufferToUseIndex = i;
-        } else {
-          int comparison = cueballStreamBufferToUse.compareTo(cueballStreamBuffers[i]);
-          if (comparison == 0) {
-            // If two equal key hashes are found, use the most recent value (i.e. the one from the lastest delta)
-            // and skip (consume) the older ones
-            cueballStreamBufferToUse.consume();
-            cueballStreamBufferToUse = cueballStreamBuffers[i];
-            cueballStreamBufferToUseIndex = i;
-          } else if (comparison == 1) {
-            // Found a stream buffer with a smaller key hash
-            cueballStreamBufferToUse = cueballStreamBuffers[i];
-            cueballStreamBufferToUseIndex = i;
-          }
-        }
+    if (heap == null) {
+      initializeHeap();
+    } else if (heapSize > 0) {
+      // The stream buffer used last is still at the top of the heap, reposition it now that its
+      // record has been used (refilling its buffer would have overwritten the record)
+      if (cueballStreamBuffers[heap[0]].anyRemaining()) {
+        keyHashPrefixes[heap[0]] = getKeyHashPrefix(cueballStreamBuffers[heap[0]]);
+        siftDown(0);
+      } else {
+        removeAt(0);
       }
     }
 
-    if (cueballStreamBufferToUse == null) {
+    if (heapSize == 0) {
       // Nothing more to read
       return null;
     }
 
+    final int cueballStreamBufferToUseIndex = heap[0];
+    final CueballStreamBuffer cueballStreamBufferToUse = cueballStreamBuffers[cueballStreamBufferToUseIndex];
+
+    // Equal key hashes are ordered from the most recent stream buffer, so the top of the heap holds
+    // the value to use (i.e. the one from the latest delta). Skip (consume) the older ones, which
+    // come next and thus are children of the top.
+    while (heapSize > 1) {
+      int next = 1;
+      if (heapSize > 2 && compare(heap[2], heap[1]) < 0) {
+        next = 2;
+      }
+      if (!equalKeyHashes(cueballStreamBufferToUseIndex, heap[next])) {
+        break;
+      }
+      CueballStreamBuffer olderCueballStreamBuffer = cueballStreamBuffers[heap[next]];
+      olderCueballStreamBuffer.consume();
+      if (olderCueballStreamBuffer.anyRemaining()) {
+        keyHashPrefixes[heap[next]] = getKeyHashPrefix(olderCueballStreamBuffer);
+        siftDown(next);
+      } else {
+        removeAt(next);
+      }
+    }
+
     // Transform if necessary
     if (transformer != null) {
       transformer.transform(cueballStreamBufferToUse.getBuffer(),
@@ -143,6 +172,92 @@ public class CueballStreamBufferMergeSort implements IKeyFileStreamBufferMergeSo
     return new KeyHashAndValueAndStreamIndex(keyHash, valueBytes, cueballStreamBufferToUseIndex);
   }
 
+  private void initializeHeap() throws IOException {
+    heap = new int[cueballStreamBuffers.length];
+    keyHashPrefixes = new long[cueballStreamBuffers.length];
+    heapSize = 0;
+    for (int i = 0; i < cueballStreamBuffers.length; ++i) {
+      if (cueballStreamBuffers[i].anyRemaining()) {
+        keyHashPrefixes[i] = getKeyHashPrefix(cueballStreamBuffers[i]);
+        heap[heapSize] = i;
+        siftUp(heapSize);
+        ++heapSize;
+      }
+    }
+  }
+
+  // First 8 bytes of the current key hash, so that most comparisons are done on a primitive
+  private long getKeyHashPrefix(CueballStreamBuffer cueballStreamBuffer) {
+    final byte[] buffer = cueballStreamBuffer.getBuffer();
+    final int offset = cueballStreamBuffer.getCurrentOffset();
+    long prefix = 0;
+    for (int i = 0; i < KEY_HASH_PREFIX_SIZE; ++i) {
+      prefix <<= 8;
+      if (i < keyHashSize) {
+        prefix |= buffer[offset + i] & 0xff;
+      }
+    }
+    return prefix;
+  }
+
+  private boolean equalKeyHashes(int streamA, int streamB) {
+    return keyHashPrefixes[streamA] == keyHashPrefixes[streamB]
+        && (keyHashSize <= KEY_HASH_PREFIX_SIZE || cueballStreamBuffers[streamA].compareTo(cueballStreamBuffers[streamB]) == 0);
+  }
+
+  // Order by key hash, then from the most recent stream buffer
+  private int compare(int streamA, int streamB) {
+    int comparison = Long.compareUnsigned(keyHashPrefixes[streamA], keyHashPrefixes[streamB]);
+    if (comparison == 0 && keyHashSize > KEY_HASH_PREFIX_SIZE) {
+      comparison = cueballStreamBuffers[streamA].compareTo(cueballStreamBuffers[streamB]);
+    }
+    if (comparison == 0) {
+      return Integer.compare(streamB, streamA);
+    }
+    return comparison;
+  }
+
+  private void siftUp(int position) {
+    final int stream = heap[position];
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      if (compare(stream, heap[parent]) >= 0) {
+        break;
+      }
+      heap[position] = heap[parent];
+      position = parent;
+    }
+    heap[position] = stream;
+  }
+
+  private void siftDown(int position) {
+    final int stream = heap[position];
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && compare(heap[child + 1], heap[child]) < 0) {
+        ++child;
+      }
+      if (compare(stream, heap[child]) <= 0) {
+        break;
+      }
+      heap[position] = heap[child];
+      position = child;
+    }
+    heap[position] = stream;
+  }
+
+  // Only removes the top or its children, which the last element can replace by sifting down
+  private void removeAt(int position) {
+    --heapSize;
+    if (position < heapSize) {
+      heap[position] = heap[heapSize];
+      siftDown(position);
+    }
+  }
+
   @Override
   public void close() throws IOException {
     // Close all buffers
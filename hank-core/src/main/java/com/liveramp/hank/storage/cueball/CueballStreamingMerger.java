@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.storage.ChunkedPartitionRemoteFileOps;
+import com.liveramp.hank.util.IOStreamUtils;
+import com.liveramp.hank.util.ReadAheadInputStream;
+
+/**
+ * Merger reading the deltas that are not in the local cache directly from the remote partition,
+ * so that they are not copied locally before being merged. Remote deltas are read ahead from a
+ * background thread while the merge runs. The base is always read locally.
+ */
+public final class CueballStreamingMerger implements ICueballMerger {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CueballStreamingMerger.class);
+
+  public static final int DEFAULT_READ_AHEAD_BUFFER_SIZE = 4 * IOStreamUtils.DEFAULT_BUFFER_SIZE;
+  public static final int DEFAULT_READ_AHEAD_NUM_BUFFERS = 4;
+
+  private final ChunkedPartitionRemoteFileOps partitionRemoteFileOps;
+  private final int readAheadBufferSize;
+  private final int readAheadNumBuffers;
+  private final int filterNumBitsPerKey;
+
+  public CueballStreamingMerger(ChunkedPartitionRemoteFileOps partitionRemoteFileOps) {
+    this(partitionRemoteFileOps, 0);
+  }
+
+  public CueballStreamingMerger(ChunkedPartitionRemoteFileOps partitionRemoteFileOps,
+                                int filterNumBitsPerKey) {
+    this(partitionRemoteFileOps, DEFAULT_READ_AHEAD_BUFFER_SIZE, DEFAULT_READ_AHEAD_NUM_BUFFERS, filterNumBitsPerKey);
+  }
+
+  public CueballStreamingMerger(ChunkedPartitionRemoteFileOps partitionRemoteFileOps,
+                                int readAheadBufferSize,
+                                int readAheadNumBuffers) {
+    this(partitionRemoteFileOps, readAheadBufferSize, readAheadNumBuffers, 0);
+  }
+
+  // A filter of the key hashes is written next to the new base when filterNumBitsPerKey is positive
+  public CueballStreamingMerger(ChunkedPartitionRemoteFileOps partitionRemoteFileOps,
+                                int readAheadBufferSize,
+                                int readAheadNumBuffers,
+                                int filterNumBitsPerKey) {
+    this.partitionRemoteFileOps = partitionRemoteFileOps;
+    this.readAheadBufferSize = readAheadBufferSize;
+    this.readAheadNumBuffers = readAheadNumBuffers;
+    this.filterNumBitsPerKey = filterNumBitsPerKey;
+  }
+
+  // A remote file can be streamed when its size is known, since its footer is read first
+  public boolean canStream(String remoteRelativePath) throws IOException {
+    return partitionRemoteFileOps.getSize(remoteRelativePath) >= 0;
+  }
+
+  @Override
+  public void merge(final CueballFilePath base,
+                    final List<CueballFilePath> deltas,
+                    final String newBasePath,
+                    final int keyHashSize,
+                    final int valueSize,
+                    ValueTransformer transformer,
+                    int hashIndexBits,
+                    CueballCompressionCodec compressionCodec) throws IOException {
+    CueballStreamBuffer[] cueballStreamBuffers = new CueballStreamBuffer[deltas.size() + 1];
+    try {
+      cueballStreamBuffers[0] = new CueballStreamBuffer(base.getPath(), 0,
+          keyHashSize, valueSize, hashIndexBits, compressionCodec);
+      int i = 1;
+      for (CueballFilePath delta : deltas) {
+        if (new File(delta.getPath()).exists()) {
+          cueballStreamBuffers[i] = new CueballStreamBuffer(delta.getPath(), i,
+              keyHashSize, valueSize, hashIndexBits, compressionCodec);
+        } else {
+          cueballStreamBuffers[i] = openRemoteDelta(Cueball.getName(delta.getVersion(), false), i,
+              keyHashSize, valueSize, hashIndexBits, compressionCodec);
+        }
+        ++i;
+      }
+    } catch (IOException e) {
+      closeAll(cueballStreamBuffers);
+      throw e;
+    }
+
+    CueballMerger.write(new CueballStreamBufferMergeSort(cueballStreamBuffers, keyHashSize, valueSize, transformer),
+        newBasePath, keyHashSize, valueSize, hashIndexBits, compressionCodec, filterNumBitsPerKey);
+  }
+
+  private CueballStreamBuffer openRemoteDelta(String remoteRelativePath,
+                                              int relativeIndex,
+                                              int keyHashSize,
+                                              int valueSize,
+                                              int hashIndexBits,
+                                              CueballCompressionCodec compressionCodec) throws IOException {
+    long size = partitionRemoteFileOps.getSize(remoteRelativePath);
+    if (size < 0) {
+      throw new IOException("Could not stream remote file for merging: " + remoteRelativePath);
+    }
+    // The footer is at the end of the file and is needed first, read it with a separate stream
+    Footer footer;
+    InputStream footerInputStream = partitionRemoteFileOps.getInputStream(remoteRelativePath);
+    try {
+      footer = new Footer(footerInputStream, size, hashIndexBits);
+    } finally {
+      footerInputStream.close();
+    }
+    LOG.info("Merging remote file " + remoteRelativePath + " from " + partitionRemoteFileOps);
+    InputStream inputStream = new ReadAheadInputStream(partitionRemoteFileOps.getInputStream(remoteRelativePath),
+        readAheadBufferSize, readAheadNumBuffers, remoteRelativePath);
+    return new CueballStreamBuffer(inputStream, footer, relativeIndex, keyHashSize, valueSize, compressionCodec);
+  }
+
+  private static void closeAll(CueballStreamBuffer[] cueballStreamBuffers) {
+    for (CueballStreamBuffer cueballStreamBuffer : cueballStreamBuffers) {
+      if (cueballStreamBuffer != null) {
+        try {
+          cueballStreamBuffer.close();
+        } catch (IOException e) {
+          LOG.error("Failed to close stream buffer", e);
+        }
+      }
+    }
+  }
+}
@@ -49,6 +49,8 @@ public class CueballWriter implements Writer {
   private final long[] hashIndex;
 
   private final HashPrefixCalculator prefixer;
+  // Filter of the key hashes written next to the key file, null when disabled
+  private final KeyHashFilter.Writer filterWriter;
   private int lastHashPrefix = -1;
   private int uncompressedOffset = 0;
   private int numEntriesInBlock = 0;
@@ -64,6 +66,18 @@ public class CueballWriter implements Writer {
                        int valueSize,
                        CueballCompressionCodec compressionCodec,
                        int hashIndexBits) {
+    this(outputStream, keyHashSize, hasher, valueSize, compressionCodec, hashIndexBits, null, 0);
+  }
+
+  // A filter of the key hashes is written to the given filter stream when it is not null
+  public CueballWriter(OutputStream outputStream,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       CueballCompressionCodec compressionCodec,
+                       int hashIndexBits,
+                       OutputStream filterOutputStream,
+                       int filterNumBitsPerKey) {
     // Buffer output
     this.stream = new BufferedOutputStream(outputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE);
     this.keyHashSize = keyHashSize;
@@ -82,6 +96,12 @@ public class CueballWriter implements Writer {
 
     hashIndex = new long[1 << hashIndexBits];
     Arrays.fill(hashIndex, -1);
+
+    if (filterOutputStream != null) {
+      filterWriter = new KeyHashFilter.Writer(filterOutputStream, hashIndexBits, filterNumBitsPerKey);
+    } else {
+      filterWriter = null;
+    }
   }
 
   @Override
@@ -195,6 +215,10 @@ public class CueballWriter implements Writer {
     if (compressedSize > maxCompressedBlockSize) {
       maxCompressedBlockSize = compressedSize;
     }
+
+    if (filterWriter != null && numEntriesInBlock > 0) {
+      filterWriter.writeBlock(lastHashPrefix, uncompressedBuffer, 0, numEntriesInBlock, keyHashSize + valueSize, keyHashSize);
+    }
     // Reset offset and counter
     uncompressedOffset = 0;
     numEntriesInBlock = 0;
@@ -225,6 +249,10 @@ public class CueballWriter implements Writer {
     // flush everything and close
     stream.flush();
     stream.close();
+
+    if (filterWriter != null) {
+      filterWriter.close(numBytesWritten);
+    }
   }
 
   @Override
@@ -1,6 +1,7 @@
 package com.liveramp.hank.storage.cueball;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
@@ -14,16 +15,19 @@ final class Footer {
   private final int footerLength;
 
   public Footer(FileChannel channel, int hashIndexBits) throws IOException {
-    fileSize = channel.size();
+    this(readFooter(channel, hashIndexBits), channel.size(), hashIndexBits);
+  }
 
-    final int hashIndexSize = 1 << hashIndexBits;
-    footerLength = hashIndexSize * 8 + 8;
+  // Read the footer of a file of the given size from a stream positioned at the start of the file
+  public Footer(InputStream stream, long fileSize, int hashIndexBits) throws IOException {
+    this(readFooter(stream, fileSize, hashIndexBits), fileSize, hashIndexBits);
+  }
 
-    byte[] footer = new byte[getFooterLength()];
-    int read = channel.read(ByteBuffer.wrap(footer), getFileSize() - getFooterLength());
-    if (read != getFooterLength()) {
-      throw new IOException("Tried to read " + getFooterLength() + " bytes of footer, but only got " + read + " bytes!");
-    }
+  private Footer(byte[] footer, long fileSize, int hashIndexBits) throws IOException {
+    this.fileSize = fileSize;
+
+    final int hashIndexSize = 1 << hashIndexBits;
+    footerLength = footer.length;
 
     hashIndex = new long[hashIndexSize];
     for (int i = 0; i < getHashIndex().length; i++) {
@@ -47,6 +51,47 @@ final class Footer {
     }
   }
 
+  private static int getFooterLength(int hashIndexBits) {
+    return (1 << hashIndexBits) * 8 + 8;
+  }
+
+  private static byte[] readFooter(FileChannel channel, int hashIndexBits) throws IOException {
+    byte[] footer = new byte[getFooterLength(hashIndexBits)];
+    int read = channel.read(ByteBuffer.wrap(footer), channel.size() - footer.length);
+    if (read != footer.length) {
+      throw new IOException("Tried to read " + footer.length + " bytes of footer, but only got " + read + " bytes!");
+    }
+    return footer;
+  }
+
+  private static byte[] readFooter(InputStream stream, long fileSize, int hashIndexBits) throws IOException {
+    byte[] footer = new byte[getFooterLength(hashIndexBits)];
+    long toSkip = fileSize - footer.length;
+    while (toSkip > 0) {
+      long skipped = stream.skip(toSkip);
+      if (skipped <= 0) {
+        // Skip is allowed to make no progress, check for the end of the stream
+        if (stream.read() == -1) {
+          throw new IOException("Reached the end of the stream while skipping to the footer, " + toSkip + " bytes before it");
+        }
+        skipped = 1;
+      }
+      toSkip -= skipped;
+    }
+    int read = 0;
+    while (read < footer.length) {
+      int n = stream.read(footer, read, footer.length - read);
+      if (n == -1) {
+        break;
+      }
+      read += n;
+    }
+    if (read != footer.length) {
+      throw new IOException("Tried to read " + footer.length + " bytes of footer, but only got " + read + " bytes!");
+    }
+    return footer;
+  }
+
   public long[] getHashIndex() {
     return hashIndex;
   }
@@ -0,0 +1,285 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.liveramp.hank.util.IOStreamUtils;
+
+/**
+ * Bloom filter of the key hashes stored in a Cueball partition. It answers that a key hash is
+ * definitely absent, or that it might be present with a false positive rate that depends on the
+ * number of bits allocated per key.
+ * <p>
+ * The filter is partitioned like the key file: each hash prefix has its own bits, sized from the
+ * number of keys in its block. This lets it be written block by block, next to the key file, and
+ * loaded when the key file is opened. A filter file holds the bits of every block followed by a
+ * footer made of the word offset of each block, the size of the key file it was built from, the
+ * number of keys, and the parameters of the filter. The size of the key file tells a filter left
+ * next to a different key file apart from the one it was built from.
+ */
+public class KeyHashFilter {
+
+  private static final int MAX_NUM_HASH_FUNCTIONS = 16;
+  // Key file size, number of keys, number of bits per key, number of hash functions and hash index bits
+  private static final int FOOTER_PARAMETERS_LENGTH = 8 + 8 + 4 + 4 + 4;
+
+  private final long[] bits;
+  // Bits of block i are words blockOffsets[i] (inclusive) to blockOffsets[i + 1] (exclusive)
+  private final int[] blockOffsets;
+  private final HashPrefixCalculator prefixer;
+  private final int hashIndexBits;
+  private final int numBitsPerKey;
+  private final int numHashFunctions;
+  private final long numKeys;
+  private final long keyFileSize;
+
+  private KeyHashFilter(long[] bits,
+                        int[] blockOffsets,
+                        int hashIndexBits,
+                        int numBitsPerKey,
+                        int numHashFunctions,
+                        long numKeys,
+                        long keyFileSize) {
+    this.bits = bits;
+    this.blockOffsets = blockOffsets;
+    this.prefixer = new HashPrefixCalculator(hashIndexBits);
+    this.hashIndexBits = hashIndexBits;
+    this.numBitsPerKey = numBitsPerKey;
+    this.numHashFunctions = numHashFunctions;
+    this.numKeys = numKeys;
+    this.keyFileSize = keyFileSize;
+  }
+
+  public static KeyHashFilter read(String path) throws IOException {
+    FileChannel channel = new FileInputStream(path).getChannel();
+    try {
+      long fileSize = channel.size();
+      if (fileSize < FOOTER_PARAMETERS_LENGTH) {
+        throw new IOException("Filter file is too small: " + path);
+      }
+      ByteBuffer parameters = ByteBuffer.allocate(FOOTER_PARAMETERS_LENGTH);
+      readFully(channel, parameters, fileSize - FOOTER_PARAMETERS_LENGTH);
+      parameters.flip();
+      long keyFileSize = parameters.getLong();
+      long numKeys = parameters.getLong();
+      int numBitsPerKey = parameters.getInt();
+      int numHashFunctions = parameters.getInt();
+      int hashIndexBits = parameters.getInt();
+      if (hashIndexBits < 0 || hashIndexBits > 32) {
+        throw new IOException("Invalid hash index bits (" + hashIndexBits + ") in filter file: " + path);
+      }
+      long blockOffsetsLength = ((1L << hashIndexBits) + 1) * 4;
+      long bitsLength = fileSize - FOOTER_PARAMETERS_LENGTH - blockOffsetsLength;
+      if (bitsLength < 0 || bitsLength % 8 != 0 || bitsLength / 8 > Integer.MAX_VALUE) {
+        throw new IOException("Invalid size (" + fileSize + " bytes) of filter file: " + path);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int)blockOffsetsLength);
+      readFully(channel, buffer, bitsLength);
+      buffer.flip();
+      int[] blockOffsets = new int[(1 << hashIndexBits) + 1];
+      buffer.asIntBuffer().get(blockOffsets);
+      long[] bits = new long[(int)(bitsLength / 8)];
+      if (blockOffsets[blockOffsets.length - 1] != bits.length) {
+        throw new IOException("Block offsets do not match the size of filter file: " + path);
+      }
+      // Read bits in chunks to bound the size of the intermediate buffer
+      buffer = ByteBuffer.allocate(IOStreamUtils.DEFAULT_BUFFER_SIZE);
+      int word = 0;
+      while (word < bits.length) {
+        int numWords = Math.min(bits.length - word, buffer.capacity() / 8);
+        buffer.clear();
+        buffer.limit(numWords * 8);
+        readFully(channel, buffer, word * 8L);
+        buffer.flip();
+        buffer.asLongBuffer().get(bits, word, numWords);
+        word += numWords;
+      }
+      return new KeyHashFilter(bits, blockOffsets, hashIndexBits, numBitsPerKey, numHashFunctions, numKeys, keyFileSize);
+    } finally {
+      channel.close();
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+    long position = offset - buffer.position();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of filter file at offset " + (position + buffer.position()));
+      }
+    }
+  }
+
+  public boolean mightContain(byte[] keyHash, int off, int keyHashSize) {
+    int hashPrefix = prefixer.getHashPrefix(keyHash, off);
+    int blockOffset = blockOffsets[hashPrefix];
+    long numBlockBits = (blockOffsets[hashPrefix + 1] - blockOffset) * 64L;
+    if (numBlockBits == 0) {
+      return false;
+    }
+    long hash1 = hash(keyHash, off, keyHashSize);
+    long hash2 = Long.rotateLeft(hash1, 32) | 1;
+    for (int i = 0; i < numHashFunctions; ++i) {
+      long bit = getBit(hash1 + i * hash2, numBlockBits);
+      if ((bits[blockOffset + (int)(bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getNumKeys() {
+    return numKeys;
+  }
+
+  // Size of the key file the filter was built from
+  public long getKeyFileSize() {
+    return keyFileSize;
+  }
+
+  public long getNumBytes() {
+    return bits.length * 8L;
+  }
+
+  public int getHashIndexBits() {
+    return hashIndexBits;
+  }
+
+  public int getNumBitsPerKey() {
+    return numBitsPerKey;
+  }
+
+  public double getExpectedFalsePositiveRate() {
+    return Math.pow(1 - Math.exp(-numHashFunctions * (double)numKeys / (bits.length * 64.0)), numHashFunctions);
+  }
+
+  // Hash functions are combinations of two independent hashes
+  private static long getBit(long hash, long numBits) {
+    return (hash & Long.MAX_VALUE) % numBits;
+  }
+
+  // Keys in a block share their prefix, so mix all bytes of the key hash rather than using them directly
+  private static long hash(byte[] keyHash, int off, int keyHashSize) {
+    // 64 bit FNV-1a, finalized with Murmur3's mixer
+    long hash = 0xcbf29ce484222325L;
+    for (int i = off; i < off + keyHashSize; ++i) {
+      hash ^= keyHash[i] & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  // Number of hash functions that minimizes the false positive rate
+  private static int getNumHashFunctions(int numBitsPerKey) {
+    return (int)Math.max(1, Math.min(MAX_NUM_HASH_FUNCTIONS, Math.round(numBitsPerKey * Math.log(2))));
+  }
+
+  /**
+   * Write a filter block by block, in increasing hash prefix order, as the blocks of the key file are written.
+   */
+  public static class Writer {
+
+    private final DataOutputStream stream;
+    private final int hashIndexBits;
+    private final int numBitsPerKey;
+    private final int numHashFunctions;
+    private final int[] blockOffsets;
+    private long[] blockBits = new long[0];
+    private int lastHashPrefix = -1;
+    private long numWords = 0;
+    private long numKeys = 0;
+
+    public Writer(OutputStream outputStream, int hashIndexBits, int numBitsPerKey) {
+      if (numBitsPerKey <= 0) {
+        throw new IllegalArgumentException("Number of bits per key should be positive: " + numBitsPerKey);
+      }
+      this.stream = new DataOutputStream(new BufferedOutputStream(outputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE));
+      this.hashIndexBits = hashIndexBits;
+      this.numBitsPerKey = numBitsPerKey;
+      this.numHashFunctions = getNumHashFunctions(numBitsPerKey);
+      this.blockOffsets = new int[(1 << hashIndexBits) + 1];
+    }
+
+    // Add the key hashes of a block of numRecords records of recordSize bytes, starting at the given offset
+    public void writeBlock(int hashPrefix,
+                           byte[] records,
+                           int off,
+                           int numRecords,
+                           int recordSize,
+                           int keyHashSize) throws IOException {
+      if (hashPrefix <= lastHashPrefix) {
+        throw new IOException("Filter blocks should be written in increasing hash prefix order, but block "
+            + hashPrefix + " was written after block " + lastHashPrefix);
+      }
+      skipBlocksUntil(hashPrefix);
+      int numBlockWords = (int)Math.max(1, ((long)numRecords * numBitsPerKey + 63) / 64);
+      if (blockBits.length < numBlockWords) {
+        blockBits = new long[numBlockWords];
+      }
+      Arrays.fill(blockBits, 0, numBlockWords, 0);
+      long numBlockBits = numBlockWords * 64L;
+      for (int i = 0; i < numRecords; ++i) {
+        long hash1 = hash(records, off + i * recordSize, keyHashSize);
+        long hash2 = Long.rotateLeft(hash1, 32) | 1;
+        for (int j = 0; j < numHashFunctions; ++j) {
+          long bit = getBit(hash1 + j * hash2, numBlockBits);
+          blockBits[(int)(bit >>> 6)] |= 1L << bit;
+        }
+      }
+      for (int i = 0; i < numBlockWords; ++i) {
+        stream.writeLong(blockBits[i]);
+      }
+      numWords += numBlockWords;
+      if (numWords > Integer.MAX_VALUE) {
+        throw new IOException("Too many keys for a filter: " + (numKeys + numRecords));
+      }
+      numKeys += numRecords;
+      lastHashPrefix = hashPrefix;
+    }
+
+    // Blocks that were not written are empty
+    private void skipBlocksUntil(int hashPrefix) {
+      for (int i = lastHashPrefix + 1; i <= hashPrefix; ++i) {
+        blockOffsets[i] = (int)numWords;
+      }
+    }
+
+    // The size of the key file the blocks were read from identifies the key file when the filter is loaded
+    public void close(long keyFileSize) throws IOException {
+      skipBlocksUntil(blockOffsets.length - 1);
+      for (int blockOffset : blockOffsets) {
+        stream.writeInt(blockOffset);
+      }
+      stream.writeLong(keyFileSize);
+      stream.writeLong(numKeys);
+      stream.writeInt(numBitsPerKey);
+      stream.writeInt(numHashFunctions);
+      stream.writeInt(hashIndexBits);
+      stream.close();
+    }
+  }
+}
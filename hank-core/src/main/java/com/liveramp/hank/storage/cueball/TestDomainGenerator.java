@@ -1,5 +1,6 @@
 package com.liveramp.hank.storage.cueball;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,6 +16,7 @@ import com.liveramp.hank.coordinator.mock.MockDomainVersion;
 import com.liveramp.hank.hasher.Hasher;
 import com.liveramp.hank.partitioner.Partitioner;
 import com.liveramp.hank.storage.LocalPartitionRemoteFileOps;
+import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 
 public class TestDomainGenerator {
 
@@ -41,32 +43,59 @@ public class TestDomainGenerator {
     Partitioner p = (Partitioner)Class.forName(partitionerClass).newInstance();
     Hasher h = (Hasher)Class.forName(hasherClassName).newInstance();
 
+    generate(outputPath, 0, null, totalNumRecords, keyLength, hashLength, indexBits, valueLength, h, codecClass, numPartitions, p);
+  }
+
+  /**
+   * Write a version of a synthetic Cueball domain with random keys and values, one directory per
+   * partition under outputPath.
+   *
+   * @param parentVersionNumber null to write a base, the version the delta applies to otherwise
+   * @return the keys written to each partition
+   */
+  public static Map<Integer, List<byte[]>> generate(String outputPath,
+                                                    int versionNumber,
+                                                    Integer parentVersionNumber,
+                                                    int totalNumRecords,
+                                                    int keyLength,
+                                                    int hashLength,
+                                                    int indexBits,
+                                                    int valueLength,
+                                                    Hasher h,
+                                                    Class<? extends CueballCompressionCodec> codecClass,
+                                                    int numPartitions,
+                                                    Partitioner p) throws IOException {
     Map<Integer, List<byte[]>> partitionedKeys = new HashMap<Integer, List<byte[]>>();
+    Map<Integer, List<byte[]>> partitionedHashes = new HashMap<Integer, List<byte[]>>();
     for (int i = 0; i < numPartitions; i++) {
       partitionedKeys.put(i, new ArrayList<byte[]>());
+      partitionedHashes.put(i, new ArrayList<byte[]>());
     }
 
-    Random r = new Random(7);
+    Random r = new Random(7 + versionNumber);
     for (int i = 0; i < totalNumRecords; i++) {
       byte[] key = new byte[keyLength];
       r.nextBytes(key);
       final int partitionNumber = p.partition(ByteBuffer.wrap(key), numPartitions);
       byte[] hash = new byte[hashLength];
       h.hash(ByteBuffer.wrap(key), hashLength, hash);
-      partitionedKeys.get(partitionNumber).add(hash);
+      partitionedKeys.get(partitionNumber).add(key);
+      partitionedHashes.get(partitionNumber).add(hash);
     }
 
     final Cueball cueball = new Cueball(hashLength, h, valueLength, indexBits, "", "", null, codecClass, null, 0);
+    final MockDomainVersion domainVersion = new MockDomainVersion(versionNumber, 0L,
+        new IncrementalDomainVersionProperties(parentVersionNumber));
 
     byte[] valueBytes = new byte[valueLength];
-    for (Map.Entry<Integer, List<byte[]>> part : partitionedKeys.entrySet()) {
+    for (Map.Entry<Integer, List<byte[]>> part : partitionedHashes.entrySet()) {
       Collections.sort(part.getValue(), new Comparator<byte[]>() {
         @Override
         public int compare(byte[] arg0, byte[] arg1) {
           return BytesUtils.compareBytesUnsigned(ByteBuffer.wrap(arg0), ByteBuffer.wrap(arg1));
         }
       });
-      final CueballWriter writer = (CueballWriter)cueball.getWriter(new MockDomainVersion(0, 0L),
+      final CueballWriter writer = (CueballWriter)cueball.getWriter(domainVersion,
           new LocalPartitionRemoteFileOps(outputPath, part.getKey()), part.getKey());
       for (int i = 0; i < part.getValue().size(); i++) {
         r.nextBytes(valueBytes);
@@ -74,5 +103,6 @@ public class TestDomainGenerator {
       }
       writer.close();
     }
+    return partitionedKeys;
   }
 }
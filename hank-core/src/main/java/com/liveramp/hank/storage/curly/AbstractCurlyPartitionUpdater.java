@@ -23,6 +23,7 @@ import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import com.liveramp.hank.storage.cueball.Cueball;
 import com.liveramp.hank.storage.cueball.CueballFilePath;
 import com.liveramp.hank.storage.cueball.ValueTransformer;
+import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 import com.liveramp.hank.storage.incremental.IncrementalPartitionUpdater;
 import com.liveramp.hank.storage.incremental.IncrementalUpdatePlan;
 import com.liveramp.hank.util.EncodingHelper;
@@ -136,13 +137,19 @@ public abstract class AbstractCurlyPartitionUpdater extends IncrementalPartition
   private void fetchCueballVersion(DomainVersion version, String fetchRoot) throws IOException {
     String cueballFileToFetch = Cueball.getName(version);
     LOG.info("Fetching from " + partitionRemoteFileOps + " for file " + cueballFileToFetch + " to " + fetchRoot);
-    partitionRemoteFileOps.copyToLocalRoot(cueballFileToFetch, fetchRoot);
+    fetchFile(partitionRemoteFileOps, cueballFileToFetch, fetchRoot);
+    // Bases are written with a filter of their key hashes when filters are enabled
+    String filterToFetch = Cueball.getFilterPath(cueballFileToFetch);
+    if (IncrementalDomainVersionProperties.isBase(version) && partitionRemoteFileOps.exists(filterToFetch)) {
+      LOG.info("Fetching from " + partitionRemoteFileOps + " for file " + filterToFetch + " to " + fetchRoot);
+      fetchFile(partitionRemoteFileOps, filterToFetch, fetchRoot);
+    }
   }
 
   private void fetchCurlyVersion(DomainVersion version, String fetchRoot) throws IOException {
     String curlyFileToFetch = Curly.getName(version);
     LOG.info("Fetching from " + partitionRemoteFileOps + " for file " + curlyFileToFetch + " to " + fetchRoot);
-    partitionRemoteFileOps.copyToLocalRoot(curlyFileToFetch, fetchRoot);
+    fetchFile(partitionRemoteFileOps, curlyFileToFetch, fetchRoot);
   }
 
   @Override
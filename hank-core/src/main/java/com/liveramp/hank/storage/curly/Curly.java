@@ -42,6 +42,7 @@ import com.liveramp.hank.partition_server.DiskPartitionAssignment;
 import com.liveramp.hank.storage.Compactor;
 import com.liveramp.hank.storage.Deleter;
 import com.liveramp.hank.storage.FileOpsUtil;
+import com.liveramp.hank.storage.HostCacheManager;
 import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import com.liveramp.hank.storage.PartitionRemoteFileOpsFactory;
 import com.liveramp.hank.storage.PartitionUpdater;
@@ -58,6 +59,7 @@ import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 import com.liveramp.hank.storage.incremental.IncrementalStorageEngine;
 import com.liveramp.hank.storage.incremental.IncrementalUpdatePlanner;
 import com.liveramp.hank.util.FsUtils;
+import com.liveramp.hank.util.MemoryBoundCache;
 
 /**
  * Curly is a storage engine designed for larger, variable-sized values. It uses
@@ -84,6 +86,9 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     private static final String BLOCK_COMPRESSION_CODEC = "block_compression_codec";
     private static final String COMPRESSED_BLOCK_SIZE_THRESHOLD = "compressed_block_size_threshold";
     private static final String OFFSET_IN_BLOCK_NUM_BYTES = "offset_in_block_num_bytes";
+    public static final String FILTER_NUM_BITS_PER_KEY = "filter_num_bits_per_key";
+    public static final String SEQUENTIAL_COMPACTION = "sequential_compaction";
+    public static final String SEQUENTIAL_COMPACTION_MAX_NUM_BYTES_IN_MEMORY = "sequential_compaction_max_num_bytes_in_memory";
 
     private static final Set<String> REQUIRED_KEYS = new HashSet<String>(Arrays.asList(
         RECORD_FILE_READ_BUFFER_BYTES_KEY, HASH_INDEX_BITS_KEY, MAX_ALLOWED_PART_SIZE_KEY, KEY_HASH_SIZE_KEY,
@@ -140,6 +145,24 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
       if (offsetInBlockNumBytes == null) {
         offsetInBlockNumBytes = -1;
       }
+      // Membership filter of the key file, disabled by default
+      Integer filterNumBitsPerKey = (Integer)options.get(FILTER_NUM_BITS_PER_KEY);
+      if (filterNumBitsPerKey == null) {
+        filterNumBitsPerKey = 0;
+      }
+      // Read record files sequentially during compaction, disabled by default
+      Boolean sequentialCompaction = (Boolean)options.get(SEQUENTIAL_COMPACTION);
+      if (sequentialCompaction == null) {
+        sequentialCompaction = false;
+      }
+      // Memory used by each external sort of the sequential compaction before spilling to disk
+      long sequentialCompactionMaxNumBytesInMemory = CurlySequentialCompactingMerger.DEFAULT_MAX_NUM_BYTES_IN_MEMORY;
+      Object sequentialCompactionMaxNumBytesInMemoryOption = options.get(SEQUENTIAL_COMPACTION_MAX_NUM_BYTES_IN_MEMORY);
+      if (sequentialCompactionMaxNumBytesInMemoryOption != null) {
+        sequentialCompactionMaxNumBytesInMemory = sequentialCompactionMaxNumBytesInMemoryOption instanceof Long
+            ? (Long)sequentialCompactionMaxNumBytesInMemoryOption
+            : ((Integer)sequentialCompactionMaxNumBytesInMemoryOption).longValue();
+      }
 
       return new Curly((Integer)options.get(KEY_HASH_SIZE_KEY),
           hasher,
@@ -155,7 +178,10 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
           valueFoldingCacheCapacity,
           blockCompressionCodec,
           compressedBlockSizeThreshold,
-          offsetInBlockNumBytes);
+          offsetInBlockNumBytes,
+          filterNumBitsPerKey,
+          sequentialCompaction,
+          sequentialCompactionMaxNumBytesInMemory);
     }
 
     @Override
@@ -188,6 +214,8 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
   private final int compressedBlockSizeThreshold;
   private final int offsetInBlockNumBytes;
   private final int cueballValueNumBytes;
+  private final boolean sequentialCompaction;
+  private final long sequentialCompactionMaxNumBytesInMemory;
 
   public Curly(int keyHashSize,
                Hasher hasher,
@@ -204,6 +232,114 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
                CompressionCodec blockCompressionCodec,
                int compressedBlockSizeThreshold,
                int offsetInBlockNumBytes) {
+    this(keyHashSize,
+        hasher,
+        maxAllowedPartSize,
+        hashIndexBits,
+        recordFileReadBufferBytes,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        keyFileCompressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        valueFoldingCacheCapacity,
+        blockCompressionCodec,
+        compressedBlockSizeThreshold,
+        offsetInBlockNumBytes,
+        0);
+  }
+
+  public Curly(int keyHashSize,
+               Hasher hasher,
+               long maxAllowedPartSize,
+               int hashIndexBits,
+               int recordFileReadBufferBytes,
+               String domainBuilderRemoteDomainRoot,
+               String partitionServerRemoteDomainRoot,
+               PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+               Class<? extends CueballCompressionCodec> keyFileCompressionCodecClass,
+               Domain domain,
+               int numRemoteLeafVersionsToKeep,
+               int valueFoldingCacheCapacity,
+               CompressionCodec blockCompressionCodec,
+               int compressedBlockSizeThreshold,
+               int offsetInBlockNumBytes,
+               int filterNumBitsPerKey) {
+    this(keyHashSize,
+        hasher,
+        maxAllowedPartSize,
+        hashIndexBits,
+        recordFileReadBufferBytes,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        keyFileCompressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        valueFoldingCacheCapacity,
+        blockCompressionCodec,
+        compressedBlockSizeThreshold,
+        offsetInBlockNumBytes,
+        filterNumBitsPerKey,
+        false);
+  }
+
+  public Curly(int keyHashSize,
+               Hasher hasher,
+               long maxAllowedPartSize,
+               int hashIndexBits,
+               int recordFileReadBufferBytes,
+               String domainBuilderRemoteDomainRoot,
+               String partitionServerRemoteDomainRoot,
+               PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+               Class<? extends CueballCompressionCodec> keyFileCompressionCodecClass,
+               Domain domain,
+               int numRemoteLeafVersionsToKeep,
+               int valueFoldingCacheCapacity,
+               CompressionCodec blockCompressionCodec,
+               int compressedBlockSizeThreshold,
+               int offsetInBlockNumBytes,
+               int filterNumBitsPerKey,
+               boolean sequentialCompaction) {
+    this(keyHashSize,
+        hasher,
+        maxAllowedPartSize,
+        hashIndexBits,
+        recordFileReadBufferBytes,
+        domainBuilderRemoteDomainRoot,
+        partitionServerRemoteDomainRoot,
+        partitionRemoteFileOpsFactory,
+        keyFileCompressionCodecClass,
+        domain,
+        numRemoteLeafVersionsToKeep,
+        valueFoldingCacheCapacity,
+        blockCompressionCodec,
+        compressedBlockSizeThreshold,
+        offsetInBlockNumBytes,
+        filterNumBitsPerKey,
+        sequentialCompaction,
+        CurlySequentialCompactingMerger.DEFAULT_MAX_NUM_BYTES_IN_MEMORY);
+  }
+
+  public Curly(int keyHashSize,
+               Hasher hasher,
+               long maxAllowedPartSize,
+               int hashIndexBits,
+               int recordFileReadBufferBytes,
+               String domainBuilderRemoteDomainRoot,
+               String partitionServerRemoteDomainRoot,
+               PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+               Class<? extends CueballCompressionCodec> keyFileCompressionCodecClass,
+               Domain domain,
+               int numRemoteLeafVersionsToKeep,
+               int valueFoldingCacheCapacity,
+               CompressionCodec blockCompressionCodec,
+               int compressedBlockSizeThreshold,
+               int offsetInBlockNumBytes,
+               int filterNumBitsPerKey,
+               boolean sequentialCompaction,
+               long sequentialCompactionMaxNumBytesInMemory) {
     this.keyHashSize = keyHashSize;
     this.hashIndexBits = hashIndexBits;
     this.recordFileReadBufferBytes = recordFileReadBufferBytes;
@@ -217,6 +353,8 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     this.blockCompressionCodec = blockCompressionCodec;
     this.compressedBlockSizeThreshold = compressedBlockSizeThreshold;
     this.offsetInBlockNumBytes = offsetInBlockNumBytes;
+    this.sequentialCompaction = sequentialCompaction;
+    this.sequentialCompactionMaxNumBytesInMemory = sequentialCompactionMaxNumBytesInMemory;
 
     this.offsetNumBytes = (int)(Math.ceil(Math.ceil(Math.log(maxAllowedPartSize) / Math.log(2)) / 8.0));
 
@@ -237,21 +375,51 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
         partitionRemoteFileOpsFactory,
         keyFileCompressionCodecClass,
         domain,
-        numRemoteLeafVersionsToKeep);
+        numRemoteLeafVersionsToKeep,
+        false,
+        false,
+        filterNumBitsPerKey);
   }
 
   @Override
   public Reader getReader(ReaderConfigurator configurator, int partitionNumber, DiskPartitionAssignment assignment) throws IOException {
 
+    // Partition servers can configure Readers to use caches shared by the whole host
+    HostCacheManager hostCacheManager = null;
+    HostCacheManager blockCacheManager = null;
+    if (configurator instanceof BaseReaderConfigurator) {
+      hostCacheManager = ((BaseReaderConfigurator)configurator).getHostCacheManager();
+      blockCacheManager = ((BaseReaderConfigurator)configurator).getBlockCacheManager();
+    }
+
     // This configurator is used because this reader is composed of 2 underlying readers
     ReaderConfigurator subConfigurator = new BaseReaderConfigurator(
         configurator,
         configurator.getCacheNumBytesCapacity(),
         configurator.getCacheNumItemsCapacity(),
         configurator.getBufferReuseMaxSize(),
-        2);
-
-    return new CurlyReader(CurlyReader.getLatestBase(getTargetDirectory(assignment, partitionNumber)),
+        2,
+        hostCacheManager);
+
+    CurlyFilePath latestBase = CurlyReader.getLatestBase(getTargetDirectory(assignment, partitionNumber));
+    // Decompressed blocks are cached in the block cache shared by the host, if any
+    MemoryBoundCache<ByteBuffer, ByteBuffer> blockCache = null;
+    if (blockCompressionCodec != null && blockCacheManager != null) {
+      blockCache = blockCacheManager.getPartitionCache(domain.getId(), partitionNumber, latestBase.getVersion());
+    }
+    if (hostCacheManager != null) {
+      return new CurlyReader(latestBase,
+          recordFileReadBufferBytes,
+          cueballStorageEngine.getReader(subConfigurator, partitionNumber, assignment),
+          hostCacheManager.getPartitionCache(domain.getId(), partitionNumber, latestBase.getVersion()),
+          blockCompressionCodec,
+          offsetNumBytes,
+          offsetInBlockNumBytes,
+          false,
+          blockCache,
+          subConfigurator.getBufferReuseMaxSize());
+    }
+    return new CurlyReader(latestBase,
         recordFileReadBufferBytes,
         cueballStorageEngine.getReader(subConfigurator, partitionNumber, assignment),
         subConfigurator.getCacheNumBytesCapacity(),
@@ -260,6 +428,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
         offsetNumBytes,
         offsetInBlockNumBytes,
         false,
+        blockCache,
         subConfigurator.getBufferReuseMaxSize());
   }
 
@@ -338,10 +507,17 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
 
   private Compactor getCompactor(String localDir,
                                  int partitionNumber) throws IOException {
+    ICurlyCompactingMerger merger;
+    if (sequentialCompaction) {
+      merger = new CurlySequentialCompactingMerger(recordFileReadBufferBytes, offsetNumBytes,
+          sequentialCompactionMaxNumBytesInMemory);
+    } else {
+      merger = new CurlyCompactingMerger(recordFileReadBufferBytes);
+    }
     return new CurlyCompactor(domain,
         getPartitionRemoteFileOps(RemoteLocation.DOMAIN_BUILDER, partitionNumber),
         localDir,
-        new CurlyCompactingMerger(recordFileReadBufferBytes),
+        merger,
         new CueballStreamBufferMergeSort.Factory(keyHashSize, cueballValueNumBytes, hashIndexBits, getCompressionCodec(), null),
         new ICurlyReaderFactory() {
           @Override
@@ -358,7 +534,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     return new CurlyFastPartitionUpdater(domain,
         getPartitionRemoteFileOps(RemoteLocation.PARTITION_SERVER, partNum),
         new CurlyMerger(),
-        new CueballMerger(),
+        new CueballMerger(cueballStorageEngine.getFilterNumBitsPerKey()),
         keyHashSize,
         offsetNumBytes,
         offsetInBlockNumBytes,
@@ -29,11 +29,13 @@ import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.CompressionCodec;
 import com.liveramp.hank.compression.Decompressor;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
+import com.liveramp.hank.storage.HostCacheManager;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.util.ConcurrentMemoryBoundCache;
 import com.liveramp.hank.util.EncodingHelper;
-import com.liveramp.hank.util.SynchronizedMemoryBoundCache;
-import com.liveramp.hank.util.UnsafeByteArrayOutputStream;
+import com.liveramp.hank.util.MemoryBoundCache;
 
 public class CurlyReader implements Reader, ICurlyReader {
 
@@ -42,24 +44,41 @@ public class CurlyReader implements Reader, ICurlyReader {
   private final FileChannel recordFile;
   private final int versionNumber;
   private final int bufferReuseMaxSize;
-  private SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+  private MemoryBoundCache<ByteBuffer, ByteBuffer> cache;
   private final CompressionCodec blockCompressionCodec;
   private final int offsetNumBytes;
   private final int offsetInBlockNumBytes;
 
-  // Last decompressed block cache
+  // Last decompressed block cache. Replaced as a whole so that concurrent readers see a consistent block.
   private final boolean cacheLastDecompressedBlock;
-  private ByteBuffer lastDecompressedBlock;
-  private long lastDecompressedBlockOffset = -1;
+  private volatile DecompressedBlock lastDecompressedBlock;
+  // Cache of decompressed blocks keyed by block offset, usually shared by all Readers of the host. Can be null.
+  private final MemoryBoundCache<ByteBuffer, ByteBuffer> blockCache;
+
+  private static class DecompressedBlock {
+
+    private final long offset;
+    private final ByteBuffer block;
+
+    public DecompressedBlock(long offset, ByteBuffer block) {
+      this.offset = offset;
+      this.block = block;
+    }
+  }
 
   private static class Local {
 
+    // Initial size of the decompression buffer when the decompressed size of a block is unknown
+    private static final int DEFAULT_DECOMPRESSION_BUFFER_SIZE = 32;
+
     private final Map<CompressionCodec, Decompressor> blockDecompressors;
-    private UnsafeByteArrayOutputStream decompressionOutputStream;
+    private byte[] decompressionBuffer;
+    // Reused to look blocks up in the block cache
+    private final ByteBuffer blockCacheKey = ByteBuffer.allocate(8);
 
     public Local() {
       this.blockDecompressors = new HashMap<CompressionCodec, Decompressor>();
-      this.decompressionOutputStream = new UnsafeByteArrayOutputStream();
+      this.decompressionBuffer = new byte[DEFAULT_DECOMPRESSION_BUFFER_SIZE];
     }
 
     public Decompressor getBlockDecompressor(CompressionCodec blockDecompressorCodec) {
@@ -71,16 +90,16 @@ public class CurlyReader implements Reader, ICurlyReader {
       return blockDecompressor;
     }
 
-    public UnsafeByteArrayOutputStream getDecompressionOutputStream() {
-      return decompressionOutputStream;
-    }
-
-    public void clear() {
-      decompressionOutputStream.reset();
+    // Return a decompression buffer of at least the given size
+    public byte[] getDecompressionBuffer(int size) {
+      if (decompressionBuffer.length < size) {
+        decompressionBuffer = new byte[size];
+      }
+      return decompressionBuffer;
     }
 
-    public void dropDecompressionOutputStream() {
-      decompressionOutputStream = new UnsafeByteArrayOutputStream();
+    public void dropDecompressionBuffer() {
+      decompressionBuffer = new byte[DEFAULT_DECOMPRESSION_BUFFER_SIZE];
     }
   }
 
@@ -117,6 +136,54 @@ public class CurlyReader implements Reader, ICurlyReader {
                      int offsetInBlockNumBytes,
                      boolean cacheLastDecompressedBlock,
                      int bufferReuseMaxSize) throws IOException {
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader, cacheNumBytesCapacity, cacheNumItemsCapacity,
+        blockCompressionCodec, offsetNumBytes, offsetInBlockNumBytes, cacheLastDecompressedBlock, null, bufferReuseMaxSize);
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     long cacheNumBytesCapacity,
+                     int cacheNumItemsCapacity,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     MemoryBoundCache<ByteBuffer, ByteBuffer> blockCache,
+                     int bufferReuseMaxSize) throws IOException {
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader,
+        new ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer>(
+            cacheNumBytesCapacity > 0 || cacheNumItemsCapacity > 0,
+            cacheNumBytesCapacity,
+            cacheNumItemsCapacity,
+            new ByteBufferMemoryUsageEstimator(),
+            new ByteBufferMemoryUsageEstimator()),
+        blockCompressionCodec, offsetNumBytes, offsetInBlockNumBytes, cacheLastDecompressedBlock, blockCache, bufferReuseMaxSize);
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     MemoryBoundCache<ByteBuffer, ByteBuffer> cache,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     int bufferReuseMaxSize) throws IOException {
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader, cache, blockCompressionCodec, offsetNumBytes,
+        offsetInBlockNumBytes, cacheLastDecompressedBlock, null, bufferReuseMaxSize);
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     MemoryBoundCache<ByteBuffer, ByteBuffer> cache,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     MemoryBoundCache<ByteBuffer, ByteBuffer> blockCache,
+                     int bufferReuseMaxSize) throws IOException {
     this.recordFile = new FileInputStream(curlyFile.getPath()).getChannel();
     this.keyFileReader = keyFileReader;
     this.readBufferSize = recordFileReadBufferBytes;
@@ -125,12 +192,8 @@ public class CurlyReader implements Reader, ICurlyReader {
     this.offsetNumBytes = offsetNumBytes;
     this.offsetInBlockNumBytes = offsetInBlockNumBytes;
     this.cacheLastDecompressedBlock = cacheLastDecompressedBlock;
-    this.cache = new SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer>(
-        cacheNumBytesCapacity > 0 || cacheNumItemsCapacity > 0,
-        cacheNumBytesCapacity,
-        cacheNumItemsCapacity,
-        new ByteBufferMemoryUsageEstimator(),
-        new ByteBufferMemoryUsageEstimator());
+    this.blockCache = blockCache;
+    this.cache = cache;
     // Check that key file is at the same version
     if (keyFileReader != null &&
         keyFileReader.getVersionNumber() != null &&
@@ -138,9 +201,6 @@ public class CurlyReader implements Reader, ICurlyReader {
       throw new IOException("Curly Reader version (" + versionNumber
           + ") does not match the provided key file Reader version (" + keyFileReader.getVersionNumber() + ")");
     }
-    if (cacheLastDecompressedBlock) {
-      lastDecompressedBlock = ByteBuffer.allocate(1);
-    }
     this.bufferReuseMaxSize = bufferReuseMaxSize;
   }
 
@@ -160,25 +220,21 @@ public class CurlyReader implements Reader, ICurlyReader {
       readRecordAtOffset(recordFileOffset, result);
     } else {
       // When using block compression, location contains the block's offset and an offset in the block. Decode them.
-      long recordFileBlockOffset = EncodingHelper.decodeLittleEndianFixedWidthLong(location.array(),
-          location.arrayOffset() + location.position(), offsetNumBytes);
-      long offsetInBlock = EncodingHelper.decodeLittleEndianFixedWidthLong(location.array(),
-          location.arrayOffset() + location.position() + offsetNumBytes, offsetInBlockNumBytes);
-
-      ByteBuffer decompressedBlockByteBuffer;
-      if (cacheLastDecompressedBlock && lastDecompressedBlockOffset == recordFileBlockOffset) {
-        // This block has been decompressed just before, reuse it
-        decompressedBlockByteBuffer = lastDecompressedBlock;
-      } else {
+      long recordFileBlockOffset = EncodingHelper.decodeLittleEndianFixedWidthLong(location,
+          location.position(), offsetNumBytes);
+      long offsetInBlock = EncodingHelper.decodeLittleEndianFixedWidthLong(location,
+          location.position() + offsetNumBytes, offsetInBlockNumBytes);
+
+      // Attempt to load the decompressed block from the block caches
+      ByteBuffer decompressedBlockByteBuffer = loadBlockFromCache(recordFileBlockOffset, result);
+      boolean decompressed = decompressedBlockByteBuffer == null;
+      if (decompressed) {
         // Read in the compressed block into the result
         readRecordAtOffset(recordFileBlockOffset, result);
         // Decompress block
         decompressedBlockByteBuffer = decompressBlock(result.getBuffer());
         // Cache the decompressed block if requested
-        if (cacheLastDecompressedBlock) {
-          lastDecompressedBlockOffset = recordFileBlockOffset;
-          lastDecompressedBlock = BytesUtils.byteBufferDeepCopy(decompressedBlockByteBuffer, lastDecompressedBlock);
-        }
+        addBlockToCache(recordFileBlockOffset, decompressedBlockByteBuffer);
       }
 
       // Position ourselves at the beginning of the actual value
@@ -196,28 +252,40 @@ public class CurlyReader implements Reader, ICurlyReader {
           valueSize);
       result.getBuffer().flip();
       // Drop decompression buffer if needed, it's not used anymore
-      dropDecompressionBuffer();
+      if (decompressed) {
+        dropDecompressionBuffer();
+      }
     }
     // Store result in cache if needed
     addValueToCache(locationDeepCopy, result.getBuffer());
   }
 
+  // Decompress the block directly into the thread local buffer. Most codecs know the
+  // decompressed size of a block, otherwise the buffer is grown until the block fits.
   private ByteBuffer decompressBlock(ByteBuffer block) throws IOException {
     Local local = threadLocal.get();
-    local.clear();
-    local.getBlockDecompressor(blockCompressionCodec).decompressBlock(
-        block.array(),
-        block.arrayOffset() + block.position(),
-        block.remaining(),
-        local.getDecompressionOutputStream());
-    return local.getDecompressionOutputStream().getByteBuffer();
+    Decompressor blockDecompressor = local.getBlockDecompressor(blockCompressionCodec);
+    byte[] src = block.array();
+    int srcOffset = block.arrayOffset() + block.position();
+    int srcLength = block.remaining();
+    int decompressedLength = blockDecompressor.getDecompressedLength(src, srcOffset, srcLength);
+    byte[] decompressionBuffer = local.getDecompressionBuffer(Math.max(decompressedLength, 0));
+    while (true) {
+      int length = blockDecompressor.decompressBlock(src, srcOffset, srcLength, decompressionBuffer, 0);
+      if (length >= 0) {
+        return ByteBuffer.wrap(decompressionBuffer, 0, length);
+      }
+      if (decompressionBuffer.length > Integer.MAX_VALUE >> 1) {
+        throw new IOException("Decompressed block is too large");
+      }
+      decompressionBuffer = local.getDecompressionBuffer(decompressionBuffer.length << 1);
+    }
   }
 
   private void dropDecompressionBuffer() {
     Local local = threadLocal.get();
-    if (local.getDecompressionOutputStream().getByteBuffer() != null &&
-        local.getDecompressionOutputStream().getByteBuffer().capacity() > bufferReuseMaxSize) {
-      local.dropDecompressionOutputStream();
+    if (local.getDecompressionBuffer(0).length > bufferReuseMaxSize) {
+      local.dropDecompressionBuffer();
     }
   }
 
@@ -307,6 +375,11 @@ public class CurlyReader implements Reader, ICurlyReader {
         keyReaderCacheStatistics.getMaxNumManagedBytes() + cache.getMaxNumManagedBytes());
   }
 
+  @Override
+  public FilterStatistics getFilterStatistics() {
+    return keyFileReader.getFilterStatistics();
+  }
+
   // Note: location should already be a deep copy that won't get modified
   private void addValueToCache(ByteBuffer location, ByteBuffer value) {
     cache.put(location, BytesUtils.byteBufferDeepCopy(value));
@@ -325,6 +398,50 @@ public class CurlyReader implements Reader, ICurlyReader {
     }
   }
 
+  // Return a view of the decompressed block if it was found in the block caches, null otherwise.
+  // Cached blocks are shared with other threads and must not be modified.
+  private ByteBuffer loadBlockFromCache(long blockOffset, ReaderResult result) {
+    if (!cacheLastDecompressedBlock && blockCache == null) {
+      return null;
+    }
+    DecompressedBlock lastDecompressedBlock = this.lastDecompressedBlock;
+    if (lastDecompressedBlock != null && lastDecompressedBlock.offset == blockOffset) {
+      result.setBlockCacheHit(true);
+      return lastDecompressedBlock.block.duplicate();
+    }
+    if (blockCache != null) {
+      ByteBuffer blockCacheKey = threadLocal.get().blockCacheKey;
+      blockCacheKey.putLong(0, blockOffset);
+      ByteBuffer block = blockCache.get(blockCacheKey);
+      if (block != null) {
+        result.setBlockCacheHit(true);
+        return block.duplicate();
+      }
+    }
+    result.setBlockCacheMiss(true);
+    return null;
+  }
+
+  private void addBlockToCache(long blockOffset, ByteBuffer decompressedBlock) {
+    if (!cacheLastDecompressedBlock && blockCache == null) {
+      return;
+    }
+    ByteBuffer block = BytesUtils.byteBufferDeepCopy(decompressedBlock);
+    if (cacheLastDecompressedBlock) {
+      lastDecompressedBlock = new DecompressedBlock(blockOffset, block);
+    }
+    if (blockCache != null) {
+      blockCache.put(getBlockCacheKey(blockOffset), block);
+    }
+  }
+
+  // Keys put in the block cache are retained by the cache and cannot be reused
+  private static ByteBuffer getBlockCacheKey(long blockOffset) {
+    ByteBuffer key = ByteBuffer.allocate(8);
+    key.putLong(0, blockOffset);
+    return key;
+  }
+
   @Override
   public void close() throws IOException {
     if (recordFile != null) {
@@ -333,6 +450,9 @@ public class CurlyReader implements Reader, ICurlyReader {
     if (keyFileReader != null) {
       keyFileReader.close();
     }
+    // Release the space taken by this reader in the caches shared by the host
+    HostCacheManager.purge(cache);
+    HostCacheManager.purge(blockCache);
     cache = null;
   }
 }
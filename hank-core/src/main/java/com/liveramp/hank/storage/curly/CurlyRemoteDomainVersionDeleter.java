@@ -27,6 +27,7 @@ public class CurlyRemoteDomainVersionDeleter implements RemoteDomainVersionDelet
     for (int partition = 0; partition < domain.getNumParts(); ++partition) {
       PartitionRemoteFileOps fileOps = fileOpsFactory.getPartitionRemoteFileOps(remoteDomainRoot, partition);
       fileOps.attemptDelete(Cueball.getName(versionNumber, true));
+      fileOps.attemptDelete(Cueball.getFilterPath(Cueball.getName(versionNumber, true)));
       fileOps.attemptDelete(Cueball.getName(versionNumber, false));
 
       fileOps.attemptDelete(Curly.getName(versionNumber, true));
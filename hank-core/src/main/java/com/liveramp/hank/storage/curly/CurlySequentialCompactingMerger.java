@@ -0,0 +1,284 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.curly;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.Writer;
+import com.liveramp.hank.storage.cueball.IKeyFileStreamBufferMergeSort;
+import com.liveramp.hank.storage.cueball.KeyHashAndValueAndStreamIndex;
+import com.liveramp.hank.util.EncodingHelper;
+import com.liveramp.hank.util.ExternalSorter;
+
+/**
+ * Compacting merger that reads Curly record files sequentially instead of in key hash order, for
+ * storage on which random reads are slow. It runs in three passes:
+ * - the record locations are listed in key hash order and sorted by file and offset in external memory,
+ * - records are read in that order, each file from start to end, and sorted back into key hash order,
+ * - the key hashes and values are written in key hash order.
+ * Temporary files are created next to the Curly base and hold about twice the size of the compacted records.
+ */
+public class CurlySequentialCompactingMerger implements ICurlyCompactingMerger {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CurlySequentialCompactingMerger.class);
+
+  public static final long DEFAULT_MAX_NUM_BYTES_IN_MEMORY = 256L << 20;
+
+  private static final int TMP_FILE_BUFFER_SIZE = 64 << 10;
+  // Estimated overhead of the sorted objects, on top of their byte arrays
+  private static final int ITEM_OVERHEAD_NUM_BYTES = 64;
+
+  private final int recordFileReadBufferBytes;
+  private final int offsetNumBytes;
+  private final long maxNumBytesInMemory;
+
+  public CurlySequentialCompactingMerger(int recordFileReadBufferBytes, int offsetNumBytes) {
+    this(recordFileReadBufferBytes, offsetNumBytes, DEFAULT_MAX_NUM_BYTES_IN_MEMORY);
+  }
+
+  /**
+   * @param offsetNumBytes      size of the record file offset at the start of record locations. When
+   *                            block compression is used, it is followed by the offset in the block.
+   * @param maxNumBytesInMemory memory used by each external sort before spilling to disk
+   */
+  public CurlySequentialCompactingMerger(int recordFileReadBufferBytes, int offsetNumBytes, long maxNumBytesInMemory) {
+    this.recordFileReadBufferBytes = recordFileReadBufferBytes;
+    this.offsetNumBytes = offsetNumBytes;
+    this.maxNumBytesInMemory = maxNumBytesInMemory;
+  }
+
+  @Override
+  public void merge(final CurlyFilePath curlyBasePath,
+                    final List<CurlyFilePath> curlyDeltas,
+                    final IKeyFileStreamBufferMergeSort keyFileStreamBufferMergeSort,
+                    final ICurlyReaderFactory curlyReaderFactory,
+                    final Writer recordFileWriter) throws IOException {
+
+    if ((1 + curlyDeltas.size()) != keyFileStreamBufferMergeSort.getNumStreams()) {
+      throw new RuntimeException("Number of Curly files (" + (1 + curlyDeltas.size())
+          + ") and number of key file streams (" + keyFileStreamBufferMergeSort.getNumStreams() + ") should be equal.");
+    }
+
+    // Open all Curly record files
+    ICurlyReader[] recordFileReaders = new ICurlyReader[1 + curlyDeltas.size()];
+    // Note: the key file readers are intentionally null as they will *not* be used
+    recordFileReaders[0] = curlyReaderFactory.getInstance(curlyBasePath);
+    int curlyReaderIndex = 1;
+    for (CurlyFilePath curlyDelta : curlyDeltas) {
+      recordFileReaders[curlyReaderIndex++] = curlyReaderFactory.getInstance(curlyDelta);
+    }
+
+    File tmpDir = new File(curlyBasePath.getPath()).getAbsoluteFile().getParentFile();
+    ExternalSorter<RecordLocation> recordLocations =
+        new ExternalSorter<RecordLocation>(RECORD_LOCATION_COMPARATOR, new RecordLocationSerializer(), tmpDir, maxNumBytesInMemory);
+    ExternalSorter<SequencedValue> values =
+        new ExternalSorter<SequencedValue>(SEQUENCED_VALUE_COMPARATOR, SEQUENCED_VALUE_SERIALIZER, tmpDir, maxNumBytesInMemory);
+    File keyHashesFile = File.createTempFile("compaction-key-hashes-", ".tmp", tmpDir);
+    try {
+      // List record locations in key hash order. Key hashes are kept in that order in a temporary file.
+      long numRecords = 0;
+      DataOutputStream keyHashesOutput = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(keyHashesFile), TMP_FILE_BUFFER_SIZE));
+      try {
+        while (true) {
+          KeyHashAndValueAndStreamIndex keyHashValuePair =
+              keyFileStreamBufferMergeSort.nextKeyHashAndValueAndStreamIndex();
+          if (keyHashValuePair == null) {
+            break;
+          }
+          writeBytes(keyHashValuePair.keyHash, keyHashesOutput);
+          recordLocations.add(new RecordLocation(keyHashValuePair.streamIndex, getBytes(keyHashValuePair.value), numRecords++, offsetNumBytes));
+        }
+      } finally {
+        keyHashesOutput.close();
+      }
+      keyFileStreamBufferMergeSort.close();
+
+      // Read records in file and offset order
+      LOG.info("Reading " + numRecords + " records sequentially");
+      recordLocations.sort();
+      ReaderResult readerResult = new ReaderResult(recordFileReadBufferBytes);
+      RecordLocation recordLocation;
+      while ((recordLocation = recordLocations.next()) != null) {
+        recordFileReaders[recordLocation.streamIndex].readRecord(ByteBuffer.wrap(recordLocation.location), readerResult);
+        values.add(new SequencedValue(recordLocation.sequenceNumber, getBytes(readerResult.getBuffer())));
+        readerResult.clear();
+      }
+      recordLocations.close();
+
+      // Write records in key hash order
+      // Note: we are directly writing the key hash instead of the key. The underlying
+      // key file writer should be aware of that and not attempt to hash the key again.
+      values.sort();
+      DataInputStream keyHashesInput = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(keyHashesFile), TMP_FILE_BUFFER_SIZE));
+      try {
+        for (long sequenceNumber = 0; sequenceNumber < numRecords; ++sequenceNumber) {
+          SequencedValue value = values.next();
+          if (value == null || value.sequenceNumber != sequenceNumber) {
+            throw new IOException("Missing value of record " + sequenceNumber + " during compaction");
+          }
+          recordFileWriter.write(ByteBuffer.wrap(readBytes(keyHashesInput)), ByteBuffer.wrap(value.value));
+        }
+      } finally {
+        keyHashesInput.close();
+      }
+
+      // Close Curly writer
+      recordFileWriter.close();
+    } finally {
+      recordLocations.close();
+      values.close();
+      if (!keyHashesFile.delete()) {
+        LOG.error("Failed to delete temporary file " + keyHashesFile.getAbsolutePath());
+      }
+      // Close Curly file readers
+      for (ICurlyReader recordFileReader : recordFileReaders) {
+        recordFileReader.close();
+      }
+    }
+  }
+
+  private static byte[] getBytes(ByteBuffer buffer) {
+    byte[] result = new byte[buffer.remaining()];
+    buffer.duplicate().get(result);
+    return result;
+  }
+
+  private static void writeBytes(ByteBuffer buffer, DataOutput output) throws IOException {
+    output.writeInt(buffer.remaining());
+    output.write(getBytes(buffer));
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] result = new byte[input.readInt()];
+    input.readFully(result);
+    return result;
+  }
+
+  private static class RecordLocation {
+
+    private final int streamIndex;
+    private final byte[] location;
+    private final long sequenceNumber;
+    // Decoded from the location
+    private final long recordFileOffset;
+    private final long offsetInBlock;
+
+    public RecordLocation(int streamIndex, byte[] location, long sequenceNumber, int offsetNumBytes) {
+      this.streamIndex = streamIndex;
+      this.location = location;
+      this.sequenceNumber = sequenceNumber;
+      int recordFileOffsetNumBytes = Math.min(offsetNumBytes, location.length);
+      this.recordFileOffset = EncodingHelper.decodeLittleEndianFixedWidthLong(location, 0, recordFileOffsetNumBytes);
+      this.offsetInBlock = EncodingHelper.decodeLittleEndianFixedWidthLong(location, recordFileOffsetNumBytes,
+          location.length - recordFileOffsetNumBytes);
+    }
+  }
+
+  private static final Comparator<RecordLocation> RECORD_LOCATION_COMPARATOR = new Comparator<RecordLocation>() {
+    @Override
+    public int compare(RecordLocation a, RecordLocation b) {
+      int result = Integer.compare(a.streamIndex, b.streamIndex);
+      if (result != 0) {
+        return result;
+      }
+      result = Long.compare(a.recordFileOffset, b.recordFileOffset);
+      if (result != 0) {
+        return result;
+      }
+      return Long.compare(a.offsetInBlock, b.offsetInBlock);
+    }
+  };
+
+  private class RecordLocationSerializer implements ExternalSorter.Serializer<RecordLocation> {
+
+    @Override
+    public void write(RecordLocation item, DataOutput output) throws IOException {
+      output.writeInt(item.streamIndex);
+      output.writeLong(item.sequenceNumber);
+      output.writeInt(item.location.length);
+      output.write(item.location);
+    }
+
+    @Override
+    public RecordLocation read(DataInput input) throws IOException {
+      int streamIndex = input.readInt();
+      long sequenceNumber = input.readLong();
+      return new RecordLocation(streamIndex, readBytes(input), sequenceNumber, offsetNumBytes);
+    }
+
+    @Override
+    public long getNumBytes(RecordLocation item) {
+      return ITEM_OVERHEAD_NUM_BYTES + item.location.length;
+    }
+  }
+
+  private static class SequencedValue {
+
+    private final long sequenceNumber;
+    private final byte[] value;
+
+    public SequencedValue(long sequenceNumber, byte[] value) {
+      this.sequenceNumber = sequenceNumber;
+      this.value = value;
+    }
+  }
+
+  private static final Comparator<SequencedValue> SEQUENCED_VALUE_COMPARATOR = new Comparator<SequencedValue>() {
+    @Override
+    public int compare(SequencedValue a, SequencedValue b) {
+      return Long.compare(a.sequenceNumber, b.sequenceNumber);
+    }
+  };
+
+  private static final ExternalSorter.Serializer<SequencedValue> SEQUENCED_VALUE_SERIALIZER = new ExternalSorter.Serializer<SequencedValue>() {
+    @Override
+    public void write(SequencedValue item, DataOutput output) throws IOException {
+      output.writeLong(item.sequenceNumber);
+      output.writeInt(item.value.length);
+      output.write(item.value);
+    }
+
+    @Override
+    public SequencedValue read(DataInput input) throws IOException {
+      long sequenceNumber = input.readLong();
+      return new SequencedValue(sequenceNumber, readBytes(input));
+    }
+
+    @Override
+    public long getNumBytes(SequencedValue item) {
+      return ITEM_OVERHEAD_NUM_BYTES + item.value.length;
+    }
+  };
+}
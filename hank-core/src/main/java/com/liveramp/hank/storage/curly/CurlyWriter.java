@@ -24,6 +24,7 @@ import java.nio.ByteBuffer;
 import com.liveramp.commons.collections.LruHashMap;
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.common.BlockCompressionOutputStream;
 import com.liveramp.hank.hasher.Murmur64Hasher;
 import com.liveramp.hank.storage.Writer;
 import com.liveramp.hank.util.EncodingHelper;
@@ -162,7 +163,7 @@ public class CurlyWriter implements Writer {
         //
 
         // Flush the compressed block if needed
-        if (compressedBlockOutputStream.size() >= compressedBlockSizeThreshold) {
+        if (getCompressedBlockSize() >= compressedBlockSizeThreshold) {
           flushCompressedBlock();
         }
         // Create a new compression output stream if needed (either this is the first value or we just flushed)
@@ -201,6 +202,15 @@ public class CurlyWriter implements Writer {
     compressionOutputStream = blockCompressionCodec.getFactory().getCompressor().getOutputStream(compressedBlockOutputStream);
   }
 
+  // Codecs compressing whole blocks only write them when closed. Their uncompressed size is used
+  // instead, which makes for smaller blocks than other codecs with the same threshold.
+  private int getCompressedBlockSize() {
+    if (compressionOutputStream instanceof BlockCompressionOutputStream) {
+      return ((BlockCompressionOutputStream)compressionOutputStream).getUncompressedSize();
+    }
+    return compressedBlockOutputStream.size();
+  }
+
   private void flushCompressedBlock() throws IOException {
     if (compressionOutputStream != null) {
       // First, close compression output stream so that they write all data
@@ -2,6 +2,7 @@ package com.liveramp.hank.storage.echo;
 
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
 
@@ -39,6 +40,11 @@ public class EchoReader implements Reader {
     return null;
   }
 
+  @Override
+  public FilterStatistics getFilterStatistics() {
+    return null;
+  }
+
   @Override
   public void close() {
   }
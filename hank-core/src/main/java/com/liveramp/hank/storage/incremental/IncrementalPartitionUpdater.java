@@ -21,6 +21,8 @@ import com.liveramp.hank.coordinator.Coordinator;
 import com.liveramp.hank.coordinator.Domain;
 import com.liveramp.hank.coordinator.DomainVersion;
 import com.liveramp.hank.partition_server.PartitionUpdateTaskStatistics;
+import com.liveramp.hank.storage.ParallelFileFetcher;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import com.liveramp.hank.storage.PartitionUpdater;
 import com.liveramp.hank.util.FormatUtils;
 import com.liveramp.hank.util.HankTimer;
@@ -31,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 public abstract class IncrementalPartitionUpdater implements PartitionUpdater, CloseCoordinatorOpportunistically {
 
@@ -45,6 +48,10 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
   protected final String localPartitionRootCache;
   private final IncrementalUpdatePlanner updatePlanner;
   private Coordinator coordinatorToCloseOpportunistically;
+  // When set, files of all the versions needed to update are fetched concurrently by this executor
+  private Executor fetchExecutor;
+  // Fetcher of the versions being fetched, null when fetching sequentially
+  private ParallelFileFetcher fileFetcher;
 
   public IncrementalPartitionUpdater(Domain domain,
                                      String localPartitionRoot,
@@ -67,6 +74,7 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
 
   protected abstract void cleanCachedVersions() throws IOException;
 
+  // Implementations should fetch files with fetchFile() so that they can be fetched concurrently
   protected abstract void fetchVersion(DomainVersion version, String fetchRoot) throws IOException;
 
   protected abstract void runUpdateCore(DomainVersion currentVersion,
@@ -93,16 +101,19 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
       closeCoordinatorOpportunistically();
       // Fetch and cache versions needed to update
       HankTimer timer = new HankTimer();
-      cacheVersionsNeededToUpdate(currentVersion, cachedBases, cachedDeltas, updatePlan);
+      long fetchNumBytes = cacheVersionsNeededToUpdate(currentVersion, cachedBases, cachedDeltas, updatePlan);
       long fetchTimeMs = timer.getDurationMs();
       statistics.getDurationsMs().put("Update data fetch", fetchTimeMs);
+      statistics.recordDataFetch(fetchNumBytes, fetchTimeMs);
       // Run update in a workspace
       timer.restart();
       runUpdate(currentVersion, updatingToVersion, updatePlan, statistics);
       long executionTimeMs = timer.getDurationMs();
       statistics.getDurationsMs().put("Update execution", executionTimeMs);
       LOG.info("Update in " + localPartitionRoot + " to " + updatingToVersion
-          + ": fetched data in " + FormatUtils.formatSecondsDuration(fetchTimeMs / 1000)
+          + ": fetched " + FormatUtils.formatNumBytes(fetchNumBytes)
+          + " in " + FormatUtils.formatSecondsDuration(fetchTimeMs / 1000)
+          + " (" + FormatUtils.formatDataThroughput(statistics.getDataFetchThroughput()) + ")"
           + ", executed in " + FormatUtils.formatSecondsDuration(executionTimeMs / 1000));
     } finally {
       cleanCachedVersions();
@@ -123,8 +134,12 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
     return detectCachedDeltasCore();
   }
 
-  // Fetch required versions and commit them to cache upon successful fetch
-  protected void cacheVersionsNeededToUpdate(DomainVersion currentVersion,
+  public void setFetchExecutor(Executor fetchExecutor) {
+    this.fetchExecutor = fetchExecutor;
+  }
+
+  // Fetch required versions and commit them to cache upon successful fetch. Return the number of bytes fetched.
+  protected long cacheVersionsNeededToUpdate(DomainVersion currentVersion,
                                              Set<DomainVersion> cachedBases,
                                              Set<DomainVersion> cachedDeltas,
                                              IncrementalUpdatePlan updatePlan) throws IOException {
@@ -134,6 +149,9 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
       deleteFetchRoots();
       // Create new fetch root
       File fetchRoot = createFetchRoot();
+      if (fetchExecutor != null) {
+        fileFetcher = new ParallelFileFetcher(fetchExecutor);
+      }
       // Fetch versions
       for (DomainVersion version : updatePlan.getAllVersions()) {
         // Do not fetch current version
@@ -146,14 +164,47 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
         }
         fetchVersion(version, fetchRoot.getAbsolutePath());
       }
+      if (fileFetcher != null) {
+        fileFetcher.awaitCompletion();
+      }
+      long numBytes = getNumBytes(fetchRoot);
       // Commit fetched versions to cache
       commitFiles(fetchRoot, localPartitionRootCache);
+      return numBytes;
     } finally {
+      if (fileFetcher != null) {
+        fileFetcher.cancel();
+        fileFetcher = null;
+      }
       // Always delete fetch roots
       deleteFetchRoots();
     }
   }
 
+  // Fetch the given remote file into the fetch root, or start fetching it when fetching concurrently
+  protected void fetchFile(PartitionRemoteFileOps partitionRemoteFileOps,
+                           String remoteRelativePath,
+                           String fetchRoot) throws IOException {
+    if (fileFetcher != null) {
+      fileFetcher.fetch(partitionRemoteFileOps, remoteRelativePath, fetchRoot);
+    } else {
+      partitionRemoteFileOps.copyToLocalRoot(remoteRelativePath, fetchRoot);
+    }
+  }
+
+  private static long getNumBytes(File root) {
+    long numBytes = 0;
+    File[] files = root.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile()) {
+          numBytes += file.length();
+        }
+      }
+    }
+    return numBytes;
+  }
+
   private void runUpdate(DomainVersion currentVersion,
                          DomainVersion updatingToVersion,
                          IncrementalUpdatePlan updatePlan,
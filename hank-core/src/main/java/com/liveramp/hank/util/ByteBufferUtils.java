@@ -0,0 +1,46 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers that read ByteBuffers with absolute gets, so that they work on direct and read-only
+ * buffers as well as on heap buffers, never modify the position of the buffers they read (which
+ * may be shared between threads) and never allocate.
+ */
+public final class ByteBufferUtils {
+
+  private ByteBufferUtils() {
+  }
+
+  // Copy the remaining bytes of src into dst at the given offset
+  public static void copyRemaining(ByteBuffer src, byte[] dst, int dstOffset) {
+    copy(src, src.position(), dst, dstOffset, src.remaining());
+  }
+
+  // Copy length bytes of src starting at the given absolute index into dst at the given offset
+  public static void copy(ByteBuffer src, int srcIndex, byte[] dst, int dstOffset, int length) {
+    if (src.hasArray()) {
+      System.arraycopy(src.array(), src.arrayOffset() + srcIndex, dst, dstOffset, length);
+    } else {
+      for (int i = 0; i < length; ++i) {
+        dst[dstOffset + i] = src.get(srcIndex + i);
+      }
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.liveramp.commons.util.MemoryUsageEstimator;
+
+/**
+ * Memory bound LRU cache that can be accessed concurrently. Keys are spread over a number of
+ * independently locked segments, so that threads accessing keys in different segments do not
+ * contend. All segments share the item and byte capacities: any entry that fits in the whole cache
+ * can be cached, and a busy segment can grow while others are idle. When the cache is full, the
+ * least recently used entries of the segments are evicted in turn, which approximates global LRU.
+ */
+public class ConcurrentMemoryBoundCache<K, V> implements MemoryBoundCache<K, V> {
+
+  public static final int DEFAULT_NUM_SEGMENTS = 16;
+
+  private final Segment<K, V>[] segments;
+  private final MemoryUsageEstimator<K> keyEstimator;
+  private final MemoryUsageEstimator<V> valueEstimator;
+  private final int maxNumItems;
+  private final long maxNumManagedBytes;
+  // Occupancy of all segments
+  private final AtomicInteger numItems = new AtomicInteger(0);
+  private final AtomicLong numManagedBytes = new AtomicLong(0);
+  // Segment to evict from next
+  private final AtomicInteger evictionCursor = new AtomicInteger(0);
+
+  public ConcurrentMemoryBoundCache(boolean isEnabled,
+                                    long numBytesCapacity,
+                                    int numItemsCapacity,
+                                    MemoryUsageEstimator<K> keyEstimator,
+                                    MemoryUsageEstimator<V> valueEstimator) {
+    this(isEnabled, numBytesCapacity, numItemsCapacity, keyEstimator, valueEstimator, DEFAULT_NUM_SEGMENTS);
+  }
+
+  // A disabled cache will not add any synchronization overhead
+  @SuppressWarnings("unchecked")
+  public ConcurrentMemoryBoundCache(boolean isEnabled,
+                                    long numBytesCapacity,
+                                    int numItemsCapacity,
+                                    MemoryUsageEstimator<K> keyEstimator,
+                                    MemoryUsageEstimator<V> valueEstimator,
+                                    int numSegments) {
+    this.keyEstimator = keyEstimator;
+    this.valueEstimator = valueEstimator;
+    this.maxNumItems = numItemsCapacity;
+    this.maxNumManagedBytes = numBytesCapacity;
+    if (isEnabled) {
+      numSegments = Math.max(1, numSegments);
+      segments = new Segment[numSegments];
+      for (int i = 0; i < numSegments; ++i) {
+        segments[i] = new Segment<K, V>();
+      }
+    } else {
+      segments = null;
+    }
+  }
+
+  private Segment<K, V> getSegment(Object key) {
+    int hash = key.hashCode();
+    // Spread high bits so that segments are evenly used
+    hash ^= (hash >>> 16);
+    return segments[(hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return segments != null;
+  }
+
+  @Override
+  public V get(K key) {
+    if (!isEnabled()) {
+      return null;
+    } else {
+      Segment<K, V> segment = getSegment(key);
+      synchronized (segment) {
+        Entry<V> entry = segment.entries.get(key);
+        return entry == null ? null : entry.value;
+      }
+    }
+  }
+
+  @Override
+  public void put(K key, V value) {
+    if (isEnabled()) {
+      if (value == null) {
+        throw new IllegalArgumentException("Value to put in cache should not be null.");
+      }
+      long entryNumBytes = keyEstimator.estimateMemorySize(key) + valueEstimator.estimateMemorySize(value);
+      Segment<K, V> segment = getSegment(key);
+      synchronized (segment) {
+        Entry<V> previousEntry = segment.entries.remove(key);
+        if (previousEntry != null) {
+          release(previousEntry);
+        }
+        // Entries larger than the whole cache are not cached
+        if (maxNumManagedBytes > 0 && entryNumBytes > maxNumManagedBytes) {
+          return;
+        }
+        segment.entries.put(key, new Entry<V>(value, entryNumBytes));
+        numItems.incrementAndGet();
+        numManagedBytes.addAndGet(entryNumBytes);
+      }
+      // Segments are locked one at a time, never while holding the lock of another one
+      evict(key);
+    }
+  }
+
+  // Evict least recently used entries until the cache fits in its capacities, keeping the given key
+  private void evict(K keptKey) {
+    int numSegmentsWithoutVictim = 0;
+    while (isOverCapacity() && numSegmentsWithoutVictim < segments.length) {
+      Segment<K, V> segment = segments[(evictionCursor.getAndIncrement() & Integer.MAX_VALUE) % segments.length];
+      synchronized (segment) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = segment.entries.entrySet().iterator();
+        if (iterator.hasNext()) {
+          Map.Entry<K, Entry<V>> victim = iterator.next();
+          if (!victim.getKey().equals(keptKey)) {
+            iterator.remove();
+            release(victim.getValue());
+            numSegmentsWithoutVictim = 0;
+            continue;
+          }
+        }
+      }
+      ++numSegmentsWithoutVictim;
+    }
+  }
+
+  private boolean isOverCapacity() {
+    return (maxNumItems > 0 && numItems.get() > maxNumItems)
+        || (maxNumManagedBytes > 0 && numManagedBytes.get() > maxNumManagedBytes);
+  }
+
+  private void release(Entry<V> entry) {
+    numItems.decrementAndGet();
+    numManagedBytes.addAndGet(-entry.numBytes);
+  }
+
+  // Remove the entry for the given key only if it is currently mapped to the given value
+  public boolean remove(K key, V value) {
+    if (!isEnabled()) {
+      return false;
+    } else {
+      Segment<K, V> segment = getSegment(key);
+      synchronized (segment) {
+        Entry<V> currentEntry = segment.entries.get(key);
+        if (currentEntry != null && currentEntry.value.equals(value)) {
+          segment.entries.remove(key);
+          release(currentEntry);
+          return true;
+        } else {
+          return false;
+        }
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    if (!isEnabled()) {
+      return 0;
+    } else {
+      return numItems.get();
+    }
+  }
+
+  @Override
+  public int getMaxNumItems() {
+    if (!isEnabled()) {
+      return 0;
+    } else {
+      return maxNumItems;
+    }
+  }
+
+  @Override
+  public long getNumManagedBytes() {
+    if (!isEnabled()) {
+      return 0;
+    } else {
+      return numManagedBytes.get();
+    }
+  }
+
+  @Override
+  public long getMaxNumManagedBytes() {
+    if (!isEnabled()) {
+      return 0;
+    } else {
+      return maxNumManagedBytes;
+    }
+  }
+
+  private static class Entry<V> {
+
+    private final V value;
+    private final long numBytes;
+
+    public Entry(V value, long numBytes) {
+      this.value = value;
+      this.numBytes = numBytes;
+    }
+  }
+
+  private static class Segment<K, V> {
+
+    // Access ordered, the first entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+  }
+}
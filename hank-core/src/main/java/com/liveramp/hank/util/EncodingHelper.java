@@ -40,9 +40,20 @@ public final class EncodingHelper {
   }
 
   public static long decodeLittleEndianFixedWidthLong(ByteBuffer buffer) {
-    return decodeLittleEndianFixedWidthLong(buffer.array(),
-        buffer.arrayOffset() + buffer.position(),
-        buffer.remaining());
+    return decodeLittleEndianFixedWidthLong(buffer, buffer.position(), buffer.remaining());
+  }
+
+  // Decode len bytes starting at the given absolute index, without requiring a backing array
+  public static long decodeLittleEndianFixedWidthLong(ByteBuffer buffer, int index, int len) {
+    if (buffer.hasArray()) {
+      return decodeLittleEndianFixedWidthLong(buffer.array(), buffer.arrayOffset() + index, len);
+    }
+    long result = 0;
+    for (int i = index + len - 1; i >= index; i--) {
+      result <<= 8;
+      result |= buffer.get(i) & 0xff;
+    }
+    return result;
   }
 
   public static long decodeLittleEndianFixedWidthLong(byte[] bytes, int off, int len) {
@@ -0,0 +1,227 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts more items than fit in memory. Items are buffered and sorted in memory, and written as
+ * sorted runs to temporary files whenever the buffer exceeds its capacity. Once all items have been
+ * added, runs are merged as items are read back in order. All file accesses are sequential.
+ */
+public class ExternalSorter<T> implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ExternalSorter.class);
+
+  private static final int RUN_FILE_BUFFER_SIZE = 64 << 10;
+
+  public interface Serializer<T> {
+
+    public void write(T item, DataOutput output) throws IOException;
+
+    public T read(DataInput input) throws IOException;
+
+    // Approximate memory used by the item while it is buffered
+    public long getNumBytes(T item);
+  }
+
+  private final Comparator<T> comparator;
+  private final Serializer<T> serializer;
+  private final File tmpDir;
+  private final long maxNumBytesInMemory;
+
+  private final List<T> buffer = new ArrayList<T>();
+  private long bufferNumBytes = 0;
+  private final List<File> runFiles = new ArrayList<File>();
+  private final List<Long> runNumItems = new ArrayList<Long>();
+  private long numItems = 0;
+
+  // Set once sorted
+  private boolean sorted = false;
+  // Index of the next buffered item to return when everything fits in memory, -1 otherwise
+  private int bufferIndex = -1;
+  private final List<Run> runs = new ArrayList<Run>();
+  private PriorityQueue<Run> runQueue;
+
+  public ExternalSorter(Comparator<T> comparator,
+                        Serializer<T> serializer,
+                        File tmpDir,
+                        long maxNumBytesInMemory) {
+    this.comparator = comparator;
+    this.serializer = serializer;
+    this.tmpDir = tmpDir;
+    this.maxNumBytesInMemory = maxNumBytesInMemory;
+  }
+
+  public void add(T item) throws IOException {
+    if (sorted) {
+      throw new IllegalStateException("Items cannot be added once sorted");
+    }
+    buffer.add(item);
+    bufferNumBytes += serializer.getNumBytes(item);
+    ++numItems;
+    if (bufferNumBytes >= maxNumBytesInMemory) {
+      writeRun();
+    }
+  }
+
+  // Must be called once all items have been added, before reading them
+  public void sort() throws IOException {
+    if (sorted) {
+      return;
+    }
+    sorted = true;
+    if (runFiles.isEmpty()) {
+      // Everything fits in memory
+      Collections.sort(buffer, comparator);
+      bufferIndex = 0;
+      return;
+    }
+    if (!buffer.isEmpty()) {
+      writeRun();
+    }
+    LOG.info("Merging " + runFiles.size() + " sorted runs of " + numItems + " items");
+    runQueue = new PriorityQueue<Run>(runFiles.size(), new Comparator<Run>() {
+      @Override
+      public int compare(Run a, Run b) {
+        return comparator.compare(a.current, b.current);
+      }
+    });
+    for (int i = 0; i < runFiles.size(); ++i) {
+      Run run = new Run(runFiles.get(i), runNumItems.get(i));
+      runs.add(run);
+      if (run.advance()) {
+        runQueue.add(run);
+      }
+    }
+  }
+
+  // Return the next item in sorted order, or null once all items have been returned
+  public T next() throws IOException {
+    if (!sorted) {
+      throw new IllegalStateException("Items must be sorted before being read");
+    }
+    if (bufferIndex >= 0) {
+      if (bufferIndex == buffer.size()) {
+        buffer.clear();
+        bufferIndex = 0;
+        return null;
+      }
+      // Release items as they are returned, so that they can be collected while the caller
+      // fills another sorter
+      T item = buffer.get(bufferIndex);
+      buffer.set(bufferIndex++, null);
+      return item;
+    }
+    Run run = runQueue.poll();
+    if (run == null) {
+      return null;
+    }
+    T item = run.current;
+    if (run.advance()) {
+      runQueue.add(run);
+    }
+    return item;
+  }
+
+  public long getNumItems() {
+    return numItems;
+  }
+
+  public int getNumRuns() {
+    return runFiles.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    buffer.clear();
+    bufferIndex = -1;
+    for (Run run : runs) {
+      run.close();
+    }
+    runs.clear();
+    for (File runFile : runFiles) {
+      if (runFile.exists() && !runFile.delete()) {
+        LOG.error("Failed to delete sorted run " + runFile.getAbsolutePath());
+      }
+    }
+    runFiles.clear();
+  }
+
+  private void writeRun() throws IOException {
+    Collections.sort(buffer, comparator);
+    File runFile = File.createTempFile("external-sort-", ".run", tmpDir);
+    runFiles.add(runFile);
+    runNumItems.add((long)buffer.size());
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), RUN_FILE_BUFFER_SIZE));
+    try {
+      for (T item : buffer) {
+        serializer.write(item, output);
+      }
+    } finally {
+      output.close();
+    }
+    buffer.clear();
+    bufferNumBytes = 0;
+  }
+
+  private class Run {
+
+    private final DataInputStream input;
+    private long numRemainingItems;
+    private T current;
+
+    public Run(File runFile, long numItems) throws IOException {
+      this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), RUN_FILE_BUFFER_SIZE));
+      this.numRemainingItems = numItems;
+    }
+
+    // Load the next item of this run and return false if it is exhausted
+    public boolean advance() throws IOException {
+      if (numRemainingItems == 0) {
+        current = null;
+        close();
+        return false;
+      }
+      current = serializer.read(input);
+      --numRemainingItems;
+      return true;
+    }
+
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+}
@@ -16,6 +16,8 @@
 
 package com.liveramp.hank.util;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.liveramp.hank.partition_server.DoublePopulationStatisticsAggregator;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
@@ -23,19 +25,25 @@ public class HankTimerEventAggregator {
 
   private static Logger LOG = LoggerFactory.getLogger(HankTimerEventAggregator.class);
 
+  // Maximum number of timers a thread aggregates before updating the shared timer count
+  private static final int MAX_COUNT_BATCH_SIZE = 64;
+
   private final String name;
-  private double[] durations;
-  private int count;
   private final int statsComputationWindow;
   private final boolean isActive;
+  private final int countBatchSize;
+
+  // Timers are recorded without locking, statistics are computed once per window
+  private final LatencyRecorder recorder = new LatencyRecorder();
+  private final AtomicLong count = new AtomicLong(0);
+  private final ThreadLocal<int[]> threadCount = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
 
   private long statsComputationWindowStart;
-  private long statsComputationWindowEnd;
-  private long statsComputationWindowDuration;
-  private double minDuration;
-  private double maxDuration;
-  private double totalDuration;
-  private long totalUnderlyingCount;
   private DoublePopulationStatisticsAggregator populationStatistics;
   private DoublePopulationStatisticsAggregator previousPopulationStatistics;
 
@@ -48,10 +56,10 @@ public class HankTimerEventAggregator {
     this.name = name;
     this.statsComputationWindow = statsComputationWindow;
     this.isActive = statsComputationWindow != 0;
+    this.countBatchSize = Math.max(1, Math.min(MAX_COUNT_BATCH_SIZE, statsComputationWindow));
     this.populationStatistics = null;
     this.previousPopulationStatistics = new DoublePopulationStatisticsAggregator();
-    this.durations = new double[statsComputationWindow];
-    clear();
+    this.statsComputationWindowStart = System.nanoTime();
   }
 
   // Return a new HankTimer if active, null otherwise
@@ -73,7 +81,28 @@ public class HankTimerEventAggregator {
     if (!isActive) {
       return;
     }
-    _add(timer.getStartTime(), timer.getDuration(), underlyingCount);
+    addDuration(timer.getDuration(), underlyingCount);
+  }
+
+  // Aggregate a duration measured by the caller, which does not require allocating a timer
+  public void addDuration(long durationNanos) {
+    if (!isActive) {
+      return;
+    }
+    addDuration(durationNanos, 1);
+  }
+
+  private void addDuration(long durationNanos, int underlyingCount) {
+    recorder.record(durationNanos, underlyingCount);
+    // Threads count their own timers and only update the shared count in batches
+    int[] countInBatch = threadCount.get();
+    if (++countInBatch[0] == countBatchSize) {
+      countInBatch[0] = 0;
+      long newCount = count.addAndGet(countBatchSize);
+      if (newCount / statsComputationWindow != (newCount - countBatchSize) / statsComputationWindow) {
+        computeStats();
+      }
+    }
   }
 
   public synchronized DoublePopulationStatisticsAggregator getAndResetPopulationStatistics() {
@@ -85,47 +114,25 @@ public class HankTimerEventAggregator {
     return previousPopulationStatistics;
   }
 
-  private synchronized void _add(long startTimeNanos, long durationNanos, int underlyingCount) {
-    ++count;
-    // Determine computation window start and end
-    if (startTimeNanos < statsComputationWindowStart) {
-      statsComputationWindowStart = startTimeNanos;
-    }
-    if ((startTimeNanos + durationNanos) > statsComputationWindowEnd) {
-      statsComputationWindowEnd = startTimeNanos + durationNanos;
-    }
-    // Compute statistics
-    double duration = durationNanos / 1000000d;
-    totalDuration += duration;
-    if (duration < minDuration) {
-      minDuration = duration;
-    }
-    if (duration > maxDuration) {
-      maxDuration = duration;
+  private synchronized void computeStats() {
+    long now = System.nanoTime();
+    long statsComputationWindowDuration = now - statsComputationWindowStart;
+    statsComputationWindowStart = now;
+    LatencyHistogram histogram = recorder.getIntervalHistogram();
+    if (histogram.getTotalCount() == 0) {
+      return;
     }
-    durations[count - 1] = duration;
-    totalUnderlyingCount += underlyingCount;
-    // Dump stats if needed
-    if (count == statsComputationWindow) {
-      // Determine computation window duration
-      statsComputationWindowDuration = Math.abs(statsComputationWindowEnd - statsComputationWindowStart);
-      logStats();
-      clear();
+    logStats(histogram, recorder.getIntervalUnderlyingCount(), statsComputationWindowDuration);
+    // Aggregate population statistics
+    if (populationStatistics == null) {
+      populationStatistics = new DoublePopulationStatisticsAggregator();
     }
+    populationStatistics.aggregate(histogram);
   }
 
-  private void clear() {
-    // Durations doesn't need to be cleared
-    count = 0;
-    totalDuration = 0;
-    statsComputationWindowStart = Long.MAX_VALUE;
-    statsComputationWindowEnd = Long.MIN_VALUE;
-    minDuration = Double.MAX_VALUE;
-    maxDuration = Double.MIN_VALUE;
-    totalUnderlyingCount = 0;
-  }
-
-  private void logStats() {
+  private void logStats(LatencyHistogram histogram, long totalUnderlyingCount, long statsComputationWindowDuration) {
+    long count = histogram.getTotalCount();
+    double totalDuration = histogram.getTotalValue() / 1000000d;
     // Build log string
     StringBuilder logStr = new StringBuilder();
     logStr.append("Statistics for Timer: ");
@@ -138,7 +145,7 @@ public class HankTimerEventAggregator {
     logStr.append(statsComputationWindowDuration / 1000000d);
     logStr.append("ms");
     logStr.append(", min duration: ");
-    logStr.append(minDuration);
+    logStr.append(histogram.getMinimum() / 1000000d);
     logStr.append("ms");
     logStr.append(", avg duration: ");
     logStr.append((totalDuration / (double) count));
@@ -148,8 +155,17 @@ public class HankTimerEventAggregator {
       logStr.append((totalDuration / (double) totalUnderlyingCount));
       logStr.append("ms");
     }
+    logStr.append(", p50 duration: ");
+    logStr.append(histogram.getValueAtPercentile(50) / 1000000d);
+    logStr.append("ms");
+    logStr.append(", p99 duration: ");
+    logStr.append(histogram.getValueAtPercentile(99) / 1000000d);
+    logStr.append("ms");
+    logStr.append(", p99.9 duration: ");
+    logStr.append(histogram.getValueAtPercentile(99.9) / 1000000d);
+    logStr.append("ms");
     logStr.append(", max duration: ");
-    logStr.append(maxDuration);
+    logStr.append(histogram.getMaximum() / 1000000d);
     logStr.append("ms");
     logStr.append(", QPS: ");
     logStr.append(count / (statsComputationWindowDuration / 1000000000d));
@@ -158,10 +174,5 @@ public class HankTimerEventAggregator {
       logStr.append(totalUnderlyingCount / (statsComputationWindowDuration / 1000000000d));
     }
     LOG.info(logStr.toString());
-    // Aggregate population statistics
-    if (populationStatistics == null) {
-      populationStatistics = new DoublePopulationStatisticsAggregator();
-    }
-    populationStatistics.aggregate(minDuration, maxDuration, count, totalDuration, durations);
   }
 }
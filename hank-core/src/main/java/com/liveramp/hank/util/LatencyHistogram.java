@@ -0,0 +1,175 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets: each power of two range is split
+ * into SUB_BUCKET_COUNT linear buckets, so that any recorded value is known within a relative
+ * error of 1 / SUB_BUCKET_COUNT (about 3%) regardless of its magnitude. Percentiles computed from
+ * it are as precise for the tail of the distribution as for the median.
+ *
+ * This class is not thread safe, use a LatencyRecorder to record values concurrently.
+ */
+public class LatencyHistogram {
+
+  static final int SUB_BUCKET_BITS = 5;
+  static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // Values are capped to about 18 minutes
+  static final int MAX_VALUE_BITS = 40;
+  static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+  static final int NUM_BUCKETS = getBucketIndex(MAX_VALUE) + 1;
+
+  private final long[] counts;
+  private long totalCount;
+  private long totalValue;
+  private long minimum;
+  private long maximum;
+
+  public LatencyHistogram() {
+    this.counts = new long[NUM_BUCKETS];
+    clear();
+  }
+
+  public void record(long valueNanos) {
+    record(valueNanos, 1);
+  }
+
+  public void record(long valueNanos, long count) {
+    long value = clamp(valueNanos);
+    counts[getBucketIndex(value)] += count;
+    totalCount += count;
+    totalValue += value * count;
+    if (value < minimum) {
+      minimum = value;
+    }
+    if (value > maximum) {
+      maximum = value;
+    }
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    totalValue += other.totalValue;
+    addMinimum(other.minimum);
+    addMaximum(other.maximum);
+  }
+
+  public void clear() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    totalValue = 0;
+    minimum = Long.MAX_VALUE;
+    maximum = 0;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getTotalValue() {
+    return totalValue;
+  }
+
+  // Exact minimum, 0 if the histogram is empty
+  public long getMinimum() {
+    return totalCount == 0 ? 0 : minimum;
+  }
+
+  // Exact maximum, 0 if the histogram is empty
+  public long getMaximum() {
+    return maximum;
+  }
+
+  public double getMean() {
+    return totalCount == 0 ? 0 : (double)totalValue / totalCount;
+  }
+
+  /**
+   * Return the value below which the given percentage of recorded values fall, within the
+   * precision of the buckets and never outside of the recorded range.
+   *
+   * @param percentile between 0 and 100
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount));
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      count += counts[i];
+      if (count >= rank) {
+        return Math.max(minimum, Math.min(maximum, getBucketHighestValue(i)));
+      }
+    }
+    return maximum;
+  }
+
+  // Used by LatencyRecorder to build histograms out of concurrently recorded counts
+  void addBucketCount(int bucketIndex, long count) {
+    counts[bucketIndex] += count;
+  }
+
+  void addTotals(long totalCount, long totalValue) {
+    this.totalCount += totalCount;
+    this.totalValue += totalValue;
+  }
+
+  void addMinimum(long minimum) {
+    if (minimum < this.minimum) {
+      this.minimum = minimum;
+    }
+  }
+
+  void addMaximum(long maximum) {
+    if (maximum > this.maximum) {
+      this.maximum = maximum;
+    }
+  }
+
+  static long clamp(long valueNanos) {
+    return Math.max(0, Math.min(MAX_VALUE, valueNanos));
+  }
+
+  // Values below SUB_BUCKET_COUNT have their own bucket. Above, buckets of the range
+  // [2^k, 2^(k+1)) are SUB_BUCKET_COUNT linear buckets of width 2^(k - SUB_BUCKET_BITS).
+  static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int)value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift << SUB_BUCKET_BITS) + (int)(value >>> shift);
+  }
+
+  static long getBucketLowestValue(int bucketIndex) {
+    if (bucketIndex < 2 * SUB_BUCKET_COUNT) {
+      return bucketIndex;
+    }
+    int shift = (bucketIndex >>> SUB_BUCKET_BITS) - 1;
+    long subBucket = bucketIndex - (shift << SUB_BUCKET_BITS);
+    return subBucket << shift;
+  }
+
+  static long getBucketHighestValue(int bucketIndex) {
+    return getBucketLowestValue(bucketIndex + 1) - 1;
+  }
+}
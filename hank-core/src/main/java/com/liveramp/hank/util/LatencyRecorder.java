@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations from many threads without locking. Histogram counters are striped: each
+ * recording thread adds to the stripe selected by its id, so that threads rarely contend with
+ * each other. The number of stripes is fixed, so memory does not grow with the number of
+ * recording threads. Readers drain the counters of all stripes into a LatencyHistogram.
+ */
+public class LatencyRecorder {
+
+  // Stripes are sized after the number of processors, up to this many
+  static final int MAX_NUM_STRIPES = 16;
+
+  // Counters of a stripe, laid out after the histogram buckets
+  private static final int TOTAL_COUNT_INDEX = LatencyHistogram.NUM_BUCKETS;
+  private static final int TOTAL_VALUE_INDEX = LatencyHistogram.NUM_BUCKETS + 1;
+  private static final int TOTAL_UNDERLYING_COUNT_INDEX = LatencyHistogram.NUM_BUCKETS + 2;
+  private static final int NUM_COUNTERS = LatencyHistogram.NUM_BUCKETS + 3;
+
+  private static class Stripe {
+
+    // Reset by readers at the end of each interval
+    private final AtomicLongArray counters = new AtomicLongArray(NUM_COUNTERS);
+    private final AtomicLong minimum = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maximum = new AtomicLong(0);
+
+    private void record(long value, int underlyingCount) {
+      counters.getAndIncrement(LatencyHistogram.getBucketIndex(value));
+      counters.getAndIncrement(TOTAL_COUNT_INDEX);
+      counters.getAndAdd(TOTAL_VALUE_INDEX, value);
+      counters.getAndAdd(TOTAL_UNDERLYING_COUNT_INDEX, underlyingCount);
+      long currentMinimum = minimum.get();
+      while (value < currentMinimum && !minimum.compareAndSet(currentMinimum, value)) {
+        currentMinimum = minimum.get();
+      }
+      long currentMaximum = maximum.get();
+      while (value > currentMaximum && !maximum.compareAndSet(currentMaximum, value)) {
+        currentMaximum = maximum.get();
+      }
+    }
+  }
+
+  private final Stripe[] stripes;
+  private long intervalUnderlyingCount = 0;
+
+  public LatencyRecorder() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public LatencyRecorder(int numStripes) {
+    numStripes = Math.max(1, Math.min(MAX_NUM_STRIPES, numStripes));
+    // Power of two so that stripes are selected with a mask
+    stripes = new Stripe[Integer.highestOneBit(numStripes)];
+    for (int i = 0; i < stripes.length; ++i) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  public void record(long durationNanos) {
+    record(durationNanos, 1);
+  }
+
+  // underlyingCount is used when the recorded duration represents a number of underlying events
+  public void record(long durationNanos, int underlyingCount) {
+    int stripeIndex = (int)Thread.currentThread().getId() & (stripes.length - 1);
+    stripes[stripeIndex].record(LatencyHistogram.clamp(durationNanos), underlyingCount);
+  }
+
+  /**
+   * Return a histogram of the values recorded since the previous call. Values that are being
+   * recorded concurrently may only be accounted for in the next interval.
+   */
+  public synchronized LatencyHistogram getIntervalHistogram() {
+    LatencyHistogram result = new LatencyHistogram();
+    long underlyingCount = 0;
+    for (Stripe stripe : stripes) {
+      for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; ++i) {
+        if (stripe.counters.get(i) != 0) {
+          result.addBucketCount(i, stripe.counters.getAndSet(i, 0));
+        }
+      }
+      result.addTotals(stripe.counters.getAndSet(TOTAL_COUNT_INDEX, 0),
+          stripe.counters.getAndSet(TOTAL_VALUE_INDEX, 0));
+      underlyingCount += stripe.counters.getAndSet(TOTAL_UNDERLYING_COUNT_INDEX, 0);
+      result.addMinimum(stripe.minimum.getAndSet(Long.MAX_VALUE));
+      result.addMaximum(stripe.maximum.getAndSet(0));
+    }
+    intervalUnderlyingCount = underlyingCount;
+    return result;
+  }
+
+  // Package-private for tests
+  int getNumStripes() {
+    return stripes.length;
+  }
+
+  // Number of underlying events in the interval of the last histogram returned by getIntervalHistogram()
+  public synchronized long getIntervalUnderlyingCount() {
+    return intervalUnderlyingCount;
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream reading its source ahead of the consumer from a background thread, so that slow
+ * (typically remote) reads overlap with the processing of the data already read. Up to numBuffers
+ * buffers of bufferSize bytes are filled ahead.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  private static class Chunk {
+    private final byte[] buffer;
+    private int length;
+    // Set on the last chunk when reading the source failed
+    private Throwable exception;
+
+    private Chunk(int bufferSize) {
+      this.buffer = new byte[bufferSize];
+    }
+  }
+
+  private final InputStream source;
+  private final BlockingQueue<Chunk> freeChunks;
+  private final BlockingQueue<Chunk> filledChunks;
+  private final Thread readerThread;
+
+  private Chunk currentChunk;
+  private int currentOffset;
+  private boolean endOfStream = false;
+  private volatile boolean closed = false;
+
+  public ReadAheadInputStream(InputStream source, int bufferSize, int numBuffers, String name) {
+    if (bufferSize <= 0 || numBuffers <= 0) {
+      throw new IllegalArgumentException("Buffer size and number of buffers must be positive: " + bufferSize + ", " + numBuffers);
+    }
+    this.source = source;
+    this.freeChunks = new ArrayBlockingQueue<Chunk>(numBuffers + 1);
+    this.filledChunks = new ArrayBlockingQueue<Chunk>(numBuffers + 1);
+    // One more buffer than read ahead is being consumed
+    for (int i = 0; i < numBuffers + 1; ++i) {
+      freeChunks.add(new Chunk(bufferSize));
+    }
+    this.readerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        readAhead();
+      }
+    }, "Read ahead " + name);
+    readerThread.setDaemon(true);
+    readerThread.start();
+  }
+
+  private void readAhead() {
+    try {
+      while (!closed) {
+        Chunk chunk = freeChunks.take();
+        // Fill the buffer entirely unless the end of the source is reached
+        int length = 0;
+        int read = 0;
+        while (length < chunk.buffer.length && (read = source.read(chunk.buffer, length, chunk.buffer.length - length)) != -1) {
+          length += read;
+        }
+        chunk.length = length;
+        chunk.exception = null;
+        filledChunks.put(chunk);
+        if (read == -1) {
+          if (length > 0) {
+            // Signal the end of the stream with an empty chunk
+            Chunk endChunk = freeChunks.take();
+            endChunk.length = 0;
+            endChunk.exception = null;
+            filledChunks.put(endChunk);
+          }
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // Closed
+    } catch (Throwable e) {
+      // Any failure, not only I/O ones, ends the stream so that the consumer does not wait forever
+      if (!closed) {
+        Chunk errorChunk = new Chunk(0);
+        errorChunk.exception = e;
+        filledChunks.offer(errorChunk);
+      }
+    }
+  }
+
+  // Return false when the end of the stream is reached
+  private boolean ensureAvailable() throws IOException {
+    if (closed) {
+      throw new IOException("Stream is closed");
+    }
+    if (endOfStream) {
+      return false;
+    }
+    if (currentChunk != null && currentOffset < currentChunk.length) {
+      return true;
+    }
+    if (currentChunk != null) {
+      freeChunks.add(currentChunk);
+      currentChunk = null;
+    }
+    Chunk chunk;
+    try {
+      chunk = filledChunks.take();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for data to be read ahead");
+    }
+    if (chunk.exception != null) {
+      endOfStream = true;
+      throw new IOException("Failed to read ahead", chunk.exception);
+    }
+    if (chunk.length == 0) {
+      endOfStream = true;
+      return false;
+    }
+    currentChunk = chunk;
+    currentOffset = 0;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    return currentChunk.buffer[currentOffset++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    int numBytes = Math.min(len, currentChunk.length - currentOffset);
+    System.arraycopy(currentChunk.buffer, currentOffset, b, off, numBytes);
+    currentOffset += numBytes;
+    return numBytes;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return currentChunk == null ? 0 : currentChunk.length - currentOffset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    readerThread.interrupt();
+    try {
+      source.close();
+    } finally {
+      try {
+        readerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
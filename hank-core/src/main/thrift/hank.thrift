@@ -40,7 +40,10 @@ union HankBulkResponse {
 }
 
 service PartitionServer {
-  HankResponse get(1:i32 domain_id, 2:binary key);
+  /* key_hash is optional: the 128-bit Murmur hash of the key (high then low 64 bits, big endian),
+     sent by clients of domains using Murmur128Partitioner so that servers do not hash the key again.
+     Servers ignore it when it is not set, and servers predating it skip it. */
+  HankResponse get(1:i32 domain_id, 2:binary key, 3:binary key_hash);
   HankBulkResponse getBulk(1:i32 domain_id, 2:list<binary> keys);
 }
 
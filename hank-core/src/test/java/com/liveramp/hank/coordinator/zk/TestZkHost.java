@@ -20,6 +20,7 @@ import com.liveramp.hank.coordinator.Coordinator;
 import com.liveramp.hank.coordinator.Domain;
 import com.liveramp.hank.coordinator.HostCommand;
 import com.liveramp.hank.coordinator.HostDomain;
+import com.liveramp.hank.coordinator.HostDomainPartition;
 import com.liveramp.hank.coordinator.HostState;
 import com.liveramp.hank.coordinator.Hosts;
 import com.liveramp.hank.coordinator.PartitionServerAddress;
@@ -32,6 +33,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
@@ -227,6 +229,34 @@ public class TestZkHost extends ZkTestCase {
     assertEquals(0, host.getHostDomain(d0).getDomain().getId());
   }
 
+  @Test
+  public void testDataLocationChangeOnCurrentVersionChange() throws Exception {
+    final AtomicInteger numDataLocationChanges = new AtomicInteger(0);
+    final ZkHost host = ZkHost.create(getZk(), coordinator, getRoot(), ADDRESS,
+        numDataLocationChanges::incrementAndGet, Collections.emptyList());
+    host.addDomain(d0).addPartition(0);
+    WaitUntil.orDie(() -> {
+      try {
+        return host.getHostDomain(d0).getPartitionByNumber(0) != null;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    // Swapping a partition to a new version while serving is a data location change
+    final HostDomainPartition partition = host.getHostDomain(d0).getPartitionByNumber(0);
+    final int numDataLocationChangesBefore = numDataLocationChanges.get();
+    partition.setCurrentDomainVersion(1);
+    WaitUntil.orDie(() -> {
+      try {
+        return Integer.valueOf(1).equals(partition.getCurrentDomainVersion())
+            && numDataLocationChanges.get() > numDataLocationChangesBefore;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
   @Test
   public void testUptime() throws Exception {
     ZkHost host = ZkHost.create(getZk(), coordinator, getRoot(), ADDRESS, null, Collections.emptyList());
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.hasher;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.liveramp.hank.partitioner.Murmur128Partitioner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMurmur128Hasher {
+
+  private final Murmur128Hasher hasher = new Murmur128Hasher();
+
+  @Test
+  public void testReferenceValue() {
+    Hash128 hash = new Hash128();
+    Murmur128Hasher.murmurHash128(ByteBuffer.wrap("The quick brown fox jumps over the lazy dog".getBytes()), 0, hash);
+    assertEquals(0xe34bbc7bbc071b6cL, hash.getHigh());
+    assertEquals(0x7a433ca9c49a9347L, hash.getLow());
+  }
+
+  @Test
+  public void testAllLengths() {
+    byte[] data = new byte[40];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte)(i * 31);
+    }
+    Hash128 hash = new Hash128();
+    Hash128 directHash = new Hash128();
+    Hash128 offsetHash = new Hash128();
+    for (int length = 0; length <= 33; ++length) {
+      ByteBuffer key = ByteBuffer.wrap(data, 0, length);
+      Murmur128Hasher.murmurHash128(key, Murmur128Hasher.SEED, hash);
+
+      ByteBuffer directKey = ByteBuffer.allocateDirect(length);
+      directKey.put(data, 0, length);
+      directKey.flip();
+      Murmur128Hasher.murmurHash128(directKey, Murmur128Hasher.SEED, directHash);
+      assertEquals(hash.getHigh(), directHash.getHigh());
+      assertEquals(hash.getLow(), directHash.getLow());
+
+      ByteBuffer offsetKey = ByteBuffer.wrap(new byte[length + 3]);
+      offsetKey.position(3);
+      offsetKey.slice().put(data, 0, length);
+      Murmur128Hasher.murmurHash128(offsetKey, Murmur128Hasher.SEED, offsetHash);
+      assertEquals(hash.getHigh(), offsetHash.getHigh());
+      assertEquals(hash.getLow(), offsetHash.getLow());
+      assertEquals(3, offsetKey.position());
+    }
+  }
+
+  @Test
+  public void testHash() {
+    ByteBuffer key = ByteBuffer.wrap(new byte[]{1, 2, 3});
+    Hash128 hash = new Hash128();
+    Murmur128Hasher.murmurHash128(key, Murmur128Hasher.SEED, hash);
+
+    // Bytes are the 128-bit hash, big endian
+    byte[] hashBytes = new byte[16];
+    hasher.hash(key, 16, hashBytes);
+    assertEquals(hash.getHigh(), ByteBuffer.wrap(hashBytes).getLong(0));
+    assertEquals(hash.getLow(), ByteBuffer.wrap(hashBytes).getLong(8));
+
+    // Shorter hashes are prefixes
+    byte[] shortHashBytes = new byte[10];
+    hasher.hash(key, 10, shortHashBytes);
+    assertTrue(Arrays.equals(Arrays.copyOf(hashBytes, 10), shortHashBytes));
+
+    // Longer hashes are extended
+    byte[] longHashBytes = new byte[20];
+    hasher.hash(key, 20, longHashBytes);
+    assertTrue(Arrays.equals(hashBytes, Arrays.copyOf(longHashBytes, 16)));
+    assertFalse(Arrays.equals(new byte[4], Arrays.copyOfRange(longHashBytes, 16, 20)));
+
+    // Precomputed hash gives the same result
+    byte[] precomputedHashBytes = new byte[20];
+    hasher.hash(key, hash, 20, precomputedHashBytes);
+    assertTrue(Arrays.equals(longHashBytes, precomputedHashBytes));
+  }
+
+  @Test
+  public void testPartitioner() {
+    Murmur128Partitioner partitioner = new Murmur128Partitioner();
+    Hash128 hash = new Hash128();
+    for (int i = 0; i < 1000; ++i) {
+      ByteBuffer key = ByteBuffer.wrap(Integer.toString(i).getBytes());
+      int partition = partitioner.partition(key, 7, hash);
+      assertTrue(partition >= 0 && partition < 7);
+      assertEquals(partition, partitioner.partition(key, 7));
+      assertTrue(hash.isFor(key));
+      assertEquals(partitioner.partition(key, Integer.MAX_VALUE), Murmur128Partitioner.getPartition(hash, Integer.MAX_VALUE));
+    }
+
+    // Hash is only reused for the same key buffer at the same position
+    ByteBuffer key = ByteBuffer.wrap(new byte[]{1, 2, 3});
+    partitioner.partition(key, 7, hash);
+    assertFalse(hash.isFor(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+    key.position(1);
+    assertFalse(hash.isFor(key));
+    hash.clear();
+    key.position(0);
+    assertFalse(hash.isFor(key));
+  }
+
+  @Test
+  public void testSerializedHash() {
+    ByteBuffer key = ByteBuffer.wrap(new byte[]{1, 2, 3});
+    Hash128 hash = new Hash128();
+    Murmur128Hasher.murmurHash128(key, Murmur128Hasher.SEED, hash);
+    byte[] serializedHash = new byte[Hash128.NUM_BYTES];
+    hash.getBytes(Hash128.NUM_BYTES, serializedHash);
+    byte[] hashBytes = new byte[Hash128.NUM_BYTES + 2];
+    System.arraycopy(serializedHash, 0, hashBytes, 2, Hash128.NUM_BYTES);
+
+    // Hash sent by clients is read at the position of its buffer
+    ByteBuffer hashBuffer = ByteBuffer.wrap(hashBytes, 2, Hash128.NUM_BYTES);
+    Hash128 deserializedHash = new Hash128();
+    deserializedHash.set(key, hashBuffer);
+    assertTrue(deserializedHash.isFor(key));
+    assertEquals(hash.getHigh(), deserializedHash.getHigh());
+    assertEquals(hash.getLow(), deserializedHash.getLow());
+    assertEquals(2, hashBuffer.position());
+  }
+}
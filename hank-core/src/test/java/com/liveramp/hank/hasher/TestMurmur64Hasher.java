@@ -19,6 +19,7 @@ import com.liveramp.commons.util.BytesUtils;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -77,4 +78,52 @@ public class TestMurmur64Hasher {
     hsh.hash(buffer, 8, hash64);
     assertTrue(Arrays.equals(new byte[]{0x08, 0x51, 0x77, 0x72, 0x42, 0x6e, 0x7f, (byte) 0xa6}, hash64));
   }
+
+  @Test
+  public void testDirectBuffers() {
+    Random random = new Random(0);
+    // Cover all remainders of the 8 byte blocks
+    for (int length = 0; length < 40; ++length) {
+      byte[] key = new byte[length];
+      random.nextBytes(key);
+      long expectedHash = Murmur64Hasher.murmurHash64(key);
+      byte[] expectedHashBytes = new byte[20];
+      hsh.hash(ByteBuffer.wrap(key), expectedHashBytes.length, expectedHashBytes);
+
+      // Heap buffer with a non-zero array offset and position
+      byte[] paddedKey = new byte[length + 7];
+      System.arraycopy(key, 0, paddedKey, 5, length);
+      ByteBuffer heapBuffer = ByteBuffer.wrap(paddedKey, 2, length + 3).slice();
+      heapBuffer.position(3);
+      heapBuffer.limit(3 + length);
+      assertEquals(2, heapBuffer.arrayOffset());
+
+      // Direct buffer with a non-zero position
+      ByteBuffer directBuffer = ByteBuffer.allocateDirect(length + 7);
+      directBuffer.position(5);
+      directBuffer.put(key);
+      directBuffer.position(5);
+      directBuffer.limit(5 + length);
+
+      // Slice of a direct buffer, with a non-zero position
+      ByteBuffer directSlice = ByteBuffer.allocateDirect(length + 7);
+      directSlice.position(2);
+      directSlice = directSlice.slice();
+      directSlice.position(3);
+      directSlice.put(key);
+      directSlice.position(3);
+      directSlice.limit(3 + length);
+
+      for (ByteBuffer buffer : Arrays.asList(heapBuffer, directBuffer, directSlice)) {
+        int position = buffer.position();
+        assertEquals(expectedHash, Murmur64Hasher.murmurHash64(buffer));
+        byte[] hashBytes = new byte[20];
+        hsh.hash(buffer, hashBytes.length, hashBytes);
+        assertTrue(Arrays.equals(expectedHashBytes, hashBytes));
+        // Hashing does not consume the buffer
+        assertEquals(position, buffer.position());
+        assertEquals(length, buffer.remaining());
+      }
+    }
+  }
 }
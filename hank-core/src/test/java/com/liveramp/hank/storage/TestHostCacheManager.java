@@ -0,0 +1,157 @@
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+import com.liveramp.hank.util.MemoryBoundCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestHostCacheManager extends BaseTestCase {
+
+  private static ByteBuffer bytes(int i) {
+    return ByteBuffer.wrap(new byte[]{(byte)(i >>> 24), (byte)(i >>> 16), (byte)(i >>> 8), (byte)i});
+  }
+
+  @Test
+  public void testDisabled() {
+    HostCacheManager manager = new HostCacheManager(0, 0, 2);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache = manager.getPartitionCache(0, 0, 0);
+    assertFalse(cache.isEnabled());
+    cache.put(bytes(1), bytes(1));
+    assertNull(cache.get(bytes(1)));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPartitionCachesAreIsolated() {
+    HostCacheManager manager = new HostCacheManager(-1, 100, 2, 1);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache1 = manager.getPartitionCache(0, 0, 0);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache2 = manager.getPartitionCache(0, 1, 0);
+
+    cache1.put(bytes(1), bytes(10));
+    cache2.put(bytes(1), bytes(20));
+    assertEquals(bytes(10), cache1.get(bytes(1)));
+    assertEquals(bytes(20), cache2.get(bytes(1)));
+    assertEquals(1, cache1.size());
+    assertEquals(1, cache2.size());
+    assertTrue(cache1.getNumManagedBytes() > 0);
+
+    // A new version of the same partition does not see previous values
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache1NextVersion = manager.getPartitionCache(0, 0, 1);
+    assertNull(cache1NextVersion.get(bytes(1)));
+
+    // Maximums are each partition's share of the host capacity
+    assertEquals(50, cache1.getMaxNumItems());
+    assertEquals(0, cache1.getMaxNumManagedBytes());
+  }
+
+  @Test
+  public void testCapacityIsShared() {
+    HostCacheManager manager = new HostCacheManager(-1, 100, 10, 1);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> hotCache = manager.getPartitionCache(0, 0, 0);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> coldCache = manager.getPartitionCache(0, 1, 0);
+
+    coldCache.put(bytes(0), bytes(0));
+    // A single partition can use more than its share
+    for (int i = 0; i < 200; ++i) {
+      hotCache.get(bytes(i));
+      hotCache.put(bytes(i), bytes(i));
+    }
+    assertEquals(100, hotCache.size() + coldCache.size());
+    assertTrue(hotCache.size() > hotCache.getMaxNumItems());
+  }
+
+  @Test
+  public void testFrequentlyUsedEntriesAreKept() {
+    HostCacheManager manager = new HostCacheManager(-1, 10, 1, 1);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache = manager.getPartitionCache(0, 0, 0);
+
+    // Hot entry is accessed often
+    cache.put(bytes(-1), bytes(-1));
+    for (int i = 0; i < 5; ++i) {
+      assertEquals(bytes(-1), cache.get(bytes(-1)));
+    }
+    // Scan many entries that are accessed only once. A pure LRU cache would evict the hot entry
+    // since more entries than the capacity are inserted between two of its accesses.
+    for (int i = 0; i < 1000; ++i) {
+      cache.get(bytes(i));
+      cache.put(bytes(i), bytes(i));
+      if (i % 20 == 0) {
+        assertEquals(bytes(-1), cache.get(bytes(-1)));
+      }
+    }
+    assertEquals(10, cache.size());
+  }
+
+  @Test
+  public void testRejectedCandidateDoesNotEvict() {
+    // Measure the size of entries
+    MemoryBoundCache<ByteBuffer, ByteBuffer> probe = new HostCacheManager(1 << 20, 0, 1, 1).getPartitionCache(0, 0, 0);
+    probe.put(bytes(0), bytes(0));
+    long smallEntryNumBytes = probe.getNumManagedBytes();
+    ByteBuffer largeValue = ByteBuffer.wrap(new byte[(int)smallEntryNumBytes / 2]);
+    probe.put(bytes(1), largeValue);
+    long largeEntryNumBytes = probe.getNumManagedBytes() - smallEntryNumBytes;
+    // A large entry only fits once two small entries are evicted
+    assertTrue(largeEntryNumBytes > smallEntryNumBytes && largeEntryNumBytes <= 2 * smallEntryNumBytes);
+
+    HostCacheManager manager = new HostCacheManager(2 * smallEntryNumBytes, 0, 1, 1);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> cache = manager.getPartitionCache(0, 0, 0);
+    // Cold entry, then hot entry
+    cache.put(bytes(1), bytes(1));
+    cache.put(bytes(2), bytes(2));
+    for (int i = 0; i < 5; ++i) {
+      cache.get(bytes(2));
+    }
+    // The candidate is more frequent than the least recently used entry but less than the next one
+    for (int i = 0; i < 2; ++i) {
+      cache.get(bytes(3));
+    }
+    cache.put(bytes(3), largeValue);
+    assertEquals(2, cache.size());
+    assertEquals(2 * smallEntryNumBytes, cache.getNumManagedBytes());
+
+    // A candidate more frequent than both entries is admitted
+    for (int i = 0; i < 10; ++i) {
+      cache.get(bytes(3));
+    }
+    cache.put(bytes(3), largeValue);
+    assertEquals(1, cache.size());
+    assertEquals(largeValue, cache.get(bytes(3)));
+    assertNull(cache.get(bytes(1)));
+    assertNull(cache.get(bytes(2)));
+  }
+
+  @Test
+  public void testPurge() {
+    HostCacheManager manager = new HostCacheManager(-1, 10, 2, 1);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> oldCache = manager.getPartitionCache(0, 0, 0);
+    MemoryBoundCache<ByteBuffer, ByteBuffer> otherCache = manager.getPartitionCache(0, 1, 0);
+    for (int i = 0; i < 5; ++i) {
+      oldCache.put(bytes(i), bytes(i));
+    }
+    otherCache.put(bytes(0), bytes(10));
+
+    HostCacheManager.purge(oldCache);
+    assertEquals(0, oldCache.size());
+    assertEquals(0, oldCache.getNumManagedBytes());
+    assertNull(oldCache.get(bytes(0)));
+    assertEquals(bytes(10), otherCache.get(bytes(0)));
+
+    // The purged cache does not take up space anymore
+    oldCache.put(bytes(0), bytes(0));
+    assertEquals(0, oldCache.size());
+    MemoryBoundCache<ByteBuffer, ByteBuffer> newCache = manager.getPartitionCache(0, 0, 1);
+    for (int i = 0; i < 9; ++i) {
+      newCache.put(bytes(i), bytes(i));
+    }
+    assertEquals(9, newCache.size());
+    assertEquals(bytes(10), otherCache.get(bytes(0)));
+  }
+}
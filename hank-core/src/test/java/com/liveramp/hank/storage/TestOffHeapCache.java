@@ -0,0 +1,54 @@
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestOffHeapCache extends BaseTestCase {
+
+  private static ByteBuffer key(int i) {
+    return ByteBuffer.allocate(8).putInt(0, i).putInt(4, ~i);
+  }
+
+  @Test
+  public void testLargeSegmentsUseTheirWholeIndex() {
+    // Segments of 16MB have 131072 index slots, more than can be addressed with 16 bits of hash
+    int numSegments = 4;
+    int numSlotsPerSegment = 1 << 17;
+    OffHeapCache cache = new OffHeapCache(numSegments * 128L * numSlotsPerSegment, numSegments);
+    long namespace = cache.newNamespace();
+
+    // Fill three quarters of the index with entries that all fit in the segments' data
+    int numKeys = 3 * numSegments * numSlotsPerSegment / 4;
+    for (int i = 0; i < numKeys; ++i) {
+      cache.put(namespace, key(i), key(i));
+    }
+
+    int numHits = 0;
+    ReaderResult result = new ReaderResult();
+    for (int i = 0; i < numKeys; ++i) {
+      result.clear();
+      if (cache.get(namespace, key(i), result)) {
+        assertEquals(key(i), result.getBuffer());
+        ++numHits;
+      }
+    }
+    assertTrue("Only " + numHits + " of " + numKeys + " entries were kept", numHits > 0.95 * numKeys);
+  }
+
+  @Test
+  public void testCapacitySmallerThanIndex() {
+    try {
+      new OffHeapCache(64);
+      fail("Should have failed");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestOffHeapCachingReader extends BaseTestCase {
+
+  // Returns the key repeated twice, except for keys starting with 0 which are not found
+  private static class CountingReader implements Reader {
+
+    private int numGets = 0;
+
+    @Override
+    public void get(ByteBuffer key, ReaderResult result) throws IOException {
+      ++numGets;
+      if (key.get(key.position()) == 0) {
+        result.notFound();
+        return;
+      }
+      result.requiresBufferSize(2 * key.remaining());
+      result.getBuffer().clear();
+      result.getBuffer().put(key.duplicate());
+      result.getBuffer().put(key.duplicate());
+      result.getBuffer().flip();
+      result.found();
+    }
+
+    @Override
+    public Integer getVersionNumber() {
+      return null;
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics() {
+      return null;
+    }
+
+    @Override
+    public FilterStatistics getFilterStatistics() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static ByteBuffer key(int i) {
+    return ByteBuffer.wrap(new byte[]{1, (byte)(i >>> 24), (byte)(i >>> 16), (byte)(i >>> 8), (byte)i});
+  }
+
+  private static ByteBuffer value(int i) {
+    ByteBuffer key = key(i);
+    ByteBuffer value = ByteBuffer.allocate(2 * key.remaining());
+    value.put(key.duplicate()).put(key.duplicate()).flip();
+    return value;
+  }
+
+  @Test
+  public void testCachesFoundValues() throws IOException {
+    CountingReader countingReader = new CountingReader();
+    Reader reader = new OffHeapCachingReader(countingReader, new OffHeapCache(1 << 16));
+    ReaderResult result = new ReaderResult();
+
+    reader.get(key(1), result);
+    assertTrue(result.isFound());
+    assertFalse(result.getL2CacheHit());
+    assertEquals(value(1), result.getBuffer());
+    assertEquals(1, countingReader.numGets);
+
+    result.clear();
+    reader.get(key(1), result);
+    assertTrue(result.isFound());
+    assertTrue(result.getL2CacheHit());
+    assertEquals(value(1), result.getBuffer());
+    assertEquals(1, countingReader.numGets);
+
+    // Not found keys are not cached
+    ByteBuffer notFoundKey = ByteBuffer.wrap(new byte[]{0, 1});
+    result.clear();
+    reader.get(notFoundKey, result);
+    assertFalse(result.isFound());
+    result.clear();
+    reader.get(notFoundKey, result);
+    assertFalse(result.isFound());
+    assertEquals(3, countingReader.numGets);
+  }
+
+  @Test
+  public void testNamespaces() throws IOException {
+    OffHeapCache cache = new OffHeapCache(1 << 16);
+    CountingReader countingReader1 = new CountingReader();
+    CountingReader countingReader2 = new CountingReader();
+    Reader reader1 = new OffHeapCachingReader(countingReader1, cache);
+    Reader reader2 = new OffHeapCachingReader(countingReader2, cache);
+    ReaderResult result = new ReaderResult();
+
+    reader1.get(key(1), result);
+    result.clear();
+    reader2.get(key(1), result);
+    assertFalse(result.getL2CacheHit());
+    assertEquals(1, countingReader1.numGets);
+    assertEquals(1, countingReader2.numGets);
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    OffHeapCache cache = new OffHeapCache(1 << 16);
+    CountingReader countingReader = new CountingReader();
+    Reader reader = new OffHeapCachingReader(countingReader, cache);
+    ReaderResult result = new ReaderResult();
+
+    // Write many more entries than the cache can hold
+    int numKeys = 100000;
+    for (int i = 0; i < numKeys; ++i) {
+      result.clear();
+      reader.get(key(i), result);
+      assertEquals(value(i), result.getBuffer());
+    }
+    assertTrue(cache.getNumManagedBytes() <= cache.getNumBytesCapacity());
+
+    // Values read back are always correct, and the most recent ones are still cached
+    int numGets = countingReader.numGets;
+    for (int i = numKeys - 100; i < numKeys; ++i) {
+      result.clear();
+      reader.get(key(i), result);
+      assertEquals(value(i), result.getBuffer());
+    }
+    assertEquals(numGets, countingReader.numGets);
+    for (int i = 0; i < numKeys; ++i) {
+      result.clear();
+      reader.get(key(i), result);
+      assertEquals(value(i), result.getBuffer());
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.util;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentMemoryBoundCache {
+
+  private static ByteBuffer key(int i) {
+    return ByteBuffer.wrap(new byte[]{(byte)i, (byte)(i >> 8)});
+  }
+
+  private static ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> getCache(boolean isEnabled,
+                                                                            long numBytesCapacity,
+                                                                            int numItemsCapacity) {
+    return new ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer>(isEnabled, numBytesCapacity, numItemsCapacity,
+        new ByteBufferMemoryUsageEstimator(), new ByteBufferMemoryUsageEstimator());
+  }
+
+  @Test
+  public void testDisabled() {
+    ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> cache = getCache(false, -1, 10);
+    assertFalse(cache.isEnabled());
+    cache.put(key(1), key(1));
+    assertNull(cache.get(key(1)));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getMaxNumItems());
+  }
+
+  @Test
+  public void testGetPut() {
+    ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> cache = getCache(true, -1, 100);
+    for (int i = 0; i < 50; ++i) {
+      cache.put(key(i), key(i + 1));
+    }
+    assertEquals(50, cache.size());
+    for (int i = 0; i < 50; ++i) {
+      assertEquals(key(i + 1), cache.get(key(i)));
+    }
+    assertNull(cache.get(key(51)));
+    assertEquals(100, cache.getMaxNumItems());
+  }
+
+  @Test
+  public void testNumItemsCapacity() {
+    ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> cache = getCache(true, -1, 20);
+    for (int i = 0; i < 1000; ++i) {
+      cache.put(key(i), key(i));
+    }
+    assertTrue(cache.size() <= 20);
+    // Small capacities still allow caching
+    ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> smallCache = getCache(true, -1, 1);
+    smallCache.put(key(1), key(1));
+    assertEquals(key(1), smallCache.get(key(1)));
+    smallCache.put(key(2), key(2));
+    assertEquals(1, smallCache.size());
+  }
+
+  @Test
+  public void testSegmentsShareCapacity() {
+    // Entries larger than a segment's share of the capacity are cached
+    ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> cache = getCache(true, 1600, -1);
+    ByteBuffer largeValue = ByteBuffer.wrap(new byte[1000]);
+    cache.put(key(1), largeValue);
+    assertEquals(largeValue, cache.get(key(1)));
+    assertTrue(cache.getNumManagedBytes() <= 1600);
+    // Older entries are evicted to make room for others
+    cache.put(key(2), ByteBuffer.wrap(new byte[1000]));
+    assertNull(cache.get(key(1)));
+    assertTrue(cache.getNumManagedBytes() <= 1600);
+    // Entries larger than the whole cache are not cached
+    cache.put(key(3), ByteBuffer.wrap(new byte[2000]));
+    assertNull(cache.get(key(3)));
+
+    // All items fit, whichever segments they are in
+    cache = getCache(true, -1, ConcurrentMemoryBoundCache.DEFAULT_NUM_SEGMENTS);
+    for (int i = 0; i < ConcurrentMemoryBoundCache.DEFAULT_NUM_SEGMENTS; ++i) {
+      cache.put(key(i), key(i));
+    }
+    for (int i = 0; i < ConcurrentMemoryBoundCache.DEFAULT_NUM_SEGMENTS; ++i) {
+      assertEquals(key(i), cache.get(key(i)));
+    }
+  }
+
+  @Test
+  public void testRemove() {
+    ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer> cache = getCache(true, -1, 10);
+    cache.put(key(1), key(1));
+    assertFalse(cache.remove(key(1), key(2)));
+    assertEquals(key(1), cache.get(key(1)));
+    assertTrue(cache.remove(key(1), key(1)));
+    assertNull(cache.get(key(1)));
+    assertEquals(0, cache.getNumManagedBytes());
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestExternalSorter {
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static final Comparator<Long> COMPARATOR = new Comparator<Long>() {
+    @Override
+    public int compare(Long a, Long b) {
+      return Long.compare(a, b);
+    }
+  };
+
+  private static final ExternalSorter.Serializer<Long> SERIALIZER = new ExternalSorter.Serializer<Long>() {
+    @Override
+    public void write(Long item, DataOutput output) throws IOException {
+      output.writeLong(item);
+    }
+
+    @Override
+    public Long read(DataInput input) throws IOException {
+      return input.readLong();
+    }
+
+    @Override
+    public long getNumBytes(Long item) {
+      return 8;
+    }
+  };
+
+  @Test
+  public void testInMemory() throws IOException {
+    File tmpDir = tmpFolder.newFolder();
+    ExternalSorter<Long> sorter = new ExternalSorter<Long>(COMPARATOR, SERIALIZER, tmpDir, 1 << 20);
+    List<Long> expected = addRandomItems(sorter, 1000);
+    sorter.sort();
+    assertEquals(0, sorter.getNumRuns());
+    checkSorted(sorter, expected);
+    sorter.close();
+  }
+
+  @Test
+  public void testRuns() throws IOException {
+    File tmpDir = tmpFolder.newFolder();
+    // Runs of 100 items
+    ExternalSorter<Long> sorter = new ExternalSorter<Long>(COMPARATOR, SERIALIZER, tmpDir, 800);
+    List<Long> expected = addRandomItems(sorter, 1050);
+    sorter.sort();
+    assertEquals(11, sorter.getNumRuns());
+    assertEquals(11, tmpDir.listFiles().length);
+    checkSorted(sorter, expected);
+    sorter.close();
+    // Runs are deleted
+    assertEquals(0, tmpDir.listFiles().length);
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    ExternalSorter<Long> sorter = new ExternalSorter<Long>(COMPARATOR, SERIALIZER, tmpFolder.newFolder(), 800);
+    sorter.sort();
+    assertNull(sorter.next());
+    sorter.close();
+  }
+
+  private List<Long> addRandomItems(ExternalSorter<Long> sorter, int numItems) throws IOException {
+    Random random = new Random(0);
+    List<Long> result = new ArrayList<Long>();
+    for (int i = 0; i < numItems; ++i) {
+      // Include duplicates
+      long item = random.nextInt(numItems / 2);
+      sorter.add(item);
+      result.add(item);
+    }
+    assertEquals(numItems, sorter.getNumItems());
+    Collections.sort(result);
+    return result;
+  }
+
+  private void checkSorted(ExternalSorter<Long> sorter, List<Long> expected) throws IOException {
+    for (Long item : expected) {
+      assertEquals(item, sorter.next());
+    }
+    assertNull(sorter.next());
+  }
+}
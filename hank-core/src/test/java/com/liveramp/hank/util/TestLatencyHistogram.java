@@ -0,0 +1,149 @@
+/**
+ *  Copyright 2013 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLatencyHistogram {
+
+  @Test
+  public void testBuckets() {
+    for (long value = 0; value < 1 << 20; ++value) {
+      int bucketIndex = LatencyHistogram.getBucketIndex(value);
+      assertTrue(LatencyHistogram.getBucketLowestValue(bucketIndex) <= value);
+      assertTrue(LatencyHistogram.getBucketHighestValue(bucketIndex) >= value);
+    }
+    assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.getBucketIndex(LatencyHistogram.MAX_VALUE));
+    // Bucket widths are within the expected relative precision
+    for (int i = 2 * LatencyHistogram.SUB_BUCKET_COUNT; i < LatencyHistogram.NUM_BUCKETS; ++i) {
+      long lowestValue = LatencyHistogram.getBucketLowestValue(i);
+      long width = LatencyHistogram.getBucketHighestValue(i) - lowestValue + 1;
+      assertTrue(width <= lowestValue / LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    Random random = new Random(0);
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] values = new long[100000];
+    for (int i = 0; i < values.length; ++i) {
+      // Long tailed distribution
+      values[i] = (long)(100000 * Math.exp(3 * random.nextGaussian()));
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    assertEquals(values.length, histogram.getTotalCount());
+    assertEquals(values[0], histogram.getMinimum());
+    assertEquals(values[values.length - 1], histogram.getMaximum());
+    for (double percentile : new double[]{10, 50, 90, 99, 99.9, 99.99}) {
+      long expected = values[(int)Math.ceil(percentile / 100 * values.length) - 1];
+      long actual = histogram.getValueAtPercentile(percentile);
+      assertTrue(actual >= expected);
+      assertTrue(actual <= expected + expected / LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+    assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getTotalCount());
+    assertEquals(0, histogram.getMinimum());
+    assertEquals(0, histogram.getMaximum());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testRecorder() throws InterruptedException {
+    final LatencyRecorder recorder = new LatencyRecorder();
+    final int numThreads = 4;
+    final int numValuesPerThread = 10000;
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; ++i) {
+      final int threadId = i;
+      threads[i] = new Thread(() -> {
+        for (int j = 1; j <= numValuesPerThread; ++j) {
+          recorder.record(j * (threadId + 1), 2);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    LatencyHistogram histogram = recorder.getIntervalHistogram();
+    assertEquals(numThreads * numValuesPerThread, histogram.getTotalCount());
+    assertEquals(2 * numThreads * numValuesPerThread, recorder.getIntervalUnderlyingCount());
+    assertEquals(1, histogram.getMinimum());
+    assertEquals(numThreads * numValuesPerThread, histogram.getMaximum());
+
+    // Next interval only contains new values
+    recorder.record(42);
+    histogram = recorder.getIntervalHistogram();
+    assertEquals(1, histogram.getTotalCount());
+    assertEquals(42, histogram.getMinimum());
+    assertEquals(42, histogram.getMaximum());
+    assertEquals(42, histogram.getTotalValue());
+    assertEquals(0, recorder.getIntervalHistogram().getTotalCount());
+  }
+
+  @Test
+  public void testRecorderFootprintIsBounded() throws InterruptedException {
+    final LatencyRecorder recorder = new LatencyRecorder(4);
+    assertEquals(4, recorder.getNumStripes());
+    assertTrue(new LatencyRecorder(1000).getNumStripes() <= LatencyRecorder.MAX_NUM_STRIPES);
+
+    // Many live threads share the same stripes
+    final int numThreads = 200;
+    final CountDownLatch recorded = new CountDownLatch(numThreads);
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; ++i) {
+      threads[i] = new Thread(() -> {
+        recorder.record(10);
+        recorded.countDown();
+        try {
+          done.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      threads[i].start();
+    }
+    recorded.await();
+    assertEquals(4, recorder.getNumStripes());
+    LatencyHistogram histogram = recorder.getIntervalHistogram();
+    assertEquals(numThreads, histogram.getTotalCount());
+    assertEquals(10 * numThreads, histogram.getTotalValue());
+    done.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    recorder.record(30);
+    histogram = recorder.getIntervalHistogram();
+    assertEquals(1, histogram.getTotalCount());
+    assertEquals(30, histogram.getTotalValue());
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestReadAheadInputStream {
+
+  @Test
+  public void testRead() throws Exception {
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte)i;
+    }
+    InputStream stream = new ReadAheadInputStream(new ByteArrayInputStream(data), 64, 2, "test");
+    byte[] read = new byte[data.length];
+    int length = 0;
+    int numBytes;
+    while ((numBytes = stream.read(read, length, Math.min(100, read.length - length))) > 0) {
+      length += numBytes;
+    }
+    assertEquals(data.length, length);
+    assertArrayEquals(data, read);
+    assertEquals(-1, stream.read());
+    stream.close();
+  }
+
+  @Test
+  public void testSourceFailures() throws Exception {
+    checkSourceFailure(new IOException("I/O failure"));
+    checkSourceFailure(new IllegalStateException("Runtime failure"));
+    checkSourceFailure(new AssertionError("Error"));
+  }
+
+  // The failure of the source is passed to the consumer rather than leaving it waiting for data
+  private void checkSourceFailure(final Throwable failure) throws Exception {
+    InputStream source = new InputStream() {
+      private int numBytesRead = 0;
+
+      @Override
+      public int read() throws IOException {
+        if (numBytesRead == 100) {
+          if (failure instanceof IOException) {
+            throw (IOException)failure;
+          } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+          } else {
+            throw (Error)failure;
+          }
+        }
+        return numBytesRead++ & 0xff;
+      }
+    };
+    InputStream stream = new ReadAheadInputStream(source, 64, 2, "test");
+    int numBytesRead = 0;
+    try {
+      while (stream.read() != -1) {
+        ++numBytesRead;
+      }
+      fail("Should have failed");
+    } catch (IOException e) {
+      assertSame(failure, e.getCause());
+    }
+    assertEquals(64, numBytesRead);
+    stream.close();
+  }
+}
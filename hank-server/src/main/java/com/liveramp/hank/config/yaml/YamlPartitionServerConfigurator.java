@@ -40,6 +40,9 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
   public static final String UPDATE_DAEMON_SECTION_KEY = "update_daemon";
   public static final String NUM_CONCURRENT_UPDATES_KEY = "num_concurrent_updates";
   public static final String MAX_CONCURRENT_UPDATES_PER_DATA_DIRECTORY_KEY = "max_concurrent_updates_per_data_directory";
+  public static final String ONLINE_UPDATE_KEY = "online_update";
+  public static final String NUM_CONCURRENT_FETCHES_KEY = "num_concurrent_fetches";
+  public static final String MAX_CONCURRENT_FETCHES_PER_DATA_DIRECTORY_KEY = "max_concurrent_fetches_per_data_directory";
   public static final String NUM_CONCURRENT_GET_BULK_TASKS = "num_concurrent_get_bulk_tasks";
   public static final String GET_BULK_TASK_SIZE = "get_bulk_task_size";
   public static final String GET_TIMER_AGGREGATOR_WINDOW_KEY = "get_timer_aggregator_window";
@@ -47,6 +50,9 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
   public static final String BUFFER_REUSE_MAX_SIZE = "buffer_reuse_max_size";
   public static final String CACHE_NUM_BYTES_CAPACITY = "cache_num_bytes_capacity";
   public static final String CACHE_NUM_ITEMS_CAPACITY = "cache_num_items_capacity";
+  public static final String SHARED_CACHE = "shared_cache";
+  public static final String OFF_HEAP_CACHE_NUM_BYTES_CAPACITY = "off_heap_cache_num_bytes_capacity";
+  public static final String BLOCK_CACHE_NUM_BYTES_CAPACITY = "block_cache_num_bytes_capacity";
   public static final String ENVIRONMENT_FLAGS = "environment_flags";
 
   public YamlPartitionServerConfigurator(String path) throws IOException,
@@ -131,6 +137,12 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
         GET_UPDATE_FAILURE_COOLDOWN_KEY);
   }
 
+  @Override
+  public boolean isOnlineUpdateEnabled() {
+    Boolean onlineUpdate = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, ONLINE_UPDATE_KEY);
+    return onlineUpdate != null && onlineUpdate;
+  }
+
   @Override
   public Map<String, String> getEnvironmentFlags() {
     List<String> variables = getOptionalStringList(PARTITION_SERVER_SECTION_KEY, ENVIRONMENT_FLAGS);
@@ -170,6 +182,26 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
     return getLong(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, CACHE_NUM_ITEMS_CAPACITY);
   }
 
+  @Override
+  public boolean isSharedCacheEnabled() {
+    Boolean sharedCache = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, SHARED_CACHE);
+    return sharedCache != null && sharedCache;
+  }
+
+  @Override
+  public long getOffHeapCacheNumBytesCapacity() {
+    Long capacity = getOptionalLong(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY,
+        OFF_HEAP_CACHE_NUM_BYTES_CAPACITY);
+    return capacity == null ? 0 : capacity;
+  }
+
+  @Override
+  public long getBlockCacheNumBytesCapacity() {
+    Long capacity = getOptionalLong(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY,
+        BLOCK_CACHE_NUM_BYTES_CAPACITY);
+    return capacity == null ? 0 : capacity;
+  }
+
   @Override
   public int getNumConcurrentUpdates() {
     return getInteger(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, NUM_CONCURRENT_UPDATES_KEY);
@@ -179,4 +211,17 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
   public int getMaxConcurrentUpdatesPerDataDirectory() {
     return getInteger(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, MAX_CONCURRENT_UPDATES_PER_DATA_DIRECTORY_KEY);
   }
+
+  @Override
+  public int getNumConcurrentFetches() {
+    Integer numConcurrentFetches = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, NUM_CONCURRENT_FETCHES_KEY);
+    return numConcurrentFetches == null ? 0 : numConcurrentFetches;
+  }
+
+  // Defaults to the number of concurrent fetches of the host
+  @Override
+  public int getMaxConcurrentFetchesPerDataDirectory() {
+    Integer maxConcurrentFetches = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, MAX_CONCURRENT_FETCHES_PER_DATA_DIRECTORY_KEY);
+    return maxConcurrentFetches == null ? getNumConcurrentFetches() : maxConcurrentFetches;
+  }
 }
@@ -20,14 +20,15 @@ import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.coordinator.HostDomain;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.partitioner.Murmur128Partitioner;
 import com.liveramp.hank.partitioner.Partitioner;
 import com.liveramp.hank.storage.ReaderResult;
-import com.liveramp.hank.util.HankTimer;
 import com.liveramp.hank.util.HankTimerEventAggregator;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class that manages accessing data on behalf of a particular Domain.
@@ -38,7 +39,8 @@ public class DomainAccessor {
 
   private static final Logger LOG = LoggerFactory.getLogger(DomainAccessor.class);
   private final HostDomain hostDomain;
-  private final PartitionAccessor[] partitionAccessors;
+  // Partition accessors can be swapped while serving, see swapPartitionAccessor()
+  private final AtomicReferenceArray<PartitionAccessor> partitionAccessors;
   private final Partitioner partitioner;
   private final HankTimerEventAggregator getRequestsTimerAggregator;
 
@@ -47,25 +49,53 @@ public class DomainAccessor {
                  Partitioner partitioner,
                  int getTimerAggregatorWindow) throws IOException {
     this.hostDomain = hostDomain;
-    this.partitionAccessors = partitionAccessors;
+    this.partitionAccessors = new AtomicReferenceArray<PartitionAccessor>(partitionAccessors);
     this.partitioner = partitioner;
     this.getRequestsTimerAggregator = new HankTimerEventAggregator("GET " + hostDomain.getDomain().getName(),
         getTimerAggregatorWindow);
   }
 
   public HankResponse get(ByteBuffer key, ReaderResult result) throws IOException {
-    HankTimer timer = getRequestsTimerAggregator.getTimer();
+    return get(key, result, null);
+  }
+
+  /**
+   * @param reusableResponse if not null, returned with its value set when the key is found instead
+   *                         of allocating a new response
+   */
+  public HankResponse get(ByteBuffer key, ReaderResult result, HankResponse reusableResponse) throws IOException {
+    long startNanos = System.nanoTime();
     try {
-      int partition = partitioner.partition(key, partitionAccessors.length);
-      PartitionAccessor partitionAccessor = partitionAccessors[partition];
-      if (partitionAccessor == null) {
-        LOG.error("Failed to perform get because of an Exception: wrong host for domain: " + hostDomain.getDomain().getName()
-            + ", partition: " + partition + ", key: " + BytesUtils.bytesToHexString(key) + ", response: " + WRONG_HOST);
-        return WRONG_HOST;
+      int partition;
+      if (partitioner instanceof Murmur128Partitioner) {
+        if (result.getKeyHash128().isFor(key)) {
+          // Key was hashed by the client
+          partition = Murmur128Partitioner.getPartition(result.getKeyHash128(), partitionAccessors.length());
+        } else {
+          // Keep the hash of the key so that the reader does not compute it again
+          partition = ((Murmur128Partitioner)partitioner).partition(key, partitionAccessors.length(), result.getKeyHash128());
+        }
+      } else {
+        result.getKeyHash128().clear();
+        partition = partitioner.partition(key, partitionAccessors.length());
+      }
+      PartitionAccessor partitionAccessor;
+      // Retry if the accessor gets swapped out and shut down before it could be acquired
+      do {
+        partitionAccessor = partitionAccessors.get(partition);
+        if (partitionAccessor == null) {
+          LOG.error("Failed to perform get because of an Exception: wrong host for domain: " + hostDomain.getDomain().getName()
+              + ", partition: " + partition + ", key: " + BytesUtils.bytesToHexString(key) + ", response: " + WRONG_HOST);
+          return WRONG_HOST;
+        }
+      } while (!partitionAccessor.acquire());
+      try {
+        return partitionAccessor.get(key, result, reusableResponse);
+      } finally {
+        partitionAccessor.release();
       }
-      return partitionAccessor.get(key, result);
     } finally {
-      getRequestsTimerAggregator.add(timer);
+      getRequestsTimerAggregator.addDuration(Math.abs(System.nanoTime() - startNanos));
     }
   }
 
@@ -77,9 +107,31 @@ public class DomainAccessor {
     return hostDomain;
   }
 
+  public int getNumPartitions() {
+    return partitionAccessors.length();
+  }
+
+  public PartitionAccessor getPartitionAccessor(int partitionNumber) {
+    return partitionAccessors.get(partitionNumber);
+  }
+
+  /**
+   * Atomically replace the accessor of the given partition. The previous accessor (if any) is shut down
+   * and its Reader gets closed once all in-flight requests using it have completed.
+   *
+   * @param partitionAccessor new accessor, or null to stop serving the partition
+   */
+  public void swapPartitionAccessor(int partitionNumber, PartitionAccessor partitionAccessor) {
+    PartitionAccessor previousPartitionAccessor = partitionAccessors.getAndSet(partitionNumber, partitionAccessor);
+    if (previousPartitionAccessor != null) {
+      previousPartitionAccessor.shutDown();
+    }
+  }
+
   public void shutDown() {
     // Shutdown partition accessors
-    for (PartitionAccessor partitionAccessor : partitionAccessors) {
+    for (int i = 0; i < partitionAccessors.length(); ++i) {
+      PartitionAccessor partitionAccessor = partitionAccessors.get(i);
       if (partitionAccessor != null) {
         partitionAccessor.shutDown();
       }
@@ -88,7 +140,8 @@ public class DomainAccessor {
 
   public RuntimeStatisticsAggregator getRuntimeStatistics() {
     RuntimeStatisticsAggregator runtimeStatisticsAggregator = new RuntimeStatisticsAggregator();
-    for (PartitionAccessor partitionAccessor : partitionAccessors) {
+    for (int i = 0; i < partitionAccessors.length(); ++i) {
+      PartitionAccessor partitionAccessor = partitionAccessors.get(i);
       if (partitionAccessor != null) {
         runtimeStatisticsAggregator.add(partitionAccessor.getRuntimeStatistics());
       }
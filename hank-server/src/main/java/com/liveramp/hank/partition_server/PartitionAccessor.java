@@ -18,6 +18,9 @@ package com.liveramp.hank.partition_server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
@@ -25,13 +28,16 @@ import com.liveramp.hank.coordinator.HostDomainPartition;
 import com.liveramp.hank.generated.HankResponse;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
-import com.liveramp.hank.util.AtomicLongCollection;
 import com.liveramp.hank.util.HankTimer;
 
 /**
  * Wrapper class that stores: 1. HostDomainPartition 2. Reader: The Reader
- * associated with the HostDomainPartition 3. AtomicLongCollection: counters
- * for number of requests and hits in a given time window
+ * associated with the HostDomainPartition 3. Counters for number of requests
+ * and hits in a given time window
+ *
+ * PartitionAccessors are reference counted so that they can be swapped out while
+ * serving: the Reader is closed once the accessor has been shut down and all
+ * in-flight requests that acquired it have released it.
  */
 public class PartitionAccessor {
 
@@ -41,12 +47,17 @@ public class PartitionAccessor {
   private final HostDomainPartition partition;
   private final Reader reader;
   private final HankTimer windowTimer = new HankTimer();
-  //0: num requests
-  //1: num hits
-  //2: responses data num bytes
-  //3: num L1 cache hits
-  //4: num L2 cache hits
-  private final AtomicLongCollection countersWindow;
+  // Counters are updated on every GET without allocating or locking
+  private final LongAdder numRequestsInWindow = new LongAdder();
+  private final LongAdder numHitsInWindow = new LongAdder();
+  private final LongAdder responsesNumBytesInWindow = new LongAdder();
+  private final LongAdder numL1CacheHitsInWindow = new LongAdder();
+  private final LongAdder numL2CacheHitsInWindow = new LongAdder();
+  private final LongAdder numBlockCacheHitsInWindow = new LongAdder();
+  private final LongAdder numBlockCacheMissesInWindow = new LongAdder();
+  // Number of in-flight requests, plus one for the owner until shutDown() is called
+  private final AtomicInteger referenceCount = new AtomicInteger(1);
+  private final AtomicBoolean isShutDown = new AtomicBoolean(false);
 
   public PartitionAccessor(HostDomainPartition partition, Reader reader) {
     if (reader == null) {
@@ -55,24 +66,64 @@ public class PartitionAccessor {
     this.partition = partition;
     this.reader = reader;
     windowTimer.restart();
-    countersWindow = new AtomicLongCollection(5, new long[]{0, 0, 0, 0, 0});
   }
 
   public HostDomainPartition getHostDomainPartition() {
     return partition;
   }
 
+  /**
+   * @return true if the accessor was acquired and can be used until release() is called,
+   * false if it has already been shut down
+   */
+  public boolean acquire() {
+    while (true) {
+      int count = referenceCount.get();
+      if (count <= 0) {
+        return false;
+      }
+      if (referenceCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  public void release() {
+    if (referenceCount.decrementAndGet() == 0) {
+      closeReader();
+    }
+  }
+
   public HankResponse get(ByteBuffer key, ReaderResult result) throws IOException {
-    // Increment requests counter
+    return get(key, result, null);
+  }
+
+  // When not null, reusableResponse is returned with its value set to the result's buffer if the key is found
+  public HankResponse get(ByteBuffer key, ReaderResult result, HankResponse reusableResponse) throws IOException {
     LOG.trace("Partition GET");
     reader.get(key, result);
-    int l1CacheHit = result.getL1CacheHit() ? 1 : 0;
-    int l2CacheHit = result.getL2CacheHit() ? 1 : 0;
+    // Increment requests counter
+    numRequestsInWindow.increment();
+    if (result.getL1CacheHit()) {
+      numL1CacheHitsInWindow.increment();
+    }
+    if (result.getL2CacheHit()) {
+      numL2CacheHitsInWindow.increment();
+    }
+    if (result.getBlockCacheHit()) {
+      numBlockCacheHitsInWindow.increment();
+    } else if (result.getBlockCacheMiss()) {
+      numBlockCacheMissesInWindow.increment();
+    }
     if (result.isFound()) {
-      countersWindow.increment(1, 1, result.getBuffer().remaining(), l1CacheHit, l2CacheHit);
+      numHitsInWindow.increment();
+      responsesNumBytesInWindow.add(result.getBuffer().remaining());
+      if (reusableResponse != null) {
+        reusableResponse.set_value(result.getBuffer());
+        return reusableResponse;
+      }
       return HankResponse.value(result.getBuffer());
     } else {
-      countersWindow.increment(1, 0, 0, l1CacheHit, l2CacheHit);
       return NOT_FOUND;
     }
   }
@@ -81,13 +132,14 @@ public class PartitionAccessor {
     // Copy duration and counts
     long windowDurationNanos = windowTimer.getDuration();
     windowTimer.restart();
-    // Get atomic counters
-    long[] counters = countersWindow.getAsArrayAndSet(0, 0, 0, 0, 0);
-    long numRequestsInWindow = counters[0];
-    long numHitsInWindow = counters[1];
-    long responsesNumBytesInWindow = counters[2];
-    long numL1CacheHitsInWindow = counters[3];
-    long numL2CacheHitsInWindow = counters[4];
+    // Get and reset counters
+    long numRequestsInWindow = this.numRequestsInWindow.sumThenReset();
+    long numHitsInWindow = this.numHitsInWindow.sumThenReset();
+    long responsesNumBytesInWindow = this.responsesNumBytesInWindow.sumThenReset();
+    long numL1CacheHitsInWindow = this.numL1CacheHitsInWindow.sumThenReset();
+    long numL2CacheHitsInWindow = this.numL2CacheHitsInWindow.sumThenReset();
+    long numBlockCacheHitsInWindow = this.numBlockCacheHitsInWindow.sumThenReset();
+    long numBlockCacheMissesInWindow = this.numBlockCacheMissesInWindow.sumThenReset();
     double throughput = 0;
     double responseDataThroughput = 0;
     if (windowDurationNanos != 0) {
@@ -101,10 +153,20 @@ public class PartitionAccessor {
         responseDataThroughput,
         numL1CacheHitsInWindow,
         numL2CacheHitsInWindow,
-        reader.getCacheStatistics());
+        numBlockCacheHitsInWindow,
+        numBlockCacheMissesInWindow,
+        reader.getCacheStatistics(),
+        reader.getFilterStatistics());
   }
 
+  // The Reader is closed right away if there are no in-flight requests, or when the last one completes
   public void shutDown() {
+    if (isShutDown.compareAndSet(false, true)) {
+      release();
+    }
+  }
+
+  private void closeReader() {
     if (reader != null) {
       try {
         reader.close();
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2011 LiveRamp
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liveramp.hank.partition_server;
+
+import java.io.IOException;
+
+import com.liveramp.hank.coordinator.HostDomain;
+import com.liveramp.hank.coordinator.HostDomainPartition;
+
+/**
+ * Swaps the Reader of a single partition while the partition server keeps serving.
+ * Used by the UpdateManager when performing online updates.
+ */
+public interface PartitionReloader {
+
+  /**
+   * Open a Reader for the given partition at the given version and atomically start serving from it.
+   * The Reader that was previously serving the partition (if any) is closed once in-flight requests complete.
+   *
+   * @param versionNumber version to serve, or null to stop serving the partition
+   */
+  void reloadPartition(HostDomain hostDomain,
+                       HostDomainPartition partition,
+                       Integer versionNumber,
+                       DiskPartitionAssignment assignment) throws IOException;
+}
@@ -87,6 +87,7 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
   private Thread offlineWatcherThread;
 
   private TThreadedSelectorServer dataServer;
+  private volatile IfaceWithShutdown handler;
   private Thread dataServerThread;
   private boolean waitForDataServer;
 
@@ -148,7 +149,11 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     }
     host.setCommandQueueChangeListener(this);
     host.setCurrentCommandChangeListener(this);
-    host.setEnvironmentFlags(configurator.getEnvironmentFlags());
+    Map<String, String> environmentFlags = new HashMap<String, String>(configurator.getEnvironmentFlags());
+    if (configurator.isOnlineUpdateEnabled()) {
+      environmentFlags.put(Hosts.ONLINE_UPDATE_ENVIRONMENT_FLAG, Boolean.TRUE.toString());
+    }
+    host.setEnvironmentFlags(environmentFlags);
 
     // Start the update filesystem statistics thread
     updateFilesystemStatisticsRunnable = new UpdateFilesystemStatisticsRunnable();
@@ -277,6 +282,10 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     return new UpdateManager(configurator, host, ringGroup);
   }
 
+  protected IUpdateManager getOnlineUpdateManager(PartitionReloader partitionReloader) throws IOException {
+    return new UpdateManager(configurator, host, ringGroup, partitionReloader);
+  }
+
   @Override
   public synchronized void onCommandQueueChange(Host host) {
     LOG.info("Command queue changed.");
@@ -387,9 +396,18 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     switch (state) {
       case IDLE:
         host.setState(HostState.UPDATING); // In case of exception, server will stop and state will be coherent.
-        executeUpdate();
+        executeUpdate(null);
         // Next command is set by the updater thread
         break;
+      case SERVING:
+        // Online update: keep serving and swap partitions as they get updated
+        IfaceWithShutdown currentHandler = handler;
+        if (configurator.isOnlineUpdateEnabled() && currentHandler instanceof PartitionReloader) {
+          executeUpdate((PartitionReloader)currentHandler);
+          // Next command is set by the updater thread
+          break;
+        }
+        // Otherwise, fall through and ignore the command
       default:
         LOG.info(ignoreIncompatibleCommandMessage(HostCommand.EXECUTE_UPDATE, state));
         host.nextCommand(); // In case of exception, server will stop and state will be coherent.
@@ -409,7 +427,8 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     }
   }
 
-  private void executeUpdate() {
+  // When partitionReloader is not null, the update is performed online and the host keeps serving
+  private void executeUpdate(final PartitionReloader partitionReloader) {
     if (updateThread != null) {
       LOG.error("Update got called while one is already running!");
       return;
@@ -418,7 +437,13 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
       @Override
       public void run() {
         try {
-          IUpdateManager updateManager = getUpdateManager();
+          IUpdateManager updateManager;
+          if (partitionReloader == null) {
+            updateManager = getUpdateManager();
+          } else {
+            LOG.info("Performing online update.");
+            updateManager = getOnlineUpdateManager(partitionReloader);
+          }
           updateManager.update();
           LOG.info("Update succeeded.");
         } catch (Throwable e) {
@@ -434,11 +459,13 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
             //  no op
           }
         }
-        // Go back to IDLE even in case of failure
-        try {
-          setStateSynchronized(HostState.IDLE); // In case of exception, server will stop and state will be coherent.
-        } catch (IOException e) {
-          LOG.error("Failed to record state change.", e);
+        // Go back to IDLE even in case of failure. Online updates keep serving.
+        if (partitionReloader == null) {
+          try {
+            setStateSynchronized(HostState.IDLE); // In case of exception, server will stop and state will be coherent.
+          } catch (IOException e) {
+            LOG.error("Failed to record state change.", e);
+          }
         }
 
         // Signal that update thread is done.
@@ -466,7 +493,6 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
   }
 
   protected void startThriftServer() throws TTransportException, IOException, InterruptedException {
-    IfaceWithShutdown handler = null;
     try {
       // Set up the service handler
       handler = getHandler();
@@ -494,6 +520,7 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
       if (handler != null) {
         LOG.debug("Shutting down Partition Server handler.");
         handler.shutDown();
+        handler = null;
       }
     }
   }
@@ -736,7 +763,7 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
         com.liveramp.hank.generated.PartitionServer.Client client = new com.liveramp.hank.generated.PartitionServer.Client(proto);
         // Perform queries
         for (int i = 0; i < NUM_WARMUP_QUERIES_PER_THREAD; i++) {
-          client.get(0, ByteBuffer.wrap(new byte[0]));
+          client.get(0, ByteBuffer.wrap(new byte[0]), null);
         }
       } catch (TException e) {
         LOG.error("Failed to warm up data server", e);
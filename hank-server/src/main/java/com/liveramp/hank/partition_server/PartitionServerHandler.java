@@ -18,6 +18,7 @@ package com.liveramp.hank.partition_server;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,7 +35,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.config.BaseReaderConfigurator;
 import com.liveramp.hank.config.PartitionServerConfigurator;
+import com.liveramp.hank.config.ReaderConfigurator;
 import com.liveramp.hank.coordinator.Coordinator;
 import com.liveramp.hank.coordinator.Domain;
 import com.liveramp.hank.coordinator.DomainAndVersion;
@@ -48,6 +51,11 @@ import com.liveramp.hank.coordinator.Ring;
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.hasher.Hash128;
+import com.liveramp.hank.storage.FilterStatistics;
+import com.liveramp.hank.storage.HostCacheManager;
+import com.liveramp.hank.storage.OffHeapCache;
+import com.liveramp.hank.storage.OffHeapCachingReader;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
 import com.liveramp.hank.storage.StorageEngine;
@@ -56,7 +64,7 @@ import com.liveramp.hank.util.UpdateStatisticsRunnable;
 /**
  * Implements the actual data serving logic of the PartitionServer
  */
-public class PartitionServerHandler implements IfaceWithShutdown {
+public class PartitionServerHandler implements IfaceWithShutdown, PartitionReloader {
 
   private final static Logger LOG = LoggerFactory.getLogger(PartitionServerHandler.class);
 
@@ -69,7 +77,22 @@ public class PartitionServerHandler implements IfaceWithShutdown {
   private static final TimeUnit GET_BULK_TASK_EXECUTOR_KEEP_ALIVE_UNIT = TimeUnit.DAYS;
 
   private static final ReaderResultThreadLocal readerResultThreadLocal = new ReaderResultThreadLocal();
-  private final DomainAccessor[] domainAccessors;
+  // Response returned by GET requests that found their key. Its value is the thread local result
+  // buffer, so it is only valid until the next GET on the same thread, which is the case since the
+  // server serializes the response on the thread that handled the request.
+  private static final HankResponseThreadLocal responseThreadLocal = new HankResponseThreadLocal();
+  // Copy-on-write so that domains can be added by online updates without locking the GET path
+  private volatile DomainAccessor[] domainAccessors;
+  private final PartitionServerConfigurator configurator;
+  // Number of partitions served by this host, updated when partitions are added or removed online
+  private int numTotalPartitions;
+  // Value cache shared by all Readers, null when disabled
+  private final OffHeapCache offHeapCache;
+  // Reader cache shared by all Readers, null when each Reader has its own cache
+  private final HostCacheManager hostCacheManager;
+  // Cache of decompressed blocks shared by all Readers, null when disabled
+  private final HostCacheManager blockCacheManager;
+  private boolean isShutDown = false;
   private final ThreadPoolExecutor getBulkTaskExecutor;
   private static final long GET_BULK_TASK_EXECUTOR_AWAIT_TERMINATION_VALUE = 1;
   private static final TimeUnit GET_BULK_TASK_EXECUTOR_AWAIT_TERMINATION_UNIT = TimeUnit.SECONDS;
@@ -83,6 +106,7 @@ public class PartitionServerHandler implements IfaceWithShutdown {
   public PartitionServerHandler(PartitionServerAddress address,
                                 PartitionServerConfigurator configurator,
                                 Coordinator coordinator) throws IOException {
+    this.configurator = configurator;
 
     // Create the GET executor
     getBulkTaskExecutor = new ThreadPoolExecutor(
@@ -96,6 +120,13 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     getBulkTaskSize = configurator.getGetBulkTaskSize();
     bufferReuseMaxSize = configurator.getBufferReuseMaxSize();
 
+    if (configurator.getOffHeapCacheNumBytesCapacity() > 0) {
+      LOG.info("Allocating off heap cache of " + configurator.getOffHeapCacheNumBytesCapacity() + " bytes");
+      offHeapCache = new OffHeapCache(configurator.getOffHeapCacheNumBytesCapacity());
+    } else {
+      offHeapCache = null;
+    }
+
     // Prestart core threads
     getBulkTaskExecutor.prestartAllCoreThreads();
 
@@ -133,6 +164,24 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       }
     }
     LOG.info("Detected " + numTotalPartitions + " loadable partitions for " + host);
+    this.numTotalPartitions = numTotalPartitions;
+
+    if (configurator.isSharedCacheEnabled()) {
+      LOG.info("Using a cache shared by all partitions of " + configurator.getCacheNumBytesCapacity()
+          + " bytes and " + configurator.getCacheNumItemsCapacity() + " items");
+      hostCacheManager = new HostCacheManager(configurator.getCacheNumBytesCapacity(),
+          configurator.getCacheNumItemsCapacity(), numTotalPartitions);
+    } else {
+      hostCacheManager = null;
+    }
+
+    if (configurator.getBlockCacheNumBytesCapacity() > 0) {
+      LOG.info("Using a cache of decompressed blocks shared by all partitions of "
+          + configurator.getBlockCacheNumBytesCapacity() + " bytes");
+      blockCacheManager = new HostCacheManager(configurator.getBlockCacheNumBytesCapacity(), 0, numTotalPartitions);
+    } else {
+      blockCacheManager = null;
+    }
 
     // Determine the max domain id so we can bound the arrays
     int maxDomainId = 0;
@@ -142,7 +191,7 @@ public class PartitionServerHandler implements IfaceWithShutdown {
         maxDomainId = domainId;
       }
     }
-    domainAccessors = new DomainAccessor[maxDomainId + 1];
+    DomainAccessor[] domainAccessors = new DomainAccessor[maxDomainId + 1];
 
     // Loop over the domains and get set up
     List<Exception> exceptions = new ArrayList<Exception>();
@@ -184,42 +233,18 @@ public class PartitionServerHandler implements IfaceWithShutdown {
           continue;
         }
 
-        Reader reader;
         try {
-          reader = engine.getReader(configurator.getReaderConfigurator(numTotalPartitions), partition.getPartitionNumber(), assignment);
-        } catch (IOException | IllegalArgumentException e) {
-          // Something went wrong when loading this partition's Reader. Set it deletable and signal failure.
-          if (!partition.isDeletable()) {
-            partition.setDeletable(true);
-          }
-          final String msg = String.format("Could not load Reader for partition #%d of domain %s because of an exception.",
-              partition.getPartitionNumber(), domain.getName());
-          LOG.error(msg, e);
-          exceptions.add(new IOException(msg, e));
-          continue;
-        }
-        // Check that Reader's version number and current domain group version number match
-        if (reader.getVersionNumber() != null && !reader.getVersionNumber().equals(partition.getCurrentDomainVersion())) {
-          // Something went wrong when loading this partition's Reader. Set it deletable and signal failure.
-          partition.setDeletable(true);
-          final String msg = String.format("Could not load Reader for partition #%d of domain %s because version numbers reported by the Reader (%d) and by metadata (%d) differ.",
-              partition.getPartitionNumber(), domain.getName(), reader.getVersionNumber(), partition.getCurrentDomainVersion());
-          LOG.error(msg);
-          exceptions.add(new IOException(msg));
-          continue;
-        }
-        LOG.info(String.format("Loaded Reader for domain %s, partition #%d",
-            domain.getName(), partition.getPartitionNumber()));
-        partitionAccessors[partition.getPartitionNumber()] = new PartitionAccessor(partition, reader);
-        // Loading succeeded, if the partition was deletable, it should not be
-        if (partition.isDeletable()) {
-          partition.setDeletable(false);
+          partitionAccessors[partition.getPartitionNumber()] =
+              loadPartitionAccessor(domain, partition, partition.getCurrentDomainVersion(), assignment, true);
+        } catch (IOException e) {
+          exceptions.add(e);
         }
       }
       // configure and store the DomainAccessors
       domainAccessors[domainId] = new DomainAccessor(hostDomain, partitionAccessors, domain.getPartitioner(),
           configurator.getGetTimerAggregatorWindow());
     }
+    this.domainAccessors = domainAccessors;
     // If there was a failure, abort and skip current command.
     if (!exceptions.isEmpty()) {
       host.nextCommand();
@@ -231,8 +256,129 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     updateRuntimeStatisticsThread.start();
   }
 
+  /**
+   * @param updateDeletable when true, the partition is set deletable if its Reader can not be loaded, and not
+   *                        deletable otherwise. Online reloads leave it alone since the partition's previous
+   *                        Reader keeps serving when the new one can not be loaded.
+   */
+  private PartitionAccessor loadPartitionAccessor(Domain domain,
+                                                  HostDomainPartition partition,
+                                                  Integer versionNumber,
+                                                  DiskPartitionAssignment assignment,
+                                                  boolean updateDeletable) throws IOException {
+    Reader reader;
+    try {
+      reader = domain.getStorageEngine().getReader(getReaderConfigurator(), partition.getPartitionNumber(), assignment);
+    } catch (IOException | IllegalArgumentException e) {
+      // Something went wrong when loading this partition's Reader. Set it deletable and signal failure.
+      if (updateDeletable && !partition.isDeletable()) {
+        partition.setDeletable(true);
+      }
+      final String msg = String.format("Could not load Reader for partition #%d of domain %s because of an exception.",
+          partition.getPartitionNumber(), domain.getName());
+      LOG.error(msg, e);
+      throw new IOException(msg, e);
+    }
+    // Check that Reader's version number and expected version number match
+    if (reader.getVersionNumber() != null && !reader.getVersionNumber().equals(versionNumber)) {
+      // Something went wrong when loading this partition's Reader. Set it deletable and signal failure.
+      if (updateDeletable) {
+        partition.setDeletable(true);
+      }
+      final String msg = String.format("Could not load Reader for partition #%d of domain %s because version numbers reported by the Reader (%d) and by metadata (%d) differ.",
+          partition.getPartitionNumber(), domain.getName(), reader.getVersionNumber(), versionNumber);
+      LOG.error(msg);
+      reader.close();
+      throw new IOException(msg);
+    }
+    LOG.info(String.format("Loaded Reader for domain %s, partition #%d",
+        domain.getName(), partition.getPartitionNumber()));
+    // Loading succeeded, if the partition was deletable, it should not be
+    if (updateDeletable && partition.isDeletable()) {
+      partition.setDeletable(false);
+    }
+    if (offHeapCache != null) {
+      reader = new OffHeapCachingReader(reader, offHeapCache);
+    }
+    return new PartitionAccessor(partition, reader);
+  }
+
+  private void setNumTotalPartitions(int numTotalPartitions) {
+    this.numTotalPartitions = numTotalPartitions;
+    if (hostCacheManager != null) {
+      hostCacheManager.setNumTotalPartitions(numTotalPartitions);
+    }
+    if (blockCacheManager != null) {
+      blockCacheManager.setNumTotalPartitions(numTotalPartitions);
+    }
+  }
+
+  private ReaderConfigurator getReaderConfigurator() {
+    if (hostCacheManager == null && blockCacheManager == null) {
+      return configurator.getReaderConfigurator(numTotalPartitions);
+    }
+    return new BaseReaderConfigurator(
+        configurator,
+        configurator.getCacheNumBytesCapacity(),
+        configurator.getCacheNumItemsCapacity(),
+        configurator.getBufferReuseMaxSize(),
+        numTotalPartitions,
+        hostCacheManager,
+        blockCacheManager);
+  }
+
   @Override
+  public synchronized void reloadPartition(HostDomain hostDomain,
+                                           HostDomainPartition partition,
+                                           Integer versionNumber,
+                                           DiskPartitionAssignment assignment) throws IOException {
+    if (isShutDown) {
+      throw new IOException("Cannot reload partition since the handler has been shut down.");
+    }
+    Domain domain = hostDomain.getDomain();
+    DomainAccessor domainAccessor = getDomainAccessor(domain.getId());
+    boolean isServed = domainAccessor != null
+        && domainAccessor.getPartitionAccessor(partition.getPartitionNumber()) != null;
+    int previousNumTotalPartitions = numTotalPartitions;
+    // Size the caches of the new Reader for the number of partitions served once it is swapped in
+    setNumTotalPartitions(numTotalPartitions + (versionNumber != null ? 1 : 0) - (isServed ? 1 : 0));
+    PartitionAccessor partitionAccessor = null;
+    if (versionNumber != null) {
+      try {
+        partitionAccessor = loadPartitionAccessor(domain, partition, versionNumber, assignment, false);
+      } catch (IOException e) {
+        // The previous Reader, if any, keeps serving
+        setNumTotalPartitions(previousNumTotalPartitions);
+        throw e;
+      }
+    }
+    if (domainAccessor == null) {
+      if (partitionAccessor == null) {
+        return;
+      }
+      // Domain was not served yet, publish a new array containing its accessor
+      domainAccessor = new DomainAccessor(hostDomain, new PartitionAccessor[domain.getNumParts()],
+          domain.getPartitioner(), configurator.getGetTimerAggregatorWindow());
+      DomainAccessor[] newDomainAccessors =
+          Arrays.copyOf(domainAccessors, Math.max(domainAccessors.length, domain.getId() + 1));
+      newDomainAccessors[domain.getId()] = domainAccessor;
+      domainAccessors = newDomainAccessors;
+    }
+    domainAccessor.swapPartitionAccessor(partition.getPartitionNumber(), partitionAccessor);
+    LOG.info(String.format("Swapped Reader for domain %s, partition #%d to version %s",
+        domain.getName(), partition.getPartitionNumber(), versionNumber));
+  }
+
   public HankResponse get(int domainId, ByteBuffer key) {
+    return get(domainId, key, null);
+  }
+
+  /**
+   * @param keyHash optional 128-bit hash of the key computed by the client, used by domains
+   *                partitioned by a Murmur128Partitioner instead of hashing the key again
+   */
+  @Override
+  public HankResponse get(int domainId, ByteBuffer key, ByteBuffer keyHash) {
     ReaderResult result = readerResultThreadLocal.get();
     // If buffer exceeds limit, reset it
     if (result.getBuffer() != null && result.getBuffer().capacity() > bufferReuseMaxSize) {
@@ -240,7 +386,10 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       result = readerResultThreadLocal.get();
     }
     result.clear();
-    return _get(this, domainId, key, result);
+    if (keyHash != null && key != null && keyHash.remaining() == Hash128.NUM_BYTES) {
+      result.getKeyHash128().set(key, keyHash);
+    }
+    return _get(this, domainId, key, result, responseThreadLocal.get());
   }
 
   @Override
@@ -281,13 +430,17 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     }
   }
 
-  private HankResponse _get(PartitionServerHandler partitionServerHandler, int domainId, ByteBuffer key, ReaderResult result) {
+  private HankResponse _get(PartitionServerHandler partitionServerHandler,
+                            int domainId,
+                            ByteBuffer key,
+                            ReaderResult result,
+                            HankResponse reusableResponse) {
     DomainAccessor domainAccessor = partitionServerHandler.getDomainAccessor(domainId);
     if (domainAccessor == null) {
       return NO_SUCH_DOMAIN;
     }
     try {
-      return domainAccessor.get(key, result);
+      return domainAccessor.get(key, result, reusableResponse);
     } catch (IOException e) {
       String errMsg = String.format(
           "Exception during GET. Domain: %s (domain #%d) Key: %s",
@@ -311,6 +464,14 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     }
   }
 
+  private static class HankResponseThreadLocal extends ThreadLocal<HankResponse> {
+
+    @Override
+    protected HankResponse initialValue() {
+      return new HankResponse();
+    }
+  }
+
   private static class GetThread extends Thread {
 
     public GetThread(Runnable runnable, String name) {
@@ -351,7 +512,7 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       for (int keyOffset = 0; keyOffset < getBulkTaskSize
           && (firstKeyIndex + keyOffset) < keys.size(); keyOffset++) {
         HankResponse response =
-            _get(PartitionServerHandler.this, domainId, keys.get(firstKeyIndex + keyOffset), result);
+            _get(PartitionServerHandler.this, domainId, keys.get(firstKeyIndex + keyOffset), result, null);
         // If a value was found, we have the choice to keep the buffer that was used to read the value, or do a deep
         // copy into the response. This decision is based on a size difference threshold.
         // This allows us to do bulk requests that are large even when the read buffer ends up being much larger
@@ -400,6 +561,7 @@ public class PartitionServerHandler implements IfaceWithShutdown {
   }
 
   private DomainAccessor getDomainAccessor(int domainId) {
+    DomainAccessor[] domainAccessors = this.domainAccessors;
     if (domainId < domainAccessors.length) {
       return domainAccessors[domainId];
     } else {
@@ -427,6 +589,17 @@ public class PartitionServerHandler implements IfaceWithShutdown {
               domainAccessor.getRuntimeStatistics());
         }
       }
+      for (Map.Entry<Domain, RuntimeStatisticsAggregator> entry : runtimeStatisticsAggregators.entrySet()) {
+        FilterStatistics filterStatistics = entry.getValue().getFilterStatistics();
+        if (filterStatistics.getNumKeys() > 0) {
+          LOG.info("Filter statistics for domain " + entry.getKey().getName() + ": " + filterStatistics);
+        }
+        if (entry.getValue().getNumBlockCacheRequests() > 0) {
+          LOG.info(String.format("Block cache hit rate for domain %s: %.2f%% of %d requests",
+              entry.getKey().getName(), entry.getValue().getBlockCacheHitRate() * 100,
+              entry.getValue().getNumBlockCacheRequests()));
+        }
+      }
       // Set statistics
       Hosts.setRuntimeStatistics(host, runtimeStatisticsAggregators);
     }
@@ -452,10 +625,13 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     } catch (InterruptedException e) {
       LOG.info("Interrupted while waiting for update runtime statistics thread to terminate during shutdown.");
     }
-    // Shut down domain accessors
-    for (DomainAccessor domainAccessor : domainAccessors) {
-      if (domainAccessor != null) {
-        domainAccessor.shutDown();
+    // Shut down domain accessors. Synchronized so that no partition gets reloaded concurrently.
+    synchronized (this) {
+      isShutDown = true;
+      for (DomainAccessor domainAccessor : domainAccessors) {
+        if (domainAccessor != null) {
+          domainAccessor.shutDown();
+        }
       }
     }
     // Shut down GET tasks
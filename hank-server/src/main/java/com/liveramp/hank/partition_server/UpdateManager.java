@@ -52,7 +52,9 @@ import com.liveramp.hank.coordinator.HostDomainPartition;
 import com.liveramp.hank.coordinator.Hosts;
 import com.liveramp.hank.coordinator.RingGroup;
 import com.liveramp.hank.storage.Deleter;
+import com.liveramp.hank.storage.PartitionUpdater;
 import com.liveramp.hank.storage.StorageEngine;
+import com.liveramp.hank.storage.incremental.IncrementalPartitionUpdater;
 import com.liveramp.hank.util.DurationAggregator;
 import com.liveramp.hank.util.FormatUtils;
 import com.liveramp.hank.util.HankTimer;
@@ -167,6 +169,20 @@ public class UpdateManager implements IUpdateManager {
       for (DurationAggregator aggregator : hankTimerDurationAggregators.values()) {
         aggregator.logStats();
       }
+      // Data fetch throughput of each domain
+      for (Map.Entry<Domain, List<PartitionUpdateTaskStatistics>> entry : domainToPartitionUpdateTaskStatistics.entrySet()) {
+        PartitionUpdateTaskStatistics dataFetchStatistics = new PartitionUpdateTaskStatistics();
+        for (PartitionUpdateTaskStatistics partitionUpdateTaskStatistics : entry.getValue()) {
+          dataFetchStatistics.recordDataFetch(partitionUpdateTaskStatistics.getDataFetchNumBytes(),
+              partitionUpdateTaskStatistics.getDataFetchDurationMs());
+        }
+        if (dataFetchStatistics.getDataFetchNumBytes() > 0) {
+          LOG.info("Statistics for " + entry.getKey().getName() + " - Update data fetch: fetched "
+              + FormatUtils.formatNumBytes(dataFetchStatistics.getDataFetchNumBytes())
+              + ", average throughput per partition update: "
+              + FormatUtils.formatDataThroughput(dataFetchStatistics.getDataFetchThroughput()));
+        }
+      }
     }
   }
 
@@ -179,6 +195,8 @@ public class UpdateManager implements IUpdateManager {
     private final PartitionUpdateTaskStatisticsAggregator partitionUpdateTaskStatisticsAggregator;
     private final List<Throwable> encounteredThrowables;
     private final DiskPartitionAssignment assignment;
+    // Executor fetching files of the partition's data directory, null to fetch sequentially
+    private ExecutorService fetchExecutor;
 
     public PartitionUpdateTask(HostDomain hostDomain,
                                HostDomainPartition partition,
@@ -203,6 +221,10 @@ public class UpdateManager implements IUpdateManager {
       return assignment.getDisk(partition.getPartitionNumber());
     }
 
+    public void setFetchExecutor(ExecutorService fetchExecutor) {
+      this.fetchExecutor = fetchExecutor;
+    }
+
     @Override
     public void run() {
       PartitionUpdateTaskStatistics statistics = new PartitionUpdateTaskStatistics();
@@ -232,14 +254,34 @@ public class UpdateManager implements IUpdateManager {
 
           // Mark the beginning of the update by first unsetting the partition's current version number.
           // That way, if the update fails, we will have to update it again, and won't be able to serve it.
-          partition.setCurrentDomainVersion(null);
+          // During an online update the partition keeps being served from its current version until the swap.
+          if (partitionReloader == null) {
+            partition.setCurrentDomainVersion(null);
+          }
 
           // Perform update
           StorageEngine storageEngine = domain.getStorageEngine();
           LOG.info(String.format(
               "Starting partition update of domain %s partition %d to version %d in %s.",
               domain.getName(), partition.getPartitionNumber(), targetDomainVersion.getVersionNumber(), getDataDirectory()));
-          storageEngine.getUpdater(assignment, partition.getPartitionNumber()).updateTo(targetDomainVersion, statistics);
+          PartitionUpdater updater = storageEngine.getUpdater(assignment, partition.getPartitionNumber());
+          if (fetchExecutor != null && updater instanceof IncrementalPartitionUpdater) {
+            ((IncrementalPartitionUpdater)updater).setFetchExecutor(fetchExecutor);
+          }
+          if (partitionReloader == null) {
+            updater.updateTo(targetDomainVersion, statistics);
+          } else {
+            try {
+              updater.updateTo(targetDomainVersion, statistics);
+              // Start serving the new version before recording it
+              partitionReloader.reloadPartition(hostDomain, partition, targetDomainVersion.getVersionNumber(), assignment);
+            } catch (IOException | RuntimeException e) {
+              // The previous version's Reader keeps serving from the files it has open, but they might have
+              // been replaced on disk already. Unset the current version so that the partition gets updated again.
+              partition.setCurrentDomainVersion(null);
+              throw e;
+            }
+          }
 
           // Record update success
           partition.setCurrentDomainVersion(targetDomainVersion.getVersionNumber());
@@ -260,6 +302,10 @@ public class UpdateManager implements IUpdateManager {
     private void deletePartition(HostDomain hostDomain,
                                  HostDomainPartition partition) throws IOException {
       LOG.info("Deleting Domain " + hostDomain.getDomain().getName() + " partition " + partition.getPartitionNumber());
+      if (partitionReloader != null) {
+        // Stop serving the partition before deleting its files
+        partitionReloader.reloadPartition(hostDomain, partition, null, assignment);
+      }
       Deleter deleter = hostDomain.getDomain().getStorageEngine().getDeleter(assignment, partition.getPartitionNumber());
       deleter.delete();
       hostDomain.removePartition(partition.getPartitionNumber());
@@ -292,6 +338,21 @@ public class UpdateManager implements IUpdateManager {
     }
   }
 
+  private static class FetcherThreadFactory implements ThreadFactory {
+
+    private final String dataDirectory;
+    private AtomicInteger threadID = new AtomicInteger(0);
+
+    public FetcherThreadFactory(String dataDirectory) {
+      this.dataDirectory = dataDirectory;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      return new Thread(r, "Fetcher Thread Pool Thread: " + dataDirectory + " #" + threadID.getAndIncrement());
+    }
+  }
+
   private static class UpdateThreadPoolExecutor extends ThreadPoolExecutor {
 
     private final Semaphore semaphore;
@@ -329,11 +390,24 @@ public class UpdateManager implements IUpdateManager {
   private final PartitionServerConfigurator configurator;
   private final Host host;
   private final RingGroup ringGroup;
+  private final PartitionReloader partitionReloader;
 
   public UpdateManager(PartitionServerConfigurator configurator, Host host, RingGroup ringGroup) throws IOException {
+    this(configurator, host, ringGroup, null);
+  }
+
+  /**
+   * @param partitionReloader when not null, perform an online update: partitions are updated next to the version
+   *                          being served and swapped in one by one through the given reloader.
+   */
+  public UpdateManager(PartitionServerConfigurator configurator,
+                       Host host,
+                       RingGroup ringGroup,
+                       PartitionReloader partitionReloader) throws IOException {
     this.configurator = configurator;
     this.host = host;
     this.ringGroup = ringGroup;
+    this.partitionReloader = partitionReloader;
   }
 
   @Override
@@ -377,6 +451,23 @@ public class UpdateManager implements IUpdateManager {
                 concurrentUpdatesSemaphore));
       }
 
+      // Build fetch executor services. Fetches of all the partition updates of a data directory share its
+      // executor, and the number of concurrent fetches of the host is bounded by a semaphore.
+      Map<String, ExecutorService> dataDirectoryToFetchExecutorService = new HashMap<String, ExecutorService>();
+      if (configurator.getNumConcurrentFetches() > 0) {
+        Semaphore concurrentFetchesSemaphore = new Semaphore(configurator.getNumConcurrentFetches());
+        for (Map.Entry<String, Queue<PartitionUpdateTask>> entry : dataDirectoryToUpdateTasks.entrySet()) {
+          ExecutorService fetchExecutorService = new UpdateThreadPoolExecutor(
+              configurator.getMaxConcurrentFetchesPerDataDirectory(),
+              new FetcherThreadFactory(entry.getKey()),
+              concurrentFetchesSemaphore);
+          dataDirectoryToFetchExecutorService.put(entry.getKey(), fetchExecutorService);
+          for (PartitionUpdateTask partitionUpdateTask : entry.getValue()) {
+            partitionUpdateTask.setFetchExecutor(fetchExecutorService);
+          }
+        }
+      }
+
       LOG.info("Submitting update tasks for " + dataDirectoryToUpdateTasks.size() + " directories.");
 
       // Execute tasks. We execute one task for each data directory and loop around so that the tasks
@@ -436,6 +527,9 @@ public class UpdateManager implements IUpdateManager {
             for (ExecutorService otherExecutorService : dataDirectoryToExecutorService.values()) {
               otherExecutorService.shutdownNow();
             }
+            for (ExecutorService fetchExecutorService : dataDirectoryToFetchExecutorService.values()) {
+              fetchExecutorService.shutdownNow();
+            }
             // Record failed update exception (we need to keep waiting)
             encounteredThrowables.add(new IOException("Failed to complete update: update interruption was requested."));
           }
@@ -448,6 +542,9 @@ public class UpdateManager implements IUpdateManager {
       for (ExecutorService executorService : dataDirectoryToExecutorService.values()) {
         executorService.shutdownNow();
       }
+      for (ExecutorService fetchExecutorService : dataDirectoryToFetchExecutorService.values()) {
+        fetchExecutorService.shutdownNow();
+      }
 
       LOG.info("Finished with " + encounteredThrowables.size() + " errors.");
 
@@ -91,6 +91,15 @@ public class RingGroupUpdateTransitionFunctionImpl implements RingGroupTransitio
       return;
     }
 
+    // Host is serving, assigned, not up-to-date and can update while serving. Update.
+    if (Hosts.isServing(host) && isAssigned && !isUpToDate && Hosts.isOnlineUpdateEnabled(host)) {
+      if (host.getCurrentCommand() != HostCommand.EXECUTE_UPDATE) {
+        LOG.info("Host " + host.getAddress() + " is serving, assigned, not up-to-date, and supports online updates. Update.");
+        Hosts.enqueueCommandIfNotPresent(host, HostCommand.EXECUTE_UPDATE);
+      }
+      return;
+    }
+
     // Note: numReplicasFullyServing can be null if the host is not serving relevant data
 
     LiveReplicaStatus status =
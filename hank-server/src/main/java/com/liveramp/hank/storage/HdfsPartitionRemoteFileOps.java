@@ -21,9 +21,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
@@ -33,7 +35,7 @@ import com.liveramp.cascading_ext.FileSystemHelper;
 import com.liveramp.cascading_ext.fs.TrashHelper;
 import com.liveramp.hank.util.IOStreamUtils;
 
-public class HdfsPartitionRemoteFileOps implements PartitionRemoteFileOps {
+public class HdfsPartitionRemoteFileOps implements ChunkedPartitionRemoteFileOps {
 
   private static Logger LOG = LoggerFactory.getLogger(HdfsPartitionRemoteFileOps.class);
   private final boolean useTrash;
@@ -155,6 +157,45 @@ public class HdfsPartitionRemoteFileOps implements PartitionRemoteFileOps {
     }
   }
 
+  @Override
+  public long getSize(String remoteRelativePath) throws IOException {
+    // Ranges of compressed files can not be decompressed independently
+    if (compressionCodec != null) {
+      return -1;
+    }
+    return fs.getFileStatus(new Path(getRemoteAbsolutePath(remoteRelativePath))).getLen();
+  }
+
+  @Override
+  public void copyRangeToLocalFile(String remoteSourceRelativePath,
+                                   long offset,
+                                   long length,
+                                   File localDestination) throws IOException {
+    if (compressionCodec != null) {
+      throw new IOException("Cannot copy a range of compressed file " + getRemoteAbsolutePath(remoteSourceRelativePath));
+    }
+    FSDataInputStream inputStream = fs.open(new Path(getRemoteAbsolutePath(remoteSourceRelativePath)));
+    RandomAccessFile outputFile = new RandomAccessFile(localDestination, "rw");
+    try {
+      inputStream.seek(offset);
+      outputFile.seek(offset);
+      byte[] buffer = new byte[IOStreamUtils.DEFAULT_BUFFER_SIZE];
+      long numBytesRemaining = length;
+      while (numBytesRemaining > 0) {
+        int n = inputStream.read(buffer, 0, (int)Math.min(buffer.length, numBytesRemaining));
+        if (n < 0) {
+          throw new IOException("Unexpected end of file " + getRemoteAbsolutePath(remoteSourceRelativePath)
+              + " at offset " + (offset + length - numBytesRemaining));
+        }
+        outputFile.write(buffer, 0, n);
+        numBytesRemaining -= n;
+      }
+    } finally {
+      inputStream.close();
+      outputFile.close();
+    }
+  }
+
   @Override
   public boolean attemptDelete(String remoteRelativePath) throws IOException {
     if (exists(remoteRelativePath)) {
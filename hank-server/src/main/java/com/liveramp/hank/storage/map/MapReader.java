@@ -21,6 +21,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
 
@@ -66,6 +67,11 @@ public class MapReader implements Reader {
     return null;
   }
 
+  @Override
+  public FilterStatistics getFilterStatistics() {
+    return null;
+  }
+
   @Override
   public void close() throws IOException {
   }
@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 
 import com.liveramp.hank.config.DataDirectoriesConfigurator;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
 
@@ -62,6 +63,11 @@ public class MockReader implements Reader {
     return null;
   }
 
+  @Override
+  public FilterStatistics getFilterStatistics() {
+    return null;
+  }
+
   @Override
   public void close() {
   }
@@ -0,0 +1,114 @@
+package com.liveramp.hank.compression;
+
+import com.liveramp.hank.test.BaseTestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestBlockDecompressors extends BaseTestCase {
+
+  // Larger than the chunks of SnappyOutputStream and than the copy buffers of the stream decompressors
+  private static final int[] SIZES = new int[]{0, 1, 33, 1000, 100 * 1024};
+
+  // Compressible, like a block of records
+  private static byte[] block(int size) {
+    Random random = new Random(size);
+    byte[] bytes = new byte[size];
+    for (int offset = 0; offset < size; offset++) {
+      bytes[offset] = (byte)(offset % 8 < 2 ? offset / 256 : random.nextInt(8));
+    }
+    return bytes;
+  }
+
+  private static byte[] compress(CompressionCodec codec, byte[] block) throws Exception {
+    ByteArrayOutputStream compressedBlock = new ByteArrayOutputStream();
+    OutputStream outputStream = codec.getFactory().getCompressor().getOutputStream(compressedBlock);
+    outputStream.write(block);
+    outputStream.close();
+    return compressedBlock.toByteArray();
+  }
+
+  @Test
+  public void testDecompressBlock() throws Exception {
+    for (CompressionCodec codec : CompressionCodec.values()) {
+      for (int size : SIZES) {
+        byte[] block = block(size);
+        // Use an offset in the source, as the reader does
+        byte[] compressedBlock = compress(codec, block);
+        byte[] src = new byte[3 + compressedBlock.length];
+        System.arraycopy(compressedBlock, 0, src, 3, compressedBlock.length);
+
+        Decompressor decompressor = codec.getFactory().getDecompressor();
+        int decompressedLength = decompressor.getDecompressedLength(src, 3, compressedBlock.length);
+        assertTrue(codec.name(), decompressedLength == -1 || decompressedLength == size);
+
+        // Exact fit
+        byte[] dst = new byte[5 + size];
+        assertEquals(codec.name(), size, decompressor.decompressBlock(src, 3, compressedBlock.length, dst, 5));
+        assertEquals(codec.name(), ByteBuffer.wrap(block), ByteBuffer.wrap(dst, 5, size));
+
+        // Larger buffer
+        dst = new byte[5 + 2 * size + 1];
+        assertEquals(codec.name(), size, decompressor.decompressBlock(src, 3, compressedBlock.length, dst, 5));
+        assertEquals(codec.name(), ByteBuffer.wrap(block), ByteBuffer.wrap(dst, 5, size));
+
+        // Stream
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        decompressor.decompressBlock(src, 3, compressedBlock.length, outputStream);
+        assertEquals(codec.name(), ByteBuffer.wrap(block), ByteBuffer.wrap(outputStream.toByteArray()));
+      }
+    }
+  }
+
+  @Test
+  public void testDecompressBlockIntoTooSmallBuffer() throws Exception {
+    for (CompressionCodec codec : CompressionCodec.values()) {
+      for (int size : SIZES) {
+        if (size == 0) {
+          continue;
+        }
+        byte[] block = block(size);
+        byte[] compressedBlock = compress(codec, block);
+        Decompressor decompressor = codec.getFactory().getDecompressor();
+
+        // One byte short, with and without an offset
+        assertEquals(codec.name(), -1, decompressor.decompressBlock(compressedBlock, 0, compressedBlock.length, new byte[size - 1], 0));
+        assertEquals(codec.name(), -1, decompressor.decompressBlock(compressedBlock, 0, compressedBlock.length, new byte[size], 1));
+        // The initial size of the reader's buffer
+        if (size > 32) {
+          assertEquals(codec.name(), -1, decompressor.decompressBlock(compressedBlock, 0, compressedBlock.length, new byte[32], 0));
+        }
+
+        // The decompressor can be reused after a failure
+        byte[] dst = new byte[size];
+        assertEquals(codec.name(), size, decompressor.decompressBlock(compressedBlock, 0, compressedBlock.length, dst, 0));
+        assertEquals(codec.name(), ByteBuffer.wrap(block), ByteBuffer.wrap(dst));
+      }
+    }
+  }
+
+  @Test
+  public void testDefaultDecompressBlock() throws Exception {
+    // Only implements the stream method, blocks are not compressed
+    Decompressor decompressor = new Decompressor() {
+      @Override
+      public void decompressBlock(byte[] buffer, int offset, int length, OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, offset, length);
+      }
+    };
+    byte[] block = block(1000);
+    assertEquals(-1, decompressor.getDecompressedLength(block, 0, block.length));
+    assertEquals(-1, decompressor.decompressBlock(block, 0, block.length, new byte[32], 0));
+    assertEquals(-1, decompressor.decompressBlock(block, 0, block.length, new byte[1000], 1));
+    byte[] dst = new byte[1001];
+    assertEquals(1000, decompressor.decompressBlock(block, 0, block.length, dst, 1));
+    assertEquals(ByteBuffer.wrap(block), ByteBuffer.wrap(dst, 1, 1000));
+  }
+}
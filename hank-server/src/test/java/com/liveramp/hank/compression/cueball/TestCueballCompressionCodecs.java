@@ -0,0 +1,73 @@
+package com.liveramp.hank.compression.cueball;
+
+import com.liveramp.hank.test.BaseTestCase;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestCueballCompressionCodecs extends BaseTestCase {
+
+  private static final List<CueballCompressionCodec> CODECS = Arrays.asList(
+      new NoCueballCompressionCodec(),
+      new GzipCueballCompressionCodec(),
+      new SnappyCueballCompressionCodec(),
+      new Lz4CueballCompressionCodec(),
+      new Lz4HighCueballCompressionCodec(),
+      new ZstdCueballCompressionCodec(),
+      new ZstdCueballCompressionCodec(block(4 * 1024))
+  );
+
+  private static final int[] SIZES = new int[]{0, 1, 7, 16 * 1024, 128 * 1024};
+
+  // Sorted key hashes followed by small values, like a key file block
+  private static byte[] block(int size) {
+    Random random = new Random(size);
+    byte[] bytes = new byte[size];
+    for (int offset = 0; offset < size; offset++) {
+      bytes[offset] = (byte)(offset % 16 < 4 ? offset / 64 : random.nextInt(4));
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testCompressAndDecompress() throws Exception {
+    for (CueballCompressionCodec codec : CODECS) {
+      for (int size : SIZES) {
+        byte[] block = block(size);
+
+        // Use offsets in the buffers, as the reader does
+        byte[] compressedBytes = new byte[3 + codec.getMaxCompressBufferSize(block.length)];
+        int compressedLength = codec.compress(block, 0, block.length, compressedBytes, 3);
+
+        byte[] decompressedBytes = new byte[5 + block.length];
+        int decompressedLength = codec.decompress(compressedBytes, 3, compressedLength, decompressedBytes, 5);
+        assertEquals(codec.getClass().getSimpleName(), block.length, decompressedLength);
+        assertEquals(codec.getClass().getSimpleName(), ByteBuffer.wrap(block), ByteBuffer.wrap(decompressedBytes, 5, decompressedLength));
+      }
+    }
+  }
+
+  @Test
+  public void testDecompressionIntoTooSmallBuffer() throws Exception {
+    for (CueballCompressionCodec codec : CODECS) {
+      if (codec instanceof NoCueballCompressionCodec) {
+        continue;
+      }
+      byte[] block = block(16 * 1024);
+      byte[] compressedBytes = new byte[codec.getMaxCompressBufferSize(block.length)];
+      int compressedLength = codec.compress(block, 0, block.length, compressedBytes, 0);
+      try {
+        codec.decompress(compressedBytes, 0, compressedLength, new byte[block.length - 1], 0);
+        fail(codec.getClass().getSimpleName() + " should have failed");
+      } catch (RuntimeException e) {
+        // Expected
+      }
+    }
+  }
+}
@@ -26,6 +26,7 @@ import com.liveramp.hank.coordinator.mock.MockCoordinator;
 import com.liveramp.hank.test.BaseTestCase;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 
 public class TestYamlPartitionServerConfigurator extends BaseTestCase {
@@ -68,6 +69,8 @@ public class TestYamlPartitionServerConfigurator extends BaseTestCase {
     assertEquals(1024, conf.getBufferReuseMaxSize());
     assertEquals(1000000, conf.getCacheNumBytesCapacity());
     assertEquals(2000, conf.getCacheNumItemsCapacity());
+    assertFalse(conf.isOnlineUpdateEnabled());
+    assertFalse(conf.isSharedCacheEnabled());
 
     Map<String, String> flags = conf.getEnvironmentFlags();
     assertNotEquals("", flags.get("PATH"));
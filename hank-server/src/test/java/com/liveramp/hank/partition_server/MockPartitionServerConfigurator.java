@@ -63,6 +63,16 @@ public class MockPartitionServerConfigurator implements PartitionServerConfigura
     return ringGroupName;
   }
 
+  @Override
+  public int getNumConcurrentFetches() {
+    return 0;
+  }
+
+  @Override
+  public int getMaxConcurrentFetchesPerDataDirectory() {
+    return 0;
+  }
+
   @Override
   public int getNumConcurrentQueries() {
     return 1;
@@ -88,6 +98,26 @@ public class MockPartitionServerConfigurator implements PartitionServerConfigura
     return 0;
   }
 
+  @Override
+  public boolean isOnlineUpdateEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isSharedCacheEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getOffHeapCacheNumBytesCapacity() {
+    return 0;
+  }
+
+  @Override
+  public long getBlockCacheNumBytesCapacity() {
+    return 0;
+  }
+
   @Override
   public Map<String, String> getEnvironmentFlags() {
     return Maps.newHashMap();
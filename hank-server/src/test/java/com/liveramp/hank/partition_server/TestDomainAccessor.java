@@ -1,5 +1,8 @@
 package com.liveramp.hank.partition_server;
 
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.hasher.Hash128;
+import com.liveramp.hank.partitioner.Murmur128Partitioner;
 import com.liveramp.hank.test.BaseTestCase;
 import com.liveramp.hank.test.coordinator.MockHostDomain;
 import com.liveramp.hank.test.coordinator.MockHostDomainPartition;
@@ -11,6 +14,10 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class TestDomainAccessor extends BaseTestCase {
   @Test
   public void testSetUpAndServe() throws Exception {
@@ -29,4 +36,79 @@ public class TestDomainAccessor extends BaseTestCase {
     drs.get(key, new ReaderResult());
     drs.get(nullKey, new ReaderResult());
   }
+
+  @Test
+  public void testSwapPartitionAccessor() throws Exception {
+    PartitionAccessor partitionAccessors[] = new PartitionAccessor[1];
+
+    ByteBuffer key = ByteBuffer.wrap("key".getBytes());
+
+    ClosableMockReader reader1 = new ClosableMockReader("v1".getBytes(), 1);
+    ClosableMockReader reader2 = new ClosableMockReader("v2".getBytes(), 2);
+    PartitionAccessor partitionAccessor1 = new PartitionAccessor(new MockHostDomainPartition(0, 1), reader1);
+    partitionAccessors[0] = partitionAccessor1;
+    DomainAccessor drs = new DomainAccessor(new MockHostDomain(new MockDomain("domain")), partitionAccessors,
+        new MapPartitioner(key, 0), 0);
+
+    assertEquals(HankResponse.value(ByteBuffer.wrap("v1".getBytes())), drs.get(key, new ReaderResult()));
+
+    // Simulate an in-flight request while swapping
+    assertTrue(partitionAccessor1.acquire());
+    drs.swapPartitionAccessor(0, new PartitionAccessor(new MockHostDomainPartition(0, 2), reader2));
+    assertEquals(HankResponse.value(ByteBuffer.wrap("v2".getBytes())), drs.get(key, new ReaderResult()));
+    // Previous reader is closed only once the in-flight request completes
+    assertFalse(reader1.closed);
+    partitionAccessor1.release();
+    assertTrue(reader1.closed);
+    assertFalse(partitionAccessor1.acquire());
+
+    // Stop serving the partition
+    drs.swapPartitionAccessor(0, null);
+    assertTrue(reader2.closed);
+    assertTrue(drs.get(key, new ReaderResult()).get_xception().is_set_wrong_host());
+  }
+
+  @Test
+  public void testKeyHashSentByClient() throws Exception {
+    ByteBuffer key = ByteBuffer.wrap("key".getBytes());
+    PartitionAccessor partitionAccessors[] = new PartitionAccessor[]{
+        new PartitionAccessor(new MockHostDomainPartition(0, 1), new ClosableMockReader("v0".getBytes(), 1)),
+        new PartitionAccessor(new MockHostDomainPartition(1, 1), new ClosableMockReader("v1".getBytes(), 1))};
+    DomainAccessor drs = new DomainAccessor(new MockHostDomain(new MockDomain("domain")), partitionAccessors,
+        new Murmur128Partitioner(), 0);
+    Hash128 hash = new Hash128();
+    int partition = new Murmur128Partitioner().partition(key, 2, hash);
+    ByteBuffer expectedValue = ByteBuffer.wrap(("v" + partition).getBytes());
+    ByteBuffer otherValue = ByteBuffer.wrap(("v" + (1 - partition)).getBytes());
+
+    // Key is hashed by the server
+    assertEquals(HankResponse.value(expectedValue), drs.get(key, new ReaderResult()));
+
+    // Hash sent by the client is used instead of hashing the key
+    ReaderResult result = new ReaderResult();
+    result.getKeyHash128().set(key, hash.getHigh(), hash.getLow());
+    assertEquals(HankResponse.value(expectedValue), drs.get(key, result));
+    result.clear();
+    result.getKeyHash128().set(key, hash.getHigh(), hash.getLow() ^ 1);
+    assertEquals(HankResponse.value(otherValue), drs.get(key, result));
+
+    // Hash of another key buffer is ignored
+    result.clear();
+    result.getKeyHash128().set(ByteBuffer.wrap("key".getBytes()), hash.getHigh(), hash.getLow() ^ 1);
+    assertEquals(HankResponse.value(expectedValue), drs.get(key, result));
+  }
+
+  private static class ClosableMockReader extends MockReader {
+
+    private boolean closed = false;
+
+    public ClosableMockReader(byte[] returnValue, Integer versionNumber) {
+      super(null, 0, returnValue, versionNumber);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
 }
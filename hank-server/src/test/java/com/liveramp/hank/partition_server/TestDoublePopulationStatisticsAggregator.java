@@ -1,6 +1,9 @@
 package com.liveramp.hank.partition_server;
 
+import java.util.Arrays;
+
 import com.liveramp.hank.test.BaseTestCase;
+import com.liveramp.hank.util.LatencyHistogram;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -77,4 +80,31 @@ public class TestDoublePopulationStatisticsAggregator extends BaseTestCase {
     assertEquals(1.1, DoublePopulationStatisticsAggregator.getInterpolatedValueAtIndex(p, 0.1), .0001);
     assertEquals(3.9, DoublePopulationStatisticsAggregator.getInterpolatedValueAtIndex(p, 2.9), .0001);
   }
+
+  @Test
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram1 = new LatencyHistogram();
+    LatencyHistogram histogram2 = new LatencyHistogram();
+    for (int i = 1; i <= 1000; ++i) {
+      // Durations of 1 to 1000 milliseconds
+      (i % 2 == 0 ? histogram1 : histogram2).record(i * 1000000L);
+    }
+    DoublePopulationStatisticsAggregator aggregator1 = new DoublePopulationStatisticsAggregator();
+    aggregator1.aggregate(histogram1);
+    DoublePopulationStatisticsAggregator aggregator2 = new DoublePopulationStatisticsAggregator();
+    aggregator2.aggregate(histogram2);
+    DoublePopulationStatisticsAggregator combined = DoublePopulationStatisticsAggregator.combine(Arrays.asList(aggregator1, aggregator2));
+
+    assertEquals(1.0, combined.getMinimum(), .0001);
+    assertEquals(1000.0, combined.getMaximum(), .0001);
+    assertEquals(500.5, combined.getMean(), .0001);
+    assertEquals(500, combined.computeDeciles()[4], 500 * 0.04);
+    assertEquals(990, combined.computePercentile(99), 990 * 0.04);
+    assertEquals(999, combined.computePercentile(99.9), 999 * 0.04);
+
+    // Serialized statistics are approximated by a sample of the percentiles
+    String[] tokens = DoublePopulationStatisticsAggregator.toString(combined).split(" ");
+    assertEquals(4 + 100, tokens.length);
+    assertEquals(1000, Long.parseLong(tokens[2]));
+  }
 }
@@ -135,7 +135,7 @@ public class TestPartitionServer extends BaseTestCase {
     protected IfaceWithShutdown getHandler() throws IOException {
       return new IfaceWithShutdown() {
         @Override
-        public HankResponse get(int domainId, ByteBuffer key) throws TException {
+        public HankResponse get(int domainId, ByteBuffer key, ByteBuffer keyHash) throws TException {
           return HankResponse.not_found(true);
         }
 
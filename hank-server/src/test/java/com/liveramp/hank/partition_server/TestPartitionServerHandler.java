@@ -15,7 +15,10 @@
  */
 package com.liveramp.hank.partition_server;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,9 +27,11 @@ import java.util.List;
 import java.util.Set;
 
 import com.google.common.collect.Sets;
+import com.sun.management.ThreadMXBean;
 import org.apache.thrift.TException;
 import org.junit.Test;
 
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
 import com.liveramp.hank.config.PartitionServerConfigurator;
 import com.liveramp.hank.config.ReaderConfigurator;
 import com.liveramp.hank.coordinator.Coordinator;
@@ -44,8 +49,11 @@ import com.liveramp.hank.coordinator.mock.MockDomainGroup;
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.hasher.IdentityHasher;
 import com.liveramp.hank.partitioner.Partitioner;
 import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.cueball.CueballReader;
+import com.liveramp.hank.storage.cueball.CueballWriter;
 import com.liveramp.hank.storage.mock.MockReader;
 import com.liveramp.hank.storage.mock.MockStorageEngine;
 import com.liveramp.hank.test.BaseTestCase;
@@ -57,6 +65,8 @@ import com.liveramp.hank.test.coordinator.MockRingGroup;
 import com.liveramp.hank.test.partitioner.MapPartitioner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class TestPartitionServerHandler extends BaseTestCase {
@@ -113,6 +123,32 @@ public class TestPartitionServerHandler extends BaseTestCase {
         handler.get(0, K4));
   }
 
+  @Test
+  public void testFailedReloadKeepsServingPreviousReader() throws Exception {
+    PartitionServerHandler handler = createHandler(0);
+
+    // Readers of the new version report the wrong version number and fail to load
+    MockStorageEngine storageEngine = new MockStorageEngine() {
+      @Override
+      public Reader getReader(ReaderConfigurator configurator, int partitionNumber, DiskPartitionAssignment assignment)
+          throws IOException {
+        return new MockReader(configurator, partitionNumber, V1, 0);
+      }
+    };
+    Domain domain = new MockDomain("myDomain", 0, 5, null, storageEngine, null, null);
+    HostDomainPartition partition = new MockHostDomainPartition(0, 0);
+    try {
+      handler.reloadPartition(mockHostConfig.getHostDomain(domain), partition, 1, null);
+      fail("Should throw an exception.");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    // The partition is not deletable and the previous Reader keeps serving
+    assertFalse(partition.isDeletable());
+    assertEquals(HankResponse.value(V1), handler.get((byte)0, K1));
+  }
+
   @Test
   public void testSetUpAndServeBulk() throws Exception {
     PartitionServerHandler handler = createHandler(0);
@@ -140,9 +176,53 @@ public class TestPartitionServerHandler extends BaseTestCase {
     assertEquals(HankBulkResponse.responses(responses2), handler.getBulk(0, keys2));
   }
 
+  @Test
+  public void testGetDoesNotAllocateOnCacheHits() throws Exception {
+    // Partitions are served by Cueball Readers with a cache
+    final String root = localTmpDir + "/cueball";
+    new File(root).mkdirs();
+    CueballWriter writer = new CueballWriter(new FileOutputStream(root + "/00000.base.cueball"), 1,
+        new IdentityHasher(), V1.length, new NoCueballCompressionCodec(), 1);
+    writer.write(K1, ByteBuffer.wrap(V1));
+    writer.write(K5, ByteBuffer.wrap(V1));
+    writer.close();
+    MockStorageEngine storageEngine = new MockStorageEngine() {
+      @Override
+      public Reader getReader(ReaderConfigurator configurator, int partitionNumber, DiskPartitionAssignment assignment)
+          throws IOException {
+        return new CueballReader(root, 1, new IdentityHasher(), V1.length, 1,
+            new NoCueballCompressionCodec(), 1 << 20, 0, false);
+      }
+    };
+    // Keep the result buffer, and do not compute timer statistics during the test
+    PartitionServerHandler handler = createHandler(storageEngine, 1 << 20, Integer.MAX_VALUE);
+
+    // Keys can be direct buffers
+    ByteBuffer directK5 = ByteBuffer.allocateDirect(1);
+    directK5.put(0, (byte)5);
+    assertEquals(HankResponse.value(V1), handler.get(0, directK5));
+
+    final int numGets = 100000;
+    // Warm up (loads the cache, thread locals and compiles the GET path)
+    for (int i = 0; i < numGets; ++i) {
+      handler.get(0, K1);
+      handler.get(0, directK5);
+    }
+    ThreadMXBean threadMXBean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < numGets; ++i) {
+      handler.get(0, K1);
+      handler.get(0, directK5);
+    }
+    long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+    // Leave some room for allocations that are not made by GET requests
+    assertTrue("GET requests allocated " + allocatedBytes + " bytes", allocatedBytes < numGets);
+
+    assertEquals(HankResponse.value(V1), handler.get(0, K1));
+  }
+
   private PartitionServerHandler createHandler(final int readerVersionNumber) throws IOException {
-    Partitioner partitioner = new MapPartitioner(K1, 0, K2, 1, K3, 2, K4, 3,
-        K5, 4);
     MockStorageEngine storageEngine = new MockStorageEngine() {
       @Override
       public Reader getReader(ReaderConfigurator configurator, int partitionNumber, DiskPartitionAssignment assignment)
@@ -155,6 +235,14 @@ public class TestPartitionServerHandler extends BaseTestCase {
         };
       }
     };
+    return createHandler(storageEngine, 0, 10);
+  }
+
+  private PartitionServerHandler createHandler(MockStorageEngine storageEngine,
+                                               final int bufferReuseMaxSize,
+                                               final int getTimerAggregatorWindow) throws IOException {
+    Partitioner partitioner = new MapPartitioner(K1, 0, K2, 1, K3, 2, K4, 3,
+        K5, 4);
     final Domain domain = new MockDomain("myDomain", 0, 5, partitioner, storageEngine, null, null);
 
     final MockDomainGroup dg = new MockDomainGroup("myDomainGroup") {
@@ -187,7 +275,17 @@ public class TestPartitionServerHandler extends BaseTestCase {
       }
     };
     PartitionServerConfigurator config = new MockPartitionServerConfigurator(12345,
-        mockCoordinator, "myRingGroupName", "/tmp/local/data/dir");
+        mockCoordinator, "myRingGroupName", "/tmp/local/data/dir") {
+      @Override
+      public int getBufferReuseMaxSize() {
+        return bufferReuseMaxSize;
+      }
+
+      @Override
+      public int getGetTimerAggregatorWindow() {
+        return getTimerAggregatorWindow;
+      }
+    };
     PartitionServerHandler handler = new PartitionServerHandler(new PartitionServerAddress(
         "localhost", 12345), config, mockCoordinator);
     return handler;
@@ -0,0 +1,63 @@
+package com.liveramp.hank.partition_server;
+
+import org.junit.Test;
+
+import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestRuntimeStatisticsAggregator extends BaseTestCase {
+
+  @Test
+  public void testSerialization() {
+    RuntimeStatisticsAggregator runtimeStatisticsAggregator = new RuntimeStatisticsAggregator(
+        1.5, 2.5, 100, 80, 10, 20,
+        new DoublePopulationStatisticsAggregator(1, 9, 100, 300, new double[]{1, 2, 3}),
+        new CacheStatistics(1, 2, 3, 4),
+        new FilterStatistics(1000, 1250, 30, 2),
+        15,
+        5);
+
+    RuntimeStatisticsAggregator parsed = RuntimeStatisticsAggregator.parse(
+        RuntimeStatisticsAggregator.toString(runtimeStatisticsAggregator));
+
+    assertEquals(1.5, parsed.getThroughput(), 0.0001);
+    assertEquals(2.5, parsed.getResponseDataThroughput(), 0.0001);
+    assertEquals(0.8, parsed.getHitRate(), 0.0001);
+    assertEquals(0.1, parsed.getL1CacheHitRate(), 0.0001);
+    assertEquals(0.25, parsed.getL2CacheHitRate(), 0.0001);
+    assertEquals(3, parsed.getCacheStatistics().getNumManagedBytes());
+    assertEquals(9.0, parsed.getGetRequestsPopulationStatistics().getMaximum(), 0.0001);
+    assertEquals(1000, parsed.getFilterStatistics().getNumKeys());
+    assertEquals(1250, parsed.getFilterStatistics().getNumManagedBytes());
+    assertEquals(30, parsed.getFilterStatistics().getNumTrueNegatives());
+    assertEquals(2, parsed.getFilterStatistics().getNumFalsePositives());
+    assertEquals(20, parsed.getNumBlockCacheRequests());
+    assertEquals(0.75, parsed.getBlockCacheHitRate(), 0.0001);
+  }
+
+  @Test
+  public void testParseWithoutBlockCacheStatistics() {
+    // Statistics serialized before block cache statistics were added
+    RuntimeStatisticsAggregator parsed = RuntimeStatisticsAggregator.parse("1.5 2.5 100 80 10 20 1 2 3 4 1.0 9.0 100 300.0 1.0 2.0 3.0\t1000 1250 30 2");
+
+    assertEquals(0.8, parsed.getHitRate(), 0.0001);
+    assertEquals(1000, parsed.getFilterStatistics().getNumKeys());
+    assertEquals(2, parsed.getFilterStatistics().getNumFalsePositives());
+    assertEquals(0, parsed.getNumBlockCacheRequests());
+  }
+
+  @Test
+  public void testParseWithoutFilterStatistics() {
+    // Statistics serialized before filter statistics were added
+    RuntimeStatisticsAggregator parsed = RuntimeStatisticsAggregator.parse("1.5 2.5 100 80 10 20 1 2 3 4 1.0 9.0 100 300.0 1.0 2.0 3.0");
+
+    assertEquals(1.5, parsed.getThroughput(), 0.0001);
+    assertEquals(0.8, parsed.getHitRate(), 0.0001);
+    assertEquals(9.0, parsed.getGetRequestsPopulationStatistics().getMaximum(), 0.0001);
+    assertEquals(0, parsed.getFilterStatistics().getNumKeys());
+    assertEquals(0, parsed.getFilterStatistics().getNumFalsePositives());
+  }
+}
@@ -17,9 +17,11 @@
 package com.liveramp.hank.partition_server;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -55,6 +57,7 @@ import com.liveramp.hank.test.coordinator.MockRingGroup;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -322,6 +325,138 @@ public class TestUpdateManager extends BaseTestCase {
     }
   }
 
+  @Test
+  public void testOnlineUpdate() throws Exception {
+    final MockPartitionUpdater mockUpdater = new MockPartitionUpdater();
+
+    StorageEngine mockStorageEngine = fixtures.getMockStorageEngine(mockUpdater);
+    Domain mockDomain = fixtures.getMockDomain(mockStorageEngine);
+    MockHostDomain mockHostDomain = fixtures.getMockHostDomain(mockDomain);
+    Host mockHost = fixtures.getMockHost(mockHostDomain);
+    DomainGroup mockDomainGroup = fixtures.getMockDomainGroup(mockDomain);
+    Fixtures.MockRingGroupLocal mockRingGroup = fixtures.getMockRingGroup(mockDomainGroup);
+    Ring mockRing = fixtures.getMockRing(mockHost, mockRingGroup);
+    mockRingGroup.setRing(mockRing);
+
+    MockPartitionReloader reloader = new MockPartitionReloader(false);
+    UpdateManager ud = new UpdateManager(new MockPartitionServerConfigurator(1,
+        null, "myRingGroup", "/local/data/dir"), mockHost,
+        mockRingGroup, reloader);
+    ud.update();
+    assertEquals("update() called with proper args", Integer.valueOf(2), mockUpdater.updatedToVersion);
+    // The new version was swapped in while the previous one was still recorded
+    assertEquals(Integer.valueOf(2), reloader.reloadedToVersion.get(0));
+    assertEquals(Integer.valueOf(0), reloader.currentVersionWhenReloaded.get(0));
+    assertEquals("current version", Integer.valueOf(2),
+        fixtures.HOST_DOMAIN_PARTITION.getCurrentDomainVersion());
+
+    // A deleted partition stops being served before its files are deleted
+    reloader.clear();
+    fixtures.PARTITION_FOR_DELETION.setDeletable(true);
+    ud.update();
+    assertEquals(Collections.singletonList(null), reloader.reloadedToVersion);
+    assertFalse("files were not deleted when the partition stopped being served", reloader.deletedWhenReloaded);
+    assertTrue(fixtures.MOCK_DELETER.hasDeleted());
+    assertTrue(mockHostDomain.isRemoved(fixtures.PARTITION_FOR_DELETION.getPartitionNumber()));
+  }
+
+  @Test
+  public void testFailedOnlineUpdate() throws Exception {
+    final MockPartitionUpdater failingUpdater = new MockPartitionUpdater() {
+      @Override
+      public void updateTo(DomainVersion updatingToVersion, PartitionUpdateTaskStatistics statistics) throws IOException {
+        super.updateTo(updatingToVersion, statistics);
+        throw new IOException("Failed to update.");
+      }
+    };
+
+    StorageEngine mockStorageEngine = fixtures.getMockStorageEngine(failingUpdater);
+    Domain mockDomain = fixtures.getMockDomain(mockStorageEngine);
+    HostDomain mockHostDomain = fixtures.getMockHostDomain(mockDomain);
+    Host mockHost = fixtures.getMockHost(mockHostDomain);
+    DomainGroup mockDomainGroup = fixtures.getMockDomainGroup(mockDomain);
+    Fixtures.MockRingGroupLocal mockRingGroup = fixtures.getMockRingGroup(mockDomainGroup);
+    Ring mockRing = fixtures.getMockRing(mockHost, mockRingGroup);
+    mockRingGroup.setRing(mockRing);
+
+    MockPartitionReloader reloader = new MockPartitionReloader(false);
+    UpdateManager ud = new UpdateManager(new MockPartitionServerConfigurator(1,
+        null, "myRingGroup", "/local/data/dir"), mockHost,
+        mockRingGroup, reloader);
+
+    try {
+      ud.update();
+      fail("Should throw an IOException when a task update fails.");
+    } catch (IOException e) {
+      // Correct behavior
+    }
+    // The previous version is still served, but its files might have been replaced so it is not recorded anymore
+    assertTrue(failingUpdater.isUpdated());
+    assertTrue(reloader.reloadedToVersion.isEmpty());
+    assertNull(fixtures.HOST_DOMAIN_PARTITION.getCurrentDomainVersion());
+    assertFalse(fixtures.HOST_DOMAIN_PARTITION.isDeletable());
+  }
+
+  @Test
+  public void testFailedOnlineReload() throws Exception {
+    final MockPartitionUpdater mockUpdater = new MockPartitionUpdater();
+
+    StorageEngine mockStorageEngine = fixtures.getMockStorageEngine(mockUpdater);
+    Domain mockDomain = fixtures.getMockDomain(mockStorageEngine);
+    HostDomain mockHostDomain = fixtures.getMockHostDomain(mockDomain);
+    Host mockHost = fixtures.getMockHost(mockHostDomain);
+    DomainGroup mockDomainGroup = fixtures.getMockDomainGroup(mockDomain);
+    Fixtures.MockRingGroupLocal mockRingGroup = fixtures.getMockRingGroup(mockDomainGroup);
+    Ring mockRing = fixtures.getMockRing(mockHost, mockRingGroup);
+    mockRingGroup.setRing(mockRing);
+
+    MockPartitionReloader reloader = new MockPartitionReloader(true);
+    UpdateManager ud = new UpdateManager(new MockPartitionServerConfigurator(1,
+        null, "myRingGroup", "/local/data/dir"), mockHost,
+        mockRingGroup, reloader);
+
+    try {
+      ud.update();
+      fail("Should throw an IOException when a partition fails to be reloaded.");
+    } catch (IOException e) {
+      // Correct behavior
+    }
+    // The new version could not be swapped in, the previous one is still served but its files were replaced
+    assertEquals(Integer.valueOf(2), mockUpdater.updatedToVersion);
+    assertNull(fixtures.HOST_DOMAIN_PARTITION.getCurrentDomainVersion());
+    assertFalse(fixtures.HOST_DOMAIN_PARTITION.isDeletable());
+  }
+
+  private class MockPartitionReloader implements PartitionReloader {
+
+    private final boolean failing;
+    private final List<Integer> reloadedToVersion = new ArrayList<Integer>();
+    private final List<Integer> currentVersionWhenReloaded = new ArrayList<Integer>();
+    private boolean deletedWhenReloaded = false;
+
+    private MockPartitionReloader(boolean failing) {
+      this.failing = failing;
+    }
+
+    @Override
+    public synchronized void reloadPartition(HostDomain hostDomain,
+                                             HostDomainPartition partition,
+                                             Integer versionNumber,
+                                             DiskPartitionAssignment assignment) throws IOException {
+      if (failing) {
+        throw new IOException("Failed to reload partition.");
+      }
+      reloadedToVersion.add(versionNumber);
+      currentVersionWhenReloaded.add(partition.getCurrentDomainVersion());
+      deletedWhenReloaded |= fixtures.MOCK_DELETER.hasDeleted();
+    }
+
+    private synchronized void clear() {
+      reloadedToVersion.clear();
+      currentVersionWhenReloaded.clear();
+    }
+  }
+
   @Test
   public void testInterruptedUpdateTask() throws Exception {
     final MockPartitionUpdater mockUpdater = new MockPartitionUpdater();
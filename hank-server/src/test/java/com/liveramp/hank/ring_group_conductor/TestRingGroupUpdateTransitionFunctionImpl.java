@@ -35,6 +35,7 @@ import com.liveramp.hank.coordinator.HostCommand;
 import com.liveramp.hank.coordinator.HostDomain;
 import com.liveramp.hank.coordinator.HostDomainPartition;
 import com.liveramp.hank.coordinator.HostState;
+import com.liveramp.hank.coordinator.Hosts;
 import com.liveramp.hank.coordinator.PartitionServerAddress;
 import com.liveramp.hank.coordinator.Ring;
 import com.liveramp.hank.coordinator.mock.MockDomain;
@@ -366,6 +367,42 @@ public class TestRingGroupUpdateTransitionFunctionImpl extends BaseTestCase {
     assertNull(r2h1.getAndClearLastEnqueuedCommand());
   }
 
+  @Test
+  public void testUpdateServingHostsOnline() throws IOException {
+    domainGroup.setDomainVersions(versionsMap2);
+
+    setUpRing(r0, v1, v2, HostState.SERVING);
+    setUpRing(r1, v1, v2, HostState.SERVING);
+    setUpRing(r2, v1, v2, HostState.SERVING);
+    for (MockHostLocal host : Arrays.asList(r0h0, r0h1, r1h0, r1h1, r2h0, r2h1)) {
+      host.setEnvironmentFlags(Collections.singletonMap(Hosts.ONLINE_UPDATE_ENVIRONMENT_FLAG, "true"));
+    }
+
+    testTransitionFunction.manageTransitions(null, rg);
+
+    // All hosts should update while serving, no ring is taken down
+    assertEquals(HostCommand.EXECUTE_UPDATE, r0h0.getAndClearLastEnqueuedCommand());
+    assertEquals(HostCommand.EXECUTE_UPDATE, r0h1.getAndClearLastEnqueuedCommand());
+    assertEquals(HostCommand.EXECUTE_UPDATE, r1h0.getAndClearLastEnqueuedCommand());
+    assertEquals(HostCommand.EXECUTE_UPDATE, r1h1.getAndClearLastEnqueuedCommand());
+    assertEquals(HostCommand.EXECUTE_UPDATE, r2h0.getAndClearLastEnqueuedCommand());
+    assertEquals(HostCommand.EXECUTE_UPDATE, r2h1.getAndClearLastEnqueuedCommand());
+    assertEquals(HostState.SERVING, r0h0.getState());
+
+    // A host executing the update should not receive it again
+    r0h0.nextCommand();
+    testTransitionFunction.manageTransitions(null, rg);
+    assertNull(r0h0.getAndClearLastEnqueuedCommand());
+
+    // Once updated, the host keeps serving
+    r0h0.nextCommand();
+    r0h0.setCurrentVersion(v2);
+    testTransitionFunction.manageTransitions(null, rg);
+    assertNull(r0h0.getAndClearLastEnqueuedCommand());
+    assertNull(r0h1.getAndClearLastEnqueuedCommand());
+    assertNull(r1h0.getAndClearLastEnqueuedCommand());
+  }
+
   @Test
   public void testAssignWhenOneHostIsServing() throws IOException {
     domainGroup.setDomainVersions(versionsMap3);
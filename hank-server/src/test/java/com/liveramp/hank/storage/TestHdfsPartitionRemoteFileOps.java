@@ -17,13 +17,20 @@
 package com.liveramp.hank.storage;
 
 import com.liveramp.hank.hadoop.HadoopTestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -64,6 +71,25 @@ public class TestHdfsPartitionRemoteFileOps extends HadoopTestCase {
     assertTrue(new File(localTmpDir + "/file1.txt").exists());
   }
 
+  @Test
+  public void testCopyToLocalInChunks() throws Exception {
+    byte[] content = new byte[1000];
+    new Random(0).nextBytes(content);
+    FSDataOutputStream outputStream = fs.create(new Path(ROOT, "0/file3.txt"));
+    outputStream.write(content);
+    outputStream.close();
+    assertEquals(content.length, hdfsFileOps.getSize("file3.txt"));
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      ParallelFileFetcher fetcher = new ParallelFileFetcher(executor, 300);
+      fetcher.fetch(hdfsFileOps, "file3.txt", localTmpDir);
+      fetcher.awaitCompletion();
+    } finally {
+      executor.shutdownNow();
+    }
+    assertArrayEquals(content, FileUtils.readFileToByteArray(new File(localTmpDir + "/file3.txt")));
+  }
+
   @Test
   public void testAttemptDelete() throws Exception {
     assertTrue(fs.exists(new Path(ROOT, "0/file1.txt")));
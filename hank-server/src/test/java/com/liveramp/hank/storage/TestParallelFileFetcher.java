@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class TestParallelFileFetcher extends BaseTestCase {
+
+  private ExecutorService executor;
+  private LocalPartitionRemoteFileOps remoteFileOps;
+  private String fetchRoot;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newFixedThreadPool(4);
+    remoteFileOps = new LocalPartitionRemoteFileOps(localTmpDir + "/remote", 0);
+    fetchRoot = localTmpDir + "/fetch";
+    new File(fetchRoot).mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testFetchInChunks() throws IOException {
+    Random random = new Random(0);
+    // Smaller than a chunk, a multiple of the chunk size, and not a multiple of the chunk size
+    byte[][] contents = new byte[][]{new byte[10], new byte[300], new byte[1234]};
+    ParallelFileFetcher fetcher = new ParallelFileFetcher(executor, 100);
+    for (int i = 0; i < contents.length; ++i) {
+      random.nextBytes(contents[i]);
+      write("file" + i, contents[i]);
+      fetcher.fetch(remoteFileOps, "file" + i, fetchRoot);
+    }
+    fetcher.awaitCompletion();
+    for (int i = 0; i < contents.length; ++i) {
+      assertArrayEquals(contents[i], FileUtils.readFileToByteArray(new File(fetchRoot + "/file" + i)));
+    }
+  }
+
+  @Test
+  public void testFetchMissingFile() throws IOException {
+    ParallelFileFetcher fetcher = new ParallelFileFetcher(executor, 100);
+    fetcher.fetch(remoteFileOps, "missing", fetchRoot);
+    try {
+      fetcher.awaitCompletion();
+      fail("Should fail");
+    } catch (IOException e) {
+      // Good
+    }
+    assertFalse(new File(fetchRoot + "/missing").exists());
+  }
+
+  private void write(String remoteRelativePath, byte[] content) throws IOException {
+    OutputStream outputStream = remoteFileOps.getOutputStream(remoteRelativePath);
+    try {
+      outputStream.write(content);
+    } finally {
+      outputStream.close();
+    }
+  }
+}
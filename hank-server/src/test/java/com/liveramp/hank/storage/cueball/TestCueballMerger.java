@@ -16,6 +16,7 @@
 package com.liveramp.hank.storage.cueball;
 
 import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.LocalPartitionRemoteFileOps;
 import org.junit.Test;
 
 import java.io.*;
@@ -23,6 +24,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TestCueballMerger extends AbstractCueballTest {
   private final String LOCAL_ROOT = localTmpDir;
@@ -187,4 +189,79 @@ public class TestCueballMerger extends AbstractCueballTest {
 
     assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(actualMergedData));
   }
+
+  @Test
+  public void testMergeWithFilter() throws Exception {
+    new File(LOCAL_ROOT).mkdirs();
+    OutputStream s = new FileOutputStream(BASE.getPath());
+    s.write(BASE_DATA);
+    s.close();
+
+    s = new FileOutputStream(DELTA_1.getPath());
+    s.write(DELTA_1_DATA);
+    s.close();
+
+    s = new FileOutputStream(DELTA_2.getPath());
+    s.write(DELTA_2_DATA);
+    s.close();
+
+    new CueballMerger(10).merge(BASE,
+        Arrays.asList(DELTA_1, DELTA_2),
+        NEW_BASE_PATH,
+        1,
+        1,
+        null,
+        1,
+        new NoCueballCompressionCodec());
+
+    DataInputStream in = new DataInputStream(new FileInputStream(NEW_BASE_PATH));
+    byte[] actualMergedData = new byte[(int) new File(NEW_BASE_PATH).length()];
+    in.readFully(actualMergedData);
+    in.close();
+    assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(actualMergedData));
+
+    // The filter of the new base is written next to it
+    KeyHashFilter filter = KeyHashFilter.read(Cueball.getFilterPath(NEW_BASE_PATH));
+    assertEquals(8, filter.getNumKeys());
+    assertEquals(10, filter.getNumBitsPerKey());
+    for (byte key : new byte[]{1, 2, 3, 4, 5, (byte) 0x8a, (byte) 0x8b, (byte) 0x8c}) {
+      assertTrue(filter.mightContain(new byte[]{key}, 0, 1));
+    }
+  }
+
+  @Test
+  public void testStreamingMerge() throws Exception {
+    new File(LOCAL_ROOT).mkdirs();
+    OutputStream s = new FileOutputStream(BASE.getPath());
+    s.write(BASE_DATA);
+    s.close();
+
+    s = new FileOutputStream(DELTA_1.getPath());
+    s.write(DELTA_1_DATA);
+    s.close();
+
+    // Delta 2 is only available remotely
+    LocalPartitionRemoteFileOps remoteFileOps = new LocalPartitionRemoteFileOps(localTmpDir + "/remote", 0);
+    s = remoteFileOps.getOutputStream(Cueball.getName(2, false));
+    s.write(DELTA_2_DATA);
+    s.close();
+
+    // Read ahead in buffers smaller than the file
+    new CueballStreamingMerger(remoteFileOps, 5, 2).merge(BASE,
+        Arrays.asList(DELTA_1, DELTA_2),
+        NEW_BASE_PATH,
+        1,
+        1,
+        null,
+        1,
+        new NoCueballCompressionCodec());
+
+    DataInputStream in = new DataInputStream(new FileInputStream(NEW_BASE_PATH));
+    int length = (int) new File(NEW_BASE_PATH).length();
+    byte[] actualMergedData = new byte[length];
+    in.readFully(actualMergedData);
+    in.close();
+
+    assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(actualMergedData));
+  }
 }
@@ -19,10 +19,16 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec;
 import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.hasher.IdentityHasher;
+import com.liveramp.hank.storage.FilterStatistics;
 import com.liveramp.hank.storage.ReaderResult;
 
 import static org.junit.Assert.assertEquals;
@@ -32,6 +38,283 @@ import static org.junit.Assert.assertTrue;
 public class TestCueballReader extends AbstractCueballTest {
   @Test
   public void testRead() throws Exception {
+    testRead(false);
+  }
+
+  @Test
+  public void testReadMemoryMapped() throws Exception {
+    testRead(true);
+  }
+
+  @Test
+  public void testReadLargeBlocks() throws Exception {
+    // Write many keys in few blocks
+    final int numKeys = 5000;
+    final int keyHashSize = 8;
+    final int hashIndexBits = 2;
+    Random random = new Random(0);
+    ByteBuffer[] keys = new ByteBuffer[numKeys];
+    for (int i = 0; i < numKeys; ++i) {
+      byte[] key = new byte[keyHashSize];
+      random.nextBytes(key);
+      keys[i] = ByteBuffer.wrap(key);
+    }
+    Arrays.sort(keys, BytesUtils::compareBytesUnsigned);
+    String root = localTmpDir + "/large";
+    new File(root).mkdir();
+    CueballWriter writer = new CueballWriter(new FileOutputStream(root + "/00000.base.cueball"), keyHashSize,
+        new IdentityHasher(), 4, new NoCueballCompressionCodec(), hashIndexBits);
+    for (int i = 0; i < numKeys; ++i) {
+      writer.write(keys[i], ByteBuffer.allocate(4).putInt(0, i));
+    }
+    writer.close();
+
+    for (boolean memoryMapKeyFile : new boolean[]{false, true}) {
+      for (boolean readKeyFileSlices : new boolean[]{false, true}) {
+        CueballReader reader = new CueballReader(root, keyHashSize, new IdentityHasher(), 4, hashIndexBits,
+            new NoCueballCompressionCodec(), CueballReader.createCache(0, 0), memoryMapKeyFile, readKeyFileSlices);
+        ReaderResult result = new ReaderResult();
+        for (int i = 0; i < numKeys; ++i) {
+          result.clear();
+          reader.get(keys[i], result);
+          assertTrue(result.isFound());
+          assertEquals(ByteBuffer.allocate(4).putInt(0, i), result.getBuffer());
+        }
+        for (int i = 0; i < numKeys; ++i) {
+          byte[] key = new byte[keyHashSize];
+          random.nextBytes(key);
+          if (Arrays.binarySearch(keys, ByteBuffer.wrap(key), BytesUtils::compareBytesUnsigned) < 0) {
+            result.clear();
+            reader.get(ByteBuffer.wrap(key), result);
+            assertFalse(result.isFound());
+          }
+        }
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void testReadCompressedMemoryMapped() throws Exception {
+    final int numKeys = 5000;
+    final int keyHashSize = 8;
+    final int hashIndexBits = 4;
+    Random random = new Random(0);
+    ByteBuffer[] keys = new ByteBuffer[numKeys];
+    for (int i = 0; i < numKeys; ++i) {
+      byte[] key = new byte[keyHashSize];
+      random.nextBytes(key);
+      keys[i] = ByteBuffer.wrap(key);
+    }
+    Arrays.sort(keys, BytesUtils::compareBytesUnsigned);
+    String root = localTmpDir + "/compressed";
+    new File(root).mkdir();
+    CueballWriter writer = new CueballWriter(new FileOutputStream(root + "/00000.base.cueball"), keyHashSize,
+        new IdentityHasher(), 4, new GzipCueballCompressionCodec(), hashIndexBits);
+    for (int i = 0; i < numKeys; ++i) {
+      writer.write(keys[i], ByteBuffer.allocate(4).putInt(0, i));
+    }
+    writer.close();
+
+    // Compressed blocks are copied out of the mapping and decompressed
+    for (boolean readKeyFileSlices : new boolean[]{false, true}) {
+      CueballReader reader = new CueballReader(root, keyHashSize, new IdentityHasher(), 4, hashIndexBits,
+          new GzipCueballCompressionCodec(), CueballReader.createCache(0, 0), true, readKeyFileSlices);
+      ReaderResult result = new ReaderResult();
+      for (int i = 0; i < numKeys; ++i) {
+        result.clear();
+        reader.get(keys[i], result);
+        assertTrue(result.isFound());
+        assertEquals(ByteBuffer.allocate(4).putInt(0, i), result.getBuffer());
+      }
+      for (int i = 0; i < numKeys; ++i) {
+        byte[] key = new byte[keyHashSize];
+        random.nextBytes(key);
+        if (Arrays.binarySearch(keys, ByteBuffer.wrap(key), BytesUtils::compareBytesUnsigned) < 0) {
+          result.clear();
+          reader.get(ByteBuffer.wrap(key), result);
+          assertFalse(result.isFound());
+        }
+      }
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testReadSkewedBlocks() throws Exception {
+    // The first block holds many keys, the second one a single key
+    final int keyHashSize = 8;
+    final int numKeysInLargeBlock = 1000;
+    String root = localTmpDir + "/skewed";
+    new File(root).mkdir();
+    CueballWriter writer = new CueballWriter(new FileOutputStream(root + "/00000.base.cueball"), keyHashSize,
+        new IdentityHasher(), 4, new NoCueballCompressionCodec(), 1);
+    for (int i = 0; i < numKeysInLargeBlock; ++i) {
+      writer.write(ByteBuffer.allocate(keyHashSize).putLong(0, i), ByteBuffer.allocate(4).putInt(0, i));
+    }
+    ByteBuffer keyInSmallBlock = ByteBuffer.allocate(keyHashSize).putLong(0, Long.MIN_VALUE);
+    writer.write(keyInSmallBlock, ByteBuffer.allocate(4).putInt(0, -1));
+    writer.close();
+
+    for (boolean memoryMapKeyFile : new boolean[]{false, true}) {
+      CueballReader reader = new CueballReader(root, keyHashSize, new IdentityHasher(), 4, 1,
+          new NoCueballCompressionCodec(), 0, 0, memoryMapKeyFile);
+      ReaderResult result = new ReaderResult();
+      reader.get(keyInSmallBlock, result);
+      assertTrue(result.isFound());
+      assertEquals(ByteBuffer.allocate(4).putInt(0, -1), result.getBuffer());
+      // Only the small block was read
+      assertTrue(result.getBuffer().capacity() < numKeysInLargeBlock * (keyHashSize + 4));
+
+      result.clear();
+      reader.get(ByteBuffer.allocate(keyHashSize).putLong(0, numKeysInLargeBlock - 1), result);
+      assertTrue(result.isFound());
+      assertEquals(ByteBuffer.allocate(4).putInt(0, numKeysInLargeBlock - 1), result.getBuffer());
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testReadWithFilter() throws Exception {
+    // The key file is written without a filter, the reader builds one and writes it next to the key file
+    String root = localTmpDir + "/filter";
+    ByteBuffer[] keys = writeKeysForFilter(root, false);
+    String filterPath = Cueball.getFilterPath(root + "/00000.base.cueball");
+    assertFalse(new File(filterPath).exists());
+
+    CueballReader reader = new CueballReader(root, 8, new IdentityHasher(), 4, 4,
+        new NoCueballCompressionCodec(), CueballReader.createCache(0, 0), false, false, 10);
+    assertTrue(new File(filterPath).exists());
+    checkReadWithFilter(reader, keys);
+    reader.close();
+  }
+
+  @Test
+  public void testReadWithWrittenFilter() throws Exception {
+    // The filter is written with the key file, and loaded by the reader rather than built again
+    String root = localTmpDir + "/filter";
+    ByteBuffer[] keys = writeKeysForFilter(root, true);
+    File filterFile = new File(Cueball.getFilterPath(root + "/00000.base.cueball"));
+    assertTrue(filterFile.exists());
+    assertTrue(filterFile.setLastModified(0));
+
+    CueballReader reader = new CueballReader(root, 8, new IdentityHasher(), 4, 4,
+        new NoCueballCompressionCodec(), CueballReader.createCache(0, 0), false, false, 10);
+    assertEquals(0, filterFile.lastModified());
+    checkReadWithFilter(reader, keys);
+    reader.close();
+
+    // A filter written with a different number of bits per key is built again
+    reader = new CueballReader(root, 8, new IdentityHasher(), 4, 4,
+        new NoCueballCompressionCodec(), CueballReader.createCache(0, 0), false, false, 12);
+    assertTrue(filterFile.lastModified() > 0);
+    assertEquals(keys.length, reader.getFilterStatistics().getNumKeys());
+    assertTrue(reader.getFilterStatistics().getNumManagedBytes() >= keys.length * 12 / 8);
+    reader.close();
+  }
+
+  @Test
+  public void testReadWithStaleFilter() throws Exception {
+    // A filter left next to a key file it was not built from, with the same parameters, is built again
+    String staleRoot = localTmpDir + "/stale_filter";
+    writeKeysForFilter(staleRoot, true, 1000);
+    String root = localTmpDir + "/filter";
+    ByteBuffer[] keys = writeKeysForFilter(root, false);
+    File filterFile = new File(Cueball.getFilterPath(root + "/00000.base.cueball"));
+    assertTrue(new File(Cueball.getFilterPath(staleRoot + "/00000.base.cueball")).renameTo(filterFile));
+    assertEquals(1000, KeyHashFilter.read(filterFile.getPath()).getNumKeys());
+
+    CueballReader reader = new CueballReader(root, 8, new IdentityHasher(), 4, 4,
+        new NoCueballCompressionCodec(), CueballReader.createCache(0, 0), false, false, 10);
+    assertEquals(new File(root + "/00000.base.cueball").length(),
+        KeyHashFilter.read(filterFile.getPath()).getKeyFileSize());
+    checkReadWithFilter(reader, keys);
+    reader.close();
+  }
+
+  @Test
+  public void testFilterFalsePositivesIgnoreCacheHits() throws Exception {
+    String root = localTmpDir + "/filter";
+    ByteBuffer[] keys = writeKeysForFilter(root, true);
+    CueballReader reader = new CueballReader(root, 8, new IdentityHasher(), 4, 4,
+        new NoCueballCompressionCodec(), CueballReader.createCache(1 << 20, 100000), false, false, 10);
+    Random random = new Random(1);
+    ReaderResult result = new ReaderResult();
+    final int numAbsentKeys = 10000;
+    for (int i = 0; i < numAbsentKeys; ++i) {
+      byte[] key = new byte[8];
+      random.nextBytes(key);
+      // The second lookup of an absent key the filter let through is answered by the cache
+      for (int j = 0; j < 2; ++j) {
+        result.clear();
+        reader.get(ByteBuffer.wrap(key), result);
+        assertFalse(result.isFound());
+      }
+    }
+    FilterStatistics filterStatistics = reader.getFilterStatistics();
+    assertEquals(keys.length, filterStatistics.getNumKeys());
+    assertTrue(filterStatistics.getNumFalsePositives() > 0);
+    assertEquals(2 * numAbsentKeys - filterStatistics.getNumFalsePositives(),
+        filterStatistics.getNumTrueNegatives() + filterStatistics.getNumFalsePositives());
+    assertTrue(filterStatistics.getFalsePositiveRate() < 0.02);
+    reader.close();
+  }
+
+  // Write 5000 random keys in 16 blocks, with or without a filter of 10 bits per key, and return them
+  private ByteBuffer[] writeKeysForFilter(String root, boolean writeFilter) throws Exception {
+    return writeKeysForFilter(root, writeFilter, 5000);
+  }
+
+  private ByteBuffer[] writeKeysForFilter(String root, boolean writeFilter, int numKeys) throws Exception {
+    final int keyHashSize = 8;
+    final int hashIndexBits = 4;
+    Random random = new Random(0);
+    ByteBuffer[] keys = new ByteBuffer[numKeys];
+    for (int i = 0; i < numKeys; ++i) {
+      byte[] key = new byte[keyHashSize];
+      random.nextBytes(key);
+      keys[i] = ByteBuffer.wrap(key);
+    }
+    Arrays.sort(keys, BytesUtils::compareBytesUnsigned);
+    new File(root).mkdir();
+    String keyFilePath = root + "/00000.base.cueball";
+    OutputStream filterOutputStream = writeFilter ? new FileOutputStream(Cueball.getFilterPath(keyFilePath)) : null;
+    CueballWriter writer = new CueballWriter(new FileOutputStream(keyFilePath), keyHashSize,
+        new IdentityHasher(), 4, new NoCueballCompressionCodec(), hashIndexBits, filterOutputStream, 10);
+    for (int i = 0; i < numKeys; ++i) {
+      writer.write(keys[i], ByteBuffer.allocate(4).putInt(0, i));
+    }
+    writer.close();
+    return keys;
+  }
+
+  private void checkReadWithFilter(CueballReader reader, ByteBuffer[] keys) throws Exception {
+    ReaderResult result = new ReaderResult();
+    for (int i = 0; i < keys.length; ++i) {
+      result.clear();
+      reader.get(keys[i], result);
+      assertTrue(result.isFound());
+      assertEquals(ByteBuffer.allocate(4).putInt(0, i), result.getBuffer());
+    }
+    Random random = new Random(1);
+    final int numAbsentKeys = 10000;
+    for (int i = 0; i < numAbsentKeys; ++i) {
+      byte[] key = new byte[8];
+      random.nextBytes(key);
+      result.clear();
+      reader.get(ByteBuffer.wrap(key), result);
+      assertFalse(result.isFound());
+    }
+
+    FilterStatistics filterStatistics = reader.getFilterStatistics();
+    assertEquals(keys.length, filterStatistics.getNumKeys());
+    assertTrue(filterStatistics.getNumManagedBytes() >= keys.length * 10 / 8);
+    assertEquals(numAbsentKeys, filterStatistics.getNumTrueNegatives() + filterStatistics.getNumFalsePositives());
+    // 10 bits per key give a false positive rate of about 1%
+    assertTrue(filterStatistics.getFalsePositiveRate() < 0.02);
+  }
+
+  private void testRead(boolean memoryMapKeyFile) throws Exception {
     // set up fake cueball file
     String root = localTmpDir + "/1";
     new File(root).mkdir();
@@ -40,7 +323,7 @@ public class TestCueballReader extends AbstractCueballTest {
     os.flush();
     os.close();
 
-    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(), 1 << 20, 1);
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(), 1 << 20, 1, memoryMapKeyFile);
 
     // test version number
     assertEquals(Integer.valueOf(0), reader.getVersionNumber());
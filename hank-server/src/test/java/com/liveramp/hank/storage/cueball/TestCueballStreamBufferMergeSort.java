@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2011 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage.cueball;
+
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestCueballStreamBufferMergeSort extends AbstractCueballTest {
+
+  private static final int VALUE_SIZE = 2;
+  private static final int HASH_INDEX_BITS = 4;
+
+  @Test
+  public void testShortKeyHashes() throws Exception {
+    testMergeSort(3, 1);
+  }
+
+  @Test
+  public void testLongKeyHashes() throws Exception {
+    testMergeSort(10, 2);
+  }
+
+  // Merge random streams sharing many key hashes, some of which only differ after their 8 byte prefix
+  private void testMergeSort(int keyHashSize, long seed) throws Exception {
+    Random random = new Random(seed);
+    int numStreams = 20;
+    List<CueballFilePath> deltas = new ArrayList<CueballFilePath>();
+    CueballFilePath base = null;
+    TreeMap<ByteBuffer, byte[]> expected = new TreeMap<ByteBuffer, byte[]>();
+    for (int stream = 0; stream < numStreams; ++stream) {
+      TreeMap<ByteBuffer, byte[]> records = new TreeMap<ByteBuffer, byte[]>();
+      int numRecords = stream == 5 ? 0 : random.nextInt(200);
+      for (int i = 0; i < numRecords; ++i) {
+        byte[] keyHash = new byte[keyHashSize];
+        // Few distinct bytes so that streams share key hashes and prefixes
+        for (int j = 0; j < keyHashSize; ++j) {
+          keyHash[j] = (byte)(random.nextInt(4) * 0x41);
+        }
+        byte[] value = new byte[VALUE_SIZE];
+        value[0] = (byte)stream;
+        value[1] = (byte)i;
+        records.put(ByteBuffer.wrap(keyHash), value);
+      }
+      // Later streams override earlier ones
+      expected.putAll(records);
+
+      CueballFilePath path = new CueballFilePath(localTmpDir + "/" + Cueball.getName(stream, stream == 0));
+      CueballWriter writer = new CueballWriter(new FileOutputStream(path.getPath()),
+          keyHashSize, null, VALUE_SIZE, new NoCueballCompressionCodec(), HASH_INDEX_BITS);
+      for (Map.Entry<ByteBuffer, byte[]> record : sortUnsigned(records)) {
+        writer.writeHash(record.getKey(), ByteBuffer.wrap(record.getValue()));
+      }
+      writer.close();
+      if (stream == 0) {
+        base = path;
+      } else {
+        deltas.add(path);
+      }
+    }
+
+    CueballStreamBufferMergeSort mergeSort = new CueballStreamBufferMergeSort(base, deltas,
+        keyHashSize, VALUE_SIZE, HASH_INDEX_BITS, new NoCueballCompressionCodec(), null);
+    assertEquals(numStreams, mergeSort.getNumStreams());
+    for (Map.Entry<ByteBuffer, byte[]> record : sortUnsigned(expected)) {
+      KeyHashAndValueAndStreamIndex next = mergeSort.nextKeyHashAndValueAndStreamIndex();
+      assertEquals(record.getKey(), next.keyHash);
+      assertEquals(ByteBuffer.wrap(record.getValue()), next.value);
+      assertEquals(record.getValue()[0], next.streamIndex);
+    }
+    assertNull(mergeSort.nextKeyHashAndValueAndStreamIndex());
+    mergeSort.close();
+  }
+
+  private static List<Map.Entry<ByteBuffer, byte[]>> sortUnsigned(Map<ByteBuffer, byte[]> records) {
+    List<Map.Entry<ByteBuffer, byte[]>> result = new ArrayList<Map.Entry<ByteBuffer, byte[]>>(records.entrySet());
+    result.sort((a, b) -> BytesUtils.compareBytesUnsigned(a.getKey().array(), 0, b.getKey().array(), 0, a.getKey().remaining()));
+    return result;
+  }
+}
@@ -64,6 +64,15 @@ public abstract class AbstractCurlyTestBase {
       0x07, 0x05, 0x10, 0x04, 0x0c, 0x0b, 0x0a, 0x09
   };
 
+  protected static final byte[] EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_LZ4 = new byte[]{
+      21, // block size
+      15, 0, 0, 0, // decompressed block size
+      (byte)0xf0, 0x00, // 15 literals
+      4, 4, 3, 2, 1,
+      4, 8, 7, 6, 5,
+      4, 12, 11, 10, 9
+  };
+
   protected static final byte[] EXPECTED_FOLDED_RECORD_FILE = new byte[]{
       4, 4, 3, 2, 1,
       4, 8, 7, 6, 5
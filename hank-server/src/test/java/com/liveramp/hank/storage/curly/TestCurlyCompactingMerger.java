@@ -2,6 +2,7 @@ package com.liveramp.hank.storage.curly;
 
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
 import com.liveramp.hank.storage.ReaderResult;
 import com.liveramp.hank.storage.cueball.IKeyFileStreamBufferMergeSort;
 import com.liveramp.hank.storage.cueball.KeyHashAndValueAndStreamIndex;
@@ -128,6 +129,11 @@ public class TestCurlyCompactingMerger extends BaseTestCase {
             return null;
           }
 
+          @Override
+          public FilterStatistics getFilterStatistics() {
+            return null;
+          }
+
           @Override
           public void close() throws IOException {
           }
@@ -20,12 +20,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
+import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.storage.HostCacheManager;
 import com.liveramp.hank.storage.ReaderResult;
 import com.liveramp.hank.storage.map.MapReader;
+import com.liveramp.hank.storage.map.MapWriter;
+import com.liveramp.hank.util.MemoryBoundCache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -171,4 +180,114 @@ public class TestCurlyReader extends AbstractCurlyTestBase {
   public void testBlockCompressionSnappy() throws Exception {
     doTestBlockCompression(CompressionCodec.SNAPPY, EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_SNAPPY);
   }
+
+  @Test
+  public void testBlockCompressionLz4() throws Exception {
+    doTestBlockCompression(CompressionCodec.LZ4, EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_LZ4);
+  }
+
+  @Test
+  public void testLargeBlocks() throws Exception {
+    for (CompressionCodec blockCompressionCodec : CompressionCodec.values()) {
+      doTestLargeBlocks(blockCompressionCodec);
+    }
+  }
+
+  // Blocks are much larger than the initial decompression buffer, which is dropped after each read
+  private void doTestLargeBlocks(CompressionCodec blockCompressionCodec) throws IOException {
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    MapWriter keyfileWriter = new MapWriter();
+    CurlyWriter writer = new CurlyWriter(s, keyfileWriter, 3, -1, blockCompressionCodec, 4096, 2);
+    Random random = new Random(0);
+    Map<ByteBuffer, ByteBuffer> records = new HashMap<ByteBuffer, ByteBuffer>();
+    for (int i = 0; i < 200; ++i) {
+      ByteBuffer key = ByteBuffer.allocate(4).putInt(0, i);
+      byte[] value = new byte[1 + random.nextInt(300)];
+      for (int j = 0; j < value.length; ++j) {
+        value[j] = (byte)(j % 4 == 0 ? i : random.nextInt(4));
+      }
+      records.put(key, ByteBuffer.wrap(value));
+      writer.write(key, ByteBuffer.wrap(value));
+    }
+    writer.close();
+
+    List<byte[]> keysAndOffsets = new ArrayList<byte[]>();
+    for (Map.Entry<ByteBuffer, ByteBuffer> entry : keyfileWriter.entries.entrySet()) {
+      keysAndOffsets.add(BytesUtils.byteBufferDeepCopy(entry.getKey()).array());
+      keysAndOffsets.add(BytesUtils.byteBufferDeepCopy(entry.getValue()).array());
+    }
+    MapReader keyfileReader = new MapReader(0, keysAndOffsets.toArray(new byte[keysAndOffsets.size()][]));
+
+    CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader, -1, -1,
+        blockCompressionCodec, 3, 2, false, 0);
+
+    ReaderResult result = new ReaderResult();
+    for (Map.Entry<ByteBuffer, ByteBuffer> record : records.entrySet()) {
+      reader.get(record.getKey(), result);
+      assertTrue(blockCompressionCodec.name(), result.isFound());
+      assertEquals(blockCompressionCodec.name(), record.getValue(), result.getBuffer());
+      result.clear();
+    }
+    reader.close();
+  }
+
+  @Test
+  public void testBlockCache() throws Exception {
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    s.write(EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_GZIP);
+    s.flush();
+    s.close();
+
+    MapReader keyfileReader = new MapReader(0,
+        KEY1.array(), new byte[]{0, 0, 0, 0, 0},
+        KEY2.array(), new byte[]{0, 0, 0, 5, 0},
+        KEY3.array(), new byte[]{0, 0, 0, 10, 0}
+    );
+
+    // Both readers share the same block cache
+    MemoryBoundCache<ByteBuffer, ByteBuffer> blockCache = new HostCacheManager(1 << 20, 0, 1).getPartitionCache(0, 0, 0);
+    CurlyReader reader1 = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader, -1, -1,
+        CompressionCodec.GZIP, 3, 2, false, blockCache, 0);
+    CurlyReader reader2 = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader, -1, -1,
+        CompressionCodec.GZIP, 3, 2, false, blockCache, 0);
+
+    ReaderResult result = new ReaderResult();
+
+    // The block is decompressed
+    reader1.get(KEY1, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE1, result.getBuffer());
+    assertFalse(result.getBlockCacheHit());
+    assertTrue(result.getBlockCacheMiss());
+    assertEquals(1, blockCache.size());
+    result.clear();
+
+    // The block is found in the cache
+    reader1.get(KEY2, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE2, result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+    assertFalse(result.getBlockCacheMiss());
+    result.clear();
+
+    // The block decompressed by the other reader is found in the cache
+    reader2.get(KEY3, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE3, result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+    result.clear();
+
+    reader2.get(KEY1, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE1, result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+    result.clear();
+
+    // Closing a reader releases its blocks
+    reader1.close();
+    assertEquals(0, blockCache.size());
+    assertEquals(0, blockCache.getNumManagedBytes());
+  }
 }
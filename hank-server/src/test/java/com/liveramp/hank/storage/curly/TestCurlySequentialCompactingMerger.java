@@ -0,0 +1,264 @@
+package com.liveramp.hank.storage.curly;
+
+import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.FilterStatistics;
+import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.cueball.IKeyFileStreamBufferMergeSort;
+import com.liveramp.hank.storage.cueball.KeyHashAndValueAndStreamIndex;
+import com.liveramp.hank.storage.map.MapWriter;
+import com.liveramp.hank.test.BaseTestCase;
+import com.liveramp.hank.util.EncodingHelper;
+import org.apache.commons.lang.NotImplementedException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestCurlySequentialCompactingMerger extends BaseTestCase {
+
+  private CurlyFilePath CURLY_BASE_PATH = new CurlyFilePath(localTmpDir + "/00000.base.curly");
+  private static final byte[] BASE_DATA = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+  private CurlyFilePath CURLY_DELTA_1_PATH = new CurlyFilePath(localTmpDir + "/00001.delta.curly");
+  private static final byte[] DELTA_1_DATA = {11, 12, 13};
+  private CurlyFilePath CURLY_DELTA_2_PATH = new CurlyFilePath(localTmpDir + "/00002.delta.curly");
+  private static final byte[] DELTA_2_DATA = {14, 15, 16};
+
+  private int recordFileReadBufferBytes = 32 * 1024;
+
+  @Test
+  public void testInMemory() throws IOException {
+    doTestMerge(new CurlySequentialCompactingMerger(recordFileReadBufferBytes, 1));
+  }
+
+  @Test
+  public void testExternalMemory() throws IOException {
+    // Every record is spilled to disk
+    doTestMerge(new CurlySequentialCompactingMerger(recordFileReadBufferBytes, 1, 1));
+  }
+
+  @Test
+  public void testBlockCompressedRecordFiles() throws IOException {
+    // Write a base and two deltas with small compressed blocks. Each key is in exactly one file.
+    List<CurlyFilePath> curlyFilePaths = Arrays.asList(CURLY_BASE_PATH, CURLY_DELTA_1_PATH, CURLY_DELTA_2_PATH);
+    final List<KeyHashAndValueAndStreamIndex> keyFileItems = new ArrayList<KeyHashAndValueAndStreamIndex>();
+    Map<ByteBuffer, ByteBuffer> values = new HashMap<ByteBuffer, ByteBuffer>();
+    Random random = new Random(0);
+    for (int streamIndex = 0; streamIndex < curlyFilePaths.size(); ++streamIndex) {
+      MapWriter keyFileWriter = new MapWriter();
+      CurlyWriter writer = new CurlyWriter(new FileOutputStream(curlyFilePaths.get(streamIndex).getPath()),
+          keyFileWriter, 3, -1, CompressionCodec.GZIP, 256, 2);
+      for (int i = streamIndex; i < 300; i += curlyFilePaths.size()) {
+        ByteBuffer keyHash = ByteBuffer.allocate(4).putInt(0, i);
+        byte[] value = new byte[1 + random.nextInt(100)];
+        random.nextBytes(value);
+        writer.write(keyHash, ByteBuffer.wrap(value));
+        values.put(keyHash, ByteBuffer.wrap(value));
+      }
+      writer.close();
+      for (Map.Entry<ByteBuffer, ByteBuffer> entry : keyFileWriter.entries.entrySet()) {
+        keyFileItems.add(new KeyHashAndValueAndStreamIndex(entry.getKey(), entry.getValue(), streamIndex));
+      }
+    }
+    // Merge in key hash order
+    Collections.sort(keyFileItems, new Comparator<KeyHashAndValueAndStreamIndex>() {
+      @Override
+      public int compare(KeyHashAndValueAndStreamIndex a, KeyHashAndValueAndStreamIndex b) {
+        return a.keyHash.compareTo(b.keyHash);
+      }
+    });
+
+    final ICurlyReaderFactory curlyReaderFactory = new ICurlyReaderFactory() {
+      @Override
+      public ICurlyReader getInstance(CurlyFilePath curlyFilePath) throws IOException {
+        return new CurlyReader(curlyFilePath, recordFileReadBufferBytes,
+            null, 10L << 20, 1 << 10, CompressionCodec.GZIP, 3, 2, true, 10 << 10);
+      }
+    };
+
+    // Reference merge, reading records in key hash order
+    MapWriter expectedRecordFileWriter = new MapWriter(new LinkedHashMap<ByteBuffer, ByteBuffer>());
+    new CurlyCompactingMerger(recordFileReadBufferBytes).merge(CURLY_BASE_PATH, curlyFilePaths.subList(1, 3),
+        getKeyFileStreamBufferMergeSort(keyFileItems, 3), curlyReaderFactory, expectedRecordFileWriter);
+    assertEquals(values, expectedRecordFileWriter.entries);
+
+    // In memory, and spilling every record to disk
+    for (long maxNumBytesInMemory : new long[]{CurlySequentialCompactingMerger.DEFAULT_MAX_NUM_BYTES_IN_MEMORY, 1}) {
+      MapWriter recordFileWriter = new MapWriter(new LinkedHashMap<ByteBuffer, ByteBuffer>());
+      new CurlySequentialCompactingMerger(recordFileReadBufferBytes, 3, maxNumBytesInMemory).merge(CURLY_BASE_PATH,
+          curlyFilePaths.subList(1, 3), getKeyFileStreamBufferMergeSort(keyFileItems, 3), curlyReaderFactory, recordFileWriter);
+      assertEquals(new ArrayList<Map.Entry<ByteBuffer, ByteBuffer>>(expectedRecordFileWriter.entries.entrySet()),
+          new ArrayList<Map.Entry<ByteBuffer, ByteBuffer>>(recordFileWriter.entries.entrySet()));
+    }
+
+    // Only the record files are left
+    assertEquals(3, new File(localTmpDir).listFiles().length);
+  }
+
+  private static IKeyFileStreamBufferMergeSort getKeyFileStreamBufferMergeSort(final List<KeyHashAndValueAndStreamIndex> items,
+                                                                               final int numStreams) {
+    return new IKeyFileStreamBufferMergeSort() {
+
+      private int index = 0;
+
+      @Override
+      public KeyHashAndValueAndStreamIndex nextKeyHashAndValueAndStreamIndex() throws IOException {
+        if (index < items.size()) {
+          // Items are shared by several merges
+          KeyHashAndValueAndStreamIndex item = items.get(index++);
+          return new KeyHashAndValueAndStreamIndex(item.keyHash.duplicate(), item.value.duplicate(), item.streamIndex);
+        } else {
+          return null;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+      }
+
+      @Override
+      public int getNumStreams() {
+        return numStreams;
+      }
+    };
+  }
+
+  private void doTestMerge(CurlySequentialCompactingMerger merger) throws IOException {
+
+    List<CurlyFilePath> curlyDeltas = new ArrayList<CurlyFilePath>();
+    curlyDeltas.add(CURLY_DELTA_1_PATH);
+    curlyDeltas.add(CURLY_DELTA_2_PATH);
+
+    final IKeyFileStreamBufferMergeSort keyFileStreamBufferMergeSort = new IKeyFileStreamBufferMergeSort() {
+
+      private List<KeyHashAndValueAndStreamIndex> items = new ArrayList<KeyHashAndValueAndStreamIndex>() {{
+        // Merge order
+        //                                    hash | offset in record file | streamIndex
+        add(new KeyHashAndValueAndStreamIndex(getBB(0), getBB(8), 0)); // 8
+        add(new KeyHashAndValueAndStreamIndex(getBB(1), getBB(1), 1)); // 12
+        add(new KeyHashAndValueAndStreamIndex(getBB(2), getBB(0), 1)); // 11
+        add(new KeyHashAndValueAndStreamIndex(getBB(3), getBB(3), 0)); // 3
+        add(new KeyHashAndValueAndStreamIndex(getBB(4), getBB(2), 2)); // 16
+        add(new KeyHashAndValueAndStreamIndex(getBB(5), getBB(0), 2)); // 14
+        add(new KeyHashAndValueAndStreamIndex(getBB(6), getBB(0), 0)); // 0
+      }};
+      private int index = 0;
+
+      @Override
+      public KeyHashAndValueAndStreamIndex nextKeyHashAndValueAndStreamIndex() throws IOException {
+        if (index < items.size()) {
+          return items.get(index++);
+        } else {
+          return null;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+      }
+
+      @Override
+      public int getNumStreams() {
+        return 3;
+      }
+    };
+
+    final List<Integer> readValues = new ArrayList<Integer>();
+
+    final ICurlyReaderFactory curlyReaderFactory = new ICurlyReaderFactory() {
+
+      @Override
+      public ICurlyReader getInstance(final CurlyFilePath curlyFilePath) {
+
+        return new ICurlyReader() {
+          @Override
+          public void readRecord(ByteBuffer location, ReaderResult result) throws IOException {
+            long recordFileOffset = EncodingHelper.decodeLittleEndianVarInt(location);
+            byte value;
+            switch (curlyFilePath.getVersion()) {
+              case 0:
+                value = BASE_DATA[((int)recordFileOffset)];
+                break;
+              case 1:
+                value = DELTA_1_DATA[((int)recordFileOffset)];
+                break;
+              case 2:
+                value = DELTA_2_DATA[((int)recordFileOffset)];
+                break;
+              default:
+                throw new RuntimeException("Unknown version number ");
+            }
+            readValues.add((int)value);
+            result.getBuffer().clear();
+            result.getBuffer().put(value);
+            result.getBuffer().flip();
+          }
+
+          @Override
+          public void get(ByteBuffer key, ReaderResult result) throws IOException {
+            throw new NotImplementedException();
+          }
+
+          @Override
+          public Integer getVersionNumber() {
+            throw new NotImplementedException();
+          }
+
+          @Override
+          public CacheStatistics getCacheStatistics() {
+            return null;
+          }
+
+          @Override
+          public FilterStatistics getFilterStatistics() {
+            return null;
+          }
+
+          @Override
+          public void close() throws IOException {
+          }
+        };
+      }
+    };
+
+    // Keep track of the order in which records are written
+    final MapWriter recordFileWriter = new MapWriter(new LinkedHashMap<ByteBuffer, ByteBuffer>());
+
+    // Perform merging
+    merger.merge(CURLY_BASE_PATH, curlyDeltas, keyFileStreamBufferMergeSort, curlyReaderFactory, recordFileWriter);
+
+    // Records are read sequentially in each file
+    assertEquals(Arrays.asList(0, 3, 8, 11, 12, 14, 16), readValues);
+
+    // Records are written in key hash order
+    List<Map.Entry<ByteBuffer, ByteBuffer>> entries = new ArrayList<Map.Entry<ByteBuffer, ByteBuffer>>(recordFileWriter.entries.entrySet());
+    assertEquals(7, entries.size());
+    byte[] expectedValues = {8, 12, 11, 3, 16, 14, 0};
+    for (int i = 0; i < expectedValues.length; ++i) {
+      assertEquals(getBB(i), entries.get(i).getKey());
+      assertEquals(getBB(expectedValues[i]), entries.get(i).getValue());
+    }
+
+    // Temporary files are deleted
+    assertEquals(0, new File(localTmpDir).listFiles().length);
+  }
+
+  private ByteBuffer getBB(int b) {
+    byte[] bytes = new byte[1];
+    bytes[0] = (byte)b;
+    return ByteBuffer.wrap(bytes);
+  }
+}
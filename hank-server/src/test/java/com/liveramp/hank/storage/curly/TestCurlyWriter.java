@@ -130,4 +130,9 @@ public class TestCurlyWriter extends AbstractCurlyTestBase {
   public void testBlockCompressionSnappy() throws Exception {
     doTestBlockCompression(CompressionCodec.SNAPPY, EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_SNAPPY);
   }
+
+  @Test
+  public void testBlockCompressionLz4() throws Exception {
+    doTestBlockCompression(CompressionCodec.LZ4, EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_LZ4);
+  }
 }
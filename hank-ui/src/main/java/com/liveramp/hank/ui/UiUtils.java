@@ -165,6 +165,8 @@ public class UiUtils {
       for (int i = 0; i < 9; ++i) {
         addBar(tooltipContent, ((i + 1) * 10) + "%", deciles[i], populationStatistics.getMaximum(), "ms");
       }
+      addBar(tooltipContent, "99%", populationStatistics.computePercentile(99), populationStatistics.getMaximum(), "ms");
+      addBar(tooltipContent, "99.9%", populationStatistics.computePercentile(99.9), populationStatistics.getMaximum(), "ms");
       addBar(tooltipContent, "max", populationStatistics.getMaximum(), populationStatistics.getMaximum(), "ms");
       tooltipContent.append("</table>");
 
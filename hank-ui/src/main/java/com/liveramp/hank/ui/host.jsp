@@ -132,6 +132,14 @@
     </td>
     </tr>
 
+    <tr>
+    <td>Block Cache Hit Rate:</td>
+    <td>
+      <%= FormatUtils.formatDouble(runtimeStatisticsForHost.getBlockCacheHitRate() * 100) %>%
+      (<%= String.format("%,d", runtimeStatisticsForHost.getNumBlockCacheRequests()) %> requests)
+    </td>
+    </tr>
+
     <tr>
     <td>Uptime:</td>
     <td>